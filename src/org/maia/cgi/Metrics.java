@@ -24,6 +24,10 @@ public class Metrics {
 
 	private long lineWithPlaneIntersections;
 
+	private long lineWithTriangleIntersections;
+
+	private long lineWithQuadricIntersections;
+
 	private long lineWithLineIntersections;
 
 	private long eyeRayWithObjectIntersectionChecks;
@@ -40,6 +44,14 @@ public class Metrics {
 
 	private long surfacePositionToLightSourceTraversals;
 
+	private long reusedLightRayTranslucencies;
+
+	private long wavefrontPrimaryRaysNanos;
+
+	private long wavefrontShadowRaysNanos;
+
+	private long wavefrontShadingNanos;
+
 	private static NumberFormat numberFormat;
 
 	static {
@@ -80,6 +92,8 @@ public class Metrics {
 		builder.append("\t---\n");
 		builder.append("\tLine with line intersections: ").append(format(lineWithLineIntersections)).append("\n");
 		builder.append("\tLine with plane intersections: ").append(format(lineWithPlaneIntersections)).append("\n");
+		builder.append("\tLine with triangle intersections: ").append(format(lineWithTriangleIntersections)).append("\n");
+		builder.append("\tLine with quadric intersections: ").append(format(lineWithQuadricIntersections)).append("\n");
 		builder.append("\tBounding box computations: ").append(format(boundingBoxComputations)).append("\n");
 		builder.append("\t---\n");
 		builder.append("\tEye ray object intersection checks: ").append(format(eyeRayWithObjectIntersectionChecks))
@@ -91,6 +105,12 @@ public class Metrics {
 				.append("\n");
 		builder.append("\tLight ray object intersections: ").append(format(lightRayWithObjectIntersections))
 				.append("\n");
+		builder.append("\tReused light ray translucencies: ").append(format(reusedLightRayTranslucencies))
+				.append("\n");
+		builder.append("\t---\n");
+		builder.append("\tWavefront primary rays: ").append(formatNanos(wavefrontPrimaryRaysNanos)).append("\n");
+		builder.append("\tWavefront shadow rays: ").append(formatNanos(wavefrontShadowRaysNanos)).append("\n");
+		builder.append("\tWavefront shading: ").append(formatNanos(wavefrontShadingNanos)).append("\n");
 		builder.append("}");
 		return builder.toString();
 	}
@@ -99,6 +119,10 @@ public class Metrics {
 		return numberFormat.format(value);
 	}
 
+	private static String formatNanos(long nanos) {
+		return format(nanos / 1000000L) + " ms";
+	}
+
 	public void resetCounters() {
 		pointTransformations = 0;
 		pointNormalizations = 0;
@@ -109,6 +133,8 @@ public class Metrics {
 		vectorNormalizations = 0;
 		vectorAnglesInBetween = 0;
 		lineWithPlaneIntersections = 0;
+		lineWithTriangleIntersections = 0;
+		lineWithQuadricIntersections = 0;
 		lineWithLineIntersections = 0;
 		eyeRayWithObjectIntersectionChecks = 0;
 		eyeRayWithObjectIntersections = 0;
@@ -117,6 +143,10 @@ public class Metrics {
 		boundingBoxComputations = 0;
 		pointInsidePolygonChecks = 0;
 		surfacePositionToLightSourceTraversals = 0;
+		reusedLightRayTranslucencies = 0;
+		wavefrontPrimaryRaysNanos = 0;
+		wavefrontShadowRaysNanos = 0;
+		wavefrontShadingNanos = 0;
 	}
 
 	public void incrementPointTransformations() {
@@ -155,6 +185,14 @@ public class Metrics {
 		lineWithPlaneIntersections++;
 	}
 
+	public void incrementLineWithTriangleIntersections() {
+		lineWithTriangleIntersections++;
+	}
+
+	public void incrementLineWithQuadricIntersections() {
+		lineWithQuadricIntersections++;
+	}
+
 	public void incrementLineWithLineIntersections() {
 		lineWithLineIntersections++;
 	}
@@ -187,6 +225,22 @@ public class Metrics {
 		surfacePositionToLightSourceTraversals++;
 	}
 
+	public void incrementReusedLightRayTranslucencies() {
+		reusedLightRayTranslucencies++;
+	}
+
+	public synchronized void addWavefrontPrimaryRaysTime(long nanos) {
+		wavefrontPrimaryRaysNanos += nanos;
+	}
+
+	public synchronized void addWavefrontShadowRaysTime(long nanos) {
+		wavefrontShadowRaysNanos += nanos;
+	}
+
+	public synchronized void addWavefrontShadingTime(long nanos) {
+		wavefrontShadingNanos += nanos;
+	}
+
 	public long getPointTransformations() {
 		return pointTransformations;
 	}
@@ -223,6 +277,14 @@ public class Metrics {
 		return lineWithPlaneIntersections;
 	}
 
+	public long getLineWithTriangleIntersections() {
+		return lineWithTriangleIntersections;
+	}
+
+	public long getLineWithQuadricIntersections() {
+		return lineWithQuadricIntersections;
+	}
+
 	public long getLineWithLineIntersections() {
 		return lineWithLineIntersections;
 	}
@@ -255,4 +317,29 @@ public class Metrics {
 		return surfacePositionToLightSourceTraversals;
 	}
 
+	public long getReusedLightRayTranslucencies() {
+		return reusedLightRayTranslucencies;
+	}
+
+	/**
+	 * Returns the time spent tracing primary rays into geometry buffers, in nanoseconds summed over all threads
+	 */
+	public long getWavefrontPrimaryRaysTime() {
+		return wavefrontPrimaryRaysNanos;
+	}
+
+	/**
+	 * Returns the time spent tracing shadow rays from geometry buffers, in nanoseconds summed over all threads
+	 */
+	public long getWavefrontShadowRaysTime() {
+		return wavefrontShadowRaysNanos;
+	}
+
+	/**
+	 * Returns the time spent shading and compositing geometry buffers, in nanoseconds summed over all threads
+	 */
+	public long getWavefrontShadingTime() {
+		return wavefrontShadingNanos;
+	}
+
 }
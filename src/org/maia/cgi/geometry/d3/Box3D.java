@@ -122,6 +122,16 @@ public class Box3D {
 		return true;
 	}
 
+	public boolean contains(Box3D other) {
+		if (other.getX1() < getX1() || other.getX2() > getX2())
+			return false;
+		if (other.getY1() < getY1() || other.getY2() > getY2())
+			return false;
+		if (other.getZ1() < getZ1() || other.getZ2() > getZ2())
+			return false;
+		return true;
+	}
+
 	public boolean overlaps(Box3D other) {
 		if (other.getX2() <= getX1() || other.getX1() >= getX2())
 			return false;
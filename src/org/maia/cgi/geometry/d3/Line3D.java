@@ -70,8 +70,26 @@ public class Line3D {
 	}
 
 	public Point3D intersect(Plane3D plane) {
-		Metrics.getInstance().incrementLineWithPlaneIntersections();
 		Point3D result = null;
+		double r = intersectAtRelativePosition(plane);
+		if (!Double.isNaN(r)) {
+			result = getPointAtRelativePosition(r);
+		}
+		return result;
+	}
+
+	/**
+	 * Intersects this line with a plane, without creating any objects
+	 * 
+	 * @param plane
+	 *            The plane to intersect with
+	 * @return The relative position of the intersecting point on this line, or <code>Double.NaN</code> when there is
+	 *         no intersecting point
+	 * @see #getPointAtRelativePosition(double, Point3D)
+	 */
+	public double intersectAtRelativePosition(Plane3D plane) {
+		Metrics.getInstance().incrementLineWithPlaneIntersections();
+		double result = Double.NaN;
 		Vector3D v = getDirection();
 		Vector3D n = plane.getNormalUnitVector();
 		double b = v.dotProduct(n);
@@ -83,7 +101,7 @@ public class Line3D {
 					* n.getZ() - p.getZ() * n.getZ();
 			double r = -a / b;
 			if (containsPointAtRelativePosition(r)) {
-				result = getPointAtRelativePosition(r);
+				result = r;
 			}
 		}
 		return result;
@@ -97,14 +115,20 @@ public class Line3D {
 		} else if (r == 1.0) {
 			return p2;
 		} else {
-			double x = (1.0 - r) * p1.getX() + r * p2.getX();
-			double y = (1.0 - r) * p1.getY() + r * p2.getY();
-			double z = (1.0 - r) * p1.getZ() + r * p2.getZ();
-			return new Point3D(x, y, z);
+			return getPointAtRelativePosition(r, new Point3D());
 		}
 	}
 
-	protected boolean containsPointAtRelativePosition(double r) {
+	public Point3D getPointAtRelativePosition(double r, Point3D result) {
+		Point3D p1 = getP1();
+		Point3D p2 = getP2();
+		result.setX((1.0 - r) * p1.getX() + r * p2.getX());
+		result.setY((1.0 - r) * p1.getY() + r * p2.getY());
+		result.setZ((1.0 - r) * p1.getZ() + r * p2.getZ());
+		return result;
+	}
+
+	public boolean containsPointAtRelativePosition(double r) {
 		return true; // open ended line, subclasses may override this
 	}
 
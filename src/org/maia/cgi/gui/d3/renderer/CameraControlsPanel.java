@@ -294,7 +294,12 @@ public class CameraControlsPanel extends Box {
 				if (isSupportedByCamera(camera)) {
 					setLastControlAction(this);
 					setLastControlActionTime(System.currentTimeMillis());
-					perform();
+					camera.beginUpdate();
+					try {
+						perform();
+					} finally {
+						camera.commitUpdate(); // observers are notified once per action
+					}
 				}
 			}
 		}
@@ -1,9 +1,10 @@
 package org.maia.cgi.gui.d3.renderer;
 
 import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d3.HybridRaytraceRenderer;
 import org.maia.cgi.render.d3.RaytraceRenderer;
 import org.maia.cgi.render.d3.RenderOptions;
-import org.maia.cgi.render.d3.WireframeRenderer;
+import org.maia.cgi.render.d3.WireframePreviewRenderer;
 import org.maia.cgi.render.d3.RenderOptions.RenderMode;
 import org.maia.cgi.render.d3.SceneRenderer;
 
@@ -19,16 +20,22 @@ public class DefaultRenderKit implements RenderKit {
 			renderer = createPrototypeSceneRenderer(scene, options);
 		} else if (RenderMode.REALISTIC.equals(options.getRenderMode())) {
 			renderer = createRealisticSceneRenderer(scene, options);
+		} else if (RenderMode.HYBRID.equals(options.getRenderMode())) {
+			renderer = createHybridSceneRenderer(scene, options);
 		}
 		return renderer;
 	}
 
 	protected SceneRenderer createPrototypeSceneRenderer(Scene scene, RenderOptions options) {
-		return new WireframeRenderer();
+		return new WireframePreviewRenderer();
 	}
 
 	protected SceneRenderer createRealisticSceneRenderer(Scene scene, RenderOptions options) {
 		return new RaytraceRenderer();
 	}
 
+	protected SceneRenderer createHybridSceneRenderer(Scene scene, RenderOptions options) {
+		return new HybridRaytraceRenderer();
+	}
+
 }
\ No newline at end of file
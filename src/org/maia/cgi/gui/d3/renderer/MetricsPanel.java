@@ -41,6 +41,17 @@ public class MetricsPanel extends JPanel {
 		panel.add(buildMetricValueLabel(modelMetrics.getUniqueEdges()));
 		panel.add(buildMetricNameLabel("Faces"));
 		panel.add(buildMetricValueLabel(modelMetrics.getFaces()));
+		addSpacer(panel);
+		panel.add(buildMetricNameLabel("Instances"));
+		panel.add(buildMetricValueLabel(modelMetrics.getInstances()));
+		panel.add(buildMetricNameLabel("Shared geometries"));
+		panel.add(buildMetricValueLabel(modelMetrics.getSharedGeometries()));
+		panel.add(buildMetricNameLabel("Instanced vertices"));
+		panel.add(buildMetricValueLabel(modelMetrics.getInstancedVertices()));
+		panel.add(buildMetricNameLabel("Instanced vertices (stored)"));
+		panel.add(buildMetricValueLabel(modelMetrics.getSharedVertices()));
+		panel.add(buildMetricNameLabel("Instanced triangles"));
+		panel.add(buildMetricValueLabel(modelMetrics.getInstancedTriangles()));
 		JPanel parent = new JPanel(new BorderLayout());
 		parent.add(panel, BorderLayout.NORTH);
 		parent.setBorder(BorderFactory.createEmptyBorder(16, 16, 16, 16));
@@ -75,6 +86,10 @@ public class MetricsPanel extends JPanel {
 		panel.add(buildMetricValueLabel(computeMetrics.getLineWithLineIntersections()));
 		panel.add(buildMetricNameLabel("Line with plane intersections"));
 		panel.add(buildMetricValueLabel(computeMetrics.getLineWithPlaneIntersections()));
+		panel.add(buildMetricNameLabel("Line with triangle intersections"));
+		panel.add(buildMetricValueLabel(computeMetrics.getLineWithTriangleIntersections()));
+		panel.add(buildMetricNameLabel("Line with quadric intersections"));
+		panel.add(buildMetricValueLabel(computeMetrics.getLineWithQuadricIntersections()));
 		panel.add(buildMetricNameLabel("Bounding box computations"));
 		panel.add(buildMetricValueLabel(computeMetrics.getBoundingBoxComputations()));
 		addSpacer(panel);
@@ -44,6 +44,7 @@ import org.maia.cgi.model.d3.camera.Camera;
 import org.maia.cgi.model.d3.camera.CameraObserver;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.model.d3.scene.SceneUtils;
+import org.maia.cgi.render.d3.RenderHandle;
 import org.maia.cgi.render.d3.RenderOptions;
 import org.maia.cgi.render.d3.RenderOptions.RenderMode;
 import org.maia.cgi.render.d3.SceneRenderer;
@@ -72,6 +73,8 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 
 	private RenderAction renderAction;
 
+	private RenderHybridAction renderHybridAction;
+
 	private RenderButton renderButton;
 
 	private ExportImageAction exportImageAction;
@@ -92,7 +95,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 
 	private JLabel memoryUsageLabel;
 
-	private Thread renderThread;
+	private volatile RenderHandle renderHandle;
 
 	private long renderTimeMs;
 
@@ -121,6 +124,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		this.renderPane = createRenderPane(viewWidth, viewHeight);
 		this.scrollRenderPane = createScrollRenderPane(viewWidth, viewHeight, viewBackgroundColor);
 		this.renderAction = new RenderAction();
+		this.renderHybridAction = new RenderHybridAction();
 		this.renderButton = createRenderButton();
 		this.exportImageAction = new ExportImageAction();
 		this.exportImageButton = createExportImageButton();
@@ -263,6 +267,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 	protected JMenu buildRenderMenu() {
 		JMenu menu = new JMenu(RenderUIResources.renderMenuTitle);
 		menu.add(new JMenuItem(getRenderAction()));
+		menu.add(new JMenuItem(getRenderHybridAction()));
 		return menu;
 	}
 
@@ -351,6 +356,10 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		render(RenderMode.REALISTIC);
 	}
 
+	protected void renderHybrid() {
+		render(RenderMode.HYBRID);
+	}
+
 	protected synchronized void render(RenderMode renderMode) {
 		if (isSceneLoaded() && !isRendering()) {
 			RenderOptions options = getRenderOptions();
@@ -359,18 +368,34 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 			renderer.addProgressTracker(this);
 			renderer.addProgressTracker(new RenderChrono());
 			ViewPort viewPort = getRenderPane().getOutputViewPort();
-			Thread worker = new Thread(new RenderWorker(renderer, viewPort, options));
-			setRenderThread(worker);
-			worker.start();
+			Metrics.getInstance().resetCounters();
+			setRenderHandle(renderer.renderInBackground(getScene(), viewPort, options));
+		}
+	}
+
+	/**
+	 * Cancels the render in progress, if any, and waits for it to stop
+	 * 
+	 * <p>
+	 * This method must not be called while holding the lock on this frame, as the rendering thread needs it to notify
+	 * the cancellation.
+	 * </p>
+	 */
+	protected void cancelRendering() {
+		RenderHandle handle = getRenderHandle();
+		if (handle != null) {
+			handle.cancel(false);
+			handle.awaitDone();
 		}
 	}
 
 	protected synchronized boolean isRendering() {
-		return getRenderThread() != null;
+		return getRenderHandle() != null;
 	}
 
 	protected boolean isInRealisticRenderMode() {
-		return RenderMode.REALISTIC.equals(getRenderOptions().getRenderMode());
+		RenderMode renderMode = getRenderOptions().getRenderMode();
+		return RenderMode.REALISTIC.equals(renderMode) || RenderMode.HYBRID.equals(renderMode);
 	}
 
 	@Override
@@ -396,7 +421,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 
 	@Override
 	public synchronized void renderingCompleted(SceneRenderer renderer, Scene scene) {
-		setRenderThread(null);
+		setRenderHandle(null);
 		getRenderPane().repaint();
 		if (isInRealisticRenderMode()) {
 			clearProgress();
@@ -412,6 +437,18 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		}
 	}
 
+	@Override
+	public synchronized void renderingCancelled(SceneRenderer renderer, Scene scene) {
+		setRenderHandle(null);
+		if (isInRealisticRenderMode()) {
+			clearProgress();
+			CGISystem.releaseMemoryAfterRendering(scene);
+		}
+		enableRenderPanel();
+		getCameraControlsPanel().setEnabled(true);
+		getSceneSelectionMenu().setEnabled(true);
+	}
+
 	private void showZeroProgress() {
 		showProgress(0, -1, 0.0, "Start rendering...");
 	}
@@ -464,6 +501,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 
 	@Override
 	public void cameraHasChanged(Camera camera) {
+		cancelRendering(); // the render in progress, if any, is of the camera before the change
 		renderPrototype();
 	}
 
@@ -500,6 +538,7 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 	private void setRenderPanelEnabled(boolean enabled) {
 		getRenderOptionsPanel().setEnabled(enabled);
 		getRenderAction().setEnabled(enabled);
+		getRenderHybridAction().setEnabled(enabled);
 		getExportImageAction().setEnabled(enabled);
 	}
 
@@ -547,6 +586,10 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		return renderAction;
 	}
 
+	private RenderHybridAction getRenderHybridAction() {
+		return renderHybridAction;
+	}
+
 	private RenderButton getRenderButton() {
 		return renderButton;
 	}
@@ -587,12 +630,12 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		return memoryUsageLabel;
 	}
 
-	private Thread getRenderThread() {
-		return renderThread;
+	private RenderHandle getRenderHandle() {
+		return renderHandle;
 	}
 
-	private void setRenderThread(Thread renderThread) {
-		this.renderThread = renderThread;
+	private void setRenderHandle(RenderHandle renderHandle) {
+		this.renderHandle = renderHandle;
 	}
 
 	private long getRenderTimeMs() {
@@ -603,40 +646,6 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 		this.renderTimeMs = renderTimeMs;
 	}
 
-	private class RenderWorker implements Runnable {
-
-		private SceneRenderer renderer;
-
-		private ViewPort viewPort;
-
-		private RenderOptions options;
-
-		public RenderWorker(SceneRenderer renderer, ViewPort viewPort, RenderOptions options) {
-			this.renderer = renderer;
-			this.viewPort = viewPort;
-			this.options = options;
-		}
-
-		@Override
-		public void run() {
-			Metrics.getInstance().resetCounters();
-			getRenderer().render(getScene(), getViewPort(), getOptions());
-		}
-
-		private SceneRenderer getRenderer() {
-			return renderer;
-		}
-
-		private ViewPort getViewPort() {
-			return viewPort;
-		}
-
-		private RenderOptions getOptions() {
-			return options;
-		}
-
-	}
-
 	private class SystemUsageUpdater implements Runnable {
 
 		public SystemUsageUpdater() {
@@ -682,6 +691,20 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 
 	}
 
+	private class RenderHybridAction extends AbstractAction {
+
+		public RenderHybridAction() {
+			super(RenderUIResources.renderHybridLabel);
+			putValue(Action.SHORT_DESCRIPTION, RenderUIResources.renderHybridToolTipText);
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent event) {
+			renderHybrid();
+		}
+
+	}
+
 	private static class ExportImageButton extends JButton {
 
 		public ExportImageButton(ExportImageAction action) {
@@ -866,6 +889,11 @@ public class RenderFrame extends JFrame implements SceneRendererProgressTracker,
 			updateRenderTimeMs();
 		}
 
+		@Override
+		public void renderingCancelled(SceneRenderer renderer, Scene scene) {
+			updateRenderTimeMs();
+		}
+
 		private void updateRenderTimeMs() {
 			setRenderTimeMs(System.currentTimeMillis() - startTimeMs);
 		}
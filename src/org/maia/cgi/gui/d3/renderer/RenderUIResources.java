@@ -31,6 +31,10 @@ public class RenderUIResources {
 
 	public static final String renderToolTipText = "Renders the 3D model on the canvas";
 
+	public static final String renderHybridLabel = "Render (hybrid)";
+
+	public static final String renderHybridToolTipText = "Renders the 3D model, rasterizing the visible surfaces first";
+
 	public static final Icon exportIcon = loadIcon(iconFolder + "download32.png");
 
 	public static final String exportLabel = "Export image...";
@@ -19,6 +19,8 @@ import org.maia.cgi.model.d3.object.ConvexPolygonalObject3D;
 import org.maia.cgi.model.d3.object.MultipartObject3D;
 import org.maia.cgi.model.d3.object.PolygonalObject3D;
 import org.maia.cgi.model.d3.object.SimpleFace3D;
+import org.maia.cgi.model.d3.object.SimpleTriangularFace3D;
+import org.maia.cgi.model.d3.object.TriangulationUtils;
 import org.maia.cgi.render.d3.shading.FlatShadingModel;
 
 public class ModelBuilderUtils {
@@ -378,6 +380,18 @@ public class ModelBuilderUtils {
 		}
 	}
 
+	public static Collection<SimpleTriangularFace3D> convertToTriangularFaces(PolygonalObject3D polygon, Color color,
+			FlatShadingModel shadingModel) {
+		List<Point3D> vertices = polygon.getVerticesInWorldCoordinates();
+		List<int[]> triangles = TriangulationUtils.triangulate(vertices, polygon instanceof ConvexPolygonalObject3D);
+		Collection<SimpleTriangularFace3D> faces = new Vector<SimpleTriangularFace3D>(triangles.size());
+		for (int[] t : triangles) {
+			faces.add(new SimpleTriangularFace3D(color, shadingModel, vertices.get(t[0]), vertices.get(t[1]), vertices
+					.get(t[2])));
+		}
+		return faces;
+	}
+
 	public static Point3D deriveCentroid(List<Point3D> vertices) {
 		int n = vertices.size();
 		double x = 0;
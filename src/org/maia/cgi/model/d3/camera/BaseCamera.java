@@ -2,6 +2,7 @@ package org.maia.cgi.model.d3.camera;
 
 import java.util.Collection;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.maia.cgi.geometry.d3.Point3D;
 
@@ -13,6 +14,14 @@ public abstract class BaseCamera implements Camera {
 
 	private Collection<CameraObserver> observers = new Vector<CameraObserver>();
 
+	private volatile long epoch = nextEpoch();
+
+	private int updateDepth;
+
+	private boolean changePending;
+
+	private static AtomicLong epochCounter = new AtomicLong();
+
 	protected BaseCamera(Point3D position, ViewVolume viewVolume) {
 		this.position = position;
 		this.viewVolume = viewVolume;
@@ -28,12 +37,53 @@ public abstract class BaseCamera implements Camera {
 		getObservers().remove(observer);
 	}
 
+	@Override
+	public synchronized void beginUpdate() {
+		updateDepth++;
+	}
+
+	@Override
+	public void commitUpdate() {
+		boolean notify = false;
+		synchronized (this) {
+			if (updateDepth == 0)
+				throw new IllegalStateException("No camera update in progress");
+			if (--updateDepth == 0 && changePending) {
+				changePending = false;
+				notify = true;
+			}
+		}
+		if (notify) {
+			notifyObservers();
+		}
+	}
+
 	protected void fireCameraHasChanged() {
+		epoch = nextEpoch();
+		synchronized (this) {
+			if (updateDepth > 0) {
+				changePending = true;
+				return; // coalesced until the update is committed
+			}
+		}
+		notifyObservers();
+	}
+
+	private void notifyObservers() {
 		for (CameraObserver observer : getObservers()) {
 			observer.cameraHasChanged(this);
 		}
 	}
 
+	private static long nextEpoch() {
+		return epochCounter.incrementAndGet();
+	}
+
+	@Override
+	public long getEpoch() {
+		return epoch;
+	}
+
 	@Override
 	public Point3D getPosition() {
 		return position;
@@ -11,6 +11,42 @@ public interface Camera {
 
 	Point3D getPosition();
 
+	/**
+	 * Returns the epoch of this camera
+	 * 
+	 * <p>
+	 * The epoch changes whenever the camera changes and no two cameras ever share the same epoch. Cached state derived
+	 * in camera coordinates can record the epoch at the time it was derived, and compare it later on to find out
+	 * whether it is out of date.
+	 * </p>
+	 * 
+	 * @return The current epoch
+	 */
+	long getEpoch();
+
+	/**
+	 * Starts a batch of changes to this camera
+	 * 
+	 * <p>
+	 * Until the matching {@link #commitUpdate()}, observers are not notified of any change. The epoch of this camera
+	 * does keep up with every change. Updates can be nested, in which case only the outermost commit counts.
+	 * </p>
+	 */
+	void beginUpdate();
+
+	/**
+	 * Ends a batch of changes to this camera
+	 * 
+	 * <p>
+	 * When this ends the outermost update and the camera has changed since it began, all observers are notified once.
+	 * </p>
+	 * 
+	 * @throws IllegalStateException
+	 *             When no update is in progress
+	 * @see #beginUpdate()
+	 */
+	void commitUpdate();
+
 	void addObserver(CameraObserver observer);
 
 	void removeObserver(CameraObserver observer);
@@ -42,6 +42,33 @@ public class MovableCameraImpl extends BaseCamera implements MovableCamera {
 		return this;
 	}
 
+	/**
+	 * Positions this camera in space with an exact orientation
+	 * 
+	 * <p>
+	 * This restores a camera from the unit vectors of its viewing matrix, whereas positioning with a point to look at
+	 * would derive the orientation anew and introduce rounding errors.
+	 * </p>
+	 * 
+	 * @param position
+	 *            The new camera position
+	 * @param u
+	 *            The unit vector pointing to the right of the camera
+	 * @param v
+	 *            The unit vector pointing upward of the camera
+	 * @param n
+	 *            The unit vector pointing backward of the camera, opposite to the viewing direction
+	 * @return This camera (for chaining movements)
+	 */
+	public MovableCamera orient(Point3D position, Vector3D u, Vector3D v, Vector3D n) {
+		setPosition(position);
+		setU(u.clone());
+		setV(v.clone());
+		setN(n.clone());
+		updateViewingMatrix();
+		return this;
+	}
+
 	protected void doPosition(Point3D position) {
 		setPosition(position);
 		updateViewingMatrix();
@@ -39,6 +39,12 @@ public class RevolvingCameraImpl extends MovableCameraImpl implements RevolvingC
 		return updateSphericalCoordinates();
 	}
 
+	@Override
+	public RevolvingCamera orient(Point3D position, Vector3D u, Vector3D v, Vector3D n) {
+		super.orient(position, u, v, n);
+		return updateSphericalCoordinates();
+	}
+
 	@Override
 	public RevolvingCamera slide(double du, double dv, double dn) {
 		super.slide(du, dv, dn);
@@ -0,0 +1,222 @@
+package org.maia.cgi.model.d3.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over a range of ASCII text in a <code>ByteBuffer</code>, parsing numbers without creating objects
+ *
+ * <p>
+ * Numbers are parsed by hand. A decimal number with at most 15 significant digits and a small exponent is converted
+ * exactly by a single multiplication or division with a power of ten, which covers the vast majority of numbers in
+ * mesh files. Any other number is handed to <code>Double.parseDouble</code>, so that the result is always correctly
+ * rounded.
+ * </p>
+ */
+class AsciiCursor {
+
+	private ByteBuffer buffer;
+
+	private int position;
+
+	private int limit;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final long MAXIMUM_EXACT_MANTISSA = 1L << 53;
+
+	public AsciiCursor(ByteBuffer buffer, int position, int limit) {
+		this.buffer = buffer;
+		this.position = position;
+		this.limit = limit;
+	}
+
+	public boolean hasMoreLines() {
+		return position < limit;
+	}
+
+	/**
+	 * Skips spaces and tabs, without passing the end of the current line
+	 *
+	 * @return <code>true</code> if a token follows on the current line
+	 */
+	public boolean skipBlanks() {
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b != ' ' && b != '\t')
+				return b != '\n' && b != '\r';
+			position++;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves to the start of the next line
+	 */
+	public void skipLine() {
+		while (position < limit && buffer.get(position++) != '\n')
+			;
+	}
+
+	/**
+	 * Skips the remainder of the current token
+	 */
+	public void skipToken() {
+		while (position < limit && !isDelimiter(buffer.get(position))) {
+			position++;
+		}
+	}
+
+	public byte peek() {
+		return position < limit ? buffer.get(position) : (byte) '\n';
+	}
+
+	public byte peek(int offset) {
+		return position + offset < limit ? buffer.get(position + offset) : (byte) '\n';
+	}
+
+	public void advance(int count) {
+		position = Math.min(position + count, limit);
+	}
+
+	public String nextToken() {
+		skipBlanks();
+		int start = position;
+		skipToken();
+		return new String(getBytes(start, position), StandardCharsets.US_ASCII);
+	}
+
+	public String remainderOfLine() {
+		skipBlanks();
+		int start = position;
+		while (position < limit && buffer.get(position) != '\n') {
+			position++;
+		}
+		return new String(getBytes(start, position), StandardCharsets.US_ASCII).trim();
+	}
+
+	/**
+	 * Parses an integer number
+	 *
+	 * <p>
+	 * Parsing stops at the first character that is not a digit, such as the '/' separating indices in a Wavefront OBJ
+	 * face
+	 * </p>
+	 */
+	public int nextInt() throws IOException {
+		if (!skipBlanks())
+			throw new IOException("Missing number at offset " + position);
+		boolean negative = false;
+		byte b = buffer.get(position);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			position++;
+		}
+		int start = position;
+		long value = 0;
+		while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+			value = value * 10 + (b - '0');
+			if (value > Integer.MAX_VALUE)
+				throw new IOException("Integer out of range at offset " + start);
+			position++;
+		}
+		if (position == start)
+			throw new IOException("Malformed integer at offset " + start);
+		return (int) (negative ? -value : value);
+	}
+
+	public double nextDouble() throws IOException {
+		if (!skipBlanks())
+			throw new IOException("Missing number at offset " + position);
+		int start = position;
+		boolean negative = false;
+		byte b = buffer.get(position);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			position++;
+		}
+		long mantissa = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean anyDigit = false;
+		while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+			anyDigit = true;
+			if (mantissa < MAXIMUM_EXACT_MANTISSA / 10) {
+				mantissa = mantissa * 10 + (b - '0');
+			} else {
+				exact = false;
+			}
+			position++;
+		}
+		if (position < limit && buffer.get(position) == '.') {
+			position++;
+			while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+				anyDigit = true;
+				if (mantissa < MAXIMUM_EXACT_MANTISSA / 10) {
+					mantissa = mantissa * 10 + (b - '0');
+					exponent--;
+				} else if (b != '0') {
+					exact = false;
+				}
+				position++;
+			}
+		}
+		if (position < limit && ((b = buffer.get(position)) == 'e' || b == 'E')) {
+			position++;
+			exponent += nextExponent();
+		}
+		if (!anyDigit || (position < limit && !isDelimiter(buffer.get(position)))) {
+			skipToken();
+			return parseFallback(start);
+		}
+		if (!exact || exponent < -22 || exponent > 22)
+			return parseFallback(start);
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	private int nextExponent() {
+		boolean negative = false;
+		byte b = peek();
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			position++;
+		}
+		int value = 0;
+		while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+			if (value < 10000) {
+				value = value * 10 + (b - '0');
+			}
+			position++;
+		}
+		return negative ? -value : value;
+	}
+
+	private double parseFallback(int start) throws IOException {
+		String token = new String(getBytes(start, position), StandardCharsets.US_ASCII);
+		try {
+			return Double.parseDouble(token);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed number '" + token + "' at offset " + start);
+		}
+	}
+
+	private byte[] getBytes(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return bytes;
+	}
+
+	private static boolean isDelimiter(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+}
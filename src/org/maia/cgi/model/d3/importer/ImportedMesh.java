@@ -0,0 +1,294 @@
+package org.maia.cgi.model.d3.importer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Polygon mesh as read from a file, held in primitive arrays
+ *
+ * <p>
+ * Vertices are stored as consecutive x, y and z coordinates. Polygons are stored as consecutive vertex indices, with
+ * the offset of every polygon in a separate array. Polygons can be divided into named groups, each one covering a
+ * consecutive range of polygons.
+ * </p>
+ * <p>
+ * When a file is parsed in chunks, every chunk yields its own mesh. The chunk meshes are then appended, in order, to
+ * form the mesh of the file. Indices that refer to vertices relative to the end of the vertex list, as allowed by the
+ * Wavefront OBJ format, are resolved when appending.
+ * </p>
+ */
+class ImportedMesh {
+
+	private double[] vertexCoordinates;
+
+	private int vertexCount;
+
+	private int[] polygonVertexIndices;
+
+	private int polygonVertexIndexCount;
+
+	private int[] polygonOffsets;
+
+	private int polygonCount;
+
+	private int polygonStart; // offset of the polygon under construction
+
+	private int[] relativeIndexPositions; // positions of indices relative to the start of this mesh's vertices
+
+	private int relativeIndexCount;
+
+	private List<String> groupNames;
+
+	private List<Integer> groupPolygonOffsets;
+
+	private boolean leadingGroupImplicit; // first group holds the polygons preceding any named group
+
+	public ImportedMesh() {
+		this.vertexCoordinates = new double[3 * 1024];
+		this.polygonVertexIndices = new int[4 * 1024];
+		this.polygonOffsets = new int[1024 + 1];
+		this.relativeIndexPositions = new int[16];
+		this.groupNames = new Vector<String>();
+		this.groupPolygonOffsets = new Vector<Integer>();
+	}
+
+	public void addVertex(double x, double y, double z) {
+		if (3 * vertexCount + 3 > vertexCoordinates.length) {
+			vertexCoordinates = Arrays.copyOf(vertexCoordinates, 2 * vertexCoordinates.length);
+		}
+		int i = 3 * vertexCount++;
+		vertexCoordinates[i] = x;
+		vertexCoordinates[i + 1] = y;
+		vertexCoordinates[i + 2] = z;
+	}
+
+	/**
+	 * Adds a vertex index to the polygon under construction
+	 *
+	 * @param index
+	 *            The index of the vertex
+	 * @param relative
+	 *            <code>true</code> if the index is relative to the first vertex of this mesh, in which case it is
+	 *            resolved when this mesh is appended to another mesh
+	 */
+	public void addPolygonVertex(int index, boolean relative) {
+		if (polygonVertexIndexCount == polygonVertexIndices.length) {
+			polygonVertexIndices = Arrays.copyOf(polygonVertexIndices, 2 * polygonVertexIndices.length);
+		}
+		if (relative) {
+			if (relativeIndexCount == relativeIndexPositions.length) {
+				relativeIndexPositions = Arrays.copyOf(relativeIndexPositions, 2 * relativeIndexPositions.length);
+			}
+			relativeIndexPositions[relativeIndexCount++] = polygonVertexIndexCount;
+		}
+		polygonVertexIndices[polygonVertexIndexCount++] = index;
+	}
+
+	/**
+	 * Ends the polygon under construction
+	 *
+	 * <p>
+	 * A polygon with less than 3 vertices is dropped
+	 * </p>
+	 */
+	public void endPolygon() {
+		if (polygonVertexIndexCount - polygonStart < 3) {
+			while (relativeIndexCount > 0 && relativeIndexPositions[relativeIndexCount - 1] >= polygonStart) {
+				relativeIndexCount--;
+			}
+			polygonVertexIndexCount = polygonStart;
+			return;
+		}
+		if (polygonCount + 2 > polygonOffsets.length) {
+			polygonOffsets = Arrays.copyOf(polygonOffsets, 2 * polygonOffsets.length);
+		}
+		polygonOffsets[polygonCount++] = polygonStart;
+		polygonOffsets[polygonCount] = polygonVertexIndexCount;
+		polygonStart = polygonVertexIndexCount;
+	}
+
+	/**
+	 * Starts a new group of polygons
+	 *
+	 * @param name
+	 *            The name of the group
+	 */
+	public void startGroup(String name) {
+		int n = groupNames.size();
+		if (n == 0 && polygonCount > 0) {
+			// Polygons preceding the first group form a group of their own
+			addImplicitLeadingGroup();
+			n = 1;
+		}
+		if (n > 0 && groupPolygonOffsets.get(n - 1).intValue() == polygonCount) {
+			// Replace the empty group
+			groupNames.set(n - 1, name);
+		} else {
+			groupNames.add(name);
+			groupPolygonOffsets.add(polygonCount);
+		}
+	}
+
+	private void addImplicitLeadingGroup() {
+		groupNames.add("");
+		groupPolygonOffsets.add(0);
+		leadingGroupImplicit = true;
+	}
+
+	/**
+	 * Appends another mesh to this mesh
+	 *
+	 * @param other
+	 *            The mesh to append. Its vertex indices are taken to be absolute, except for those marked as relative.
+	 */
+	public void append(ImportedMesh other) {
+		int vertexBase = vertexCount;
+		int indexBase = polygonVertexIndexCount;
+		int polygonBase = polygonCount;
+		for (int i = 0; i < other.vertexCount; i++) {
+			int j = 3 * i;
+			addVertex(other.vertexCoordinates[j], other.vertexCoordinates[j + 1], other.vertexCoordinates[j + 2]);
+		}
+		if (polygonVertexIndexCount + other.polygonVertexIndexCount > polygonVertexIndices.length) {
+			polygonVertexIndices = Arrays.copyOf(polygonVertexIndices,
+					Math.max(2 * polygonVertexIndices.length, polygonVertexIndexCount + other.polygonVertexIndexCount));
+		}
+		System.arraycopy(other.polygonVertexIndices, 0, polygonVertexIndices, indexBase, other.polygonVertexIndexCount);
+		polygonVertexIndexCount += other.polygonVertexIndexCount;
+		for (int i = 0; i < other.relativeIndexCount; i++) {
+			polygonVertexIndices[indexBase + other.relativeIndexPositions[i]] += vertexBase;
+		}
+		if (polygonCount + other.polygonCount + 1 > polygonOffsets.length) {
+			polygonOffsets = Arrays.copyOf(polygonOffsets,
+					Math.max(2 * polygonOffsets.length, polygonCount + other.polygonCount + 1));
+		}
+		for (int i = 0; i <= other.polygonCount; i++) {
+			polygonOffsets[polygonBase + i] = indexBase + other.polygonOffsets[i];
+		}
+		polygonCount += other.polygonCount;
+		polygonStart = polygonVertexIndexCount;
+		for (int i = 0; i < other.groupNames.size(); i++) {
+			if (i == 0 && other.leadingGroupImplicit && polygonBase > 0)
+				continue; // the other mesh's leading polygons continue the current group of this mesh
+			int offset = polygonBase + other.groupPolygonOffsets.get(i).intValue();
+			if (groupNames.isEmpty() && offset > 0) {
+				addImplicitLeadingGroup();
+			}
+			int n = groupNames.size();
+			if (n > 0 && groupPolygonOffsets.get(n - 1).intValue() == offset) {
+				groupNames.set(n - 1, other.groupNames.get(i));
+			} else {
+				groupNames.add(other.groupNames.get(i));
+				groupPolygonOffsets.add(offset);
+			}
+		}
+	}
+
+	/**
+	 * Merges vertices with identical coordinates and checks all vertex indices
+	 *
+	 * <p>
+	 * Duplicates are found with an open-addressing hash table over the coordinates, without creating an object per
+	 * vertex. The vertex coordinates are compacted in place.
+	 * </p>
+	 *
+	 * @return The number of vertices that were merged
+	 * @throws IOException
+	 *             When a polygon refers to a vertex that does not exist
+	 */
+	public int deduplicateVertices() throws IOException {
+		int capacity = Integer.highestOneBit(Math.max(2 * vertexCount, 16) - 1) << 1;
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+		int[] remap = new int[vertexCount];
+		int uniqueCount = 0;
+		for (int i = 0; i < vertexCount; i++) {
+			int j = 3 * i;
+			double x = vertexCoordinates[j] + 0.0; // turns -0.0 into 0.0
+			double y = vertexCoordinates[j + 1] + 0.0;
+			double z = vertexCoordinates[j + 2] + 0.0;
+			int slot = hash(x, y, z) & (capacity - 1);
+			int unique;
+			while ((unique = table[slot]) >= 0) {
+				int k = 3 * unique;
+				if (vertexCoordinates[k] == x && vertexCoordinates[k + 1] == y && vertexCoordinates[k + 2] == z)
+					break;
+				slot = (slot + 1) & (capacity - 1);
+			}
+			if (unique < 0) {
+				unique = uniqueCount++;
+				table[slot] = unique;
+				int k = 3 * unique;
+				vertexCoordinates[k] = x;
+				vertexCoordinates[k + 1] = y;
+				vertexCoordinates[k + 2] = z;
+			}
+			remap[i] = unique;
+		}
+		for (int i = 0; i < polygonVertexIndexCount; i++) {
+			int index = polygonVertexIndices[i];
+			if (index < 0 || index >= vertexCount)
+				throw new IOException("Vertex index out of range: " + index);
+			polygonVertexIndices[i] = remap[index];
+		}
+		int merged = vertexCount - uniqueCount;
+		vertexCount = uniqueCount;
+		return merged;
+	}
+
+	private static int hash(double x, double y, double z) {
+		long h = Double.doubleToLongBits(x);
+		h = h * 31 + Double.doubleToLongBits(y);
+		h = h * 31 + Double.doubleToLongBits(z);
+		h ^= h >>> 29;
+		h *= 0xbf58476d1ce4e5b9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	public double getVertexX(int index) {
+		return vertexCoordinates[3 * index];
+	}
+
+	public double getVertexY(int index) {
+		return vertexCoordinates[3 * index + 1];
+	}
+
+	public double getVertexZ(int index) {
+		return vertexCoordinates[3 * index + 2];
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int[] getPolygonVertexIndices() {
+		return polygonVertexIndices;
+	}
+
+	public int[] getPolygonOffsets() {
+		return polygonOffsets;
+	}
+
+	public int getPolygonCount() {
+		return polygonCount;
+	}
+
+	public int getGroupCount() {
+		return Math.max(groupNames.size(), 1);
+	}
+
+	public String getGroupName(int group) {
+		return groupNames.isEmpty() ? "" : groupNames.get(group);
+	}
+
+	public int getGroupStart(int group) {
+		return groupNames.isEmpty() ? 0 : groupPolygonOffsets.get(group).intValue();
+	}
+
+	public int getGroupEnd(int group) {
+		return group + 1 < groupNames.size() ? groupPolygonOffsets.get(group + 1).intValue() : polygonCount;
+	}
+
+}
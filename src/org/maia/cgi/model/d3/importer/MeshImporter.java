@@ -0,0 +1,361 @@
+package org.maia.cgi.model.d3.importer;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.model.d3.object.BaseObject3D;
+import org.maia.cgi.model.d3.object.GeometryInstance3D;
+import org.maia.cgi.model.d3.object.MultipartObject3D;
+import org.maia.cgi.model.d3.object.SharedGeometry3D;
+import org.maia.cgi.model.d3.object.SimpleFace3D;
+import org.maia.cgi.model.d3.object.SimpleTriangularFace3D;
+import org.maia.cgi.model.d3.object.TriangulationUtils;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.render.d3.shading.FlatShadingModelImpl;
+
+/**
+ * Imports a polygon mesh from a file into a 3D object
+ *
+ * <p>
+ * The file is read through a memory-mapped <code>FileChannel</code> and, where the format allows, parsed in chunks by
+ * multiple threads. Parsing fills primitive arrays rather than creating an object per vertex or polygon. Vertices with
+ * identical coordinates are merged, so that the imported polygons share their vertices.
+ * </p>
+ * <p>
+ * The mesh is imported in one of two representations. As <code>FACES</code>, every polygon becomes a face and every
+ * group of polygons in the file becomes a <code>MultipartObject3D</code>, which is locally indexed by default. As
+ * <code>GEOMETRY_INSTANCE</code>, every group becomes a <code>SharedGeometry3D</code> with a single
+ * <code>GeometryInstance3D</code>, which takes much less memory. When the file has more than one group, the groups are
+ * the parts of a top-level <code>MultipartObject3D</code>.
+ * </p>
+ * <p>
+ * Files should not exceed 2 GB
+ * </p>
+ *
+ * @see ObjMeshImporter
+ * @see PlyMeshImporter
+ */
+public abstract class MeshImporter {
+
+	private Color color;
+
+	private FlatShadingModel shadingModel;
+
+	private MeshRepresentation representation;
+
+	private boolean triangulate;
+
+	private boolean locallyIndexed;
+
+	private int numberOfThreads;
+
+	private static final int MINIMUM_CHUNK_SIZE = 1 << 20;
+
+	protected MeshImporter() {
+		this.color = Color.LIGHT_GRAY;
+		this.shadingModel = new FlatShadingModelImpl();
+		this.representation = MeshRepresentation.FACES;
+		this.triangulate = true;
+		this.locallyIndexed = true;
+		this.numberOfThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Imports a mesh from a file
+	 *
+	 * @param file
+	 *            The file to import
+	 * @return The imported object, in the coordinates of the file
+	 * @throws IOException
+	 *             When the file cannot be read or is malformed
+	 */
+	public BaseObject3D importMesh(File file) throws IOException {
+		long startTime = System.currentTimeMillis();
+		ByteBuffer buffer = null;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("File too large at path '" + file + "'");
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		ImportedMesh mesh = parseMesh(buffer);
+		int mergedVertices = mesh.deduplicateVertices();
+		BaseObject3D object = buildObject(mesh);
+		long time = Math.max(System.currentTimeMillis() - startTime, 1L);
+		System.out.println("Imported " + mesh.getPolygonCount() + " faces and " + mesh.getVertexCount()
+				+ " vertices (" + mergedVertices + " merged) from '" + file + "' in " + time + " ms ("
+				+ Math.round(mesh.getPolygonCount() * 1000.0 / time) + " faces/s)");
+		return object;
+	}
+
+	abstract ImportedMesh parseMesh(ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Divides a range of text into chunks for parsing in parallel
+	 *
+	 * @return The offsets of the chunks, followed by the end of the range. Every chunk starts at the start of a line.
+	 */
+	int[] divideIntoChunks(ByteBuffer buffer, int start, int end) {
+		int chunks = Math.max(Math.min(getNumberOfThreads(), (end - start) / MINIMUM_CHUNK_SIZE), 1);
+		int[] offsets = new int[chunks + 1];
+		offsets[0] = start;
+		for (int i = 1; i < chunks; i++) {
+			int offset = Math.max(start + (int) ((long) (end - start) * i / chunks), offsets[i - 1]);
+			while (offset < end && buffer.get(offset - 1) != '\n') {
+				offset++;
+			}
+			offsets[i] = offset;
+		}
+		offsets[chunks] = end;
+		return offsets;
+	}
+
+	/**
+	 * Runs tasks in parallel, each in a thread of its own, and waits for all of them to complete
+	 *
+	 * @throws IOException
+	 *             The first failure of any of the tasks
+	 */
+	void runInParallel(List<ParsingTask> tasks) throws IOException {
+		if (tasks.size() == 1) {
+			tasks.get(0).run();
+		} else {
+			List<Thread> threads = new Vector<Thread>(tasks.size());
+			for (int i = 0; i < tasks.size(); i++) {
+				Thread thread = new Thread(tasks.get(i), "Mesh import worker #" + i);
+				thread.setDaemon(true);
+				thread.start();
+				threads.add(thread);
+			}
+			for (Thread thread : threads) {
+				boolean joined = false;
+				while (!joined) {
+					try {
+						thread.join();
+						joined = true;
+					} catch (InterruptedException e) {
+						// do nothing
+					}
+				}
+			}
+		}
+		for (ParsingTask task : tasks) {
+			if (task.getFailure() != null)
+				throw task.getFailure();
+		}
+	}
+
+	/**
+	 * Appends the meshes of parsed chunks, in order
+	 */
+	ImportedMesh appendMeshes(List<ParsingTask> tasks) {
+		if (tasks.size() == 1)
+			return tasks.get(0).getMesh();
+		ImportedMesh mesh = new ImportedMesh();
+		for (ParsingTask task : tasks) {
+			mesh.append(task.getMesh());
+		}
+		return mesh;
+	}
+
+	private BaseObject3D buildObject(ImportedMesh mesh) {
+		Point3D[] vertices = null;
+		if (MeshRepresentation.FACES.equals(getRepresentation())) {
+			vertices = createVertices(mesh);
+		}
+		List<BaseObject3D> groups = new Vector<BaseObject3D>(mesh.getGroupCount());
+		for (int group = 0; group < mesh.getGroupCount(); group++) {
+			int start = mesh.getGroupStart(group);
+			int end = mesh.getGroupEnd(group);
+			if (end > start || mesh.getGroupCount() == 1) {
+				if (MeshRepresentation.GEOMETRY_INSTANCE.equals(getRepresentation())) {
+					groups.add(buildGeometryInstance(mesh, start, end));
+				} else {
+					groups.add(buildFaces(mesh, vertices, start, end));
+				}
+			}
+		}
+		if (groups.size() == 1)
+			return groups.get(0);
+		MultipartObject3D<BaseObject3D> object = new MultipartObject3D<BaseObject3D>();
+		for (BaseObject3D group : groups) {
+			object.addPart(group);
+		}
+		return object;
+	}
+
+	private BaseObject3D buildFaces(ImportedMesh mesh, Point3D[] vertices, int startPolygon, int endPolygon) {
+		int[] indices = mesh.getPolygonVertexIndices();
+		int[] offsets = mesh.getPolygonOffsets();
+		List<BaseObject3D> faces = new Vector<BaseObject3D>(endPolygon - startPolygon);
+		List<Point3D> polygonVertices = new Vector<Point3D>();
+		for (int p = startPolygon; p < endPolygon; p++) {
+			int offset = offsets[p];
+			int n = offsets[p + 1] - offset;
+			if (n == 3) {
+				faces.add(new SimpleTriangularFace3D(getColor(), getShadingModel(), vertices[indices[offset]],
+						vertices[indices[offset + 1]], vertices[indices[offset + 2]]));
+			} else {
+				polygonVertices.clear();
+				for (int i = 0; i < n; i++) {
+					polygonVertices.add(vertices[indices[offset + i]]);
+				}
+				if (isTriangulate()) {
+					for (int[] t : TriangulationUtils.triangulate(polygonVertices, false)) {
+						faces.add(new SimpleTriangularFace3D(getColor(), getShadingModel(), polygonVertices.get(t[0]),
+								polygonVertices.get(t[1]), polygonVertices.get(t[2])));
+					}
+				} else {
+					faces.add(new SimpleFace3D(getColor(), getShadingModel(),
+							new Vector<Point3D>(polygonVertices)));
+				}
+			}
+		}
+		MultipartObject3D<BaseObject3D> object = new MultipartObject3D<BaseObject3D>(faces);
+		object.setLocallyIndexed(isLocallyIndexed());
+		return object;
+	}
+
+	private BaseObject3D buildGeometryInstance(ImportedMesh mesh, int startPolygon, int endPolygon) {
+		int[] offsets = mesh.getPolygonOffsets();
+		int[] groupOffsets = Arrays.copyOfRange(offsets, startPolygon, endPolygon + 1);
+		for (int i = 0; i < groupOffsets.length; i++) {
+			groupOffsets[i] -= offsets[startPolygon];
+		}
+		int[] groupIndices = Arrays.copyOfRange(mesh.getPolygonVertexIndices(), offsets[startPolygon],
+				offsets[endPolygon]);
+		// Compact the vertices to those used by the group
+		int[] remap = new int[mesh.getVertexCount()];
+		Arrays.fill(remap, -1);
+		List<Point3D> vertices = new Vector<Point3D>();
+		for (int i = 0; i < groupIndices.length; i++) {
+			int index = groupIndices[i];
+			if (remap[index] < 0) {
+				remap[index] = vertices.size();
+				vertices.add(new Point3D(mesh.getVertexX(index), mesh.getVertexY(index), mesh.getVertexZ(index)));
+			}
+			groupIndices[i] = remap[index];
+		}
+		SharedGeometry3D geometry = new SharedGeometry3D(vertices, groupIndices, groupOffsets,
+				endPolygon - startPolygon);
+		return new GeometryInstance3D(geometry, getColor(), getShadingModel());
+	}
+
+	private Point3D[] createVertices(ImportedMesh mesh) {
+		Point3D[] vertices = new Point3D[mesh.getVertexCount()];
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i] = new Point3D(mesh.getVertexX(i), mesh.getVertexY(i), mesh.getVertexZ(i));
+		}
+		return vertices;
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	public void setColor(Color color) {
+		this.color = color;
+	}
+
+	public FlatShadingModel getShadingModel() {
+		return shadingModel;
+	}
+
+	public void setShadingModel(FlatShadingModel shadingModel) {
+		this.shadingModel = shadingModel;
+	}
+
+	public MeshRepresentation getRepresentation() {
+		return representation;
+	}
+
+	public void setRepresentation(MeshRepresentation representation) {
+		this.representation = representation;
+	}
+
+	public boolean isTriangulate() {
+		return triangulate;
+	}
+
+	/**
+	 * Sets whether polygons with more than 3 vertices are divided into triangles
+	 *
+	 * <p>
+	 * When not divided, such polygons become <code>SimpleFace3D</code>s, which requires them to be convex
+	 * </p>
+	 */
+	public void setTriangulate(boolean triangulate) {
+		this.triangulate = triangulate;
+	}
+
+	public boolean isLocallyIndexed() {
+		return locallyIndexed;
+	}
+
+	public void setLocallyIndexed(boolean locallyIndexed) {
+		this.locallyIndexed = locallyIndexed;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads = Math.max(numberOfThreads, 1);
+	}
+
+	public static enum MeshRepresentation {
+
+		FACES,
+
+		GEOMETRY_INSTANCE;
+
+	}
+
+	/**
+	 * Parses one chunk of a file into a mesh of its own
+	 */
+	static abstract class ParsingTask implements Runnable {
+
+		private ImportedMesh mesh;
+
+		private IOException failure;
+
+		protected ParsingTask() {
+			this.mesh = new ImportedMesh();
+		}
+
+		@Override
+		public void run() {
+			try {
+				parse(getMesh());
+			} catch (IOException e) {
+				failure = e;
+			} catch (RuntimeException e) {
+				failure = new IOException(e);
+			}
+		}
+
+		protected abstract void parse(ImportedMesh mesh) throws IOException;
+
+		public ImportedMesh getMesh() {
+			return mesh;
+		}
+
+		public IOException getFailure() {
+			return failure;
+		}
+
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.maia.cgi.model.d3.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Imports a polygon mesh from a Wavefront OBJ file
+ *
+ * <p>
+ * Vertices (<code>v</code>), faces (<code>f</code>) and groups (<code>g</code> and <code>o</code>) are imported. Any
+ * texture coordinates and normals of face vertices are ignored, as are all other statements. Negative vertex indices,
+ * relative to the last vertex read so far, are supported. The file is parsed in chunks of lines by multiple threads.
+ * </p>
+ */
+public class ObjMeshImporter extends MeshImporter {
+
+	public ObjMeshImporter() {
+	}
+
+	@Override
+	ImportedMesh parseMesh(ByteBuffer buffer) throws IOException {
+		int[] offsets = divideIntoChunks(buffer, 0, buffer.limit());
+		List<ParsingTask> tasks = new Vector<ParsingTask>(offsets.length - 1);
+		for (int i = 0; i < offsets.length - 1; i++) {
+			tasks.add(new ObjParsingTask(buffer, offsets[i], offsets[i + 1]));
+		}
+		runInParallel(tasks);
+		return appendMeshes(tasks);
+	}
+
+	private static class ObjParsingTask extends ParsingTask {
+
+		private AsciiCursor cursor;
+
+		public ObjParsingTask(ByteBuffer buffer, int start, int end) {
+			this.cursor = new AsciiCursor(buffer, start, end);
+		}
+
+		@Override
+		protected void parse(ImportedMesh mesh) throws IOException {
+			AsciiCursor c = cursor;
+			while (c.hasMoreLines()) {
+				if (c.skipBlanks()) {
+					byte b0 = c.peek();
+					byte b1 = c.peek(1);
+					boolean keyword = b1 == ' ' || b1 == '\t';
+					if (b0 == 'v' && keyword) {
+						c.advance(1);
+						mesh.addVertex(c.nextDouble(), c.nextDouble(), c.nextDouble());
+					} else if (b0 == 'f' && keyword) {
+						c.advance(1);
+						parseFace(mesh);
+					} else if ((b0 == 'g' || b0 == 'o') && keyword) {
+						c.advance(1);
+						mesh.startGroup(c.remainderOfLine());
+					}
+				}
+				c.skipLine();
+			}
+		}
+
+		private void parseFace(ImportedMesh mesh) throws IOException {
+			AsciiCursor c = cursor;
+			while (c.skipBlanks()) {
+				int index = c.nextInt();
+				c.skipToken(); // texture coordinate and normal indices
+				if (index > 0) {
+					mesh.addPolygonVertex(index - 1, false);
+				} else if (index < 0) {
+					// Relative to the last vertex read so far, which may lie in a preceding chunk
+					mesh.addPolygonVertex(mesh.getVertexCount() + index, true);
+				} else {
+					throw new IOException("Invalid vertex index 0 at offset " + c.getPosition());
+				}
+			}
+			mesh.endPolygon();
+		}
+
+	}
+
+}
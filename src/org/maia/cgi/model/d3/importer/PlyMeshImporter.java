@@ -0,0 +1,554 @@
+package org.maia.cgi.model.d3.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Imports a polygon mesh from a PLY file, in ASCII or binary format
+ *
+ * <p>
+ * The <code>x</code>, <code>y</code> and <code>z</code> properties of the <code>vertex</code> element and the
+ * <code>vertex_indices</code> (or <code>vertex_index</code>) list property of the <code>face</code> element are
+ * imported. All other elements and properties are skipped.
+ * </p>
+ * <p>
+ * An ASCII file is parsed in chunks of lines by multiple threads. In a binary file, vertices of a fixed size are read
+ * in chunks by multiple threads, whereas faces are read sequentially as their size varies.
+ * </p>
+ */
+public class PlyMeshImporter extends MeshImporter {
+
+	private static final String VERTEX_ELEMENT = "vertex";
+
+	private static final String FACE_ELEMENT = "face";
+
+	public PlyMeshImporter() {
+	}
+
+	@Override
+	ImportedMesh parseMesh(ByteBuffer buffer) throws IOException {
+		Header header = parseHeader(buffer);
+		if (header.isAscii()) {
+			return parseAsciiBody(buffer, header);
+		} else {
+			return parseBinaryBody(buffer, header);
+		}
+	}
+
+	private Header parseHeader(ByteBuffer buffer) throws IOException {
+		AsciiCursor c = new AsciiCursor(buffer, 0, buffer.limit());
+		if (!"ply".equals(c.remainderOfLine()))
+			throw new IOException("Not a PLY file");
+		Header header = new Header();
+		Element element = null;
+		while (true) {
+			c.skipLine();
+			if (!c.hasMoreLines())
+				throw new IOException("Missing end of PLY header");
+			String keyword = c.nextToken();
+			if ("format".equals(keyword)) {
+				String format = c.nextToken();
+				if ("ascii".equals(format)) {
+					header.setAscii(true);
+				} else if ("binary_little_endian".equals(format)) {
+					header.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+				} else if ("binary_big_endian".equals(format)) {
+					header.setByteOrder(ByteOrder.BIG_ENDIAN);
+				} else {
+					throw new IOException("Unsupported PLY format '" + format + "'");
+				}
+			} else if ("element".equals(keyword)) {
+				String name = c.nextToken();
+				element = new Element(name, c.nextInt());
+				header.getElements().add(element);
+			} else if ("property".equals(keyword)) {
+				if (element == null)
+					throw new IOException("PLY property outside of an element");
+				String type = c.nextToken();
+				if ("list".equals(type)) {
+					ScalarType countType = ScalarType.forName(c.nextToken());
+					ScalarType itemType = ScalarType.forName(c.nextToken());
+					element.getProperties().add(new Property(c.nextToken(), itemType, countType));
+				} else {
+					element.getProperties().add(new Property(c.nextToken(), ScalarType.forName(type), null));
+				}
+			} else if ("end_header".equals(keyword)) {
+				c.skipLine();
+				header.setBodyOffset(c.getPosition());
+				return header;
+			}
+		}
+	}
+
+	private ImportedMesh parseAsciiBody(ByteBuffer buffer, Header header) throws IOException {
+		int[] offsets = divideIntoChunks(buffer, header.getBodyOffset(), buffer.limit());
+		int chunks = offsets.length - 1;
+		List<ParsingTask> countingTasks = new Vector<ParsingTask>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			countingTasks.add(new LineCountingTask(buffer, offsets[i], offsets[i + 1]));
+		}
+		if (chunks > 1) {
+			runInParallel(countingTasks);
+		}
+		List<ParsingTask> tasks = new Vector<ParsingTask>(chunks);
+		long firstLine = 0;
+		for (int i = 0; i < chunks; i++) {
+			tasks.add(new AsciiParsingTask(buffer, offsets[i], offsets[i + 1], firstLine, header));
+			if (chunks > 1) {
+				firstLine += ((LineCountingTask) countingTasks.get(i)).getLineCount();
+			}
+		}
+		runInParallel(tasks);
+		return appendMeshes(tasks);
+	}
+
+	private ImportedMesh parseBinaryBody(ByteBuffer buffer, Header header) throws IOException {
+		ByteBuffer in = buffer.duplicate().order(header.getByteOrder());
+		in.position(header.getBodyOffset());
+		List<ParsingTask> tasks = new Vector<ParsingTask>();
+		SequentialBinaryParsingTask sequentialTask = new SequentialBinaryParsingTask(in);
+		for (Element element : header.getElements()) {
+			if (VERTEX_ELEMENT.equals(element.getName()) && element.getFixedSize() > 0) {
+				// Vertices of a fixed size are read in parallel
+				int start = in.position();
+				int size = element.getFixedSize();
+				int count = element.getCount();
+				int chunks = Math.max(Math.min(getNumberOfThreads(), count / (1 << 16)), 1);
+				for (int i = 0; i < chunks; i++) {
+					int first = (int) ((long) count * i / chunks);
+					int last = (int) ((long) count * (i + 1) / chunks);
+					tasks.add(new BinaryVertexParsingTask(in, start + first * size, last - first, element));
+				}
+				in.position(start + count * size);
+			} else {
+				sequentialTask.parseElement(element);
+			}
+		}
+		runInParallel(tasks);
+		tasks.add(sequentialTask);
+		return appendMeshes(tasks);
+	}
+
+	private static class Header {
+
+		private boolean ascii;
+
+		private ByteOrder byteOrder;
+
+		private List<Element> elements;
+
+		private int bodyOffset;
+
+		public Header() {
+			this.byteOrder = ByteOrder.BIG_ENDIAN;
+			this.elements = new Vector<Element>();
+		}
+
+		public boolean isAscii() {
+			return ascii;
+		}
+
+		public void setAscii(boolean ascii) {
+			this.ascii = ascii;
+		}
+
+		public ByteOrder getByteOrder() {
+			return byteOrder;
+		}
+
+		public void setByteOrder(ByteOrder byteOrder) {
+			this.byteOrder = byteOrder;
+		}
+
+		public List<Element> getElements() {
+			return elements;
+		}
+
+		public int getBodyOffset() {
+			return bodyOffset;
+		}
+
+		public void setBodyOffset(int bodyOffset) {
+			this.bodyOffset = bodyOffset;
+		}
+
+	}
+
+	private static class Element {
+
+		private String name;
+
+		private int count;
+
+		private List<Property> properties;
+
+		public Element(String name, int count) {
+			this.name = name;
+			this.count = count;
+			this.properties = new Vector<Property>();
+		}
+
+		/**
+		 * Returns the size in bytes of this element in binary format
+		 *
+		 * @return The size, or 0 when the element has a list property and its size varies
+		 */
+		public int getFixedSize() {
+			int size = 0;
+			for (Property property : getProperties()) {
+				if (property.isList())
+					return 0;
+				size += property.getType().getSize();
+			}
+			return size;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public List<Property> getProperties() {
+			return properties;
+		}
+
+	}
+
+	private static class Property {
+
+		private String name;
+
+		private ScalarType type;
+
+		private ScalarType countType; // null when not a list
+
+		private int coordinate; // 0, 1 or 2 for the x, y and z properties of a vertex, -1 otherwise
+
+		public Property(String name, ScalarType type, ScalarType countType) {
+			this.name = name;
+			this.type = type;
+			this.countType = countType;
+			this.coordinate = "x".equals(name) ? 0 : "y".equals(name) ? 1 : "z".equals(name) ? 2 : -1;
+		}
+
+		public boolean isList() {
+			return countType != null;
+		}
+
+		public boolean isVertexIndices() {
+			return isList() && ("vertex_indices".equals(name) || "vertex_index".equals(name));
+		}
+
+		public ScalarType getType() {
+			return type;
+		}
+
+		public ScalarType getCountType() {
+			return countType;
+		}
+
+		public int getCoordinate() {
+			return coordinate;
+		}
+
+	}
+
+	private static enum ScalarType {
+
+		CHAR(1, "char", "int8"),
+
+		UCHAR(1, "uchar", "uint8"),
+
+		SHORT(2, "short", "int16"),
+
+		USHORT(2, "ushort", "uint16"),
+
+		INT(4, "int", "int32"),
+
+		UINT(4, "uint", "uint32"),
+
+		FLOAT(4, "float", "float32"),
+
+		DOUBLE(8, "double", "float64");
+
+		private int size;
+
+		private String name;
+
+		private String alias;
+
+		private ScalarType(int size, String name, String alias) {
+			this.size = size;
+			this.name = name;
+			this.alias = alias;
+		}
+
+		public static ScalarType forName(String name) throws IOException {
+			for (ScalarType type : values()) {
+				if (type.name.equals(name) || type.alias.equals(name))
+					return type;
+			}
+			throw new IOException("Unsupported PLY type '" + name + "'");
+		}
+
+		public double read(ByteBuffer in) {
+			switch (this) {
+			case CHAR:
+				return in.get();
+			case UCHAR:
+				return in.get() & 0xff;
+			case SHORT:
+				return in.getShort();
+			case USHORT:
+				return in.getShort() & 0xffff;
+			case INT:
+				return in.getInt();
+			case UINT:
+				return in.getInt() & 0xffffffffL;
+			case FLOAT:
+				return in.getFloat();
+			default:
+				return in.getDouble();
+			}
+		}
+
+		public double read(ByteBuffer in, int offset) {
+			switch (this) {
+			case CHAR:
+				return in.get(offset);
+			case UCHAR:
+				return in.get(offset) & 0xff;
+			case SHORT:
+				return in.getShort(offset);
+			case USHORT:
+				return in.getShort(offset) & 0xffff;
+			case INT:
+				return in.getInt(offset);
+			case UINT:
+				return in.getInt(offset) & 0xffffffffL;
+			case FLOAT:
+				return in.getFloat(offset);
+			default:
+				return in.getDouble(offset);
+			}
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+	}
+
+	private static class LineCountingTask extends ParsingTask {
+
+		private ByteBuffer buffer;
+
+		private int start;
+
+		private int end;
+
+		private long lineCount;
+
+		public LineCountingTask(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void parse(ImportedMesh mesh) {
+			long count = 0;
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) == '\n')
+					count++;
+			}
+			lineCount = count;
+		}
+
+		public long getLineCount() {
+			return lineCount;
+		}
+
+	}
+
+	private static class AsciiParsingTask extends ParsingTask {
+
+		private AsciiCursor cursor;
+
+		private long firstLine;
+
+		private Header header;
+
+		public AsciiParsingTask(ByteBuffer buffer, int start, int end, long firstLine, Header header) {
+			this.cursor = new AsciiCursor(buffer, start, end);
+			this.firstLine = firstLine;
+			this.header = header;
+		}
+
+		@Override
+		protected void parse(ImportedMesh mesh) throws IOException {
+			AsciiCursor c = cursor;
+			List<Element> elements = header.getElements();
+			int elementIndex = 0;
+			long elementEndLine = elements.isEmpty() ? Long.MAX_VALUE : elements.get(0).getCount();
+			long line = firstLine;
+			while (c.hasMoreLines()) {
+				while (line >= elementEndLine && elementIndex < elements.size() - 1) {
+					elementEndLine += elements.get(++elementIndex).getCount();
+				}
+				if (line < elementEndLine) {
+					Element element = elements.get(elementIndex);
+					if (VERTEX_ELEMENT.equals(element.getName())) {
+						parseVertex(mesh, element);
+					} else if (FACE_ELEMENT.equals(element.getName())) {
+						parseFace(mesh, element);
+					}
+				}
+				c.skipLine();
+				line++;
+			}
+		}
+
+		private void parseVertex(ImportedMesh mesh, Element element) throws IOException {
+			double x = 0, y = 0, z = 0;
+			for (Property property : element.getProperties()) {
+				if (property.isList()) {
+					int n = cursor.nextInt();
+					for (int i = 0; i < n; i++) {
+						cursor.nextDouble();
+					}
+				} else {
+					double value = cursor.nextDouble();
+					int coordinate = property.getCoordinate();
+					if (coordinate == 0) {
+						x = value;
+					} else if (coordinate == 1) {
+						y = value;
+					} else if (coordinate == 2) {
+						z = value;
+					}
+				}
+			}
+			mesh.addVertex(x, y, z);
+		}
+
+		private void parseFace(ImportedMesh mesh, Element element) throws IOException {
+			for (Property property : element.getProperties()) {
+				if (property.isList()) {
+					int n = cursor.nextInt();
+					boolean indices = property.isVertexIndices();
+					for (int i = 0; i < n; i++) {
+						if (indices) {
+							mesh.addPolygonVertex(cursor.nextInt(), false);
+						} else {
+							cursor.nextDouble();
+						}
+					}
+				} else {
+					cursor.nextDouble();
+				}
+			}
+			mesh.endPolygon();
+		}
+
+	}
+
+	private static class BinaryVertexParsingTask extends ParsingTask {
+
+		private ByteBuffer buffer;
+
+		private int start;
+
+		private int count;
+
+		private Element element;
+
+		public BinaryVertexParsingTask(ByteBuffer buffer, int start, int count, Element element) {
+			this.buffer = buffer;
+			this.start = start;
+			this.count = count;
+			this.element = element;
+		}
+
+		@Override
+		protected void parse(ImportedMesh mesh) {
+			List<Property> properties = element.getProperties();
+			int n = properties.size();
+			ScalarType[] types = new ScalarType[n];
+			int[] coordinates = new int[n];
+			for (int i = 0; i < n; i++) {
+				types[i] = properties.get(i).getType();
+				coordinates[i] = properties.get(i).getCoordinate();
+			}
+			double[] xyz = new double[3];
+			int offset = start;
+			for (int v = 0; v < count; v++) {
+				for (int i = 0; i < n; i++) {
+					if (coordinates[i] >= 0) {
+						xyz[coordinates[i]] = types[i].read(buffer, offset);
+					}
+					offset += types[i].getSize();
+				}
+				mesh.addVertex(xyz[0], xyz[1], xyz[2]);
+			}
+		}
+
+	}
+
+	private static class SequentialBinaryParsingTask extends ParsingTask {
+
+		private ByteBuffer in;
+
+		public SequentialBinaryParsingTask(ByteBuffer in) {
+			this.in = in;
+		}
+
+		@Override
+		protected void parse(ImportedMesh mesh) {
+			// Elements are parsed as they are encountered, see parseElement
+		}
+
+		public void parseElement(Element element) throws IOException {
+			boolean vertex = VERTEX_ELEMENT.equals(element.getName());
+			boolean face = FACE_ELEMENT.equals(element.getName());
+			ImportedMesh mesh = getMesh();
+			double[] xyz = new double[3];
+			try {
+				for (int e = 0; e < element.getCount(); e++) {
+					for (Property property : element.getProperties()) {
+						if (property.isList()) {
+							int n = (int) property.getCountType().read(in);
+							boolean indices = face && property.isVertexIndices();
+							for (int i = 0; i < n; i++) {
+								if (indices) {
+									mesh.addPolygonVertex((int) property.getType().read(in), false);
+								} else {
+									in.position(in.position() + property.getType().getSize());
+								}
+							}
+						} else if (vertex && property.getCoordinate() >= 0) {
+							xyz[property.getCoordinate()] = property.getType().read(in);
+						} else {
+							in.position(in.position() + property.getType().getSize());
+						}
+					}
+					if (vertex) {
+						mesh.addVertex(xyz[0], xyz[1], xyz[2]);
+					} else if (face) {
+						mesh.endPolygon();
+					}
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Truncated or malformed PLY element '" + element.getName() + "'", e);
+			}
+		}
+
+	}
+
+}
@@ -3,8 +3,10 @@ package org.maia.cgi.model.d3.object;
 import java.util.Collection;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.maia.cgi.Metrics;
+import org.maia.cgi.compose.Compositing;
 import org.maia.cgi.geometry.d3.Box3D;
 import org.maia.cgi.geometry.d3.LineSegment3D;
 import org.maia.cgi.geometry.d3.Vector3D;
@@ -34,6 +36,20 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 
 	private Box3D boundingBoxInViewVolumeCoordinates; // cached bounding box
 
+	private double[] cameraToObjectTransform; // cached affine transform, first 3 rows of the matrix in row-major order
+
+	private volatile long transformStamp; // transform epoch of the last change to own transform or parent
+
+	private volatile long changeStamp; // transform epoch of the last change to self or any descendant
+
+	private volatile long validatedTransformEpoch = -1L; // transform epoch of the last validation
+
+	private volatile long validatedWorldStamp = -1L; // world stamp the cached state is derived for
+
+	private volatile long validatedCameraEpoch = -1L; // camera epoch the cached state is derived for
+
+	private static AtomicLong transformEpoch = new AtomicLong();
+
 	protected BaseObject3D() {
 		this.ownCompositeTransform = new TwoWayCompositeTransform();
 	}
@@ -197,11 +213,23 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 		return getOwnCompositeTransform().getIndexOfCurrentStep();
 	}
 
+	/**
+	 * Returns the transforms applied to this object itself, not including those of its ancestors
+	 * 
+	 * @return The transformation matrices in the order of application. The matrix at index 0 is the Identity transform
+	 *         of the initial state, so that the matrix at index <em>i</em> corresponds to transform step <em>i</em>
+	 * @see #getIndexOfCurrentTransformStep()
+	 */
+	public List<TransformMatrix> getOwnTransformMatrices() {
+		return getOwnCompositeTransform().getForwardMatrices();
+	}
+
 	protected TwoWayCompositeTransform getOwnCompositeTransform() {
 		return ownCompositeTransform;
 	}
 
 	protected TwoWayCompositeTransform getSelfToRootCompositeTransform() {
+		validateWorldState();
 		if (selfToRootCompositeTransform == null) {
 			selfToRootCompositeTransform = deriveSelfToRootCompositeTransform();
 		}
@@ -222,6 +250,55 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 		}
 	}
 
+	/**
+	 * Returns the affine transform from camera coordinates to the object coordinates of this object
+	 * 
+	 * <p>
+	 * The transform is returned as the first 3 rows of its matrix, in row-major order. A point (<em>x</em>,
+	 * <em>y</em>, <em>z</em>) in camera coordinates transforms to (<em>m</em>[0]*<em>x</em> + <em>m</em>[1]*<em>y</em>
+	 * + <em>m</em>[2]*<em>z</em> + <em>m</em>[3], ...) in object coordinates. The returned array is cached and should
+	 * not be modified.
+	 * </p>
+	 * 
+	 * @param camera
+	 *            The camera
+	 * @return The transform from camera to object coordinates
+	 */
+	protected double[] getCameraToObjectTransform(Camera camera) {
+		validateCameraState(camera);
+		double[] m = cameraToObjectTransform;
+		if (m == null) {
+			m = deriveCameraToObjectTransform(camera);
+			cameraToObjectTransform = m;
+		}
+		return m;
+	}
+
+	private double[] deriveCameraToObjectTransform(Camera camera) {
+		TransformMatrix matrix = getSelfToRootCompositeTransform().getReverseCompositeMatrix()
+				.preMultiply(Transformation.getInverseMatrix(camera.getViewingMatrix()));
+		double[] m = new double[12];
+		for (int i = 0; i < m.length; i++) {
+			m[i] = matrix.getValue(i / 4, i % 4);
+		}
+		return m;
+	}
+
+	/**
+	 * Returns the nesting level of this object
+	 * 
+	 * @return The number of ancestors of this object, 0 for a top-level object
+	 */
+	protected int getNestingLevel() {
+		int level = 0;
+		CompositeObject3D<BaseObject3D> ancestor = getCompositeObject();
+		while (ancestor != null) {
+			level++;
+			ancestor = ((BaseObject3D) ancestor).getCompositeObject();
+		}
+		return level;
+	}
+
 	protected List<BaseObject3D> getAncestors() {
 		List<BaseObject3D> ancestors = new Vector<BaseObject3D>();
 		BaseObject3D current = this;
@@ -233,28 +310,165 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 		return ancestors;
 	}
 
-	@Override
-	public void notifySelfHasTransformed() {
+	/**
+	 * Returns the current transform epoch
+	 *
+	 * <p>
+	 * The transform epoch is a counter that increases whenever any object is transformed or a part is added to any
+	 * composite object. A derived structure in world coordinates, such as a spatial index, can record the epoch at the
+	 * time it was built and compare it later on to find out whether it may be out of date.
+	 * </p>
+	 *
+	 * @return The current transform epoch
+	 */
+	public static long getTransformEpoch() {
+		return transformEpoch.get();
+	}
+
+	private static long incrementTransformEpoch() {
+		return transformEpoch.incrementAndGet();
+	}
+
+	/**
+	 * Validates the cached state that depends on the position of this object in the world
+	 * 
+	 * <p>
+	 * Rather than notifying every descendant when an object is transformed, each object carries the transform epoch of
+	 * the last change to its own transform. Cached state is valid as long as none of the object itself and its
+	 * ancestors has changed since. This is checked lazily, on access of the cached state, and costs no more than a
+	 * comparison as long as no object at all has been transformed.
+	 * </p>
+	 * 
+	 * @see #invalidateWorldState()
+	 */
+	protected final void validateWorldState() {
+		long epoch = transformEpoch.get();
+		if (epoch != validatedTransformEpoch) {
+			long stamp = getWorldStamp();
+			if (stamp != validatedWorldStamp) {
+				invalidateWorldState();
+				validatedWorldStamp = stamp;
+			}
+			validatedTransformEpoch = epoch;
+		}
+	}
+
+	/**
+	 * Validates the cached state that depends on the camera, and on the position of this object in the world
+	 * 
+	 * @param camera
+	 *            The camera for which the cached state is requested
+	 * @see #invalidateCameraState()
+	 */
+	protected final void validateCameraState(Camera camera) {
+		validateWorldState();
+		long epoch = camera.getEpoch();
+		if (epoch != validatedCameraEpoch) {
+			invalidateCameraState();
+			validatedCameraEpoch = epoch;
+		}
+	}
+
+	private long getWorldStamp() {
+		long stamp = transformStamp;
+		CompositeObject3D<BaseObject3D> ancestor = getCompositeObject();
+		while (ancestor != null) {
+			BaseObject3D parent = (BaseObject3D) ancestor;
+			stamp = Math.max(stamp, parent.transformStamp);
+			ancestor = parent.getCompositeObject();
+		}
+		return stamp;
+	}
+
+	/**
+	 * Invalidates all cached state that depends on the position of this object in the world
+	 * 
+	 * <p>
+	 * This method is called lazily, when cached state is accessed after this object or any of its ancestors has been
+	 * transformed. Subclasses that cache such state should override this method and call the super implementation.
+	 * </p>
+	 */
+	protected void invalidateWorldState() {
 		invalidateSelfToRootCompositeTransform();
-		invalidateWorldAndCameraBoundingBox();
+		invalidateWorldBoundingBox();
+		invalidateCameraState();
+	}
+
+	/**
+	 * Invalidates all cached state that depends on the camera
+	 * 
+	 * <p>
+	 * This method is called lazily, when cached state is accessed after the camera has changed or after this object
+	 * or any of its ancestors has been transformed. Subclasses that cache such state should override this method and
+	 * call the super implementation.
+	 * </p>
+	 */
+	protected void invalidateCameraState() {
+		invalidateCameraBoundingBox();
+		invalidateCameraToObjectTransform();
 	}
 
 	@Override
-	public void notifyAncestorHasTransformed() {
-		invalidateSelfToRootCompositeTransform();
-		invalidateWorldAndCameraBoundingBox();
+	public void notifySelfHasTransformed() {
+		long epoch = incrementTransformEpoch();
+		transformStamp = epoch;
+		notifyChange(epoch);
+	}
+
+	void notifyPartsHaveChanged() {
+		notifyChange(incrementTransformEpoch());
+	}
+
+	private void notifyChange(long epoch) {
+		changeStamp = epoch;
+		notifyAncestorsOfChangedPart(epoch);
+	}
+
+	/**
+	 * Returns the transform epoch of the last change to this object or any of its descendants
+	 * 
+	 * <p>
+	 * A change is a transform or a part being added. A derived structure in world coordinates can compare this stamp
+	 * against the transform epoch at the time it was derived, to find out whether it is out of date for this object.
+	 * </p>
+	 * 
+	 * @return The transform epoch of the last change
+	 * @see #getTransformEpoch()
+	 */
+	public long getChangeStamp() {
+		return changeStamp;
 	}
 
 	@Override
 	public void cameraHasChanged(Camera camera) {
-		invalidateCameraBoundingBox();
+		// Nothing to do, cached state is validated lazily against the camera's epoch
 	}
 
 	private void invalidateSelfToRootCompositeTransform() {
 		selfToRootCompositeTransform = null;
+		invalidateCameraToObjectTransform();
+	}
+
+	private void invalidateCameraToObjectTransform() {
+		cameraToObjectTransform = null;
+	}
+
+	private void notifyAncestorsOfChangedPart(long epoch) {
+		// The bounding boxes and local index of an ancestor depend on the transforms of its descendants
+		CompositeObject3D<BaseObject3D> ancestor = getCompositeObject();
+		while (ancestor != null) {
+			BaseObject3D parent = (BaseObject3D) ancestor;
+			parent.changeStamp = epoch;
+			parent.invalidateBoundingBoxes();
+			if (parent instanceof MultipartObject3D<?>) {
+				((MultipartObject3D<?>) parent).invalidateLocalIndex();
+			}
+			ancestor = parent.getCompositeObject();
+		}
 	}
 
-	private void invalidateWorldAndCameraBoundingBox() {
+	private void invalidateBoundingBoxes() {
+		boundingBoxInObjectCoordinates = null;
 		invalidateWorldBoundingBox();
 		invalidateCameraBoundingBox();
 	}
@@ -294,6 +508,7 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 
 	@Override
 	public Box3D getBoundingBoxInWorldCoordinates() {
+		validateWorldState();
 		if (boundingBoxInWorldCoordinates == null) {
 			Metrics.getInstance().incrementBoundingBoxComputations();
 			boundingBoxInWorldCoordinates = deriveBoundingBoxInWorldCoordinates();
@@ -303,6 +518,7 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 
 	@Override
 	public Box3D getBoundingBoxInCameraCoordinates(Camera camera) {
+		validateCameraState(camera);
 		if (boundingBoxInCameraCoordinates == null) {
 			Metrics.getInstance().incrementBoundingBoxComputations();
 			boundingBoxInCameraCoordinates = deriveBoundingBoxInCameraCoordinates(camera);
@@ -312,6 +528,7 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 
 	@Override
 	public Box3D getBoundingBoxInViewVolumeCoordinates(Camera camera) {
+		validateCameraState(camera);
 		if (boundingBoxInViewVolumeCoordinates == null) {
 			Metrics.getInstance().incrementBoundingBoxComputations();
 			boundingBoxInViewVolumeCoordinates = deriveBoundingBoxInViewVolumeCoordinates(camera);
@@ -335,32 +552,76 @@ public abstract class BaseObject3D implements BoundedObject3D, ComposableObject3
 
 	protected void setCompositeObject(CompositeObject3D<BaseObject3D> compositeObject) {
 		this.compositeObject = compositeObject;
+		long epoch = incrementTransformEpoch();
+		transformStamp = epoch;
+		notifyChange(epoch);
 	}
 
 	@Override
 	public void intersectWithEyeRay(LineSegment3D ray, Scene scene, Collection<ObjectSurfacePoint3D> intersections,
 			RenderOptions options, ReusableObjectPack reusableObjects) {
-		int n = intersections.size();
-		intersectSelfWithRay(ray, scene, intersections, options, reusableObjects, true, true);
+		ObjectSurfaceHitRecord hit = reusableObjects.getEyeRayHitRecord();
+		hit.reset();
+		hit.setDepthLimit(getNearestOpaqueDepth(intersections));
+		if (intersectWithEyeRay(ray, scene, hit, options, reusableObjects)) {
+			intersections.add(hit.toSurfacePoint());
+		}
+	}
+
+	@Override
+	public void intersectWithLightRay(LineSegment3D ray, Scene scene, Collection<ObjectSurfacePoint3D> intersections,
+			ReusableObjectPack reusableObjects) {
+		ObjectSurfaceHitRecord hit = reusableObjects.getLightRayHitRecord();
+		hit.reset();
+		if (intersectWithLightRay(ray, scene, hit, reusableObjects)) {
+			intersections.add(hit.toSurfacePoint());
+		}
+	}
+
+	@Override
+	public boolean intersectWithEyeRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects) {
+		boolean intersects = intersectSelfWithRay(ray, scene, hit, options, reusableObjects,
+				!reusableObjects.isShadingDeferred(), true);
 		Metrics.getInstance().incrementEyeRayWithObjectIntersectionChecks();
-		if (intersections.size() > n) {
+		if (intersects) {
 			Metrics.getInstance().incrementEyeRayWithObjectIntersections();
 		}
+		return intersects;
 	}
 
 	@Override
-	public void intersectWithLightRay(LineSegment3D ray, Scene scene, Collection<ObjectSurfacePoint3D> intersections,
+	public boolean intersectWithLightRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
 			ReusableObjectPack reusableObjects) {
-		int n = intersections.size();
-		intersectSelfWithRay(ray, scene, intersections, null, reusableObjects, false, false);
+		boolean intersects = intersectSelfWithRay(ray, scene, hit, null, reusableObjects, false, false);
 		Metrics.getInstance().incrementLightRayWithObjectIntersectionChecks();
-		if (intersections.size() > n) {
+		if (intersects) {
 			Metrics.getInstance().incrementLightRayWithObjectIntersections();
 		}
+		return intersects;
 	}
 
-	protected abstract void intersectSelfWithRay(LineSegment3D ray, Scene scene,
-			Collection<ObjectSurfacePoint3D> intersections, RenderOptions options, ReusableObjectPack reusableObjects,
-			boolean applyShading, boolean rayFromEye);
+	private static double getNearestOpaqueDepth(Collection<ObjectSurfacePoint3D> intersections) {
+		double nearestDepth = Double.POSITIVE_INFINITY;
+		for (ObjectSurfacePoint3D intersection : intersections) {
+			double depth = -intersection.getPositionInCamera().getZ();
+			if (depth < nearestDepth && Compositing.isFullyOpaque(intersection.getColor())) {
+				nearestDepth = depth;
+			}
+		}
+		return nearestDepth;
+	}
+
+	/**
+	 * Intersects this object with a ray, writing a hit into the given hit record
+	 * 
+	 * <p>
+	 * Implementations must leave <code>hit</code> untouched when they return <code>false</code>
+	 * </p>
+	 * 
+	 * @return <code>true</code> if this object was hit, in which case <code>hit</code> was updated
+	 */
+	protected abstract boolean intersectSelfWithRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects, boolean applyShading, boolean rayFromEye);
 
 }
\ No newline at end of file
@@ -0,0 +1,346 @@
+package org.maia.cgi.model.d3.object;
+
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Box3D;
+
+/**
+ * Hierarchy of bounding boxes over the parts of an object, in the object coordinates of that object
+ *
+ * <p>
+ * The parts can be the parts of a composite object or the triangles of a shared geometry. The hierarchy is a binary
+ * tree whose nodes each hold a bounding box. Every leaf node covers a small number of parts, every inner node covers
+ * the parts of its two children. Since the boxes are expressed in object coordinates, the hierarchy remains valid
+ * whenever the object as a whole is transformed or the camera changes. A ray is traversed through the hierarchy after
+ * transforming it into object coordinates, visiting only those parts whose bounding box is crossed by the ray.
+ * </p>
+ * <p>
+ * Parts without a bounding box are not part of the tree and are always visited.
+ * </p>
+ *
+ * @see MultipartObject3D#setLocallyIndexed(boolean)
+ * @see SharedGeometry3D
+ */
+public class BoundingVolumeHierarchy<T> {
+
+	private List<T> boundedParts; // ordered such that each leaf node covers a contiguous range
+
+	private List<T> unboundedParts;
+
+	private double[] nodeBoxes; // per node x1, x2, y1, y2, z1, z2
+
+	private int[] nodeOffsets; // per leaf node the index of its first part, per inner node the index of its 2nd child
+
+	private int[] nodePartCounts; // per leaf node the number of parts, 0 for an inner node
+
+	private int nodeCount;
+
+	private static final int MAXIMUM_PARTS_PER_LEAF = 4;
+
+	private static final double BOX_MARGIN = 0.000001;
+
+	public BoundingVolumeHierarchy(List<T> parts, List<Box3D> partBoxes) {
+		List<Integer> boundedIndices = new Vector<Integer>(parts.size());
+		this.unboundedParts = new Vector<T>();
+		for (int i = 0; i < parts.size(); i++) {
+			if (partBoxes.get(i) != null) {
+				boundedIndices.add(i);
+			} else {
+				unboundedParts.add(parts.get(i));
+			}
+		}
+		int n = boundedIndices.size();
+		int[] order = new int[n];
+		double[] centers = new double[n * 3];
+		for (int i = 0; i < n; i++) {
+			Box3D box = partBoxes.get(boundedIndices.get(i));
+			order[i] = i;
+			centers[i * 3] = (box.getX1() + box.getX2()) / 2.0;
+			centers[i * 3 + 1] = (box.getY1() + box.getY2()) / 2.0;
+			centers[i * 3 + 2] = (box.getZ1() + box.getZ2()) / 2.0;
+		}
+		int maximumNodes = Math.max(2 * n - 1, 1);
+		this.nodeBoxes = new double[maximumNodes * 6];
+		this.nodeOffsets = new int[maximumNodes];
+		this.nodePartCounts = new int[maximumNodes];
+		if (n > 0) {
+			List<Box3D> boxes = new Vector<Box3D>(n);
+			for (int i = 0; i < n; i++) {
+				boxes.add(partBoxes.get(boundedIndices.get(i)));
+			}
+			buildNode(order, 0, n, boxes, centers);
+		}
+		this.boundedParts = new Vector<T>(n);
+		for (int i = 0; i < n; i++) {
+			boundedParts.add(parts.get(boundedIndices.get(order[i])));
+		}
+	}
+
+	private int buildNode(int[] order, int from, int to, List<Box3D> boxes, double[] centers) {
+		int node = nodeCount++;
+		Box3D box = boxes.get(order[from]).clone();
+		for (int i = from + 1; i < to; i++) {
+			box.expandToContain(boxes.get(order[i]));
+		}
+		// Widen the box a little, as rays in object coordinates are subject to finite precision
+		int b = node * 6;
+		nodeBoxes[b] = box.getX1() - BOX_MARGIN;
+		nodeBoxes[b + 1] = box.getX2() + BOX_MARGIN;
+		nodeBoxes[b + 2] = box.getY1() - BOX_MARGIN;
+		nodeBoxes[b + 3] = box.getY2() + BOX_MARGIN;
+		nodeBoxes[b + 4] = box.getZ1() - BOX_MARGIN;
+		nodeBoxes[b + 5] = box.getZ2() + BOX_MARGIN;
+		if (to - from <= MAXIMUM_PARTS_PER_LEAF) {
+			nodeOffsets[node] = from;
+			nodePartCounts[node] = to - from;
+		} else {
+			int axis = getLongestAxisOfCenters(order, from, to, centers);
+			int middle = (from + to) / 2;
+			partitionAroundMedian(order, from, to, middle, centers, axis);
+			buildNode(order, from, middle, boxes, centers);
+			nodeOffsets[node] = buildNode(order, middle, to, boxes, centers);
+			nodePartCounts[node] = 0;
+		}
+		return node;
+	}
+
+	private int getLongestAxisOfCenters(int[] order, int from, int to, double[] centers) {
+		int longestAxis = 0;
+		double longestExtent = -1.0;
+		for (int axis = 0; axis < 3; axis++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				double c = centers[order[i] * 3 + axis];
+				min = Math.min(min, c);
+				max = Math.max(max, c);
+			}
+			if (max - min > longestExtent) {
+				longestExtent = max - min;
+				longestAxis = axis;
+			}
+		}
+		return longestAxis;
+	}
+
+	private void partitionAroundMedian(int[] order, int from, int to, int median, double[] centers, int axis) {
+		// Quickselect, such that the parts before the median have centers not greater than those from the median on
+		int left = from;
+		int right = to - 1;
+		while (left < right) {
+			double pivot = centers[order[(left + right) / 2] * 3 + axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (centers[order[i] * 3 + axis] < pivot)
+					i++;
+				while (centers[order[j] * 3 + axis] > pivot)
+					j--;
+				if (i <= j) {
+					int swap = order[i];
+					order[i] = order[j];
+					order[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (median <= j) {
+				right = j;
+			} else if (median >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+	}
+
+	public int getPartCount() {
+		return boundedParts.size() + unboundedParts.size();
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Traversal of a ray through a <code>BoundingVolumeHierarchy</code>
+	 *
+	 * <p>
+	 * A traversal visits the parts whose bounding box is crossed by the ray, nearer nodes before farther nodes. It does
+	 * not create any objects and is meant to be reused for many rays.
+	 * </p>
+	 * <p>
+	 * Instances of this class are <em>not</em> thread-safe
+	 * </p>
+	 */
+	public static class Traversal {
+
+		private BoundingVolumeHierarchy<?> hierarchy;
+
+		private double ox, oy, oz, dx, dy, dz;
+
+		private double minimumR, maximumR;
+
+		private int[] nodeStack;
+
+		private double[] nodeEntryStack;
+
+		private int stackSize;
+
+		private int unboundedIndex;
+
+		private int leafIndex;
+
+		private int leafEnd;
+
+		public Traversal() {
+			this.nodeStack = new int[64];
+			this.nodeEntryStack = new double[64];
+		}
+
+		/**
+		 * Starts a new traversal
+		 *
+		 * <p>
+		 * The ray is given in the object coordinates of the hierarchy, by its origin <em>o</em> and direction
+		 * <em>d</em> such that the point at relative position <em>r</em> equals <em>o</em> + <em>r</em> * <em>d</em>
+		 * </p>
+		 */
+		public void start(BoundingVolumeHierarchy<?> hierarchy, double ox, double oy, double oz, double dx,
+				double dy, double dz, double minimumR, double maximumR) {
+			this.hierarchy = hierarchy;
+			this.ox = ox;
+			this.oy = oy;
+			this.oz = oz;
+			this.dx = dx;
+			this.dy = dy;
+			this.dz = dz;
+			this.minimumR = minimumR;
+			this.maximumR = maximumR;
+			this.unboundedIndex = 0;
+			this.leafIndex = 0;
+			this.leafEnd = 0;
+			this.stackSize = 0;
+			if (hierarchy.getNodeCount() > 0) {
+				double entry = enterNode(0);
+				if (!Double.isNaN(entry)) {
+					push(0, entry);
+				}
+			}
+		}
+
+		/**
+		 * Returns the next part to visit
+		 *
+		 * @return The next part whose bounding box is crossed by the ray, or <code>null</code> when the traversal is
+		 *         complete
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T next() {
+			BoundingVolumeHierarchy<?> h = hierarchy;
+			if (unboundedIndex < h.unboundedParts.size()) {
+				return (T) h.unboundedParts.get(unboundedIndex++);
+			}
+			while (leafIndex == leafEnd) {
+				if (stackSize == 0)
+					return null;
+				stackSize--;
+				int node = nodeStack[stackSize];
+				if (nodeEntryStack[stackSize] > maximumR)
+					continue; // pruned after it was pushed
+				if (h.nodePartCounts[node] > 0) {
+					leafIndex = h.nodeOffsets[node];
+					leafEnd = leafIndex + h.nodePartCounts[node];
+				} else {
+					int first = node + 1;
+					int second = h.nodeOffsets[node];
+					double firstEntry = enterNode(first);
+					double secondEntry = enterNode(second);
+					// Push the farther child first, so the nearer child is visited first
+					if (!Double.isNaN(firstEntry) && !Double.isNaN(secondEntry)) {
+						if (firstEntry <= secondEntry) {
+							push(second, secondEntry);
+							push(first, firstEntry);
+						} else {
+							push(first, firstEntry);
+							push(second, secondEntry);
+						}
+					} else if (!Double.isNaN(firstEntry)) {
+						push(first, firstEntry);
+					} else if (!Double.isNaN(secondEntry)) {
+						push(second, secondEntry);
+					}
+				}
+			}
+			return (T) h.boundedParts.get(leafIndex++);
+		}
+
+		/**
+		 * Narrows the range of the ray, so that nodes entirely beyond the given relative position are skipped
+		 *
+		 * @param maximumR
+		 *            The maximum relative position on the ray
+		 */
+		public void narrowMaximumRelativePosition(double maximumR) {
+			this.maximumR = Math.min(this.maximumR, maximumR);
+		}
+
+		private void push(int node, double entry) {
+			if (stackSize == nodeStack.length) {
+				int[] nodes = new int[stackSize * 2];
+				double[] entries = new double[stackSize * 2];
+				System.arraycopy(nodeStack, 0, nodes, 0, stackSize);
+				System.arraycopy(nodeEntryStack, 0, entries, 0, stackSize);
+				nodeStack = nodes;
+				nodeEntryStack = entries;
+			}
+			nodeStack[stackSize] = node;
+			nodeEntryStack[stackSize] = entry;
+			stackSize++;
+		}
+
+		/**
+		 * Returns the relative position where the ray enters a node's box, or <code>Double.NaN</code> when it misses
+		 */
+		private double enterNode(int node) {
+			double[] boxes = hierarchy.nodeBoxes;
+			int b = node * 6;
+			double near = minimumR;
+			double far = maximumR;
+			// X slab
+			if (dx == 0) {
+				if (ox < boxes[b] || ox > boxes[b + 1])
+					return Double.NaN;
+			} else {
+				double t1 = (boxes[b] - ox) / dx;
+				double t2 = (boxes[b + 1] - ox) / dx;
+				near = Math.max(near, Math.min(t1, t2));
+				far = Math.min(far, Math.max(t1, t2));
+			}
+			// Y slab
+			if (dy == 0) {
+				if (oy < boxes[b + 2] || oy > boxes[b + 3])
+					return Double.NaN;
+			} else {
+				double t1 = (boxes[b + 2] - oy) / dy;
+				double t2 = (boxes[b + 3] - oy) / dy;
+				near = Math.max(near, Math.min(t1, t2));
+				far = Math.min(far, Math.max(t1, t2));
+			}
+			// Z slab
+			if (dz == 0) {
+				if (oz < boxes[b + 4] || oz > boxes[b + 5])
+					return Double.NaN;
+			} else {
+				double t1 = (boxes[b + 4] - oz) / dz;
+				double t2 = (boxes[b + 5] - oz) / dz;
+				near = Math.max(near, Math.min(t1, t2));
+				far = Math.min(far, Math.max(t1, t2));
+			}
+			return near <= far ? near : Double.NaN;
+		}
+
+	}
+
+}
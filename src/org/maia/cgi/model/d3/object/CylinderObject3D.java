@@ -0,0 +1,88 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.object.Mesh3D.Edge;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * A solid cylinder along the Z axis of its object coordinates, ranging from <em>z</em>=0 to <em>z</em>=depth
+ *
+ * <p>
+ * The cylinder is closed at both ends by a disc. It has the same geometry as a cylinder built by
+ * <code>ModelBuilderUtils.buildCylinder</code>, without the polygonal approximation.
+ * </p>
+ */
+public class CylinderObject3D extends QuadricObject3D {
+
+	private double radius;
+
+	private double depth;
+
+	private static final int WIREFRAME_VERTEX_COUNT = 24;
+
+	public CylinderObject3D(double radius, double depth, Color color, FlatShadingModel shadingModel) {
+		super(buildWireframe(radius, depth), color, shadingModel);
+		this.radius = radius;
+		this.depth = depth;
+	}
+
+	private static Mesh3D buildWireframe(double radius, double depth) {
+		List<Point3D> vertices = new Vector<Point3D>();
+		List<Edge> edges = new Vector<Edge>();
+		int n = WIREFRAME_VERTEX_COUNT;
+		addWireframeCircle(vertices, edges, radius, 0, n);
+		addWireframeCircle(vertices, edges, radius, depth, n);
+		for (int i = 0; i < n; i += 3) {
+			double angle = 2.0 * Math.PI * i / n;
+			double x = radius * Math.cos(angle);
+			double y = radius * Math.sin(angle);
+			addWireframeLine(vertices, edges, new Point3D(x, y, 0), new Point3D(x, y, depth));
+		}
+		return new Mesh3DImpl(vertices, edges);
+	}
+
+	@Override
+	protected Box3D deriveBoundingBox(TransformMatrix objectToFrame) {
+		return deriveCylinderBoundingBox(objectToFrame, getRadius(), getDepth());
+	}
+
+	@Override
+	protected double findNearestHitInObjectCoordinates(double ox, double oy, double oz, double dx, double dy,
+			double dz, double minimumR) {
+		double r = nearestHitOnCylindricalHull(ox, oy, oz, dx, dy, dz, getRadius(), getDepth(), minimumR);
+		r = Math.min(r, nearestHitOnAnnulus(ox, oy, oz, dx, dy, dz, 0, 0, getRadius(), minimumR));
+		r = Math.min(r, nearestHitOnAnnulus(ox, oy, oz, dx, dy, dz, getDepth(), 0, getRadius(), minimumR));
+		return r;
+	}
+
+	@Override
+	protected Vector3D getSurfaceNormalInObjectCoordinates(double x, double y, double z) {
+		// Normal of the nearest surface, being the hull or either end
+		double hullDistance = Math.abs(Math.sqrt(x * x + y * y) - getRadius());
+		double backDistance = Math.abs(z);
+		double frontDistance = Math.abs(z - getDepth());
+		if (hullDistance <= backDistance && hullDistance <= frontDistance) {
+			return new Vector3D(x, y, 0);
+		} else if (backDistance <= frontDistance) {
+			return new Vector3D(0, 0, -1.0);
+		} else {
+			return new Vector3D(0, 0, 1.0);
+		}
+	}
+
+	public double getRadius() {
+		return radius;
+	}
+
+	public double getDepth() {
+		return depth;
+	}
+
+}
@@ -0,0 +1,187 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.maia.cgi.Metrics;
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d3.RenderOptions;
+import org.maia.cgi.render.d3.ReusableObjectPack;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * An instance of a <code>SharedGeometry3D</code> in 3D space
+ *
+ * <p>
+ * An instance carries only a transform and a material. Its object coordinates are those of the shared geometry, whose
+ * vertices and edges it exposes as its own without copying them. A ray is transformed into object coordinates and
+ * traced through the shared geometry's triangle hierarchy, so there is no per-instance geometry in camera coordinates
+ * either. The bounding boxes are derived from the corners of the shared geometry's bounding box.
+ * </p>
+ * <p>
+ * A solid color applies to the surface, subject to a <code>FlatShadingModel</code>.
+ * </p>
+ *
+ * @see SharedGeometry3D
+ */
+public class GeometryInstance3D extends VertexObject3D implements OrientedSurfaceObject3D, ShadedObject3D {
+
+	private SharedGeometry3D geometry;
+
+	private Color color;
+
+	private FlatShadingModel shadingModel;
+
+	private static final double MINIMUM_LIGHT_RAY_DISTANCE = 0.001;
+
+	public GeometryInstance3D(SharedGeometry3D geometry, Color color, FlatShadingModel shadingModel) {
+		super(geometry.getMesh());
+		this.geometry = geometry;
+		this.color = color;
+		this.shadingModel = shadingModel;
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInObjectCoordinates() {
+		return getGeometry().getBoundingBox();
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInWorldCoordinates() {
+		return deriveBoundingBox(getSelfToRootCompositeTransform().getForwardCompositeMatrix());
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInCameraCoordinates(Camera camera) {
+		return deriveBoundingBox(
+				camera.getViewingMatrix().preMultiply(getSelfToRootCompositeTransform().getForwardCompositeMatrix()));
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInViewVolumeCoordinates(Camera camera) {
+		TransformMatrix projectionMatrix = camera.getViewVolume().getProjectionMatrix();
+		List<Point3D> corners = projectionMatrix.transform(getBoundingBoxInCameraCoordinates(camera).getVertices());
+		if (camera.getViewVolume().isPerspectiveProjection()) {
+			for (Point3D corner : corners) {
+				corner.normalizeToUnitW();
+			}
+		}
+		return deriveBoundingBox(corners);
+	}
+
+	private Box3D deriveBoundingBox(TransformMatrix objectToFrame) {
+		return deriveBoundingBox(objectToFrame.transform(getGeometry().getBoundingBox().getVertices()));
+	}
+
+	@Override
+	protected boolean intersectSelfWithRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects, boolean applyShading, boolean rayFromEye) {
+		double[] m = getCameraToObjectTransform(scene.getCamera());
+		Point3D p1 = ray.getP1();
+		Point3D p2 = ray.getP2();
+		double x = p1.getX();
+		double y = p1.getY();
+		double z = p1.getZ();
+		double vx = p2.getX() - x;
+		double vy = p2.getY() - y;
+		double vz = p2.getZ() - z;
+		double ox = m[0] * x + m[1] * y + m[2] * z + m[3];
+		double oy = m[4] * x + m[5] * y + m[6] * z + m[7];
+		double oz = m[8] * x + m[9] * y + m[10] * z + m[11];
+		double dx = m[0] * vx + m[1] * vy + m[2] * vz;
+		double dy = m[4] * vx + m[5] * vy + m[6] * vz;
+		double dz = m[8] * vx + m[9] * vy + m[10] * vz;
+		double minimumR = ray.isClosedAtP1() ? 0 : Double.NEGATIVE_INFINITY;
+		double maximumR = ray.isClosedAtP2() ? 1.0 : Double.POSITIVE_INFINITY;
+		if (!rayFromEye) {
+			// Avoid a light ray hitting the surface position it originates from
+			minimumR = Math.max(minimumR, MINIMUM_LIGHT_RAY_DISTANCE / Math.sqrt(vx * vx + vy * vy + vz * vz));
+		}
+		SharedGeometry3D geometry = getGeometry();
+		BoundingVolumeHierarchy.Traversal traversal = reusableObjects.getLocalIndexTraversal(getNestingLevel(),
+				rayFromEye);
+		traversal.start(geometry.getTriangleHierarchy(), ox, oy, oz, dx, dy, dz, minimumR, maximumR);
+		int nearestTriangle = -1;
+		double nearestR = maximumR;
+		Integer triangle = null;
+		while ((triangle = traversal.next()) != null) {
+			Metrics.getInstance().incrementLineWithTriangleIntersections();
+			int index = triangle.intValue();
+			double r = geometry.intersectTriangle(index, ox, oy, oz, dx, dy, dz);
+			if (r >= minimumR && r <= nearestR) {
+				nearestR = r;
+				nearestTriangle = index;
+				if (!rayFromEye)
+					break; // any hit obscures the light
+				traversal.narrowMaximumRelativePosition(r);
+			}
+		}
+		if (nearestTriangle < 0)
+			return false;
+		Point3D positionInCamera = reusableObjects.getSurfacePosition();
+		ray.getPointAtRelativePosition(nearestR, positionInCamera);
+		if (rayFromEye && -positionInCamera.getZ() > hit.getDepthLimit())
+			return false;
+		hit.update(this, nearestR, positionInCamera, getColor());
+		hit.setPrimitiveIndex(nearestTriangle);
+		if (applyShading) {
+			getShadingModel().applyShading(hit, scene, options, reusableObjects);
+		}
+		return true;
+	}
+
+	@Override
+	public void applyDeferredShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects) {
+		getShadingModel().applyShading(surfacePoint, scene, options, reusableObjects);
+	}
+
+	@Override
+	public Vector3D getSurfaceNormalInCameraCoordinates(ObjectSurfacePoint3D surfacePoint, Camera camera) {
+		double[] m = getCameraToObjectTransform(camera);
+		int triangle = surfacePoint.getPrimitiveIndex();
+		if (triangle < 0) {
+			Point3D positionInCamera = surfacePoint.getPositionInCamera();
+			double x = positionInCamera.getX();
+			double y = positionInCamera.getY();
+			double z = positionInCamera.getZ();
+			triangle = getGeometry().findTriangleNearestTo(m[0] * x + m[1] * y + m[2] * z + m[3],
+					m[4] * x + m[5] * y + m[6] * z + m[7], m[8] * x + m[9] * y + m[10] * z + m[11]);
+		}
+		Vector3D normal = getGeometry().getTriangleNormal(triangle);
+		// Normals transform by the transpose of the inverse transform
+		double nx = normal.getX();
+		double ny = normal.getY();
+		double nz = normal.getZ();
+		normal.setX(m[0] * nx + m[4] * ny + m[8] * nz);
+		normal.setY(m[1] * nx + m[5] * ny + m[9] * nz);
+		normal.setZ(m[2] * nx + m[6] * ny + m[10] * nz);
+		normal.makeUnitVector();
+		return normal;
+	}
+
+	@Override
+	public boolean isSelfShadowing() {
+		return true;
+	}
+
+	public SharedGeometry3D getGeometry() {
+		return geometry;
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	@Override
+	public FlatShadingModel getShadingModel() {
+		return shadingModel;
+	}
+
+}
@@ -10,6 +10,29 @@ public interface Mesh3D {
 
 	List<Edge> getEdges();
 
+	/**
+	 * Returns the coordinates of the vertices of this mesh in a primitive array
+	 * 
+	 * <p>
+	 * The array holds the x, y, z and w coordinates of every vertex in turn. It is derived once and cached, so it does
+	 * not reflect any changes to the vertices afterwards.
+	 * </p>
+	 * 
+	 * @return The coordinates, 4 per vertex
+	 */
+	double[] getVertexCoordinates();
+
+	/**
+	 * Returns the vertex indices of the edges of this mesh in a primitive array
+	 * 
+	 * <p>
+	 * The array holds the first and second vertex index of every edge in turn. It is derived once and cached.
+	 * </p>
+	 * 
+	 * @return The vertex indices, 2 per edge
+	 */
+	int[] getEdgeVertexIndices();
+
 	public static interface Edge {
 
 		int getFirstVertexIndex();
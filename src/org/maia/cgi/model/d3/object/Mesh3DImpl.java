@@ -10,6 +10,10 @@ public class Mesh3DImpl implements Mesh3D {
 
 	private List<Edge> edges;
 
+	private double[] vertexCoordinates; // derived, cached
+
+	private int[] edgeVertexIndices; // derived, cached
+
 	public Mesh3DImpl(List<Point3D> vertices, List<Edge> edges) {
 		this.vertices = vertices;
 		this.edges = edges;
@@ -25,6 +29,44 @@ public class Mesh3DImpl implements Mesh3D {
 		return edges;
 	}
 
+	@Override
+	public synchronized double[] getVertexCoordinates() {
+		if (vertexCoordinates == null) {
+			vertexCoordinates = deriveVertexCoordinates();
+		}
+		return vertexCoordinates;
+	}
+
+	@Override
+	public synchronized int[] getEdgeVertexIndices() {
+		if (edgeVertexIndices == null) {
+			edgeVertexIndices = deriveEdgeVertexIndices();
+		}
+		return edgeVertexIndices;
+	}
+
+	private double[] deriveVertexCoordinates() {
+		double[] coordinates = new double[4 * getVertices().size()];
+		int i = 0;
+		for (Point3D vertex : getVertices()) {
+			coordinates[i++] = vertex.getX();
+			coordinates[i++] = vertex.getY();
+			coordinates[i++] = vertex.getZ();
+			coordinates[i++] = vertex.getW();
+		}
+		return coordinates;
+	}
+
+	private int[] deriveEdgeVertexIndices() {
+		int[] indices = new int[2 * getEdges().size()];
+		int i = 0;
+		for (Edge edge : getEdges()) {
+			indices[i++] = edge.getFirstVertexIndex();
+			indices[i++] = edge.getSecondVertexIndex();
+		}
+		return indices;
+	}
+
 	public static class EdgeImpl implements Edge {
 
 		private int firstVertexIndex;
@@ -1,6 +1,7 @@
 package org.maia.cgi.model.d3.object;
 
 import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.transform.d3.TransformMatrix;
 
 public interface MeshObject3D extends Object3D {
 
@@ -12,4 +13,16 @@ public interface MeshObject3D extends Object3D {
 
 	Mesh3D getMeshInViewVolumeCoordinates(Camera camera);
 
+	/**
+	 * Returns the transform from the object coordinates of this object to world coordinates
+	 * 
+	 * <p>
+	 * This allows client code to transform the mesh in object coordinates by a composite transform of its own, without
+	 * materializing the intermediate meshes.
+	 * </p>
+	 * 
+	 * @return The matrix of the transform
+	 */
+	TransformMatrix getObjectToWorldMatrix();
+
 }
@@ -2,20 +2,41 @@ package org.maia.cgi.model.d3.object;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 
 import org.maia.cgi.geometry.d3.Box3D;
 import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.geometry.d3.Point3D;
 import org.maia.cgi.model.d3.CoordinateFrame;
 import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.object.BoundingVolumeHierarchy.Traversal;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.render.d3.RenderOptions;
 import org.maia.cgi.render.d3.ReusableObjectPack;
+import org.maia.cgi.transform.d3.TransformMatrix;
 
+/**
+ * A composite object consisting of parts
+ * 
+ * <p>
+ * By default, the parts of a composite object are indexed individually within a <code>Scene</code>'s spatial index. A
+ * composite object can be <em>locally indexed</em> instead, in which case it builds a
+ * <code>BoundingVolumeHierarchy</code> of its parts in its own object coordinates and takes their place in the scene's
+ * spatial index. This pays off for composite objects with many parts, such as detailed meshes. As the hierarchy does
+ * not depend on the camera or on transforms of the composite object as a whole, it is built only once.
+ * </p>
+ * 
+ * @see BoundingVolumeHierarchy
+ */
 public class MultipartObject3D<T extends ComposableObject3D> extends BaseObject3D implements CompositeObject3D<T> {
 
 	private Collection<T> parts;
 
+	private boolean locallyIndexed;
+
+	private volatile BoundingVolumeHierarchy<T> localIndex; // lazily built when locally indexed
+
 	public MultipartObject3D() {
 		this.parts = new Vector<T>();
 	}
@@ -37,6 +58,8 @@ public class MultipartObject3D<T extends ComposableObject3D> extends BaseObject3
 			((BaseObject3D) part).setCompositeObject((CompositeObject3D<BaseObject3D>) this);
 		}
 		getParts().add(part);
+		invalidateLocalIndex();
+		notifyPartsHaveChanged();
 	}
 
 	@Override
@@ -91,10 +114,21 @@ public class MultipartObject3D<T extends ComposableObject3D> extends BaseObject3
 	@Override
 	public final void intersectWithEyeRay(LineSegment3D ray, Scene scene,
 			Collection<ObjectSurfacePoint3D> intersections, RenderOptions options, ReusableObjectPack reusableObjects) {
-		for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
-			Object3D part = it.next();
-			if (part.isRaytraceable()) {
-				part.asRaytraceableObject().intersectWithEyeRay(ray, scene, intersections, options, reusableObjects);
+		if (isLocallyIndexed()) {
+			Traversal traversal = startLocalIndexTraversal(ray, scene, reusableObjects, true);
+			for (Object3D part = traversal.next(); part != null; part = traversal.next()) {
+				if (part.isRaytraceable()) {
+					part.asRaytraceableObject().intersectWithEyeRay(ray, scene, intersections, options,
+							reusableObjects);
+				}
+			}
+		} else {
+			for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
+				Object3D part = it.next();
+				if (part.isRaytraceable()) {
+					part.asRaytraceableObject().intersectWithEyeRay(ray, scene, intersections, options,
+							reusableObjects);
+				}
 			}
 		}
 	}
@@ -102,59 +136,182 @@ public class MultipartObject3D<T extends ComposableObject3D> extends BaseObject3
 	@Override
 	public final void intersectWithLightRay(LineSegment3D ray, Scene scene,
 			Collection<ObjectSurfacePoint3D> intersections, ReusableObjectPack reusableObjects) {
-		for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
-			Object3D part = it.next();
-			if (part.isRaytraceable()) {
-				part.asRaytraceableObject().intersectWithLightRay(ray, scene, intersections, reusableObjects);
+		if (isLocallyIndexed()) {
+			Traversal traversal = startLocalIndexTraversal(ray, scene, reusableObjects, false);
+			for (Object3D part = traversal.next(); part != null; part = traversal.next()) {
+				if (part.isRaytraceable()) {
+					part.asRaytraceableObject().intersectWithLightRay(ray, scene, intersections, reusableObjects);
+				}
+			}
+		} else {
+			for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
+				Object3D part = it.next();
+				if (part.isRaytraceable()) {
+					part.asRaytraceableObject().intersectWithLightRay(ray, scene, intersections, reusableObjects);
+				}
 			}
 		}
 	}
 
 	@Override
-	protected final void intersectSelfWithRay(LineSegment3D ray, Scene scene,
-			Collection<ObjectSurfacePoint3D> intersections, RenderOptions options, ReusableObjectPack reusableObjects,
-			boolean applyShading, boolean rayFromEye) {
-		// nothing to do, intersections only apply to parts
+	public final boolean intersectWithEyeRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects) {
+		boolean intersects = false;
+		double depthLimit = hit.getDepthLimit();
+		if (isLocallyIndexed()) {
+			Traversal traversal = startLocalIndexTraversal(ray, scene, reusableObjects, true);
+			for (Object3D part = traversal.next(); part != null; part = traversal.next()) {
+				if (part.isRaytraceable()) {
+					if (part.asRaytraceableObject().intersectWithEyeRay(ray, scene, hit, options, reusableObjects)) {
+						hit.setDepthLimit(hit.getDepth()); // only nearer parts can replace this hit
+						traversal.narrowMaximumRelativePosition(hit.getRelativePositionOnRay());
+						intersects = true;
+					}
+				}
+			}
+		} else {
+			for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
+				Object3D part = it.next();
+				if (part.isRaytraceable()) {
+					if (part.asRaytraceableObject().intersectWithEyeRay(ray, scene, hit, options, reusableObjects)) {
+						hit.setDepthLimit(hit.getDepth()); // only nearer parts can replace this hit
+						intersects = true;
+					}
+				}
+			}
+		}
+		hit.setDepthLimit(depthLimit);
+		return intersects;
 	}
 
 	@Override
-	public void notifySelfHasTransformed() {
-		super.notifySelfHasTransformed();
-		fireAncestorHasTransformedOnParts();
+	public final boolean intersectWithLightRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			ReusableObjectPack reusableObjects) {
+		if (isLocallyIndexed()) {
+			Traversal traversal = startLocalIndexTraversal(ray, scene, reusableObjects, false);
+			for (Object3D part = traversal.next(); part != null; part = traversal.next()) {
+				if (part.isRaytraceable()) {
+					if (part.asRaytraceableObject().intersectWithLightRay(ray, scene, hit, reusableObjects))
+						return true;
+				}
+			}
+		} else {
+			for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
+				Object3D part = it.next();
+				if (part.isRaytraceable()) {
+					if (part.asRaytraceableObject().intersectWithLightRay(ray, scene, hit, reusableObjects))
+						return true;
+				}
+			}
+		}
+		return false;
 	}
 
-	@Override
-	public void notifyAncestorHasTransformed() {
-		super.notifyAncestorHasTransformed();
-		fireAncestorHasTransformedOnParts();
+	private Traversal startLocalIndexTraversal(LineSegment3D ray, Scene scene, ReusableObjectPack reusableObjects,
+			boolean rayFromEye) {
+		double[] m = getCameraToObjectTransform(scene.getCamera());
+		Point3D p1 = ray.getP1();
+		Point3D p2 = ray.getP2();
+		double x = p1.getX();
+		double y = p1.getY();
+		double z = p1.getZ();
+		double vx = p2.getX() - x;
+		double vy = p2.getY() - y;
+		double vz = p2.getZ() - z;
+		double ox = m[0] * x + m[1] * y + m[2] * z + m[3];
+		double oy = m[4] * x + m[5] * y + m[6] * z + m[7];
+		double oz = m[8] * x + m[9] * y + m[10] * z + m[11];
+		double dx = m[0] * vx + m[1] * vy + m[2] * vz;
+		double dy = m[4] * vx + m[5] * vy + m[6] * vz;
+		double dz = m[8] * vx + m[9] * vy + m[10] * vz;
+		double minimumR = ray.isClosedAtP1() ? 0 : Double.NEGATIVE_INFINITY;
+		double maximumR = ray.isClosedAtP2() ? 1.0 : Double.POSITIVE_INFINITY;
+		Traversal traversal = reusableObjects.getLocalIndexTraversal(getNestingLevel(), rayFromEye);
+		traversal.start(getLocalIndex(), ox, oy, oz, dx, dy, dz, minimumR, maximumR);
+		return traversal;
 	}
 
-	@Override
-	public void cameraHasChanged(Camera camera) {
-		super.cameraHasChanged(camera);
-		fireCameraHasChangedOnParts(camera);
+	private BoundingVolumeHierarchy<T> getLocalIndex() {
+		BoundingVolumeHierarchy<T> index = localIndex;
+		if (index == null) {
+			index = buildLocalIndex();
+		}
+		return index;
 	}
 
-	@Override
-	public final void releaseMemory() {
-		for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
-			it.next().releaseMemory();
+	private synchronized BoundingVolumeHierarchy<T> buildLocalIndex() {
+		if (localIndex == null) {
+			List<T> indexedParts = new Vector<T>(getParts());
+			List<Box3D> partBoxes = new Vector<Box3D>(indexedParts.size());
+			for (T part : indexedParts) {
+				partBoxes.add(getPartBoundingBoxInObjectCoordinates(part));
+			}
+			localIndex = new BoundingVolumeHierarchy<T>(indexedParts, partBoxes);
 		}
+		return localIndex;
 	}
 
-	private void fireAncestorHasTransformedOnParts() {
-		for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
-			Object3D part = it.next();
-			if (part.isTransformable()) {
-				part.asTransformableObject().notifyAncestorHasTransformed();
+	private Box3D getPartBoundingBoxInObjectCoordinates(T part) {
+		Box3D box = null;
+		if (part instanceof BaseObject3D) {
+			BaseObject3D basePart = (BaseObject3D) part;
+			List<Point3D> corners = null;
+			if (part.isComposite()) {
+				Box3D worldBox = basePart.getBoundingBoxInWorldCoordinates();
+				if (worldBox != null) {
+					corners = getSelfToRootCompositeTransform().getReverseCompositeMatrix()
+							.transform(worldBox.getVertices());
+				}
+			} else {
+				Box3D partBox = basePart.getBoundingBoxInObjectCoordinates();
+				if (partBox != null) {
+					TransformMatrix partToObject = basePart.getOwnCompositeTransform().getForwardCompositeMatrix();
+					corners = partToObject.transform(partBox.getVertices());
+				}
+			}
+			if (corners != null) {
+				for (Point3D corner : corners) {
+					if (box == null) {
+						box = new Box3D(corner.getX(), corner.getX(), corner.getY(), corner.getY(), corner.getZ(),
+								corner.getZ());
+					} else {
+						box.expandToContain(corner);
+					}
+				}
 			}
 		}
+		return box;
 	}
 
-	private void fireCameraHasChangedOnParts(Camera camera) {
+	void invalidateLocalIndex() {
+		localIndex = null;
+	}
+
+	/**
+	 * Tells whether this object is locally indexed
+	 * 
+	 * @return <code>true</code> if this object builds its own index of its parts, in which case it replaces its parts
+	 *         in a scene's spatial index
+	 */
+	public boolean isLocallyIndexed() {
+		return locallyIndexed;
+	}
+
+	public void setLocallyIndexed(boolean locallyIndexed) {
+		this.locallyIndexed = locallyIndexed;
+		invalidateLocalIndex();
+	}
+
+	@Override
+	protected final boolean intersectSelfWithRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects, boolean applyShading, boolean rayFromEye) {
+		return false; // nothing to do, intersections only apply to parts
+	}
+
+	@Override
+	public final void releaseMemory() {
 		for (Iterator<T> it = getParts().iterator(); it.hasNext();) {
-			Object3D part = it.next();
-			part.cameraHasChanged(camera);
+			it.next().releaseMemory();
 		}
 	}
 
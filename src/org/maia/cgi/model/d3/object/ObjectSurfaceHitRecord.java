@@ -0,0 +1,126 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+
+import org.maia.cgi.geometry.d3.Point3D;
+
+/**
+ * Reusable record of a ray hitting the surface of an object
+ *
+ * <p>
+ * A hit record is owned by the caller of an intersection and is overwritten by every successful hit. It holds the
+ * relative position of the hit along the ray, the position in camera coordinates, the object that was hit and its
+ * color. Unlike an <code>ObjectSurfacePoint3DImpl</code>, it does not create any objects when updated. Hits that need
+ * to outlive the next intersection should be {@linkplain #toSurfacePoint() materialized}.
+ * </p>
+ * <p>
+ * In addition, a hit record carries a <em>depth limit</em> that is set by the caller. For rays from the eye, objects
+ * will not report hits that lie farther from the eye than this limit.
+ * </p>
+ * <p>
+ * Instances of this class are <em>not</em> thread-safe
+ * </p>
+ *
+ * @see RaytraceableObject3D
+ */
+public class ObjectSurfaceHitRecord implements ObjectSurfacePoint3D {
+
+	private boolean hit;
+
+	private double relativePositionOnRay;
+
+	private Point3D positionInCamera;
+
+	private Object3D object;
+
+	private Color color;
+
+	private int primitiveIndex;
+
+	private double depthLimit;
+
+	public ObjectSurfaceHitRecord() {
+		this.positionInCamera = new Point3D();
+		reset();
+	}
+
+	public void reset() {
+		hit = false;
+		relativePositionOnRay = Double.NaN;
+		object = null;
+		color = null;
+		primitiveIndex = -1;
+		depthLimit = Double.POSITIVE_INFINITY;
+	}
+
+	public void update(Object3D object, double relativePositionOnRay, Point3D positionInCamera, Color color) {
+		update(object, relativePositionOnRay, positionInCamera.getX(), positionInCamera.getY(),
+				positionInCamera.getZ(), color);
+	}
+
+	public void update(Object3D object, double relativePositionOnRay, double x, double y, double z, Color color) {
+		this.hit = true;
+		this.object = object;
+		this.relativePositionOnRay = relativePositionOnRay;
+		this.positionInCamera.setX(x);
+		this.positionInCamera.setY(y);
+		this.positionInCamera.setZ(z);
+		this.color = color;
+		this.primitiveIndex = -1;
+	}
+
+	public ObjectSurfacePoint3D toSurfacePoint() {
+		return new ObjectSurfacePoint3DImpl(getObject(), getPositionInCamera().clone(), getColor(),
+				getPrimitiveIndex());
+	}
+
+	public boolean isHit() {
+		return hit;
+	}
+
+	public double getRelativePositionOnRay() {
+		return relativePositionOnRay;
+	}
+
+	public double getDepth() {
+		return -positionInCamera.getZ();
+	}
+
+	@Override
+	public Object3D getObject() {
+		return object;
+	}
+
+	@Override
+	public Point3D getPositionInCamera() {
+		return positionInCamera;
+	}
+
+	@Override
+	public Color getColor() {
+		return color;
+	}
+
+	@Override
+	public void setColor(Color color) {
+		this.color = color;
+	}
+
+	@Override
+	public int getPrimitiveIndex() {
+		return primitiveIndex;
+	}
+
+	public void setPrimitiveIndex(int primitiveIndex) {
+		this.primitiveIndex = primitiveIndex;
+	}
+
+	public double getDepthLimit() {
+		return depthLimit;
+	}
+
+	public void setDepthLimit(double depthLimit) {
+		this.depthLimit = depthLimit;
+	}
+
+}
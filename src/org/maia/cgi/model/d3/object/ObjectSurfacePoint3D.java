@@ -14,4 +14,11 @@ public interface ObjectSurfacePoint3D {
 
 	void setColor(Color color);
 
+	/**
+	 * Returns the primitive that was hit, for objects made up of several primitives
+	 * 
+	 * @return The index of the primitive within the object, or -1 when not applicable or unknown
+	 */
+	int getPrimitiveIndex();
+
 }
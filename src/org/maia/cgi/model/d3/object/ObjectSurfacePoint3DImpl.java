@@ -12,10 +12,17 @@ public class ObjectSurfacePoint3DImpl implements ObjectSurfacePoint3D {
 
 	private Color color;
 
+	private int primitiveIndex;
+
 	public ObjectSurfacePoint3DImpl(Object3D object, Point3D positionInCamera, Color color) {
+		this(object, positionInCamera, color, -1);
+	}
+
+	public ObjectSurfacePoint3DImpl(Object3D object, Point3D positionInCamera, Color color, int primitiveIndex) {
 		this.object = object;
 		this.positionInCamera = positionInCamera;
 		this.color = color;
+		this.primitiveIndex = primitiveIndex;
 	}
 
 	@Override
@@ -38,4 +45,9 @@ public class ObjectSurfacePoint3DImpl implements ObjectSurfacePoint3D {
 		this.color = color;
 	}
 
+	@Override
+	public int getPrimitiveIndex() {
+		return primitiveIndex;
+	}
+
 }
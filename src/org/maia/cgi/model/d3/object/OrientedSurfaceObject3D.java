@@ -0,0 +1,42 @@
+package org.maia.cgi.model.d3.object;
+
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.camera.Camera;
+
+/**
+ * An object whose surface has a well-defined orientation at every point
+ *
+ * <p>
+ * The orientation is expressed by the <em>surface normal</em>, which shading models use to compute the incidence of
+ * light. For flat objects the normal is the same everywhere, for curved objects it varies with the position on the
+ * surface.
+ * </p>
+ */
+public interface OrientedSurfaceObject3D extends Object3D {
+
+	/**
+	 * Returns the surface normal at a given point on the surface of this object
+	 *
+	 * @param surfacePoint
+	 *            A point on the surface of this object. When it resulted from a hit, it may identify the primitive
+	 *            that was hit
+	 * @param camera
+	 *            The camera
+	 * @return The normal unit vector at <code>surfacePoint</code>, in camera coordinates. The returned vector may be
+	 *         shared and should not be modified by the caller
+	 */
+	Vector3D getSurfaceNormalInCameraCoordinates(ObjectSurfacePoint3D surfacePoint, Camera camera);
+
+	/**
+	 * Tells whether this object can cast a shadow on its own surface
+	 *
+	 * <p>
+	 * This is never the case for a flat object, so a shading model can skip the object itself when tracing a ray from
+	 * its surface to a light source.
+	 * </p>
+	 *
+	 * @return <code>true</code> if this object can obscure its own surface from a light source
+	 */
+	boolean isSelfShadowing();
+
+}
@@ -2,14 +2,12 @@ package org.maia.cgi.model.d3.object;
 
 import java.awt.Color;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
 import org.maia.cgi.Metrics;
-import org.maia.cgi.compose.Compositing;
 import org.maia.cgi.geometry.d2.Point2D;
 import org.maia.cgi.geometry.d2.Polygon2D;
 import org.maia.cgi.geometry.d3.Box3D;
@@ -38,7 +36,7 @@ import org.maia.cgi.render.d3.ReusableObjectPack;
  * </ul>
  * </p>
  */
-public class PolygonalObject3D extends VertexObject3D {
+public class PolygonalObject3D extends VertexObject3D implements OrientedSurfaceObject3D {
 
 	private Plane3D planeCamera; // in camera coordinates
 
@@ -93,61 +91,59 @@ public class PolygonalObject3D extends VertexObject3D {
 	}
 
 	@Override
-	protected void intersectSelfWithRay(LineSegment3D ray, Scene scene, Collection<ObjectSurfacePoint3D> intersections,
+	protected boolean intersectSelfWithRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
 			RenderOptions options, ReusableObjectPack reusableObjects, boolean applyShading, boolean rayFromEye) {
-		ObjectSurfacePoint3D surfacePoint = findSurfacePointHitByRay(ray, scene, intersections, rayFromEye);
-		if (surfacePoint != null) {
-			colorSurfacePointHitByRay(surfacePoint, scene, options, reusableObjects, applyShading);
-			if (surfacePoint.getColor() != null) {
-				intersections.add(surfacePoint);
-			}
-		}
-	}
-
-	protected ObjectSurfacePoint3D findSurfacePointHitByRay(LineSegment3D ray, Scene scene,
-			Collection<ObjectSurfacePoint3D> intersections, boolean rayFromEye) {
-		ObjectSurfacePoint3D surfacePoint = null;
-		Point3D positionInCamera = ray.intersect(getPlaneInCameraCoordinates(scene.getCamera()));
-		if (positionInCamera != null) {
-			// Early out (performance optimalization)
-			boolean earlyOut = false;
-			if (rayFromEye) {
-				ObjectSurfacePoint3D nearestOpaque = getOpaqueIntersectionNearestToEye(intersections);
-				earlyOut = nearestOpaque != null
-						&& nearestOpaque.getPositionInCamera().getZ() > positionInCamera.getZ();
-			}
-			if (!earlyOut) {
-				// Check insideness
-				if (containsPointOnPlane(positionInCamera, scene)) {
-					surfacePoint = new ObjectSurfacePoint3DImpl(this, positionInCamera, null);
-				}
-			}
-		}
-		return surfacePoint;
+		Point3D positionInCamera = reusableObjects.getSurfacePosition();
+		double r = findSurfacePositionHitByRay(ray, scene, hit, rayFromEye, positionInCamera, reusableObjects);
+		if (Double.isNaN(r))
+			return false;
+		Color color = sampleBaseColor(positionInCamera, scene, reusableObjects);
+		if (color == null)
+			return false;
+		hit.update(this, r, positionInCamera, color);
+		colorSurfacePointHitByRay(hit, scene, options, reusableObjects, applyShading);
+		return true;
 	}
 
-	private ObjectSurfacePoint3D getOpaqueIntersectionNearestToEye(Collection<ObjectSurfacePoint3D> intersections) {
-		ObjectSurfacePoint3D nearestOpaque = null;
-		if (!intersections.isEmpty()) {
-			double nearestDepth = 0;
-			for (ObjectSurfacePoint3D intersection : intersections) {
-				double depth = -intersection.getPositionInCamera().getZ();
-				if ((nearestOpaque == null || depth < nearestDepth)
-						&& Compositing.isFullyOpaque(intersection.getColor())) {
-					nearestOpaque = intersection;
-					nearestDepth = depth;
-				}
-			}
-		}
-		return nearestOpaque;
+	/**
+	 * Finds the position on the surface of this polygon that is hit by a ray
+	 * 
+	 * @param ray
+	 *            The ray, in camera coordinates
+	 * @param scene
+	 *            The scene
+	 * @param hit
+	 *            The hit record, for reference only. It must not be updated by this method
+	 * @param rayFromEye
+	 *            <code>true</code> if the ray is from the eye, in which case the hit record's depth limit applies
+	 * @param positionInCamera
+	 *            The point that receives the position of the hit, in camera coordinates
+	 * @param reusableObjects
+	 *            Reusable objects for the current thread
+	 * @return The relative position of the hit on the ray, or <code>Double.NaN</code> when the surface is not hit
+	 */
+	protected double findSurfacePositionHitByRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			boolean rayFromEye, Point3D positionInCamera, ReusableObjectPack reusableObjects) {
+		double r = ray.intersectAtRelativePosition(getPlaneInCameraCoordinates(scene.getCamera()));
+		if (Double.isNaN(r))
+			return r;
+		ray.getPointAtRelativePosition(r, positionInCamera);
+		// Early out (performance optimalization)
+		if (rayFromEye && -positionInCamera.getZ() > hit.getDepthLimit())
+			return Double.NaN;
+		// Check insideness
+		if (!containsPointOnPlane(positionInCamera, scene, reusableObjects))
+			return Double.NaN;
+		return r;
 	}
 
-	protected boolean containsPointOnPlane(Point3D positionInCamera, Scene scene) {
+	protected boolean containsPointOnPlane(Point3D positionInCamera, Scene scene, ReusableObjectPack reusableObjects) {
 		boolean contains = false;
 		if (insideBoundingBox(positionInCamera, scene)) {
 			ProjectionState ps = getProjectionState();
 			ps.setScene(scene);
-			contains = ps.getPolygon().contains(ps.project(positionInCamera)); // inside-test with 2D-projected polygon
+			Point2D projectedPosition = ps.project(positionInCamera, reusableObjects.getProjectedSurfacePosition());
+			contains = ps.getPolygon().contains(projectedPosition); // inside-test with 2D-projected polygon
 			Metrics.getInstance().incrementPointInsidePolygonChecks();
 		}
 		return contains;
@@ -159,29 +155,36 @@ public class PolygonalObject3D extends VertexObject3D {
 				|| bbox.getDepth() <= APPROXIMATE_ZERO) {
 			// For planes perpendicular to a side of the view volume, finite precision computation requires a more
 			// conservative bounding box insideness check
-			double x1 = positionInCamera.getX() - APPROXIMATE_ZERO;
-			double x2 = positionInCamera.getX() + APPROXIMATE_ZERO;
-			double y1 = positionInCamera.getY() - APPROXIMATE_ZERO;
-			double y2 = positionInCamera.getY() + APPROXIMATE_ZERO;
-			double z1 = positionInCamera.getZ() - APPROXIMATE_ZERO;
-			double z2 = positionInCamera.getZ() + APPROXIMATE_ZERO;
-			return bbox.overlaps(new Box3D(x1, x2, y1, y2, z1, z2));
+			double x = positionInCamera.getX();
+			double y = positionInCamera.getY();
+			double z = positionInCamera.getZ();
+			if (x + APPROXIMATE_ZERO <= bbox.getX1() || x - APPROXIMATE_ZERO >= bbox.getX2())
+				return false;
+			if (y + APPROXIMATE_ZERO <= bbox.getY1() || y - APPROXIMATE_ZERO >= bbox.getY2())
+				return false;
+			if (z + APPROXIMATE_ZERO <= bbox.getZ1() || z - APPROXIMATE_ZERO >= bbox.getZ2())
+				return false;
+			return true;
 		}
 		return bbox.contains(positionInCamera);
 	}
 
+	/**
+	 * Colors a surface point that was hit by a ray
+	 * 
+	 * <p>
+	 * When invoked, the surface point holds the base color as obtained from
+	 * {@link #sampleBaseColor(Point3D, Scene, ReusableObjectPack)}
+	 * </p>
+	 */
 	protected void colorSurfacePointHitByRay(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
 			ReusableObjectPack reusableObjects, boolean applyShading) {
-		Color color = sampleBaseColor(surfacePoint.getPositionInCamera(), scene);
-		if (color != null) {
-			surfacePoint.setColor(color);
-			if (applyShading) {
-				applySurfacePointShading(surfacePoint, scene, options, reusableObjects);
-			}
+		if (applyShading) {
+			applySurfacePointShading(surfacePoint, scene, options, reusableObjects);
 		}
 	}
 
-	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene) {
+	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene, ReusableObjectPack reusableObjects) {
 		return Color.BLACK; // Subclasses should override this
 	}
 
@@ -191,34 +194,31 @@ public class PolygonalObject3D extends VertexObject3D {
 	}
 
 	public Plane3D getPlaneInCameraCoordinates(Camera camera) {
+		validateCameraState(camera);
 		if (planeCamera == null) {
 			planeCamera = derivePlaneInCameraCoordinates(camera);
 		}
 		return planeCamera;
 	}
 
-	private Plane3D derivePlaneInCameraCoordinates(Camera camera) {
-		List<Point3D> vertices = getVerticesInCameraCoordinates(camera);
-		return new Plane3D(vertices.get(0), vertices.get(1), vertices.get(2));
+	@Override
+	public Vector3D getSurfaceNormalInCameraCoordinates(ObjectSurfacePoint3D surfacePoint, Camera camera) {
+		return getPlaneInCameraCoordinates(camera).getNormalUnitVector();
 	}
 
 	@Override
-	public void notifySelfHasTransformed() {
-		super.notifySelfHasTransformed();
-		invalidatePlane();
-		invalidateProjectionState();
+	public boolean isSelfShadowing() {
+		return false;
 	}
 
-	@Override
-	public void notifyAncestorHasTransformed() {
-		super.notifyAncestorHasTransformed();
-		invalidatePlane();
-		invalidateProjectionState();
+	private Plane3D derivePlaneInCameraCoordinates(Camera camera) {
+		List<Point3D> vertices = getVerticesInCameraCoordinates(camera);
+		return new Plane3D(vertices.get(0), vertices.get(1), vertices.get(2));
 	}
 
 	@Override
-	public void cameraHasChanged(Camera camera) {
-		super.cameraHasChanged(camera);
+	protected void invalidateCameraState() {
+		super.invalidateCameraState();
 		invalidatePlane();
 		invalidateProjectionState();
 	}
@@ -260,15 +260,24 @@ public class PolygonalObject3D extends VertexObject3D {
 		}
 
 		public Point2D project(Point3D point) {
+			return project(point, new Point2D());
+		}
+
+		public Point2D project(Point3D point, Point2D result) {
 			OrthographicProjection projection = getProjection();
 			if (OrthographicProjection.ONTO_XY_PLANE.equals(projection)) {
-				return new Point2D(point.getX(), point.getY());
+				result.setX(point.getX());
+				result.setY(point.getY());
 			} else if (OrthographicProjection.ONTO_XZ_PLANE.equals(projection)) {
-				return new Point2D(point.getX(), point.getZ());
+				result.setX(point.getX());
+				result.setY(point.getZ());
 			} else if (OrthographicProjection.ONTO_YZ_PLANE.equals(projection)) {
-				return new Point2D(-point.getZ(), point.getY());
+				result.setX(-point.getZ());
+				result.setY(point.getY());
+			} else {
+				return null;
 			}
-			return null;
+			return result;
 		}
 
 		public List<Point2D> project(List<Point3D> points) {
@@ -280,6 +289,7 @@ public class PolygonalObject3D extends VertexObject3D {
 		}
 
 		public OrthographicProjection getProjection() {
+			validateCameraState(getScene().getCamera());
 			if (projection == null) {
 				projection = deriveProjection();
 			}
@@ -299,6 +309,7 @@ public class PolygonalObject3D extends VertexObject3D {
 		}
 
 		public Polygon2D getPolygon() {
+			validateCameraState(getScene().getCamera());
 			if (polygon == null) {
 				polygon = derivePolygon();
 			}
@@ -0,0 +1,304 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.maia.cgi.Metrics;
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.object.Mesh3D.Edge;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d3.RenderOptions;
+import org.maia.cgi.render.d3.ReusableObjectPack;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.transform.d3.TransformMatrix;
+import org.maia.cgi.transform.d3.Transformation;
+
+/**
+ * An object in 3D space whose surface is made up of quadrics and planes, which is hit by rays in closed form
+ *
+ * <p>
+ * The shape of a <em>quadric object</em> is defined in its object coordinates. A ray is transformed into object
+ * coordinates, where its intersection with the shape is solved exactly. Unlike a polygonal model, the shape is not
+ * approximated and this holds for any affine transform of the object, including non-uniform scaling. For the same
+ * reason, the bounding boxes are derived from the exact shape rather than from vertices.
+ * </p>
+ * <p>
+ * The vertices and edges of a <em>quadric object</em> form a <em>wireframe</em> outline of its shape, which serves
+ * prototype rendering only.
+ * </p>
+ * <p>
+ * A solid color applies to the surface, subject to a <code>FlatShadingModel</code>. Since the surface normal varies
+ * with the position on the surface, the shading follows the curvature of the shape.
+ * </p>
+ *
+ * @see FlatShadingModel
+ */
+public abstract class QuadricObject3D extends VertexObject3D implements OrientedSurfaceObject3D, ShadedObject3D {
+
+	private Color color;
+
+	private FlatShadingModel shadingModel;
+
+	private static final double MINIMUM_LIGHT_RAY_DISTANCE = 0.001;
+
+	protected QuadricObject3D(Mesh3D wireframe, Color color, FlatShadingModel shadingModel) {
+		super(wireframe.getVertices(), wireframe.getEdges());
+		this.color = color;
+		this.shadingModel = shadingModel;
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInObjectCoordinates() {
+		return deriveBoundingBox(Transformation.getIdentityMatrix());
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInWorldCoordinates() {
+		return deriveBoundingBox(getSelfToRootCompositeTransform().getForwardCompositeMatrix());
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInCameraCoordinates(Camera camera) {
+		return deriveBoundingBox(
+				camera.getViewingMatrix().preMultiply(getSelfToRootCompositeTransform().getForwardCompositeMatrix()));
+	}
+
+	@Override
+	protected Box3D deriveBoundingBoxInViewVolumeCoordinates(Camera camera) {
+		TransformMatrix projectionMatrix = camera.getViewVolume().getProjectionMatrix();
+		List<Point3D> corners = projectionMatrix.transform(getBoundingBoxInCameraCoordinates(camera).getVertices());
+		Box3D bbox = null;
+		for (Point3D corner : corners) {
+			if (camera.getViewVolume().isPerspectiveProjection()) {
+				corner.normalizeToUnitW();
+			}
+			if (bbox == null) {
+				bbox = new Box3D(corner.getX(), corner.getX(), corner.getY(), corner.getY(), corner.getZ(),
+						corner.getZ());
+			} else {
+				bbox.expandToContain(corner);
+			}
+		}
+		return bbox;
+	}
+
+	/**
+	 * Derives the exact bounding box of the shape under an affine transform
+	 *
+	 * @param objectToFrame
+	 *            The affine transform from object coordinates to the coordinate frame of the bounding box
+	 * @return The bounding box in the coordinate frame
+	 */
+	protected abstract Box3D deriveBoundingBox(TransformMatrix objectToFrame);
+
+	@Override
+	protected boolean intersectSelfWithRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			RenderOptions options, ReusableObjectPack reusableObjects, boolean applyShading, boolean rayFromEye) {
+		Metrics.getInstance().incrementLineWithQuadricIntersections();
+		double[] m = getCameraToObjectTransform(scene.getCamera());
+		Point3D p1 = ray.getP1();
+		Point3D p2 = ray.getP2();
+		double x = p1.getX();
+		double y = p1.getY();
+		double z = p1.getZ();
+		double vx = p2.getX() - x;
+		double vy = p2.getY() - y;
+		double vz = p2.getZ() - z;
+		double ox = m[0] * x + m[1] * y + m[2] * z + m[3];
+		double oy = m[4] * x + m[5] * y + m[6] * z + m[7];
+		double oz = m[8] * x + m[9] * y + m[10] * z + m[11];
+		double dx = m[0] * vx + m[1] * vy + m[2] * vz;
+		double dy = m[4] * vx + m[5] * vy + m[6] * vz;
+		double dz = m[8] * vx + m[9] * vy + m[10] * vz;
+		double minimumR = ray.isClosedAtP1() ? 0 : Double.NEGATIVE_INFINITY;
+		if (!rayFromEye) {
+			// Avoid a light ray hitting the surface position it originates from
+			minimumR = Math.max(minimumR, MINIMUM_LIGHT_RAY_DISTANCE / Math.sqrt(vx * vx + vy * vy + vz * vz));
+		}
+		double r = findNearestHitInObjectCoordinates(ox, oy, oz, dx, dy, dz, minimumR);
+		if (Double.isInfinite(r) || !ray.containsPointAtRelativePosition(r))
+			return false;
+		Point3D positionInCamera = reusableObjects.getSurfacePosition();
+		ray.getPointAtRelativePosition(r, positionInCamera);
+		if (rayFromEye && -positionInCamera.getZ() > hit.getDepthLimit())
+			return false;
+		hit.update(this, r, positionInCamera, getColor());
+		if (applyShading) {
+			getShadingModel().applyShading(hit, scene, options, reusableObjects);
+		}
+		return true;
+	}
+
+	@Override
+	public void applyDeferredShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects) {
+		getShadingModel().applyShading(surfacePoint, scene, options, reusableObjects);
+	}
+
+	/**
+	 * Finds the nearest hit of a ray with the shape, in object coordinates
+	 *
+	 * <p>
+	 * The ray is given by its origin <em>o</em> and direction <em>d</em>, such that the point at relative position
+	 * <em>r</em> equals <em>o</em> + <em>r</em> * <em>d</em>
+	 * </p>
+	 *
+	 * @return The smallest relative position of a hit that is not less than <code>minimumR</code>, or
+	 *         <code>Double.POSITIVE_INFINITY</code> when there is no such hit
+	 */
+	protected abstract double findNearestHitInObjectCoordinates(double ox, double oy, double oz, double dx, double dy,
+			double dz, double minimumR);
+
+	@Override
+	public Vector3D getSurfaceNormalInCameraCoordinates(ObjectSurfacePoint3D surfacePoint, Camera camera) {
+		Point3D positionInCamera = surfacePoint.getPositionInCamera();
+		double[] m = getCameraToObjectTransform(camera);
+		double x = positionInCamera.getX();
+		double y = positionInCamera.getY();
+		double z = positionInCamera.getZ();
+		double ox = m[0] * x + m[1] * y + m[2] * z + m[3];
+		double oy = m[4] * x + m[5] * y + m[6] * z + m[7];
+		double oz = m[8] * x + m[9] * y + m[10] * z + m[11];
+		Vector3D normal = getSurfaceNormalInObjectCoordinates(ox, oy, oz);
+		// Normals transform by the transpose of the inverse transform
+		double nx = normal.getX();
+		double ny = normal.getY();
+		double nz = normal.getZ();
+		normal.setX(m[0] * nx + m[4] * ny + m[8] * nz);
+		normal.setY(m[1] * nx + m[5] * ny + m[9] * nz);
+		normal.setZ(m[2] * nx + m[6] * ny + m[10] * nz);
+		normal.makeUnitVector();
+		return normal;
+	}
+
+	/**
+	 * Returns the outward surface normal of the shape, in object coordinates
+	 *
+	 * @return A new vector along the normal at the given position on the surface, not necessarily of unit length
+	 */
+	protected abstract Vector3D getSurfaceNormalInObjectCoordinates(double x, double y, double z);
+
+	@Override
+	public boolean isSelfShadowing() {
+		return true;
+	}
+
+	protected static double nearestHitOnSphere(double ox, double oy, double oz, double dx, double dy, double dz,
+			double radius, double minimumR) {
+		double a = dx * dx + dy * dy + dz * dz;
+		double b = ox * dx + oy * dy + oz * dz;
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - a * c;
+		if (a == 0 || discriminant < 0)
+			return Double.POSITIVE_INFINITY;
+		double sqrt = Math.sqrt(discriminant);
+		double r1 = (-b - sqrt) / a;
+		if (r1 >= minimumR)
+			return r1;
+		double r2 = (-b + sqrt) / a;
+		if (r2 >= minimumR)
+			return r2;
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Finds the nearest hit with the hull of a cylinder along the Z axis, ranging from <em>z</em>=0 to
+	 * <em>z</em>=<code>depth</code>
+	 */
+	protected static double nearestHitOnCylindricalHull(double ox, double oy, double oz, double dx, double dy,
+			double dz, double radius, double depth, double minimumR) {
+		double a = dx * dx + dy * dy;
+		double b = ox * dx + oy * dy;
+		double c = ox * ox + oy * oy - radius * radius;
+		double discriminant = b * b - a * c;
+		if (a == 0 || discriminant < 0)
+			return Double.POSITIVE_INFINITY;
+		double sqrt = Math.sqrt(discriminant);
+		double r1 = (-b - sqrt) / a;
+		if (r1 >= minimumR) {
+			double z = oz + r1 * dz;
+			if (z >= 0 && z <= depth)
+				return r1;
+		}
+		double r2 = (-b + sqrt) / a;
+		if (r2 >= minimumR) {
+			double z = oz + r2 * dz;
+			if (z >= 0 && z <= depth)
+				return r2;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Finds the hit with an annulus centered on the Z axis, parallel to the XY plane at height <code>z</code>
+	 */
+	protected static double nearestHitOnAnnulus(double ox, double oy, double oz, double dx, double dy, double dz,
+			double z, double innerRadius, double outerRadius, double minimumR) {
+		if (dz == 0)
+			return Double.POSITIVE_INFINITY;
+		double r = (z - oz) / dz;
+		if (r < minimumR)
+			return Double.POSITIVE_INFINITY;
+		double x = ox + r * dx;
+		double y = oy + r * dy;
+		double squareDistance = x * x + y * y;
+		if (squareDistance < innerRadius * innerRadius || squareDistance > outerRadius * outerRadius)
+			return Double.POSITIVE_INFINITY;
+		return r;
+	}
+
+	/**
+	 * Derives the bounding box of a cylinder along the Z axis under an affine transform
+	 */
+	protected static Box3D deriveCylinderBoundingBox(TransformMatrix objectToFrame, double radius, double depth) {
+		Box3D bbox = null;
+		for (int i = 0; i < 2; i++) {
+			double z = i * depth;
+			// Each end of the cylinder is an ellipse in the frame, whose extent follows from the X and Y axes
+			double cx = objectToFrame.getValue(0, 2) * z + objectToFrame.getValue(0, 3);
+			double cy = objectToFrame.getValue(1, 2) * z + objectToFrame.getValue(1, 3);
+			double cz = objectToFrame.getValue(2, 2) * z + objectToFrame.getValue(2, 3);
+			double ex = radius * Math.hypot(objectToFrame.getValue(0, 0), objectToFrame.getValue(0, 1));
+			double ey = radius * Math.hypot(objectToFrame.getValue(1, 0), objectToFrame.getValue(1, 1));
+			double ez = radius * Math.hypot(objectToFrame.getValue(2, 0), objectToFrame.getValue(2, 1));
+			Box3D endBox = new Box3D(cx - ex, cx + ex, cy - ey, cy + ey, cz - ez, cz + ez);
+			if (bbox == null) {
+				bbox = endBox;
+			} else {
+				bbox.expandToContain(endBox);
+			}
+		}
+		return bbox;
+	}
+
+	protected static void addWireframeCircle(List<Point3D> vertices, List<Edge> edges, double radius, double z,
+			int vertexCount) {
+		int offset = vertices.size();
+		for (int i = 0; i < vertexCount; i++) {
+			double angle = 2.0 * Math.PI * i / vertexCount;
+			vertices.add(new Point3D(radius * Math.cos(angle), radius * Math.sin(angle), z));
+			edges.add(new Mesh3DImpl.EdgeImpl(offset + i, offset + (i + 1) % vertexCount));
+		}
+	}
+
+	protected static void addWireframeLine(List<Point3D> vertices, List<Edge> edges, Point3D from, Point3D to) {
+		int offset = vertices.size();
+		vertices.add(from);
+		vertices.add(to);
+		edges.add(new Mesh3DImpl.EdgeImpl(offset, offset + 1));
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	@Override
+	public FlatShadingModel getShadingModel() {
+		return shadingModel;
+	}
+
+}
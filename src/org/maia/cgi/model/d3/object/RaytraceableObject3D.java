@@ -15,4 +15,49 @@ public interface RaytraceableObject3D extends Object3D {
 	void intersectWithLightRay(LineSegment3D ray, Scene scene, Collection<ObjectSurfacePoint3D> intersections,
 			ReusableObjectPack reusableObjects);
 
-}
\ No newline at end of file
+	/**
+	 * Intersects this object with a ray from the eye, without creating any objects
+	 * 
+	 * <p>
+	 * A hit is only reported when it lies within the hit record's depth limit. In that case, the hit record is
+	 * overwritten with the hit. Otherwise the hit record is left untouched. When several parts of this object are hit,
+	 * the hit nearest to the eye is reported.
+	 * </p>
+	 * 
+	 * @param ray
+	 *            The ray from the eye, in camera coordinates
+	 * @param scene
+	 *            The scene
+	 * @param hit
+	 *            The caller-owned record that receives the hit
+	 * @param options
+	 *            The render options
+	 * @param reusableObjects
+	 *            Reusable objects for the current thread
+	 * @return <code>true</code> if this object was hit, in which case <code>hit</code> was updated
+	 */
+	boolean intersectWithEyeRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit, RenderOptions options,
+			ReusableObjectPack reusableObjects);
+
+	/**
+	 * Intersects this object with a ray to a light source, without creating any objects
+	 * 
+	 * <p>
+	 * When this object was hit, the hit record is overwritten with the hit. Otherwise the hit record is left
+	 * untouched. When several parts of this object are hit, any one of them may be reported.
+	 * </p>
+	 * 
+	 * @param ray
+	 *            The ray to the light source, in camera coordinates
+	 * @param scene
+	 *            The scene
+	 * @param hit
+	 *            The caller-owned record that receives the hit
+	 * @param reusableObjects
+	 *            Reusable objects for the current thread
+	 * @return <code>true</code> if this object was hit, in which case <code>hit</code> was updated
+	 */
+	boolean intersectWithLightRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			ReusableObjectPack reusableObjects);
+
+}
@@ -0,0 +1,112 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.object.Mesh3D.Edge;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * A solid ring along the Z axis of its object coordinates, ranging from <em>z</em>=0 to <em>z</em>=depth
+ *
+ * <p>
+ * The ring is a hollow cylinder, bounded by an outer and an inner hull and closed at both ends by an annulus. It has
+ * the same geometry as a ring built by <code>ModelBuilderUtils.buildRing</code>, without the polygonal approximation.
+ * </p>
+ */
+public class RingObject3D extends QuadricObject3D {
+
+	private double innerRadius;
+
+	private double outerRadius;
+
+	private double depth;
+
+	private static final int WIREFRAME_VERTEX_COUNT = 24;
+
+	public RingObject3D(double innerRadius, double outerRadius, double depth, Color color,
+			FlatShadingModel shadingModel) {
+		super(buildWireframe(innerRadius, outerRadius, depth), color, shadingModel);
+		if (innerRadius >= outerRadius)
+			throw new IllegalArgumentException(
+					"Inner radius is not less than the outer radius: " + innerRadius + " >= " + outerRadius);
+		this.innerRadius = innerRadius;
+		this.outerRadius = outerRadius;
+		this.depth = depth;
+	}
+
+	private static Mesh3D buildWireframe(double innerRadius, double outerRadius, double depth) {
+		List<Point3D> vertices = new Vector<Point3D>();
+		List<Edge> edges = new Vector<Edge>();
+		int n = WIREFRAME_VERTEX_COUNT;
+		addWireframeCircle(vertices, edges, outerRadius, 0, n);
+		addWireframeCircle(vertices, edges, outerRadius, depth, n);
+		addWireframeCircle(vertices, edges, innerRadius, 0, n);
+		addWireframeCircle(vertices, edges, innerRadius, depth, n);
+		for (int i = 0; i < n; i += 3) {
+			double cos = Math.cos(2.0 * Math.PI * i / n);
+			double sin = Math.sin(2.0 * Math.PI * i / n);
+			addWireframeLine(vertices, edges, new Point3D(outerRadius * cos, outerRadius * sin, 0),
+					new Point3D(outerRadius * cos, outerRadius * sin, depth));
+			addWireframeLine(vertices, edges, new Point3D(innerRadius * cos, innerRadius * sin, 0),
+					new Point3D(innerRadius * cos, innerRadius * sin, depth));
+		}
+		return new Mesh3DImpl(vertices, edges);
+	}
+
+	@Override
+	protected Box3D deriveBoundingBox(TransformMatrix objectToFrame) {
+		return deriveCylinderBoundingBox(objectToFrame, getOuterRadius(), getDepth());
+	}
+
+	@Override
+	protected double findNearestHitInObjectCoordinates(double ox, double oy, double oz, double dx, double dy,
+			double dz, double minimumR) {
+		double r = nearestHitOnCylindricalHull(ox, oy, oz, dx, dy, dz, getOuterRadius(), getDepth(), minimumR);
+		r = Math.min(r, nearestHitOnCylindricalHull(ox, oy, oz, dx, dy, dz, getInnerRadius(), getDepth(), minimumR));
+		r = Math.min(r, nearestHitOnAnnulus(ox, oy, oz, dx, dy, dz, 0, getInnerRadius(), getOuterRadius(), minimumR));
+		r = Math.min(r,
+				nearestHitOnAnnulus(ox, oy, oz, dx, dy, dz, getDepth(), getInnerRadius(), getOuterRadius(), minimumR));
+		return r;
+	}
+
+	@Override
+	protected Vector3D getSurfaceNormalInObjectCoordinates(double x, double y, double z) {
+		// Normal of the nearest surface, being either hull or either end
+		double distanceToAxis = Math.sqrt(x * x + y * y);
+		double outerDistance = Math.abs(distanceToAxis - getOuterRadius());
+		double innerDistance = Math.abs(distanceToAxis - getInnerRadius());
+		double backDistance = Math.abs(z);
+		double frontDistance = Math.abs(z - getDepth());
+		double hullDistance = Math.min(outerDistance, innerDistance);
+		if (hullDistance <= backDistance && hullDistance <= frontDistance) {
+			if (outerDistance <= innerDistance) {
+				return new Vector3D(x, y, 0);
+			} else {
+				return new Vector3D(-x, -y, 0);
+			}
+		} else if (backDistance <= frontDistance) {
+			return new Vector3D(0, 0, -1.0);
+		} else {
+			return new Vector3D(0, 0, 1.0);
+		}
+	}
+
+	public double getInnerRadius() {
+		return innerRadius;
+	}
+
+	public double getOuterRadius() {
+		return outerRadius;
+	}
+
+	public double getDepth() {
+		return depth;
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.maia.cgi.model.d3.object;
+
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d3.RenderOptions;
+import org.maia.cgi.render.d3.ReusableObjectPack;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+
+/**
+ * An object whose surface color is subject to a shading model
+ *
+ * <p>
+ * Normally, the surface point hit by a ray from the eye is shaded as part of the intersection. When the
+ * <code>ReusableObjectPack</code> of the current thread has its shading deferred, the hit carries the unshaded color
+ * instead, and the renderer completes the shading later on by {@link #applyDeferredShading}. Either way results in
+ * the same color.
+ * </p>
+ *
+ * @see ReusableObjectPack#isShadingDeferred()
+ */
+public interface ShadedObject3D extends Object3D {
+
+	FlatShadingModel getShadingModel();
+
+	/**
+	 * Applies the shading to a point on the surface of this object that was hit by a ray from the eye while shading was
+	 * deferred
+	 *
+	 * @param surfacePoint
+	 *            The point that was hit, holding the unshaded color. On return, it holds the shaded color
+	 * @param scene
+	 *            The scene
+	 * @param options
+	 *            The render options
+	 * @param reusableObjects
+	 *            Reusable objects for the current thread
+	 */
+	void applyDeferredShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects);
+
+}
@@ -0,0 +1,392 @@
+package org.maia.cgi.model.d3.object;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.object.Mesh3D.Edge;
+
+/**
+ * An immutable definition of polygonal geometry that is shared by any number of instances
+ *
+ * <p>
+ * A <em>shared geometry</em> holds its vertices, edges and triangles in its own coordinates, which become the object
+ * coordinates of every {@link GeometryInstance3D} that refers to it. The vertices are unique and the triangles are
+ * indexed by a <code>BoundingVolumeHierarchy</code>, both of which are built only once. An instance merely adds a
+ * transform and a material, so that repeating a model many times across a scene costs little more memory than a
+ * single copy.
+ * </p>
+ * <p>
+ * A shared geometry is safe for use by multiple threads
+ * </p>
+ *
+ * @see GeometryInstance3D
+ */
+public class SharedGeometry3D {
+
+	private List<Point3D> vertices;
+
+	private List<Edge> edges;
+
+	private Mesh3D mesh; // shared by all instances
+
+	private double[] triangles; // per triangle v0, e1 = v1 - v0, e2 = v2 - v0
+
+	private double[] triangleNormals; // per triangle the unit normal
+
+	private int triangleCount;
+
+	private Box3D boundingBox;
+
+	private BoundingVolumeHierarchy<Integer> triangleHierarchy;
+
+	/**
+	 * Creates a shared geometry from the polygons of a prototype object
+	 *
+	 * <p>
+	 * All <code>PolygonalObject3D</code>s within the prototype are taken, expressed in world coordinates. The prototype
+	 * itself is left unchanged and is not referred to by the shared geometry.
+	 * </p>
+	 *
+	 * @param prototype
+	 *            The prototype object, typically not part of any scene
+	 * @return The shared geometry
+	 */
+	public static SharedGeometry3D createFromObject(Object3D prototype) {
+		List<PolygonalObject3D> polygons = new Vector<PolygonalObject3D>();
+		collectPolygons(prototype, polygons);
+		return new SharedGeometry3D(polygons);
+	}
+
+	private static void collectPolygons(Object3D object, List<PolygonalObject3D> polygons) {
+		if (object.isComposite()) {
+			for (Object3D part : object.asCompositeObject().getParts()) {
+				collectPolygons(part, polygons);
+			}
+		} else if (object instanceof PolygonalObject3D) {
+			polygons.add((PolygonalObject3D) object);
+		}
+	}
+
+	public SharedGeometry3D(List<PolygonalObject3D> polygons) {
+		Map<Point3D, Integer> vertexIndices = new HashMap<Point3D, Integer>();
+		Set<Long> edgeKeys = new HashSet<Long>();
+		List<Point3D> uniqueVertices = new Vector<Point3D>();
+		List<Edge> uniqueEdges = new Vector<Edge>();
+		List<int[]> allTriangles = new Vector<int[]>();
+		for (PolygonalObject3D polygon : polygons) {
+			List<Point3D> polygonVertices = polygon.getVerticesInWorldCoordinates();
+			int n = polygonVertices.size();
+			int[] indices = new int[n];
+			for (int i = 0; i < n; i++) {
+				Point3D vertex = polygonVertices.get(i);
+				Integer index = vertexIndices.get(vertex);
+				if (index == null) {
+					index = uniqueVertices.size();
+					Point3D copy = vertex.clone();
+					uniqueVertices.add(copy);
+					vertexIndices.put(copy, index);
+				}
+				indices[i] = index.intValue();
+			}
+			boolean convex = polygon instanceof ConvexPolygonalObject3D;
+			addPolygon(polygonVertices, indices, convex, edgeKeys, uniqueEdges, allTriangles);
+		}
+		this.vertices = Collections.unmodifiableList(uniqueVertices);
+		this.edges = Collections.unmodifiableList(uniqueEdges);
+		this.mesh = new Mesh3DImpl(this.vertices, this.edges);
+		buildTriangles(allTriangles);
+		buildBoundingBox();
+		buildTriangleHierarchy();
+	}
+
+	/**
+	 * Creates a shared geometry from indexed polygons
+	 *
+	 * <p>
+	 * This avoids creating a <code>PolygonalObject3D</code> for every polygon, which matters for large meshes that are
+	 * imported from a file. The polygons need not be convex.
+	 * </p>
+	 *
+	 * @param vertices
+	 *            The unique vertices, in the coordinates of this geometry. The list is taken over by this geometry.
+	 * @param polygonVertexIndices
+	 *            The indices of the vertices of all polygons, one polygon after the other
+	 * @param polygonOffsets
+	 *            The offset of every polygon in <code>polygonVertexIndices</code>, followed by the total number of
+	 *            indices, so that polygon <em>i</em> spans the offsets <code>polygonOffsets[i]</code> up to
+	 *            <code>polygonOffsets[i+1]</code>
+	 * @param polygonCount
+	 *            The number of polygons
+	 */
+	public SharedGeometry3D(List<Point3D> vertices, int[] polygonVertexIndices, int[] polygonOffsets,
+			int polygonCount) {
+		Set<Long> edgeKeys = new HashSet<Long>();
+		List<Edge> uniqueEdges = new Vector<Edge>();
+		List<int[]> allTriangles = new Vector<int[]>(polygonCount);
+		List<Point3D> polygonVertices = new Vector<Point3D>();
+		for (int p = 0; p < polygonCount; p++) {
+			int[] indices = Arrays.copyOfRange(polygonVertexIndices, polygonOffsets[p], polygonOffsets[p + 1]);
+			polygonVertices.clear();
+			for (int i = 0; i < indices.length; i++) {
+				polygonVertices.add(vertices.get(indices[i]));
+			}
+			addPolygon(polygonVertices, indices, indices.length == 3, edgeKeys, uniqueEdges, allTriangles);
+		}
+		this.vertices = Collections.unmodifiableList(vertices);
+		this.edges = Collections.unmodifiableList(uniqueEdges);
+		this.mesh = new Mesh3DImpl(this.vertices, this.edges);
+		buildTriangles(allTriangles);
+		buildBoundingBox();
+		buildTriangleHierarchy();
+	}
+
+	private static void addPolygon(List<Point3D> polygonVertices, int[] indices, boolean convex, Set<Long> edgeKeys,
+			List<Edge> uniqueEdges, List<int[]> allTriangles) {
+		int n = indices.length;
+		for (int i = 0; i < n; i++) {
+			int a = indices[i];
+			int b = indices[(i + 1) % n];
+			if (a != b && edgeKeys.add(getEdgeKey(a, b))) {
+				uniqueEdges.add(new Mesh3DImpl.EdgeImpl(a, b));
+			}
+		}
+		for (int[] t : TriangulationUtils.triangulate(polygonVertices, convex)) {
+			allTriangles.add(new int[] { indices[t[0]], indices[t[1]], indices[t[2]] });
+		}
+	}
+
+	private static long getEdgeKey(int a, int b) {
+		return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+	}
+
+	private void buildTriangles(List<int[]> allTriangles) {
+		this.triangles = new double[allTriangles.size() * 9];
+		this.triangleNormals = new double[allTriangles.size() * 3];
+		int count = 0;
+		for (int[] t : allTriangles) {
+			Point3D v0 = vertices.get(t[0]);
+			Point3D v1 = vertices.get(t[1]);
+			Point3D v2 = vertices.get(t[2]);
+			double e1x = v1.getX() - v0.getX();
+			double e1y = v1.getY() - v0.getY();
+			double e1z = v1.getZ() - v0.getZ();
+			double e2x = v2.getX() - v0.getX();
+			double e2y = v2.getY() - v0.getY();
+			double e2z = v2.getZ() - v0.getZ();
+			double nx = e1y * e2z - e1z * e2y;
+			double ny = e1z * e2x - e1x * e2z;
+			double nz = e1x * e2y - e1y * e2x;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length == 0)
+				continue; // degenerate triangle, can never be hit
+			int b = count * 9;
+			triangles[b] = v0.getX();
+			triangles[b + 1] = v0.getY();
+			triangles[b + 2] = v0.getZ();
+			triangles[b + 3] = e1x;
+			triangles[b + 4] = e1y;
+			triangles[b + 5] = e1z;
+			triangles[b + 6] = e2x;
+			triangles[b + 7] = e2y;
+			triangles[b + 8] = e2z;
+			triangleNormals[count * 3] = nx / length;
+			triangleNormals[count * 3 + 1] = ny / length;
+			triangleNormals[count * 3 + 2] = nz / length;
+			count++;
+		}
+		this.triangleCount = count;
+	}
+
+	private void buildBoundingBox() {
+		Box3D bbox = null;
+		for (Point3D vertex : vertices) {
+			if (bbox == null) {
+				bbox = new Box3D(vertex.getX(), vertex.getX(), vertex.getY(), vertex.getY(), vertex.getZ(),
+						vertex.getZ());
+			} else {
+				bbox.expandToContain(vertex);
+			}
+		}
+		this.boundingBox = bbox != null ? bbox : new Box3D(0, 0, 0, 0, 0, 0);
+	}
+
+	private void buildTriangleHierarchy() {
+		List<Integer> indices = new Vector<Integer>(triangleCount);
+		List<Box3D> boxes = new Vector<Box3D>(triangleCount);
+		for (int i = 0; i < triangleCount; i++) {
+			int b = i * 9;
+			double x = triangles[b];
+			double y = triangles[b + 1];
+			double z = triangles[b + 2];
+			Box3D box = new Box3D(x, x, y, y, z, z);
+			box.expandToContain(new Point3D(x + triangles[b + 3], y + triangles[b + 4], z + triangles[b + 5]));
+			box.expandToContain(new Point3D(x + triangles[b + 6], y + triangles[b + 7], z + triangles[b + 8]));
+			indices.add(i);
+			boxes.add(box);
+		}
+		this.triangleHierarchy = new BoundingVolumeHierarchy<Integer>(indices, boxes);
+	}
+
+	/**
+	 * Intersects a ray with a triangle of this geometry
+	 *
+	 * <p>
+	 * The ray is given by its origin <em>o</em> and direction <em>d</em>, such that the point at relative position
+	 * <em>r</em> equals <em>o</em> + <em>r</em> * <em>d</em>
+	 * </p>
+	 *
+	 * @param triangleIndex
+	 *            The index of the triangle
+	 * @return The relative position of the hit, or <code>Double.NaN</code> when the ray misses the triangle
+	 */
+	public double intersectTriangle(int triangleIndex, double ox, double oy, double oz, double dx, double dy,
+			double dz) {
+		double[] tri = triangles;
+		int b = triangleIndex * 9;
+		// p = d x e2
+		double px = dy * tri[b + 8] - dz * tri[b + 7];
+		double py = dz * tri[b + 6] - dx * tri[b + 8];
+		double pz = dx * tri[b + 7] - dy * tri[b + 6];
+		double det = tri[b + 3] * px + tri[b + 4] * py + tri[b + 5] * pz;
+		if (det == 0)
+			return Double.NaN; // ray is parallel to the triangle
+		double inv = 1.0 / det;
+		// s = o - v0
+		double sx = ox - tri[b];
+		double sy = oy - tri[b + 1];
+		double sz = oz - tri[b + 2];
+		double u = (sx * px + sy * py + sz * pz) * inv;
+		if (u < 0 || u > 1.0)
+			return Double.NaN;
+		// q = s x e1
+		double qx = sy * tri[b + 5] - sz * tri[b + 4];
+		double qy = sz * tri[b + 3] - sx * tri[b + 5];
+		double qz = sx * tri[b + 4] - sy * tri[b + 3];
+		double v = (dx * qx + dy * qy + dz * qz) * inv;
+		if (v < 0 || u + v > 1.0)
+			return Double.NaN;
+		return (tri[b + 6] * qx + tri[b + 7] * qy + tri[b + 8] * qz) * inv;
+	}
+
+	/**
+	 * Returns the vertices of a triangle of this geometry
+	 *
+	 * @param triangleIndex
+	 *            The index of the triangle
+	 * @param coordinates
+	 *            The array that receives the x, y and z coordinates of the three vertices in turn, in the coordinates
+	 *            of this geometry
+	 */
+	public void getTriangleVertices(int triangleIndex, double[] coordinates) {
+		double[] tri = triangles;
+		int b = triangleIndex * 9;
+		for (int i = 0; i < 3; i++) {
+			coordinates[i] = tri[b + i];
+			coordinates[3 + i] = tri[b + i] + tri[b + 3 + i]; // v1 = v0 + e1
+			coordinates[6 + i] = tri[b + i] + tri[b + 6 + i]; // v2 = v0 + e2
+		}
+	}
+
+	/**
+	 * Returns the unit normal of a triangle of this geometry
+	 *
+	 * @param triangleIndex
+	 *            The index of the triangle
+	 * @return A new vector along the normal, in the coordinates of this geometry
+	 */
+	public Vector3D getTriangleNormal(int triangleIndex) {
+		int b = triangleIndex * 3;
+		return new Vector3D(triangleNormals[b], triangleNormals[b + 1], triangleNormals[b + 2]);
+	}
+
+	/**
+	 * Finds the triangle that lies nearest to a given point
+	 *
+	 * <p>
+	 * This is a linear search over all triangles, meant for points that are known to lie on the surface but for which
+	 * the triangle is not known from a hit
+	 * </p>
+	 *
+	 * @return The index of the nearest triangle, or -1 when this geometry has no triangles
+	 */
+	public int findTriangleNearestTo(double x, double y, double z) {
+		int nearest = -1;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < triangleCount; i++) {
+			int b = i * 9;
+			double sx = x - triangles[b];
+			double sy = y - triangles[b + 1];
+			double sz = z - triangles[b + 2];
+			// Distance to the triangle's plane, with a penalty for lying outside the triangle
+			double distance = Math.abs(sx * triangleNormals[i * 3] + sy * triangleNormals[i * 3 + 1]
+					+ sz * triangleNormals[i * 3 + 2]);
+			if (Double.isNaN(intersectTriangle(i, x, y, z, triangleNormals[i * 3], triangleNormals[i * 3 + 1],
+					triangleNormals[i * 3 + 2]))) {
+				distance += Math.sqrt(sx * sx + sy * sy + sz * sz);
+			}
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Returns the unique vertices of this geometry
+	 *
+	 * @return An unmodifiable list of vertices, in the coordinates of this geometry
+	 */
+	public List<Point3D> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the unique edges of this geometry
+	 *
+	 * @return An unmodifiable list of edges between the vertices
+	 */
+	public List<Edge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Returns the mesh of this geometry, which all its instances share as their mesh in object coordinates
+	 *
+	 * @return The mesh of the vertices and edges
+	 */
+	public Mesh3D getMesh() {
+		return mesh;
+	}
+
+	public int getVertexCount() {
+		return vertices.size();
+	}
+
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Returns the bounding box of this geometry
+	 *
+	 * @return A new box, in the coordinates of this geometry
+	 */
+	public Box3D getBoundingBox() {
+		return boundingBox.clone();
+	}
+
+	BoundingVolumeHierarchy<Integer> getTriangleHierarchy() {
+		return triangleHierarchy;
+	}
+
+}
@@ -26,7 +26,7 @@ import org.maia.cgi.render.d3.shading.FlatShadingModel;
  * 
  * @see FlatShadingModel
  */
-public class SimpleFace3D extends ConvexPolygonalObject3D {
+public class SimpleFace3D extends ConvexPolygonalObject3D implements ShadedObject3D {
 
 	private Color frontColor;
 
@@ -54,7 +54,7 @@ public class SimpleFace3D extends ConvexPolygonalObject3D {
 	}
 
 	@Override
-	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene) {
+	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene, ReusableObjectPack reusableObjects) {
 		return isFrontFacingInCamera(scene) ? getFrontColor() : getBackColor();
 	}
 
@@ -68,6 +68,12 @@ public class SimpleFace3D extends ConvexPolygonalObject3D {
 		getShadingModel().applyShading(surfacePoint, scene, options, reusableObjects);
 	}
 
+	@Override
+	public void applyDeferredShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects) {
+		applySurfacePointShading(surfacePoint, scene, options, reusableObjects);
+	}
+
 	public Color getFrontColor() {
 		return frontColor;
 	}
@@ -76,6 +82,7 @@ public class SimpleFace3D extends ConvexPolygonalObject3D {
 		return backColor;
 	}
 
+	@Override
 	public FlatShadingModel getShadingModel() {
 		return shadingModel;
 	}
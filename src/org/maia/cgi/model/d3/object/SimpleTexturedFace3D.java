@@ -9,6 +9,7 @@ import org.maia.cgi.geometry.d2.Rectangle2D;
 import org.maia.cgi.geometry.d3.Point3D;
 import org.maia.cgi.model.d3.camera.Camera;
 import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d2.ImageMask;
 import org.maia.cgi.render.d2.Mask;
 import org.maia.cgi.render.d2.TextureMap;
 import org.maia.cgi.render.d2.TextureMapHandle;
@@ -22,6 +23,8 @@ import org.maia.cgi.transform.d3.TwoWayCompositeTransform;
 
 public class SimpleTexturedFace3D extends SimpleFace3D {
 
+	private PictureRegion pictureRegion;
+
 	private TransformMatrix objectToPictureTransformMatrix;
 
 	private TransformMatrix pictureToObjectTransformMatrix;
@@ -34,9 +37,23 @@ public class SimpleTexturedFace3D extends SimpleFace3D {
 
 	private Mask pictureMask;
 
-	private Point3D positionInCamera; // cached from last transformation
+	private double[] cameraToPictureTransform; // cached affine transform, X and Z rows only
+
+	private byte pictureMaskCoverage = MASK_COVERAGE_UNKNOWN;
+
+	private static final byte MASK_COVERAGE_UNKNOWN = 0;
+
+	private static final byte MASK_COVERS_NONE = 1;
+
+	private static final byte MASK_COVERS_PART = 2;
+
+	private static final byte MASK_COVERS_ALL = 3;
+
+	private volatile ResolvedTextureMap resolvedPictureMap;
+
+	private volatile ResolvedTextureMap resolvedLuminanceMap;
 
-	private Point3D positionInPicture; // cached from last transformation
+	private volatile ResolvedTextureMap resolvedTransparencyMap;
 
 	public SimpleTexturedFace3D(FlatShadingModel shadingModel, TextureMapHandle pictureMapHandle,
 			PictureRegion pictureRegion) {
@@ -74,6 +91,7 @@ public class SimpleTexturedFace3D extends SimpleFace3D {
 			PictureRegion pictureRegion, TextureMapHandle luminanceMapHandle, TextureMapHandle transparencyMapHandle,
 			Mask pictureMask) {
 		super(pictureColor, shadingModel, createCanonicalVertices());
+		this.pictureRegion = pictureRegion;
 		this.objectToPictureTransformMatrix = pictureRegion.createObjectToPictureTransformMatrix();
 		this.pictureToObjectTransformMatrix = pictureRegion.createPictureToObjectTransformMatrix();
 		this.pictureMapHandle = pictureMapHandle;
@@ -100,28 +118,57 @@ public class SimpleTexturedFace3D extends SimpleFace3D {
 	}
 
 	@Override
-	protected boolean containsPointOnPlane(Point3D positionInCamera, Scene scene) {
-		if (!super.containsPointOnPlane(positionInCamera, scene))
+	protected boolean containsPointOnPlane(Point3D positionInCamera, Scene scene, ReusableObjectPack reusableObjects) {
+		// The mask is checked first, as it is cheaper than the insideness test and rejects most points in stencils
+		byte coverage = getPictureMaskCoverage();
+		if (coverage == MASK_COVERS_ALL)
 			return false;
-		if (getPictureMask() == null)
-			return true;
-		Point3D picturePosition = fromCameraToPictureCoordinates(positionInCamera, scene.getCamera());
-		return !getPictureMask().isMasked(picturePosition.getX(), picturePosition.getZ());
+		if (coverage == MASK_COVERS_PART) {
+			ReusablePicturePosition pp = fromCameraToPictureCoordinates(positionInCamera, scene.getCamera(),
+					reusableObjects);
+			if (getPictureMask().isMasked(pp.getX(), pp.getZ()))
+				return false;
+		}
+		return super.containsPointOnPlane(positionInCamera, scene, reusableObjects);
+	}
+
+	private byte getPictureMaskCoverage() {
+		byte coverage = pictureMaskCoverage;
+		if (coverage == MASK_COVERAGE_UNKNOWN) {
+			coverage = derivePictureMaskCoverage();
+			pictureMaskCoverage = coverage;
+		}
+		return coverage;
+	}
+
+	private byte derivePictureMaskCoverage() {
+		Mask mask = getPictureMask();
+		if (mask == null)
+			return MASK_COVERS_NONE;
+		if (mask instanceof ImageMask) {
+			ImageMask imageMask = (ImageMask) mask;
+			if (imageMask.isFullyMasked(getPictureRegion()))
+				return MASK_COVERS_ALL;
+			if (imageMask.isFullyUnmasked(getPictureRegion()))
+				return MASK_COVERS_NONE;
+		}
+		return MASK_COVERS_PART;
 	}
 
 	@Override
 	protected void colorSurfacePointHitByRay(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
 			ReusableObjectPack reusableObjects, boolean applyShading) {
 		super.colorSurfacePointHitByRay(surfacePoint, scene, options, reusableObjects, applyShading);
-		applyTransparency(surfacePoint, scene);
+		applyTransparency(surfacePoint, scene, reusableObjects);
 	}
 
 	@Override
-	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene) {
+	protected Color sampleBaseColor(Point3D positionInCamera, Scene scene, ReusableObjectPack reusableObjects) {
 		TextureMap map = getPictureMap();
 		if (map != null) {
-			Point3D picturePosition = fromCameraToPictureCoordinates(positionInCamera, scene.getCamera());
-			return map.sampleColor(picturePosition.getX(), picturePosition.getZ());
+			ReusablePicturePosition pp = fromCameraToPictureCoordinates(positionInCamera, scene.getCamera(),
+					reusableObjects);
+			return map.sampleColor(pp.getX(), pp.getZ());
 		} else {
 			return getFrontColor();
 		}
@@ -131,92 +178,149 @@ public class SimpleTexturedFace3D extends SimpleFace3D {
 	protected void applySurfacePointShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
 			ReusableObjectPack reusableObjects) {
 		super.applySurfacePointShading(surfacePoint, scene, options, reusableObjects);
-		applyLuminance(surfacePoint, scene);
+		applyLuminance(surfacePoint, scene, reusableObjects);
 	}
 
-	protected void applyLuminance(ObjectSurfacePoint3D surfacePoint, Scene scene) {
-		double luminance = sampleLuminance(surfacePoint, scene);
+	protected void applyLuminance(ObjectSurfacePoint3D surfacePoint, Scene scene,
+			ReusableObjectPack reusableObjects) {
+		double luminance = sampleLuminance(surfacePoint, scene, reusableObjects);
 		if (!Double.isNaN(luminance)) {
 			surfacePoint.setColor(Compositing.adjustBrightness(surfacePoint.getColor(), luminance));
 		}
 	}
 
-	protected double sampleLuminance(ObjectSurfacePoint3D surfacePoint, Scene scene) {
+	protected double sampleLuminance(ObjectSurfacePoint3D surfacePoint, Scene scene,
+			ReusableObjectPack reusableObjects) {
 		TextureMap map = getLuminanceMap();
 		if (map != null) {
-			Point3D picturePosition = fromCameraToPictureCoordinates(surfacePoint.getPositionInCamera(),
-					scene.getCamera());
-			double luminance = map.sampleDouble(picturePosition.getX(), picturePosition.getZ());
+			ReusablePicturePosition pp = fromCameraToPictureCoordinates(surfacePoint.getPositionInCamera(),
+					scene.getCamera(), reusableObjects);
+			double luminance = map.sampleDouble(pp.getX(), pp.getZ());
 			return luminance * 2.0 - 1.0;
 		}
 		return Double.NaN;
 	}
 
-	protected void applyTransparency(ObjectSurfacePoint3D surfacePoint, Scene scene) {
-		double transparency = sampleTransparency(surfacePoint, scene);
+	protected void applyTransparency(ObjectSurfacePoint3D surfacePoint, Scene scene,
+			ReusableObjectPack reusableObjects) {
+		double transparency = sampleTransparency(surfacePoint, scene, reusableObjects);
 		if (!Double.isNaN(transparency)) {
 			surfacePoint.setColor(Compositing.setTransparency(surfacePoint.getColor(), transparency));
 		}
 	}
 
-	protected double sampleTransparency(ObjectSurfacePoint3D surfacePoint, Scene scene) {
+	protected double sampleTransparency(ObjectSurfacePoint3D surfacePoint, Scene scene,
+			ReusableObjectPack reusableObjects) {
 		TextureMap map = getTransparencyMap();
 		if (map != null) {
-			Point3D picturePosition = fromCameraToPictureCoordinates(surfacePoint.getPositionInCamera(),
-					scene.getCamera());
-			return map.sampleDouble(picturePosition.getX(), picturePosition.getZ());
+			ReusablePicturePosition pp = fromCameraToPictureCoordinates(surfacePoint.getPositionInCamera(),
+					scene.getCamera(), reusableObjects);
+			return map.sampleDouble(pp.getX(), pp.getZ());
 		}
 		return Double.NaN;
 	}
 
-	protected Point3D fromCameraToPictureCoordinates(Point3D point, Camera camera) {
-		if (!point.equals(positionInCamera)) {
-			positionInCamera = point.clone();
-			positionInPicture = fromObjectToPictureCoordinates(fromCameraToObjectCoordinates(point, camera));
+	/**
+	 * Maps a point in camera coordinates to picture coordinates
+	 * 
+	 * <p>
+	 * The mapping of the last point is remembered per thread, so that the mask and all texture maps sampled for the
+	 * same hit share a single computation.
+	 * </p>
+	 * 
+	 * @param point
+	 *            The point in camera coordinates, assumed to lie on this face
+	 * @param camera
+	 *            The camera
+	 * @param reusableObjects
+	 *            Reusable objects for the current thread
+	 * @return The position in picture coordinates. It is reused by the current thread and should not be kept.
+	 */
+	protected ReusablePicturePosition fromCameraToPictureCoordinates(Point3D point, Camera camera,
+			ReusableObjectPack reusableObjects) {
+		double[] m = getCameraToPictureTransform(camera);
+		ReusablePicturePosition pp = reusableObjects.getPicturePosition();
+		double x = point.getX();
+		double y = point.getY();
+		double z = point.getZ();
+		if (!pp.isMappingOf(x, y, z, m)) {
+			pp.map(x, y, z, m);
 		}
-		return positionInPicture;
+		return pp;
 	}
 
 	protected Point3D fromObjectToPictureCoordinates(Point3D point) {
 		return getObjectToPictureTransformMatrix().transform(point);
 	}
 
-	@Override
-	public void notifySelfHasTransformed() {
-		super.notifySelfHasTransformed();
-		invalidateCachedPositionMapping();
+	private double[] getCameraToPictureTransform(Camera camera) {
+		double[] c = getCameraToObjectTransform(camera); // validates camera state
+		double[] m = cameraToPictureTransform;
+		if (m == null) {
+			m = deriveCameraToPictureTransform(c);
+			cameraToPictureTransform = m;
+		}
+		return m;
+	}
+
+	private double[] deriveCameraToPictureTransform(double[] cameraToObject) {
+		TransformMatrix objectToPicture = getObjectToPictureTransformMatrix();
+		double[] m = new double[8];
+		for (int k = 0; k < 2; k++) {
+			int row = 2 * k; // X and Z rows of the picture transform
+			for (int j = 0; j < 4; j++) {
+				double value = j == 3 ? objectToPicture.getValue(row, 3) : 0;
+				for (int i = 0; i < 3; i++) {
+					value += objectToPicture.getValue(row, i) * cameraToObject[4 * i + j];
+				}
+				m[4 * k + j] = value;
+			}
+		}
+		return m;
 	}
 
 	@Override
-	public void notifyAncestorHasTransformed() {
-		super.notifyAncestorHasTransformed();
-		invalidateCachedPositionMapping();
+	protected void invalidateCameraState() {
+		super.invalidateCameraState();
+		this.cameraToPictureTransform = null;
 	}
 
-	@Override
-	public void cameraHasChanged(Camera camera) {
-		super.cameraHasChanged(camera);
-		invalidateCachedPositionMapping();
+	protected TextureMap getPictureMap() {
+		ResolvedTextureMap resolved = resolvedPictureMap;
+		if (resolved == null || !resolved.isValid()) {
+			resolved = resolveTextureMap(getPictureMapHandle());
+			resolvedPictureMap = resolved;
+		}
+		return resolved.getTextureMap();
 	}
 
-	private void invalidateCachedPositionMapping() {
-		this.positionInCamera = null;
-		this.positionInPicture = null;
+	protected TextureMap getLuminanceMap() {
+		ResolvedTextureMap resolved = resolvedLuminanceMap;
+		if (resolved == null || !resolved.isValid()) {
+			resolved = resolveTextureMap(getLuminanceMapHandle());
+			resolvedLuminanceMap = resolved;
+		}
+		return resolved.getTextureMap();
 	}
 
-	protected TextureMap getPictureMap() {
-		return getPictureMapHandle() == null ? null
-				: TextureMapRegistry.getInstance().getTextureMap(getPictureMapHandle());
+	protected TextureMap getTransparencyMap() {
+		ResolvedTextureMap resolved = resolvedTransparencyMap;
+		if (resolved == null || !resolved.isValid()) {
+			resolved = resolveTextureMap(getTransparencyMapHandle());
+			resolvedTransparencyMap = resolved;
+		}
+		return resolved.getTextureMap();
 	}
 
-	protected TextureMap getLuminanceMap() {
-		return getLuminanceMapHandle() == null ? null
-				: TextureMapRegistry.getInstance().getTextureMap(getLuminanceMapHandle());
+	private static ResolvedTextureMap resolveTextureMap(TextureMapHandle handle) {
+		TextureMapRegistry registry = TextureMapRegistry.getInstance();
+		long epoch = registry.getEpoch(); // before the lookup, so that a concurrent removal is noticed
+		TextureMap map = handle == null ? null : registry.getTextureMap(handle);
+		return new ResolvedTextureMap(map, handle == null ? -1L : epoch);
 	}
 
-	protected TextureMap getTransparencyMap() {
-		return getTransparencyMapHandle() == null ? null
-				: TextureMapRegistry.getInstance().getTextureMap(getTransparencyMapHandle());
+	public PictureRegion getPictureRegion() {
+		return pictureRegion;
 	}
 
 	private TransformMatrix getObjectToPictureTransformMatrix() {
@@ -227,22 +331,97 @@ public class SimpleTexturedFace3D extends SimpleFace3D {
 		return pictureToObjectTransformMatrix;
 	}
 
-	private TextureMapHandle getPictureMapHandle() {
+	public TextureMapHandle getPictureMapHandle() {
 		return pictureMapHandle;
 	}
 
-	private TextureMapHandle getLuminanceMapHandle() {
+	public TextureMapHandle getLuminanceMapHandle() {
 		return luminanceMapHandle;
 	}
 
-	private TextureMapHandle getTransparencyMapHandle() {
+	public TextureMapHandle getTransparencyMapHandle() {
 		return transparencyMapHandle;
 	}
 
-	protected Mask getPictureMask() {
+	public Mask getPictureMask() {
 		return pictureMask;
 	}
 
+	/**
+	 * Texture map as resolved from the registry, which remains valid as long as the registry's epoch is unchanged
+	 */
+	private static class ResolvedTextureMap {
+
+		private TextureMap textureMap;
+
+		private long epoch; // -1 when there is no texture map to resolve
+
+		public ResolvedTextureMap(TextureMap textureMap, long epoch) {
+			this.textureMap = textureMap;
+			this.epoch = epoch;
+		}
+
+		public boolean isValid() {
+			return epoch < 0 || epoch == TextureMapRegistry.getInstance().getEpoch();
+		}
+
+		public TextureMap getTextureMap() {
+			return textureMap;
+		}
+
+	}
+
+	/**
+	 * Position on a textured face in picture coordinates, along with the camera position it was mapped from
+	 * 
+	 * <p>
+	 * Instances are not thread-safe and are meant to be reused within the same thread only
+	 * </p>
+	 * 
+	 * @see ReusableObjectPack#getPicturePosition()
+	 */
+	public static class ReusablePicturePosition {
+
+		private double x;
+
+		private double z;
+
+		private double cameraX;
+
+		private double cameraY;
+
+		private double cameraZ;
+
+		private double[] transform; // 'null' when not mapped
+
+		public ReusablePicturePosition() {
+		}
+
+		boolean isMappingOf(double cameraX, double cameraY, double cameraZ, double[] transform) {
+			return this.transform == transform && this.cameraX == cameraX && this.cameraY == cameraY
+					&& this.cameraZ == cameraZ;
+		}
+
+		void map(double cameraX, double cameraY, double cameraZ, double[] transform) {
+			double[] m = transform;
+			this.x = m[0] * cameraX + m[1] * cameraY + m[2] * cameraZ + m[3];
+			this.z = m[4] * cameraX + m[5] * cameraY + m[6] * cameraZ + m[7];
+			this.cameraX = cameraX;
+			this.cameraY = cameraY;
+			this.cameraZ = cameraZ;
+			this.transform = transform;
+		}
+
+		public double getX() {
+			return x;
+		}
+
+		public double getZ() {
+			return z;
+		}
+
+	}
+
 	public static class PictureRegion extends Rectangle2D {
 
 		public PictureRegion(int width, int height) {
@@ -0,0 +1,124 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.maia.cgi.Metrics;
+import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.render.d3.ReusableObjectPack;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+
+/**
+ * A <em>simple face</em> in the shape of a triangle
+ *
+ * <p>
+ * A triangle is hit by a ray using the <em>M&ouml;ller-Trumbore</em> algorithm, which tests the barycentric
+ * coordinates of the hit directly in 3D. It avoids the plane intersection, bounding box check and 2D projection that
+ * apply to polygons in general. A polygon can be converted into triangles using {@link TriangulationUtils}.
+ * </p>
+ *
+ * @see TriangulationUtils
+ */
+public class SimpleTriangularFace3D extends SimpleFace3D {
+
+	private double[] triangleInCamera; // cached vertex and edge vectors, in camera coordinates
+
+	public SimpleTriangularFace3D(Color color, FlatShadingModel shadingModel, Point3D p0, Point3D p1, Point3D p2) {
+		this(color, color, shadingModel, p0, p1, p2);
+	}
+
+	public SimpleTriangularFace3D(Color frontColor, Color backColor, FlatShadingModel shadingModel, Point3D p0,
+			Point3D p1, Point3D p2) {
+		super(frontColor, backColor, shadingModel, p0, p1, p2);
+	}
+
+	@Override
+	protected double findSurfacePositionHitByRay(LineSegment3D ray, Scene scene, ObjectSurfaceHitRecord hit,
+			boolean rayFromEye, Point3D positionInCamera, ReusableObjectPack reusableObjects) {
+		Metrics.getInstance().incrementLineWithTriangleIntersections();
+		double[] tri = getTriangleInCameraCoordinates(scene.getCamera());
+		Point3D p1 = ray.getP1();
+		Point3D p2 = ray.getP2();
+		double dx = p2.getX() - p1.getX();
+		double dy = p2.getY() - p1.getY();
+		double dz = p2.getZ() - p1.getZ();
+		// p = d x e2
+		double px = dy * tri[8] - dz * tri[7];
+		double py = dz * tri[6] - dx * tri[8];
+		double pz = dx * tri[7] - dy * tri[6];
+		double det = tri[3] * px + tri[4] * py + tri[5] * pz;
+		if (det == 0)
+			return Double.NaN; // ray is parallel to the triangle
+		double inv = 1.0 / det;
+		// s = p1 - v0
+		double sx = p1.getX() - tri[0];
+		double sy = p1.getY() - tri[1];
+		double sz = p1.getZ() - tri[2];
+		double u = (sx * px + sy * py + sz * pz) * inv;
+		if (u < 0 || u > 1.0)
+			return Double.NaN;
+		// q = s x e1
+		double qx = sy * tri[5] - sz * tri[4];
+		double qy = sz * tri[3] - sx * tri[5];
+		double qz = sx * tri[4] - sy * tri[3];
+		double v = (dx * qx + dy * qy + dz * qz) * inv;
+		if (v < 0 || u + v > 1.0)
+			return Double.NaN;
+		double r = (tri[6] * qx + tri[7] * qy + tri[8] * qz) * inv;
+		if (!ray.containsPointAtRelativePosition(r))
+			return Double.NaN;
+		ray.getPointAtRelativePosition(r, positionInCamera);
+		// Early out (performance optimalization)
+		if (rayFromEye && -positionInCamera.getZ() > hit.getDepthLimit())
+			return Double.NaN;
+		return r;
+	}
+
+	private double[] getTriangleInCameraCoordinates(Camera camera) {
+		validateCameraState(camera);
+		double[] tri = triangleInCamera;
+		if (tri == null) {
+			tri = deriveTriangleInCameraCoordinates(camera);
+			triangleInCamera = tri;
+		}
+		return tri;
+	}
+
+	private double[] deriveTriangleInCameraCoordinates(Camera camera) {
+		List<Point3D> vertices = getVerticesInCameraCoordinates(camera);
+		Point3D v0 = vertices.get(0);
+		Point3D v1 = vertices.get(1);
+		Point3D v2 = vertices.get(2);
+		double[] tri = new double[9];
+		tri[0] = v0.getX();
+		tri[1] = v0.getY();
+		tri[2] = v0.getZ();
+		tri[3] = v1.getX() - v0.getX();
+		tri[4] = v1.getY() - v0.getY();
+		tri[5] = v1.getZ() - v0.getZ();
+		tri[6] = v2.getX() - v0.getX();
+		tri[7] = v2.getY() - v0.getY();
+		tri[8] = v2.getZ() - v0.getZ();
+		return tri;
+	}
+
+	@Override
+	protected void invalidateCameraState() {
+		super.invalidateCameraState();
+		invalidateTriangle();
+	}
+
+	@Override
+	public void releaseMemory() {
+		super.releaseMemory();
+		invalidateTriangle();
+	}
+
+	private void invalidateTriangle() {
+		triangleInCamera = null;
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.maia.cgi.model.d3.object;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.object.Mesh3D.Edge;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * A sphere centered at the origin of its object coordinates
+ *
+ * <p>
+ * An ellipsoid is obtained by scaling the sphere non-uniformly
+ * </p>
+ */
+public class SphereObject3D extends QuadricObject3D {
+
+	private double radius;
+
+	private static final int WIREFRAME_VERTEX_COUNT = 24;
+
+	public SphereObject3D(double radius, Color color, FlatShadingModel shadingModel) {
+		super(buildWireframe(radius), color, shadingModel);
+		this.radius = radius;
+	}
+
+	private static Mesh3D buildWireframe(double radius) {
+		List<Point3D> vertices = new Vector<Point3D>();
+		List<Edge> edges = new Vector<Edge>();
+		int n = WIREFRAME_VERTEX_COUNT;
+		for (int i = 1; i < n / 4; i++) {
+			double latitude = Math.PI * (4.0 * i / n - 0.5);
+			addWireframeCircle(vertices, edges, radius * Math.cos(latitude), radius * Math.sin(latitude), n);
+		}
+		for (int i = 0; i < n / 2; i++) {
+			double longitude = 4.0 * Math.PI * i / n;
+			int offset = vertices.size();
+			for (int j = 0; j <= n / 2; j++) {
+				double latitude = Math.PI * (2.0 * j / n - 0.5);
+				double r = radius * Math.cos(latitude);
+				vertices.add(new Point3D(r * Math.cos(longitude), r * Math.sin(longitude), radius * Math.sin(latitude)));
+				if (j > 0) {
+					edges.add(new Mesh3DImpl.EdgeImpl(offset + j - 1, offset + j));
+				}
+			}
+		}
+		return new Mesh3DImpl(vertices, edges);
+	}
+
+	@Override
+	protected Box3D deriveBoundingBox(TransformMatrix objectToFrame) {
+		double cx = objectToFrame.getValue(0, 3);
+		double cy = objectToFrame.getValue(1, 3);
+		double cz = objectToFrame.getValue(2, 3);
+		double ex = getRadius() * getRowMagnitude(objectToFrame, 0);
+		double ey = getRadius() * getRowMagnitude(objectToFrame, 1);
+		double ez = getRadius() * getRowMagnitude(objectToFrame, 2);
+		return new Box3D(cx - ex, cx + ex, cy - ey, cy + ey, cz - ez, cz + ez);
+	}
+
+	private static double getRowMagnitude(TransformMatrix matrix, int row) {
+		double a = matrix.getValue(row, 0);
+		double b = matrix.getValue(row, 1);
+		double c = matrix.getValue(row, 2);
+		return Math.sqrt(a * a + b * b + c * c);
+	}
+
+	@Override
+	protected double findNearestHitInObjectCoordinates(double ox, double oy, double oz, double dx, double dy,
+			double dz, double minimumR) {
+		return nearestHitOnSphere(ox, oy, oz, dx, dy, dz, getRadius(), minimumR);
+	}
+
+	@Override
+	protected Vector3D getSurfaceNormalInObjectCoordinates(double x, double y, double z) {
+		return new Vector3D(x, y, z);
+	}
+
+	public double getRadius() {
+		return radius;
+	}
+
+}
@@ -45,6 +45,4 @@ public interface TransformableObject3D extends Object3D {
 
 	void notifySelfHasTransformed();
 
-	void notifyAncestorHasTransformed();
-
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+package org.maia.cgi.model.d3.object;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Point3D;
+
+/**
+ * Utility methods to convert polygons and objects into triangles
+ *
+ * <p>
+ * Triangles can be traced more efficiently than polygons in general, see {@link SimpleTriangularFace3D}. Convex
+ * polygons are converted into a <em>fan</em> of triangles, non-convex (simple) polygons are converted by <em>ear
+ * clipping</em>. In both cases, the triangles keep the traversal order of the polygon's vertices and hence its front
+ * and back side.
+ * </p>
+ */
+public class TriangulationUtils {
+
+	private TriangulationUtils() {
+	}
+
+	/**
+	 * Converts an object into an equivalent object consisting of triangular faces
+	 *
+	 * <p>
+	 * Every <code>SimpleFace3D</code> (but not its subclasses) within the object is replaced by one or more
+	 * <code>SimpleTriangularFace3D</code>s. Composite objects are rebuilt with the same transforms. Any other object is
+	 * taken over as is, which makes it a part of the returned object. Therefore the original object should no longer be
+	 * used after conversion.
+	 * </p>
+	 * <p>
+	 * This conversion is meant to be applied to a top-level object before it is added to a <code>Scene</code>
+	 * </p>
+	 *
+	 * @param object
+	 *            The object to convert
+	 * @return The converted object
+	 */
+	public static BaseObject3D triangulate(BaseObject3D object) {
+		if (object instanceof MultipartObject3D<?>) {
+			return triangulateComposite((MultipartObject3D<?>) object);
+		} else if (SimpleFace3D.class.equals(object.getClass())) {
+			return triangulateFace((SimpleFace3D) object);
+		} else {
+			return object;
+		}
+	}
+
+	private static BaseObject3D triangulateComposite(MultipartObject3D<?> composite) {
+		MultipartObject3D<ComposableObject3D> result = new MultipartObject3D<ComposableObject3D>();
+		for (ComposableObject3D part : composite.getParts()) {
+			if (part instanceof BaseObject3D) {
+				result.addPart(triangulate((BaseObject3D) part));
+			} else {
+				result.addPart(part);
+			}
+		}
+		result.transform(composite.getOwnCompositeTransform().getForwardCompositeMatrix());
+		return result;
+	}
+
+	private static BaseObject3D triangulateFace(SimpleFace3D face) {
+		Collection<SimpleTriangularFace3D> triangles = convertToTriangularFaces(face);
+		BaseObject3D result = null;
+		if (triangles.size() == 1) {
+			result = triangles.iterator().next();
+		} else {
+			result = new MultipartObject3D<SimpleTriangularFace3D>(triangles);
+		}
+		result.transform(face.getOwnCompositeTransform().getForwardCompositeMatrix());
+		return result;
+	}
+
+	/**
+	 * Converts a face into triangles, in the face's object coordinates
+	 *
+	 * @param face
+	 *            The face to convert
+	 * @return The triangles covering the face, with the face's colors and shading model
+	 */
+	public static Collection<SimpleTriangularFace3D> convertToTriangularFaces(SimpleFace3D face) {
+		List<Point3D> vertices = face.getVerticesInObjectCoordinates();
+		List<int[]> triangles = triangulate(vertices, true);
+		Collection<SimpleTriangularFace3D> faces = new Vector<SimpleTriangularFace3D>(triangles.size());
+		for (int[] t : triangles) {
+			faces.add(new SimpleTriangularFace3D(face.getFrontColor(), face.getBackColor(), face.getShadingModel(),
+					vertices.get(t[0]), vertices.get(t[1]), vertices.get(t[2])));
+		}
+		return faces;
+	}
+
+	/**
+	 * Divides a planar polygon into triangles
+	 *
+	 * @param vertices
+	 *            The vertices of the polygon
+	 * @param convex
+	 *            <code>true</code> if the polygon is known to be convex
+	 * @return The triangles, each one being represented by the indices of its 3 vertices
+	 */
+	public static List<int[]> triangulate(List<Point3D> vertices, boolean convex) {
+		if (convex || vertices.size() <= 3) {
+			return triangulateAsFan(vertices);
+		} else {
+			return triangulateByEarClipping(vertices);
+		}
+	}
+
+	private static List<int[]> triangulateAsFan(List<Point3D> vertices) {
+		int n = vertices.size();
+		List<int[]> triangles = new Vector<int[]>(Math.max(n - 2, 0));
+		for (int i = 1; i < n - 1; i++) {
+			triangles.add(new int[] { 0, i, i + 1 });
+		}
+		return triangles;
+	}
+
+	private static List<int[]> triangulateByEarClipping(List<Point3D> vertices) {
+		int n = vertices.size();
+		// Project onto the coordinate plane best aligned with the polygon
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		projectOntoDominantPlane(vertices, xs, ys);
+		double orientation = Math.signum(getSignedArea(xs, ys));
+		List<Integer> remaining = new Vector<Integer>(n);
+		for (int i = 0; i < n; i++) {
+			remaining.add(i);
+		}
+		List<int[]> triangles = new Vector<int[]>(n - 2);
+		int guard = 0;
+		int i = 0;
+		while (remaining.size() > 3 && guard < remaining.size()) {
+			int m = remaining.size();
+			int ia = remaining.get((i + m - 1) % m);
+			int ib = remaining.get(i % m);
+			int ic = remaining.get((i + 1) % m);
+			if (isEar(ia, ib, ic, remaining, xs, ys, orientation)) {
+				triangles.add(new int[] { ia, ib, ic });
+				remaining.remove(i % m);
+				guard = 0;
+			} else {
+				i++;
+				guard++;
+			}
+			i = i % remaining.size();
+		}
+		if (remaining.size() > 3) {
+			// Degenerate polygon, fall back to a fan of the remaining vertices
+			for (int j = 1; j < remaining.size() - 1; j++) {
+				triangles.add(new int[] { remaining.get(0), remaining.get(j), remaining.get(j + 1) });
+			}
+		} else if (remaining.size() == 3) {
+			triangles.add(new int[] { remaining.get(0), remaining.get(1), remaining.get(2) });
+		}
+		return triangles;
+	}
+
+	private static boolean isEar(int ia, int ib, int ic, List<Integer> remaining, double[] xs, double[] ys,
+			double orientation) {
+		double cross = (xs[ib] - xs[ia]) * (ys[ic] - ys[ia]) - (ys[ib] - ys[ia]) * (xs[ic] - xs[ia]);
+		if (cross * orientation <= 0)
+			return false; // reflex or collinear vertex
+		for (Integer index : remaining) {
+			int k = index.intValue();
+			if (k != ia && k != ib && k != ic) {
+				if (isInsideTriangle(xs[k], ys[k], xs[ia], ys[ia], xs[ib], ys[ib], xs[ic], ys[ic], orientation))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isInsideTriangle(double px, double py, double ax, double ay, double bx, double by,
+			double cx, double cy, double orientation) {
+		double d1 = ((bx - ax) * (py - ay) - (by - ay) * (px - ax)) * orientation;
+		double d2 = ((cx - bx) * (py - by) - (cy - by) * (px - bx)) * orientation;
+		double d3 = ((ax - cx) * (py - cy) - (ay - cy) * (px - cx)) * orientation;
+		return d1 >= 0 && d2 >= 0 && d3 >= 0;
+	}
+
+	private static double getSignedArea(double[] xs, double[] ys) {
+		int n = xs.length;
+		double area = 0;
+		for (int i = 0; i < n; i++) {
+			int j = (i + 1) % n;
+			area += xs[i] * ys[j] - xs[j] * ys[i];
+		}
+		return area / 2.0;
+	}
+
+	private static void projectOntoDominantPlane(List<Point3D> vertices, double[] xs, double[] ys) {
+		// Newell's method for the polygon normal
+		int n = vertices.size();
+		double nx = 0, ny = 0, nz = 0;
+		for (int i = 0; i < n; i++) {
+			Point3D p = vertices.get(i);
+			Point3D q = vertices.get((i + 1) % n);
+			nx += (p.getY() - q.getY()) * (p.getZ() + q.getZ());
+			ny += (p.getZ() - q.getZ()) * (p.getX() + q.getX());
+			nz += (p.getX() - q.getX()) * (p.getY() + q.getY());
+		}
+		double ax = Math.abs(nx);
+		double ay = Math.abs(ny);
+		double az = Math.abs(nz);
+		for (int i = 0; i < n; i++) {
+			Point3D p = vertices.get(i);
+			if (az >= ax && az >= ay) {
+				xs[i] = p.getX();
+				ys[i] = p.getY();
+			} else if (ay >= ax) {
+				xs[i] = p.getZ();
+				ys[i] = p.getX();
+			} else {
+				xs[i] = p.getY();
+				ys[i] = p.getZ();
+			}
+		}
+	}
+
+}
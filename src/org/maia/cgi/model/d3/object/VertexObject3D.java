@@ -20,7 +20,11 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 	private Mesh3D meshInViewVolumeCoordinates; // derived, cached mesh
 
 	protected VertexObject3D(List<Point3D> vertices, List<Edge> edges) {
-		this.meshInObjectCoordinates = new Mesh3DImpl(vertices, edges);
+		this(new Mesh3DImpl(vertices, edges));
+	}
+
+	protected VertexObject3D(Mesh3D meshInObjectCoordinates) {
+		this.meshInObjectCoordinates = meshInObjectCoordinates;
 	}
 
 	@Override
@@ -53,7 +57,7 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 		return deriveBoundingBox(getVerticesInViewVolumeCoordinates(camera));
 	}
 
-	private Box3D deriveBoundingBox(List<Point3D> vertices) {
+	protected Box3D deriveBoundingBox(List<Point3D> vertices) {
 		Box3D bbox = null;
 		if (!vertices.isEmpty()) {
 			Point3D vertex = vertices.get(0);
@@ -107,6 +111,7 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 
 	@Override
 	public Mesh3D getMeshInWorldCoordinates() {
+		validateWorldState();
 		if (meshInWorldCoordinates == null) {
 			meshInWorldCoordinates = deriveMeshInWorldCoordinates();
 		}
@@ -115,6 +120,7 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 
 	@Override
 	public Mesh3D getMeshInCameraCoordinates(Camera camera) {
+		validateCameraState(camera);
 		if (meshInCameraCoordinates == null) {
 			meshInCameraCoordinates = deriveMeshInCameraCoordinates(camera);
 		}
@@ -123,12 +129,18 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 
 	@Override
 	public Mesh3D getMeshInViewVolumeCoordinates(Camera camera) {
+		validateCameraState(camera);
 		if (meshInViewVolumeCoordinates == null) {
 			meshInViewVolumeCoordinates = deriveMeshInViewVolumeCoordinates(camera);
 		}
 		return meshInViewVolumeCoordinates;
 	}
 
+	@Override
+	public TransformMatrix getObjectToWorldMatrix() {
+		return getSelfToRootCompositeTransform().getForwardCompositeMatrix();
+	}
+
 	private Mesh3D deriveMeshInWorldCoordinates() {
 		return new Mesh3DImpl(deriveVerticesInWorldCoordinates(), getEdges());
 	}
@@ -182,20 +194,14 @@ public abstract class VertexObject3D extends BaseObject3D implements MeshObject3
 	}
 
 	@Override
-	public void notifySelfHasTransformed() {
-		super.notifySelfHasTransformed();
-		invalidateWorldAndCameraMesh();
-	}
-
-	@Override
-	public void notifyAncestorHasTransformed() {
-		super.notifyAncestorHasTransformed();
-		invalidateWorldAndCameraMesh();
+	protected void invalidateWorldState() {
+		super.invalidateWorldState();
+		invalidateWorldMesh();
 	}
 
 	@Override
-	public void cameraHasChanged(Camera camera) {
-		super.cameraHasChanged(camera);
+	protected void invalidateCameraState() {
+		super.invalidateCameraState();
 		invalidateCameraMesh();
 	}
 
@@ -0,0 +1,335 @@
+package org.maia.cgi.model.d3.scene;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.camera.MovableCameraImpl;
+import org.maia.cgi.model.d3.camera.PerspectiveViewVolume;
+import org.maia.cgi.model.d3.camera.RevolvingCameraImpl;
+import org.maia.cgi.model.d3.camera.ViewVolume;
+import org.maia.cgi.model.d3.light.AmbientLight;
+import org.maia.cgi.model.d3.light.InboundLight;
+import org.maia.cgi.model.d3.light.LightSource;
+import org.maia.cgi.model.d3.light.SpotLight;
+import org.maia.cgi.model.d3.object.BaseObject3D;
+import org.maia.cgi.model.d3.object.CylinderObject3D;
+import org.maia.cgi.model.d3.object.MultipartObject3D;
+import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.RingObject3D;
+import org.maia.cgi.model.d3.object.SimpleFace3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D.PictureRegion;
+import org.maia.cgi.model.d3.object.SimpleTriangularFace3D;
+import org.maia.cgi.model.d3.object.SphereObject3D;
+import org.maia.cgi.render.d2.ImageMaskFileHandle;
+import org.maia.cgi.render.d2.ImageTextureMapFileHandle;
+import org.maia.cgi.render.d2.TextureMapHandle;
+import org.maia.cgi.render.d3.RenderOptions;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.render.d3.shading.FlatShadingModelImpl;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * Builds a <code>Scene</code> from a binary file that was written by a <code>BinarySceneWriter</code>
+ *
+ * <p>
+ * The file is read through a memory-mapped <code>FileChannel</code>. Objects are materialised directly from the mapped
+ * file, without parsing text or copying the file into memory. Vertices are materialised lazily, as the faces refer to
+ * them, and every vertex is shared by all faces that refer to it. The same holds for colors, shading models and texture
+ * map handles. This keeps both the startup time and the memory footprint of large scenes low.
+ * </p>
+ * <p>
+ * The file should not exceed 2 GB. The backdrop, darkness depth function and depth blur parameters are not stored in
+ * the file and are created as by any <code>SceneBuilder</code>.
+ * </p>
+ *
+ * @see BinarySceneWriter
+ */
+public class BinarySceneBuilder extends SceneBuilder {
+
+	private File file;
+
+	private ByteBuffer buffer;
+
+	private String sceneName;
+
+	private ByteBuffer in; // current read position during a build
+
+	private int vertexTableOffset;
+
+	private Point3D[] vertices;
+
+	private FlatShadingModel[] shadingModels;
+
+	private TextureMapHandle[] textureMapHandles;
+
+	private Map<Integer, Color> colors;
+
+	/**
+	 * Creates a builder for a binary scene file
+	 *
+	 * @param file
+	 *            The file to build the scene from
+	 * @throws IOException
+	 *             When the file cannot be read or is not a binary scene file
+	 */
+	public BinarySceneBuilder(File file) throws IOException {
+		this.file = file;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		if (buffer.getInt() != BinarySceneFormat.MAGIC_NUMBER || buffer.getInt() != BinarySceneFormat.FORMAT_VERSION)
+			throw new IOException("Unsupported file format at path '" + file + "'");
+		this.sceneName = readString(buffer);
+	}
+
+	@Override
+	public Scene build(RenderOptions options) {
+		in = buffer.duplicate();
+		colors = new HashMap<Integer, Color>();
+		try {
+			return super.build(options);
+		} finally {
+			in = null;
+			vertices = null;
+			shadingModels = null;
+			textureMapHandles = null;
+			colors = null;
+		}
+	}
+
+	@Override
+	protected String getSceneName() {
+		return sceneName;
+	}
+
+	@Override
+	protected Camera createCamera(RenderOptions options) {
+		byte type = in.get();
+		ViewVolume viewVolume = PerspectiveViewVolume.createFromParameters(in.getDouble(), in.getDouble(),
+				in.getDouble(), in.getDouble());
+		Point3D position = readPoint(in);
+		Vector3D u = readVector(in);
+		Vector3D v = readVector(in);
+		Vector3D n = readVector(in);
+		if (type == BinarySceneFormat.MOVABLE_CAMERA) {
+			MovableCameraImpl camera = new MovableCameraImpl(viewVolume);
+			camera.orient(position, u, v, n);
+			return camera;
+		} else if (type == BinarySceneFormat.REVOLVING_CAMERA) {
+			RevolvingCameraImpl camera = new RevolvingCameraImpl(readPoint(in), position, viewVolume);
+			camera.orient(position, u, v, n);
+			return camera;
+		} else {
+			throw new IllegalStateException("Unsupported camera type " + type + " in file '" + file + "'");
+		}
+	}
+
+	@Override
+	protected Collection<Object3D> createTopLevelObjects(RenderOptions options) {
+		readTables();
+		int n = in.getInt();
+		List<Object3D> objects = new Vector<Object3D>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(readObject());
+		}
+		return objects;
+	}
+
+	@Override
+	protected Collection<LightSource> createLightSources(Scene scene, RenderOptions options) {
+		int n = in.getInt();
+		List<LightSource> lights = new Vector<LightSource>(n);
+		for (int i = 0; i < n; i++) {
+			lights.add(readLightSource());
+		}
+		return lights;
+	}
+
+	private void readTables() {
+		shadingModels = new FlatShadingModel[in.getInt()];
+		for (int i = 0; i < shadingModels.length; i++) {
+			shadingModels[i] = new FlatShadingModelImpl(in.getDouble(), in.getDouble());
+		}
+		textureMapHandles = new TextureMapHandle[in.getInt()];
+		for (int i = 0; i < textureMapHandles.length; i++) {
+			textureMapHandles[i] = readTextureMapHandle();
+		}
+		vertices = new Point3D[in.getInt()];
+		vertexTableOffset = in.position();
+		in.position(vertexTableOffset + vertices.length * 24);
+	}
+
+	private TextureMapHandle readTextureMapHandle() {
+		byte type = in.get();
+		String filePath = readString(in);
+		if (type == BinarySceneFormat.IMAGE_TEXTURE_MAP_FILE_HANDLE) {
+			return new ImageTextureMapFileHandle(filePath, in.getDouble(), in.getDouble());
+		} else if (type == BinarySceneFormat.IMAGE_MASK_FILE_HANDLE) {
+			return new ImageMaskFileHandle(filePath, readColor());
+		} else {
+			throw new IllegalStateException("Unsupported texture map handle type " + type + " in file '" + file
+					+ "'");
+		}
+	}
+
+	private Object3D readObject() {
+		byte type = in.get();
+		TransformMatrix[] transforms = readTransforms();
+		BaseObject3D object = null;
+		if (type == BinarySceneFormat.MULTIPART_OBJECT) {
+			MultipartObject3D<BaseObject3D> composite = new MultipartObject3D<BaseObject3D>();
+			composite.setLocallyIndexed(in.get() != 0);
+			int n = in.getInt();
+			for (int i = 0; i < n; i++) {
+				composite.addPart((BaseObject3D) readObject());
+			}
+			object = composite;
+		} else if (type == BinarySceneFormat.SIMPLE_FACE) {
+			Color frontColor = readColor();
+			Color backColor = readColor();
+			FlatShadingModel shadingModel = getShadingModel(in.getInt());
+			int n = in.getInt();
+			List<Point3D> faceVertices = new Vector<Point3D>(n);
+			for (int i = 0; i < n; i++) {
+				faceVertices.add(getVertex(in.getInt()));
+			}
+			object = new SimpleFace3D(frontColor, backColor, shadingModel, faceVertices);
+		} else if (type == BinarySceneFormat.SIMPLE_TRIANGULAR_FACE) {
+			Color frontColor = readColor();
+			Color backColor = readColor();
+			FlatShadingModel shadingModel = getShadingModel(in.getInt());
+			object = new SimpleTriangularFace3D(frontColor, backColor, shadingModel, getVertex(in.getInt()),
+					getVertex(in.getInt()), getVertex(in.getInt()));
+		} else if (type == BinarySceneFormat.SIMPLE_TEXTURED_FACE) {
+			object = readTexturedFace();
+		} else if (type == BinarySceneFormat.SPHERE_OBJECT) {
+			double radius = in.getDouble();
+			object = new SphereObject3D(radius, readColor(), getShadingModel(in.getInt()));
+		} else if (type == BinarySceneFormat.CYLINDER_OBJECT) {
+			double radius = in.getDouble();
+			double depth = in.getDouble();
+			object = new CylinderObject3D(radius, depth, readColor(), getShadingModel(in.getInt()));
+		} else if (type == BinarySceneFormat.RING_OBJECT) {
+			double innerRadius = in.getDouble();
+			double outerRadius = in.getDouble();
+			double depth = in.getDouble();
+			object = new RingObject3D(innerRadius, outerRadius, depth, readColor(), getShadingModel(in.getInt()));
+		} else {
+			throw new IllegalStateException("Unsupported object type " + type + " in file '" + file + "'");
+		}
+		for (TransformMatrix matrix : transforms) {
+			object.transform(matrix);
+		}
+		return object;
+	}
+
+	private SimpleTexturedFace3D readTexturedFace() {
+		Color pictureColor = readColor();
+		FlatShadingModel shadingModel = getShadingModel(in.getInt());
+		PictureRegion region = new PictureRegion(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+		TextureMapHandle pictureMapHandle = getTextureMapHandle(in.getInt());
+		TextureMapHandle luminanceMapHandle = getTextureMapHandle(in.getInt());
+		TextureMapHandle transparencyMapHandle = getTextureMapHandle(in.getInt());
+		if (pictureMapHandle != null) {
+			return new SimpleTexturedFace3D(shadingModel, pictureMapHandle, region, luminanceMapHandle,
+					transparencyMapHandle, null);
+		} else {
+			return new SimpleTexturedFace3D(pictureColor, shadingModel, region, luminanceMapHandle,
+					transparencyMapHandle, null);
+		}
+	}
+
+	private TransformMatrix[] readTransforms() {
+		TransformMatrix[] transforms = new TransformMatrix[in.getInt()];
+		for (int k = 0; k < transforms.length; k++) {
+			double[] values = new double[16];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = in.getDouble();
+			}
+			transforms[k] = new TransformMatrix(values);
+		}
+		return transforms;
+	}
+
+	private LightSource readLightSource() {
+		byte type = in.get();
+		double brightness = in.getDouble();
+		if (type == BinarySceneFormat.AMBIENT_LIGHT) {
+			return new AmbientLight(brightness);
+		} else if (type == BinarySceneFormat.SPOT_LIGHT) {
+			Point3D position = readPoint(in);
+			return new SpotLight(position, brightness, in.get() != 0);
+		} else if (type == BinarySceneFormat.INBOUND_LIGHT) {
+			return new InboundLight(readVector(in), brightness);
+		} else {
+			throw new IllegalStateException("Unsupported light source type " + type + " in file '" + file + "'");
+		}
+	}
+
+	private Point3D getVertex(int index) {
+		Point3D vertex = vertices[index];
+		if (vertex == null) {
+			int offset = vertexTableOffset + index * 24;
+			vertex = new Point3D(in.getDouble(offset), in.getDouble(offset + 8), in.getDouble(offset + 16));
+			vertices[index] = vertex;
+		}
+		return vertex;
+	}
+
+	private FlatShadingModel getShadingModel(int index) {
+		return index != BinarySceneFormat.NONE ? shadingModels[index] : null;
+	}
+
+	private TextureMapHandle getTextureMapHandle(int index) {
+		return index != BinarySceneFormat.NONE ? textureMapHandles[index] : null;
+	}
+
+	private Color readColor() {
+		if (in.get() == 0)
+			return null;
+		Integer argb = in.getInt();
+		Color color = colors.get(argb);
+		if (color == null) {
+			color = new Color(argb.intValue(), true);
+			colors.put(argb, color);
+		}
+		return color;
+	}
+
+	private static Point3D readPoint(ByteBuffer in) {
+		return new Point3D(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	private static Vector3D readVector(ByteBuffer in) {
+		return new Vector3D(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	private static String readString(ByteBuffer in) {
+		// As written by DataOutput.writeUTF, which equals UTF-8 for all but the null character and supplementary ones
+		byte[] bytes = new byte[in.getShort() & 0xffff];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+}
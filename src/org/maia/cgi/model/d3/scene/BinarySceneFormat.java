@@ -0,0 +1,48 @@
+package org.maia.cgi.model.d3.scene;
+
+/**
+ * Constants of the binary scene file format
+ *
+ * @see BinarySceneWriter
+ * @see BinarySceneBuilder
+ */
+final class BinarySceneFormat {
+
+	static final int MAGIC_NUMBER = 0x4D53434E;
+
+	static final int FORMAT_VERSION = 1;
+
+	static final byte MOVABLE_CAMERA = 1;
+
+	static final byte REVOLVING_CAMERA = 2;
+
+	static final byte AMBIENT_LIGHT = 1;
+
+	static final byte SPOT_LIGHT = 2;
+
+	static final byte INBOUND_LIGHT = 3;
+
+	static final byte IMAGE_TEXTURE_MAP_FILE_HANDLE = 1;
+
+	static final byte IMAGE_MASK_FILE_HANDLE = 2;
+
+	static final byte MULTIPART_OBJECT = 1;
+
+	static final byte SIMPLE_FACE = 2;
+
+	static final byte SIMPLE_TRIANGULAR_FACE = 3;
+
+	static final byte SIMPLE_TEXTURED_FACE = 4;
+
+	static final byte SPHERE_OBJECT = 5;
+
+	static final byte CYLINDER_OBJECT = 6;
+
+	static final byte RING_OBJECT = 7;
+
+	static final int NONE = -1;
+
+	private BinarySceneFormat() {
+	}
+
+}
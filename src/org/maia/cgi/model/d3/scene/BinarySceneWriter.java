@@ -0,0 +1,403 @@
+package org.maia.cgi.model.d3.scene;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.camera.MovableCameraImpl;
+import org.maia.cgi.model.d3.camera.PerspectiveViewVolume;
+import org.maia.cgi.model.d3.camera.RevolvingCameraImpl;
+import org.maia.cgi.model.d3.light.AmbientLight;
+import org.maia.cgi.model.d3.light.InboundLight;
+import org.maia.cgi.model.d3.light.LightSource;
+import org.maia.cgi.model.d3.light.SpotLight;
+import org.maia.cgi.model.d3.object.BaseObject3D;
+import org.maia.cgi.model.d3.object.CylinderObject3D;
+import org.maia.cgi.model.d3.object.MultipartObject3D;
+import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.QuadricObject3D;
+import org.maia.cgi.model.d3.object.RingObject3D;
+import org.maia.cgi.model.d3.object.SimpleFace3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D.PictureRegion;
+import org.maia.cgi.model.d3.object.SimpleTriangularFace3D;
+import org.maia.cgi.model.d3.object.SphereObject3D;
+import org.maia.cgi.render.d2.ImageMaskFileHandle;
+import org.maia.cgi.render.d2.ImageTextureMapFileHandle;
+import org.maia.cgi.render.d2.TextureMapHandle;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.render.d3.shading.FlatShadingModelImpl;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * Writes a <code>Scene</code> to a compact binary file
+ *
+ * <p>
+ * The file holds the scene's camera, the tree of top-level objects with their own transforms and the light sources. The
+ * vertices of all polygonal objects are stored once in a table of unique vertices, to which the faces refer by index.
+ * Likewise shading models and texture map handles are stored once and referred to by index. The objects are streamed
+ * to the file in the order of a depth-first traversal, without an intermediate representation in memory.
+ * </p>
+ * <p>
+ * Not every kind of scene can be written. The supported objects are <code>MultipartObject3D</code>,
+ * <code>SimpleFace3D</code>, <code>SimpleTriangularFace3D</code>, <code>SimpleTexturedFace3D</code> without a picture
+ * mask and the quadric objects, all with a <code>FlatShadingModelImpl</code> and file-based texture map handles. The
+ * camera has to be a <code>MovableCameraImpl</code> or <code>RevolvingCameraImpl</code> with a perspective view volume.
+ * The backdrop, darkness depth function and depth blur parameters of the scene are not written.
+ * </p>
+ *
+ * @see BinarySceneBuilder
+ */
+public class BinarySceneWriter {
+
+	private Scene scene;
+
+	private Map<Point3D, Integer> vertexIndices;
+
+	private List<Point3D> vertices;
+
+	private Map<FlatShadingModel, Integer> shadingModelIndices;
+
+	private List<FlatShadingModelImpl> shadingModels;
+
+	private Map<TextureMapHandle, Integer> textureMapHandleIndices;
+
+	private List<ImageTextureMapFileHandle> textureMapHandles;
+
+	public BinarySceneWriter(Scene scene) {
+		this.scene = scene;
+	}
+
+	/**
+	 * Writes the scene to a file
+	 *
+	 * @param file
+	 *            The file to write to
+	 * @throws IOException
+	 *             When writing fails
+	 * @throws IllegalArgumentException
+	 *             When the scene holds an object, light source or camera that is not supported by the binary format.
+	 *             In that case the file is not written.
+	 */
+	public void write(File file) throws IOException {
+		collectTables();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			write(out);
+		} finally {
+			out.close();
+			releaseTables();
+		}
+	}
+
+	private void write(DataOutput out) throws IOException {
+		out.writeInt(BinarySceneFormat.MAGIC_NUMBER);
+		out.writeInt(BinarySceneFormat.FORMAT_VERSION);
+		out.writeUTF(getScene().getName() != null ? getScene().getName() : "");
+		writeCamera(out, getScene().getCamera());
+		out.writeInt(shadingModels.size());
+		for (FlatShadingModelImpl shadingModel : shadingModels) {
+			out.writeDouble(shadingModel.getLightReflectionFactor());
+			out.writeDouble(shadingModel.getLightGlossFactor());
+		}
+		out.writeInt(textureMapHandles.size());
+		for (ImageTextureMapFileHandle handle : textureMapHandles) {
+			writeTextureMapHandle(out, handle);
+		}
+		out.writeInt(vertices.size());
+		for (Point3D vertex : vertices) {
+			out.writeDouble(vertex.getX());
+			out.writeDouble(vertex.getY());
+			out.writeDouble(vertex.getZ());
+		}
+		out.writeInt(getScene().getTopLevelObjects().size());
+		for (Object3D object : getScene().getTopLevelObjects()) {
+			writeObject(out, object);
+		}
+		out.writeInt(getScene().getLightSources().size());
+		for (LightSource light : getScene().getLightSources()) {
+			writeLightSource(out, light);
+		}
+	}
+
+	private void collectTables() {
+		vertexIndices = new HashMap<Point3D, Integer>();
+		vertices = new Vector<Point3D>();
+		shadingModelIndices = new IdentityHashMap<FlatShadingModel, Integer>();
+		shadingModels = new Vector<FlatShadingModelImpl>();
+		textureMapHandleIndices = new HashMap<TextureMapHandle, Integer>();
+		textureMapHandles = new Vector<ImageTextureMapFileHandle>();
+		getCameraType(getScene().getCamera());
+		for (LightSource light : getScene().getLightSources()) {
+			getLightSourceType(light);
+		}
+		for (Object3D object : getScene().getTopLevelObjects()) {
+			collectTables(object);
+		}
+	}
+
+	private void collectTables(Object3D object) {
+		byte type = getObjectType(object);
+		if (type == BinarySceneFormat.MULTIPART_OBJECT) {
+			for (Object3D part : object.asCompositeObject().getParts()) {
+				collectTables(part);
+			}
+		} else if (type == BinarySceneFormat.SIMPLE_FACE || type == BinarySceneFormat.SIMPLE_TRIANGULAR_FACE) {
+			SimpleFace3D face = (SimpleFace3D) object;
+			collectShadingModel(face.getShadingModel());
+			for (Point3D vertex : face.getVerticesInObjectCoordinates()) {
+				collectVertex(vertex);
+			}
+		} else if (type == BinarySceneFormat.SIMPLE_TEXTURED_FACE) {
+			SimpleTexturedFace3D face = (SimpleTexturedFace3D) object;
+			if (face.getPictureMask() != null)
+				throw new IllegalArgumentException("Unsupported textured face with a picture mask");
+			collectShadingModel(face.getShadingModel());
+			collectTextureMapHandle(face.getPictureMapHandle());
+			collectTextureMapHandle(face.getLuminanceMapHandle());
+			collectTextureMapHandle(face.getTransparencyMapHandle());
+		} else {
+			collectShadingModel(((QuadricObject3D) object).getShadingModel());
+		}
+	}
+
+	private void collectVertex(Point3D vertex) {
+		if (!vertexIndices.containsKey(vertex)) {
+			vertexIndices.put(vertex, vertices.size());
+			vertices.add(vertex);
+		}
+	}
+
+	private void collectShadingModel(FlatShadingModel shadingModel) {
+		if (shadingModel == null || shadingModelIndices.containsKey(shadingModel))
+			return;
+		if (!FlatShadingModelImpl.class.equals(shadingModel.getClass()))
+			throw new IllegalArgumentException("Unsupported shading model: " + shadingModel.getClass().getName());
+		shadingModelIndices.put(shadingModel, shadingModels.size());
+		shadingModels.add((FlatShadingModelImpl) shadingModel);
+	}
+
+	private void collectTextureMapHandle(TextureMapHandle handle) {
+		if (handle == null || textureMapHandleIndices.containsKey(handle))
+			return;
+		getTextureMapHandleType(handle);
+		textureMapHandleIndices.put(handle, textureMapHandles.size());
+		textureMapHandles.add((ImageTextureMapFileHandle) handle);
+	}
+
+	private void releaseTables() {
+		vertexIndices = null;
+		vertices = null;
+		shadingModelIndices = null;
+		shadingModels = null;
+		textureMapHandleIndices = null;
+		textureMapHandles = null;
+	}
+
+	private void writeCamera(DataOutput out, Camera camera) throws IOException {
+		byte type = getCameraType(camera);
+		out.writeByte(type);
+		PerspectiveViewVolume viewVolume = (PerspectiveViewVolume) camera.getViewVolume();
+		out.writeDouble(viewVolume.getViewAngleInDegrees());
+		out.writeDouble(viewVolume.getAspectRatio());
+		out.writeDouble(viewVolume.getN());
+		out.writeDouble(viewVolume.getF());
+		writePoint(out, camera.getPosition());
+		// The orientation is taken from the rows of the viewing matrix, which hold the unit vectors u, v and n
+		TransformMatrix viewingMatrix = camera.getViewingMatrix();
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				out.writeDouble(viewingMatrix.getValue(i, j));
+			}
+		}
+		if (type == BinarySceneFormat.REVOLVING_CAMERA) {
+			writePoint(out, ((RevolvingCameraImpl) camera).getPivotPoint());
+		}
+	}
+
+	private byte getCameraType(Camera camera) {
+		if (!(camera.getViewVolume() instanceof PerspectiveViewVolume))
+			throw new IllegalArgumentException("Unsupported view volume: "
+					+ camera.getViewVolume().getClass().getName());
+		if (MovableCameraImpl.class.equals(camera.getClass())) {
+			return BinarySceneFormat.MOVABLE_CAMERA;
+		} else if (RevolvingCameraImpl.class.equals(camera.getClass())) {
+			return BinarySceneFormat.REVOLVING_CAMERA;
+		} else {
+			throw new IllegalArgumentException("Unsupported camera: " + camera.getClass().getName());
+		}
+	}
+
+	private void writeLightSource(DataOutput out, LightSource light) throws IOException {
+		byte type = getLightSourceType(light);
+		out.writeByte(type);
+		out.writeDouble(light.getBrightness());
+		if (type == BinarySceneFormat.SPOT_LIGHT) {
+			SpotLight spotLight = (SpotLight) light;
+			writePoint(out, spotLight.getPositionInWorld());
+			out.writeBoolean(spotLight.isStationary());
+		} else if (type == BinarySceneFormat.INBOUND_LIGHT) {
+			InboundLight inboundLight = (InboundLight) light;
+			out.writeDouble(inboundLight.getDirection().getX());
+			out.writeDouble(inboundLight.getDirection().getY());
+			out.writeDouble(inboundLight.getDirection().getZ());
+		}
+	}
+
+	private byte getLightSourceType(LightSource light) {
+		if (AmbientLight.class.equals(light.getClass())) {
+			return BinarySceneFormat.AMBIENT_LIGHT;
+		} else if (SpotLight.class.equals(light.getClass())) {
+			return BinarySceneFormat.SPOT_LIGHT;
+		} else if (InboundLight.class.equals(light.getClass())) {
+			return BinarySceneFormat.INBOUND_LIGHT;
+		} else {
+			throw new IllegalArgumentException("Unsupported light source: " + light.getClass().getName());
+		}
+	}
+
+	private void writeTextureMapHandle(DataOutput out, ImageTextureMapFileHandle handle) throws IOException {
+		byte type = getTextureMapHandleType(handle);
+		out.writeByte(type);
+		out.writeUTF(handle.getFilePath());
+		if (type == BinarySceneFormat.IMAGE_MASK_FILE_HANDLE) {
+			writeColor(out, ((ImageMaskFileHandle) handle).getMaskColor());
+		} else {
+			out.writeDouble(handle.getScaleX());
+			out.writeDouble(handle.getScaleY());
+		}
+	}
+
+	private byte getTextureMapHandleType(TextureMapHandle handle) {
+		if (ImageTextureMapFileHandle.class.equals(handle.getClass())) {
+			return BinarySceneFormat.IMAGE_TEXTURE_MAP_FILE_HANDLE;
+		} else if (ImageMaskFileHandle.class.equals(handle.getClass())) {
+			return BinarySceneFormat.IMAGE_MASK_FILE_HANDLE;
+		} else {
+			throw new IllegalArgumentException("Unsupported texture map handle: " + handle.getClass().getName());
+		}
+	}
+
+	private void writeObject(DataOutput out, Object3D object) throws IOException {
+		byte type = getObjectType(object);
+		out.writeByte(type);
+		writeTransforms(out, (BaseObject3D) object);
+		if (type == BinarySceneFormat.MULTIPART_OBJECT) {
+			MultipartObject3D<?> composite = (MultipartObject3D<?>) object;
+			out.writeBoolean(composite.isLocallyIndexed());
+			out.writeInt(composite.getParts().size());
+			for (Object3D part : composite.getParts()) {
+				writeObject(out, part);
+			}
+		} else if (type == BinarySceneFormat.SIMPLE_FACE || type == BinarySceneFormat.SIMPLE_TRIANGULAR_FACE) {
+			SimpleFace3D face = (SimpleFace3D) object;
+			writeColor(out, face.getFrontColor());
+			writeColor(out, face.getBackColor());
+			out.writeInt(getShadingModelIndex(face.getShadingModel()));
+			List<Point3D> faceVertices = face.getVerticesInObjectCoordinates();
+			if (type == BinarySceneFormat.SIMPLE_FACE) {
+				out.writeInt(faceVertices.size());
+			}
+			for (Point3D vertex : faceVertices) {
+				out.writeInt(vertexIndices.get(vertex).intValue());
+			}
+		} else if (type == BinarySceneFormat.SIMPLE_TEXTURED_FACE) {
+			SimpleTexturedFace3D face = (SimpleTexturedFace3D) object;
+			writeColor(out, face.getFrontColor());
+			out.writeInt(getShadingModelIndex(face.getShadingModel()));
+			PictureRegion region = face.getPictureRegion();
+			out.writeDouble(region.getX1());
+			out.writeDouble(region.getX2());
+			out.writeDouble(region.getY1());
+			out.writeDouble(region.getY2());
+			out.writeInt(getTextureMapHandleIndex(face.getPictureMapHandle()));
+			out.writeInt(getTextureMapHandleIndex(face.getLuminanceMapHandle()));
+			out.writeInt(getTextureMapHandleIndex(face.getTransparencyMapHandle()));
+		} else {
+			QuadricObject3D quadric = (QuadricObject3D) object;
+			if (type == BinarySceneFormat.SPHERE_OBJECT) {
+				out.writeDouble(((SphereObject3D) quadric).getRadius());
+			} else if (type == BinarySceneFormat.CYLINDER_OBJECT) {
+				out.writeDouble(((CylinderObject3D) quadric).getRadius());
+				out.writeDouble(((CylinderObject3D) quadric).getDepth());
+			} else {
+				out.writeDouble(((RingObject3D) quadric).getInnerRadius());
+				out.writeDouble(((RingObject3D) quadric).getOuterRadius());
+				out.writeDouble(((RingObject3D) quadric).getDepth());
+			}
+			writeColor(out, quadric.getColor());
+			out.writeInt(getShadingModelIndex(quadric.getShadingModel()));
+		}
+	}
+
+	private byte getObjectType(Object3D object) {
+		Class<?> objectClass = object.getClass();
+		if (MultipartObject3D.class.equals(objectClass)) {
+			return BinarySceneFormat.MULTIPART_OBJECT;
+		} else if (SimpleFace3D.class.equals(objectClass)) {
+			return BinarySceneFormat.SIMPLE_FACE;
+		} else if (SimpleTriangularFace3D.class.equals(objectClass)) {
+			return BinarySceneFormat.SIMPLE_TRIANGULAR_FACE;
+		} else if (SimpleTexturedFace3D.class.equals(objectClass)) {
+			return BinarySceneFormat.SIMPLE_TEXTURED_FACE;
+		} else if (SphereObject3D.class.equals(objectClass)) {
+			return BinarySceneFormat.SPHERE_OBJECT;
+		} else if (CylinderObject3D.class.equals(objectClass)) {
+			return BinarySceneFormat.CYLINDER_OBJECT;
+		} else if (RingObject3D.class.equals(objectClass)) {
+			return BinarySceneFormat.RING_OBJECT;
+		} else {
+			throw new IllegalArgumentException("Unsupported object type: " + objectClass.getName());
+		}
+	}
+
+	private void writeTransforms(DataOutput out, BaseObject3D object) throws IOException {
+		List<TransformMatrix> matrices = object.getOwnTransformMatrices();
+		out.writeInt(matrices.size() - 1); // skipping the initial Identity transform
+		for (int k = 1; k < matrices.size(); k++) {
+			TransformMatrix matrix = matrices.get(k);
+			for (int i = 0; i < 4; i++) {
+				for (int j = 0; j < 4; j++) {
+					out.writeDouble(matrix.getValue(i, j));
+				}
+			}
+		}
+	}
+
+	private int getShadingModelIndex(FlatShadingModel shadingModel) {
+		return shadingModel != null ? shadingModelIndices.get(shadingModel).intValue() : BinarySceneFormat.NONE;
+	}
+
+	private int getTextureMapHandleIndex(TextureMapHandle handle) {
+		return handle != null ? textureMapHandleIndices.get(handle).intValue() : BinarySceneFormat.NONE;
+	}
+
+	private static void writeColor(DataOutput out, Color color) throws IOException {
+		out.writeBoolean(color != null);
+		if (color != null) {
+			out.writeInt(color.getRGB());
+		}
+	}
+
+	private static void writePoint(DataOutput out, Point3D point) throws IOException {
+		out.writeDouble(point.getX());
+		out.writeDouble(point.getY());
+		out.writeDouble(point.getZ());
+	}
+
+	public Scene getScene() {
+		return scene;
+	}
+
+}
@@ -12,6 +12,7 @@ import org.maia.cgi.model.d3.CoordinateFrame;
 import org.maia.cgi.model.d3.camera.Camera;
 import org.maia.cgi.model.d3.camera.CameraObserver;
 import org.maia.cgi.model.d3.light.LightSource;
+import org.maia.cgi.model.d3.object.BaseObject3D;
 import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.scene.index.SceneSpatialIndex;
 import org.maia.cgi.model.d3.scene.index.SceneSpatialIndexFactory;
@@ -45,7 +46,11 @@ public class Scene implements CameraObserver, Memoise {
 
 	private double distanceOutsideScene = -1.0;
 
-	private SceneSpatialIndex spatialIndex;
+	private SceneSpatialIndex spatialIndex; // in world coordinates, survives camera changes
+
+	private long changeStamp; // latest change stamp of the top-level objects, as of the last check for changes
+
+	private long spatialIndexStamp; // change stamp up to which the spatial index reflects all changes
 
 	private SceneViewPlaneIndex viewPlaneIndex;
 
@@ -66,11 +71,25 @@ public class Scene implements CameraObserver, Memoise {
 		changeCamera(camera);
 	}
 
-	public void addTopLevelObject(Object3D object) {
+	public synchronized void addTopLevelObject(Object3D object) {
 		invalidateBoundingBoxes();
-		invalidateSpatialIndices();
+		invalidateViewPlaneIndex();
 		getTopLevelObjects().add(object);
-		object.cameraHasChanged(getCamera());
+		if (spatialIndex != null && !spatialIndex.insert(object)) {
+			invalidateSpatialIndex();
+		}
+	}
+
+	public synchronized boolean removeTopLevelObject(Object3D object) {
+		boolean removed = getTopLevelObjects().remove(object);
+		if (removed) {
+			invalidateBoundingBoxes();
+			invalidateViewPlaneIndex();
+			if (spatialIndex != null && !spatialIndex.remove(object)) {
+				invalidateSpatialIndex();
+			}
+		}
+		return removed;
 	}
 
 	public void addLightSource(LightSource lightSource) {
@@ -90,11 +109,8 @@ public class Scene implements CameraObserver, Memoise {
 	@Override
 	public void cameraHasChanged(Camera camera) {
 		invalidateCameraBoundingBox();
-		invalidateSpatialIndices();
-		// Objects
-		for (Object3D object : getTopLevelObjects()) {
-			object.cameraHasChanged(camera);
-		}
+		invalidateViewPlaneIndex();
+		// Objects validate their cached state lazily against the camera's epoch, see BaseObject3D
 		// Light sources
 		for (LightSource light : getLightSources()) {
 			light.cameraHasChanged(camera);
@@ -166,10 +182,70 @@ public class Scene implements CameraObserver, Memoise {
 	}
 
 	private void invalidateSpatialIndices() {
+		invalidateSpatialIndex();
+		invalidateViewPlaneIndex();
+	}
+
+	private void invalidateSpatialIndex() {
 		spatialIndex = null;
+	}
+
+	private void invalidateViewPlaneIndex() {
 		viewPlaneIndex = null;
 	}
 
+	/**
+	 * Brings the bounding boxes and indices of this scene up to date with changes to its objects
+	 * 
+	 * <p>
+	 * The scene derives its bounding boxes and indices from a snapshot of its objects, and does not look for changes
+	 * on access, so that render threads can share them. After objects in this scene have been transformed or have had
+	 * parts added, this method updates the spatial index for just those objects, or has it rebuilt when the index
+	 * declines. Changes to objects outside of this scene are of no concern. A renderer calls this method before
+	 * rendering, while no other thread is using the scene.
+	 * </p>
+	 */
+	public synchronized void checkForChanges() {
+		long stamp = getLatestChangeStamp();
+		if (stamp != changeStamp) {
+			changeStamp = stamp;
+			invalidateBoundingBoxes();
+			invalidateViewPlaneIndex();
+			updateSpatialIndex(stamp);
+		}
+	}
+
+	private void updateSpatialIndex(long stamp) {
+		if (spatialIndex != null) {
+			// Only the changed objects are updated, unless the index advises to rebuild
+			for (Object3D object : getTopLevelObjects()) {
+				if (hasChangedSince(object, spatialIndexStamp) && !spatialIndex.update(object)) {
+					invalidateSpatialIndex();
+					break;
+				}
+			}
+			spatialIndexStamp = stamp;
+		}
+	}
+
+	private long getLatestChangeStamp() {
+		long stamp = 0;
+		for (Object3D object : getTopLevelObjects()) {
+			if (object instanceof BaseObject3D) {
+				stamp = Math.max(stamp, ((BaseObject3D) object).getChangeStamp());
+			}
+		}
+		return stamp;
+	}
+
+	private boolean hasChangedSince(Object3D object, long stamp) {
+		if (object instanceof BaseObject3D) {
+			return ((BaseObject3D) object).getChangeStamp() > stamp;
+		} else {
+			return true; // no way to tell
+		}
+	}
+
 	public double getDistanceOutsideScene() {
 		if (distanceOutsideScene < 0) {
 			Box3D bbox = getBoundingBoxInWorldCoordinates();
@@ -180,6 +256,7 @@ public class Scene implements CameraObserver, Memoise {
 
 	public SceneSpatialIndex getSpatialIndex() {
 		if (spatialIndex == null) {
+			spatialIndexStamp = getLatestChangeStamp();
 			spatialIndex = SceneSpatialIndexFactory.getInstance().createSpatialIndex(this);
 		}
 		return spatialIndex;
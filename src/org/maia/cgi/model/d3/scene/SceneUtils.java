@@ -13,12 +13,15 @@ import org.maia.cgi.model.d3.camera.MovableCamera;
 import org.maia.cgi.model.d3.light.DirectionalLightSource;
 import org.maia.cgi.model.d3.light.LightSource;
 import org.maia.cgi.model.d3.light.PositionalLightSource;
+import org.maia.cgi.model.d3.object.GeometryInstance3D;
 import org.maia.cgi.model.d3.object.Mesh3D;
 import org.maia.cgi.model.d3.object.Mesh3D.Edge;
 import org.maia.cgi.model.d3.object.MeshObject3D;
+import org.maia.cgi.model.d3.object.MultipartObject3D;
 import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.object.PolygonalObject3D;
 import org.maia.cgi.model.d3.object.RaytraceableObject3D;
+import org.maia.cgi.model.d3.object.SharedGeometry3D;
 
 public class SceneUtils {
 
@@ -40,6 +43,55 @@ public class SceneUtils {
 		}
 	}
 
+	/**
+	 * Returns the objects in the scene that are subject to the scene's spatial index
+	 * 
+	 * <p>
+	 * These are the individual objects in the scene, except for the parts of locally indexed composite objects. Such a
+	 * composite object is returned in place of its parts.
+	 * </p>
+	 * 
+	 * @param scene
+	 *            The scene
+	 * @return The objects to index
+	 * @see MultipartObject3D#isLocallyIndexed()
+	 */
+	public static Collection<Object3D> getAllIndexableObjectsInScene(Scene scene) {
+		Collection<Object3D> objects = new Vector<Object3D>(1000);
+		for (Object3D object : scene.getTopLevelObjects()) {
+			collectAllIndexableObjects(object, objects);
+		}
+		return objects;
+	}
+
+	/**
+	 * Returns the objects to include in a scene's spatial index that make up a given object
+	 * 
+	 * @param object
+	 *            A top-level object in the scene
+	 * @return The objects to index for <code>object</code>
+	 * @see #getAllIndexableObjectsInScene(Scene)
+	 */
+	public static Collection<Object3D> getAllIndexableObjects(Object3D object) {
+		Collection<Object3D> objects = new Vector<Object3D>();
+		collectAllIndexableObjects(object, objects);
+		return objects;
+	}
+
+	private static void collectAllIndexableObjects(Object3D current, Collection<Object3D> collection) {
+		if (current.isComposite() && !isLocallyIndexed(current)) {
+			for (Object3D part : current.asCompositeObject().getParts()) {
+				collectAllIndexableObjects(part, collection);
+			}
+		} else {
+			collection.add(current);
+		}
+	}
+
+	private static boolean isLocallyIndexed(Object3D object) {
+		return object instanceof MultipartObject3D<?> && ((MultipartObject3D<?>) object).isLocallyIndexed();
+	}
+
 	public static Collection<MeshObject3D> getAllMeshObjectsInScene(Scene scene) {
 		Collection<MeshObject3D> objects = new Vector<MeshObject3D>(1000);
 		for (Object3D object : scene.getTopLevelObjects()) {
@@ -100,6 +152,7 @@ public class SceneUtils {
 	public static void moveCameraToEncloseScene(Scene scene, double viewAngleInDegrees, double aspectRatio) {
 		if (scene.getCamera() instanceof MovableCamera) {
 			MovableCamera camera = (MovableCamera) scene.getCamera();
+			scene.checkForChanges();
 			Box3D box = scene.getBoundingBoxInCameraCoordinates();
 			Point3D boxc = box.getCenter();
 			double top = Math.max(Math.abs(box.getY1()), Math.abs(box.getY2()));
@@ -120,19 +173,30 @@ public class SceneUtils {
 		ModelMetrics metrics = new ModelMetrics();
 		Set<Point3D> uniqueVertices = new HashSet<Point3D>(1000);
 		Set<LineSegment3D> uniqueEdges = new HashSet<LineSegment3D>(1000);
+		Set<SharedGeometry3D> sharedGeometries = new HashSet<SharedGeometry3D>();
 		for (Object3D object : scene.getTopLevelObjects()) {
-			countModelMetrics(object, metrics, uniqueVertices, uniqueEdges);
+			countModelMetrics(object, metrics, uniqueVertices, uniqueEdges, sharedGeometries);
 		}
 		metrics.setUniqueVertices(uniqueVertices.size());
 		metrics.setUniqueEdges(uniqueEdges.size());
+		metrics.setSharedGeometries(sharedGeometries.size());
 		return metrics;
 	}
 
 	private static void countModelMetrics(Object3D current, ModelMetrics metrics, Set<Point3D> uniqueVertices,
-			Set<LineSegment3D> uniqueEdges) {
+			Set<LineSegment3D> uniqueEdges, Set<SharedGeometry3D> sharedGeometries) {
 		if (current.isComposite()) {
 			for (Object3D part : current.asCompositeObject().getParts()) {
-				countModelMetrics(part, metrics, uniqueVertices, uniqueEdges);
+				countModelMetrics(part, metrics, uniqueVertices, uniqueEdges, sharedGeometries);
+			}
+		} else if (current instanceof GeometryInstance3D) {
+			// Counted without deriving the instance's vertices in world coordinates
+			SharedGeometry3D geometry = ((GeometryInstance3D) current).getGeometry();
+			metrics.setInstances(metrics.getInstances() + 1);
+			metrics.setInstancedVertices(metrics.getInstancedVertices() + geometry.getVertexCount());
+			metrics.setInstancedTriangles(metrics.getInstancedTriangles() + geometry.getTriangleCount());
+			if (sharedGeometries.add(geometry)) {
+				metrics.setSharedVertices(metrics.getSharedVertices() + geometry.getVertexCount());
 			}
 		} else {
 			if (current.isMesh()) {
@@ -164,6 +228,16 @@ public class SceneUtils {
 
 		private long uniqueEdges;
 
+		private long instances;
+
+		private long sharedGeometries;
+
+		private long instancedVertices;
+
+		private long instancedTriangles;
+
+		private long sharedVertices;
+
 		public ModelMetrics() {
 		}
 
@@ -207,6 +281,55 @@ public class SceneUtils {
 			this.uniqueEdges = uniqueEdges;
 		}
 
+		public long getInstances() {
+			return instances;
+		}
+
+		public void setInstances(long instances) {
+			this.instances = instances;
+		}
+
+		public long getSharedGeometries() {
+			return sharedGeometries;
+		}
+
+		public void setSharedGeometries(long sharedGeometries) {
+			this.sharedGeometries = sharedGeometries;
+		}
+
+		/**
+		 * Returns the number of vertices represented by all instances together
+		 */
+		public long getInstancedVertices() {
+			return instancedVertices;
+		}
+
+		public void setInstancedVertices(long instancedVertices) {
+			this.instancedVertices = instancedVertices;
+		}
+
+		/**
+		 * Returns the number of triangles represented by all instances together
+		 */
+		public long getInstancedTriangles() {
+			return instancedTriangles;
+		}
+
+		public void setInstancedTriangles(long instancedTriangles) {
+			this.instancedTriangles = instancedTriangles;
+		}
+
+		/**
+		 * Returns the number of vertices actually stored by the shared geometries, each one counted once
+		 */
+		public long getSharedVertices() {
+			return sharedVertices;
+		}
+
+		public void setSharedVertices(long sharedVertices) {
+			this.sharedVertices = sharedVertices;
+		}
+
 	}
 
 }
\ No newline at end of file
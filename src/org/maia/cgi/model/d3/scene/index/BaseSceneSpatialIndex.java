@@ -1,58 +1,329 @@
 package org.maia.cgi.model.d3.scene.index;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
+import org.maia.cgi.Metrics;
 import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
 import org.maia.cgi.model.d3.camera.Camera;
 import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.model.d3.scene.SceneUtils;
+import org.maia.cgi.transform.d3.TransformMatrix;
+import org.maia.cgi.transform.d3.Transformation;
 
+/**
+ * Base class for a 3D index of a <code>Scene</code>'s objects in world coordinates
+ *
+ * <p>
+ * Since the index does not depend on the camera, it remains valid when the camera moves and only needs to be rebuilt
+ * when objects in the scene change. Lines are given in camera coordinates and are transformed into world coordinates
+ * to traverse the index.
+ * </p>
+ * <p>
+ * For every top-level object in the scene, the index keeps track of the objects that were indexed for it and their
+ * bounding boxes at that time. This allows to take an object out of the index again, so that a changed object can be
+ * updated in place. Subclasses provide the actual adding and removing of objects and may advise a rebuild once the
+ * quality of the index degrades.
+ * </p>
+ */
 public abstract class BaseSceneSpatialIndex implements SceneSpatialIndex {
 
 	private Scene scene;
 
+	private Map<Object3D, List<Object3D>> indexedParts; // indexed objects per top-level object
+
+	private Map<Object3D, Box3D> indexedBoxes; // bounding box of each indexed object at the time of indexing
+
+	private int indexedObjectCountAtBuild;
+
+	private int changedObjectCount; // number of indexed objects that were added or removed since the build
+
 	protected BaseSceneSpatialIndex(Scene scene) {
 		this.scene = scene;
 	}
 
+	@Override
+	public boolean update(Object3D object) {
+		return remove(object) && insert(object);
+	}
+
+	@Override
+	public boolean insert(Object3D object) {
+		if (!supportsIncrementalUpdates() || getIndexedParts().containsKey(object))
+			return false;
+		Box3D bounds = getIndexBounds();
+		List<Object3D> parts = new Vector<Object3D>();
+		List<Box3D> boxes = new Vector<Box3D>();
+		for (Object3D part : SceneUtils.getAllIndexableObjects(object)) {
+			Box3D box = getObjectBox(part);
+			if (part.isBounded()) {
+				if (box == null)
+					continue; // nothing to index
+				if (!bounds.contains(box))
+					return false; // outside of the space covered by this index, checked before adding any part
+			}
+			parts.add(part);
+			boxes.add(box);
+		}
+		for (int i = 0; i < parts.size(); i++) {
+			addObjectToIndex(parts.get(i), boxes.get(i));
+			getIndexedBoxes().put(parts.get(i), boxes.get(i));
+		}
+		getIndexedParts().put(object, parts);
+		changedObjectCount += parts.size();
+		return !isRebuildAdvised();
+	}
+
+	@Override
+	public boolean remove(Object3D object) {
+		if (!supportsIncrementalUpdates())
+			return false;
+		List<Object3D> parts = getIndexedParts().remove(object);
+		if (parts == null)
+			return false;
+		for (Object3D part : parts) {
+			removeObjectFromIndex(part, getIndexedBoxes().remove(part));
+		}
+		changedObjectCount += parts.size();
+		return !isRebuildAdvised();
+	}
+
+	/**
+	 * Adds an object to the index, after the index has been built
+	 * 
+	 * @param object
+	 *            An object to index
+	 * @param box
+	 *            The bounding box of <code>object</code>, as returned by {@link #getObjectBox(Object3D)}. It lies
+	 *            within the bounds of this index, or is <code>null</code> when the object is unbounded
+	 */
+	protected abstract void addObjectToIndex(Object3D object, Box3D box);
+
+	/**
+	 * Removes an object from the index
+	 * 
+	 * @param object
+	 *            An indexed object
+	 * @param box
+	 *            The bounding box of <code>object</code> at the time it was indexed, or <code>null</code> when the
+	 *            object is unbounded
+	 */
+	protected abstract void removeObjectFromIndex(Object3D object, Box3D box);
+
+	/**
+	 * Returns the space covered by this index
+	 * 
+	 * @return The bounds of this index, as it was built
+	 */
+	protected abstract Box3D getIndexBounds();
+
+	/**
+	 * Tells whether this index can be updated incrementally, rather than being rebuilt
+	 * 
+	 * @return <code>true</code> if this index supports {@link #update(Object3D)}, {@link #insert(Object3D)} and
+	 *         {@link #remove(Object3D)}
+	 */
+	protected boolean supportsIncrementalUpdates() {
+		// Subclasses may override this method
+		return true;
+	}
+
+	/**
+	 * Tells whether the quality of this index has degraded enough by incremental updates to rebuild it
+	 * 
+	 * @return <code>true</code> when more objects have changed since the build than given by
+	 *         {@link #getMaximumChangeRatioBeforeRebuild()}
+	 */
+	protected boolean isRebuildAdvised() {
+		return changedObjectCount > getMaximumChangeRatioBeforeRebuild() * Math.max(indexedObjectCountAtBuild, 1);
+	}
+
+	/**
+	 * Returns the maximum number of changed objects relative to the number of objects at build time, before a rebuild
+	 * is advised
+	 * 
+	 * <p>
+	 * A removal and an insertion each count as a change, so an update of an object counts twice
+	 * </p>
+	 * 
+	 * @return The maximum change ratio
+	 */
+	protected double getMaximumChangeRatioBeforeRebuild() {
+		// Subclasses may override this method
+		return 1.0;
+	}
+
 	@Override
 	public Scene getScene() {
 		return scene;
 	}
 
+	private Map<Object3D, List<Object3D>> getIndexedParts() {
+		if (indexedParts == null) {
+			indexedParts = new HashMap<Object3D, List<Object3D>>();
+		}
+		return indexedParts;
+	}
+
+	private Map<Object3D, Box3D> getIndexedBoxes() {
+		if (indexedBoxes == null) {
+			indexedBoxes = new HashMap<Object3D, Box3D>();
+		}
+		return indexedBoxes;
+	}
+
 	protected Camera getCamera() {
 		return getScene().getCamera();
 	}
 
-	protected Collection<Object3D> getIndexedObjects() {
-		Collection<Object3D> sceneObjects = SceneUtils.getAllIndividualObjectsInScene(getScene());
-		Collection<Object3D> indexedObjects = new Vector<Object3D>(sceneObjects.size());
+	/**
+	 * Returns the objects to include in the index when building it
+	 * 
+	 * <p>
+	 * This method is meant to be called once, on building the index. It also starts keeping track of the indexed
+	 * objects for incremental updates.
+	 * </p>
+	 * 
+	 * @return The objects to index
+	 */
+	protected Collection<Object3D> collectIndexedObjects() {
+		return collectIndexedObjects(supportsIncrementalUpdates());
+	}
+
+	private Collection<Object3D> collectIndexedObjects(boolean track) {
+		Collection<Object3D> indexedObjects = new Vector<Object3D>(1000);
 		Box3D sceneBox = getSceneBox();
-		for (Object3D object : sceneObjects) {
-			boolean overlaps = true;
-			if (object.isBounded()) {
-				Box3D objectBox = getObjectBox(object);
-				overlaps = objectBox != null && objectBox.overlaps(sceneBox);
+		if (track) {
+			indexedParts = new HashMap<Object3D, List<Object3D>>();
+			indexedBoxes = new HashMap<Object3D, Box3D>(1000);
+		}
+		for (Object3D topLevelObject : getScene().getTopLevelObjects()) {
+			List<Object3D> parts = track ? new Vector<Object3D>() : null;
+			for (Object3D object : SceneUtils.getAllIndexableObjects(topLevelObject)) {
+				boolean overlaps = true;
+				Box3D objectBox = null;
+				if (object.isBounded()) {
+					objectBox = getObjectBox(object);
+					overlaps = objectBox != null && objectBox.overlaps(sceneBox);
+				}
+				if (overlaps) {
+					indexedObjects.add(object);
+					if (track) {
+						indexedBoxes.put(object, objectBox);
+						parts.add(object);
+					}
+				}
 			}
-			if (overlaps) {
-				indexedObjects.add(object);
+			if (track) {
+				indexedParts.put(topLevelObject, parts);
 			}
 		}
+		if (track) {
+			indexedObjectCountAtBuild = indexedObjects.size();
+			changedObjectCount = 0;
+		}
 		return indexedObjects;
 	}
 
+	/**
+	 * Writes the structure of this index, so it can be read back by a subclass-specific method later on
+	 * 
+	 * <p>
+	 * Objects are written as their position in the collection of {@link #collectIndexedObjects()}. Reading back
+	 * therefore requires the scene to be in the same state as when the index was built.
+	 * </p>
+	 * 
+	 * @param out
+	 *            The output to write to
+	 * @throws IOException
+	 *             When writing fails
+	 * @see PersistentSceneIndexCache
+	 */
+	abstract void writeIndex(DataOutput out) throws IOException;
+
+	/**
+	 * Writes the number of indexed objects
+	 * 
+	 * @return The identifier of every indexed object, to write in place of the object
+	 * @see #readIndexedObjects(ByteBuffer)
+	 */
+	Map<Object3D, Integer> writeIndexedObjects(DataOutput out) throws IOException {
+		Collection<Object3D> objects = collectIndexedObjects(false);
+		Map<Object3D, Integer> identifiers = new HashMap<Object3D, Integer>(objects.size());
+		for (Object3D object : objects) {
+			identifiers.put(object, identifiers.size());
+		}
+		out.writeInt(objects.size());
+		return identifiers;
+	}
+
+	/**
+	 * Reads the number of indexed objects and collects the objects from the scene
+	 * 
+	 * @return The indexed objects, in order of their identifier
+	 * @throws IOException
+	 *             When the scene holds a different number of objects to index
+	 * @see #writeIndexedObjects(DataOutput)
+	 */
+	List<Object3D> readIndexedObjects(ByteBuffer in) throws IOException {
+		int count = in.getInt();
+		List<Object3D> objects = new Vector<Object3D>(collectIndexedObjects());
+		if (objects.size() != count)
+			throw new IOException("Index holds " + count + " objects, scene has " + objects.size());
+		return objects;
+	}
+
+	static void writeBox(DataOutput out, Box3D box) throws IOException {
+		out.writeDouble(box.getX1());
+		out.writeDouble(box.getX2());
+		out.writeDouble(box.getY1());
+		out.writeDouble(box.getY2());
+		out.writeDouble(box.getZ1());
+		out.writeDouble(box.getZ2());
+	}
+
+	static Box3D readBox(ByteBuffer in) {
+		return new Box3D(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+				in.getDouble());
+	}
+
 	protected Box3D getSceneBox() {
-		return getScene().getBoundingBoxInCameraCoordinates();
+		return getScene().getBoundingBoxInWorldCoordinates();
 	}
 
 	protected Box3D getObjectBox(Object3D object) {
 		Box3D box = null;
 		if (object.isBounded()) {
-			box = object.asBoundedObject().getBoundingBoxInCameraCoordinates(getCamera());
+			box = object.asBoundedObject().getBoundingBoxInWorldCoordinates();
 		}
 		return box;
 	}
 
+	/**
+	 * Transforms a point from camera coordinates into world coordinates, using the scene's current camera
+	 *
+	 * @param point
+	 *            The point, in camera coordinates
+	 * @param result
+	 *            The point that will hold the result, in world coordinates
+	 */
+	protected void fromCameraToWorldCoordinates(Point3D point, Point3D result) {
+		Metrics.getInstance().incrementPointTransformations();
+		TransformMatrix m = Transformation.getInverseMatrix(getCamera().getViewingMatrix());
+		double x = point.getX();
+		double y = point.getY();
+		double z = point.getZ();
+		result.setX(m.getValue(0, 0) * x + m.getValue(0, 1) * y + m.getValue(0, 2) * z + m.getValue(0, 3));
+		result.setY(m.getValue(1, 0) * x + m.getValue(1, 1) * y + m.getValue(1, 2) * z + m.getValue(1, 3));
+		result.setZ(m.getValue(2, 0) * x + m.getValue(2, 1) * y + m.getValue(2, 2) * z + m.getValue(2, 3));
+	}
+
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.geometry.d3.Point3D;
 import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
 import org.maia.cgi.model.d3.scene.Scene;
@@ -28,6 +29,10 @@ public abstract class BinnedSceneSpatialIndex extends BaseSceneSpatialIndex {
 
 		private LineSegment3D line;
 
+		private Point3D lineStartInWorld;
+
+		private Point3D lineEndInWorld;
+
 		private List<ObjectSurfacePoint3D> intersections;
 
 		private Set<Object3D> objects;
@@ -36,6 +41,10 @@ public abstract class BinnedSceneSpatialIndex extends BaseSceneSpatialIndex {
 
 		protected ObjectLineIntersectionsIterator(LineSegment3D line, ReusableObjectPack reusableObjects) {
 			this.line = line;
+			this.lineStartInWorld = reusableObjects.getLineStartInWorld();
+			this.lineEndInWorld = reusableObjects.getLineEndInWorld();
+			fromCameraToWorldCoordinates(line.getP1(), lineStartInWorld);
+			fromCameraToWorldCoordinates(line.getP2(), lineEndInWorld);
 			this.intersections = reusableObjects.getEmptiedIntersectionsList();
 			this.objects = reusableObjects.getEmptiedObjectsSet();
 			this.reusableObjects = reusableObjects;
@@ -67,10 +76,27 @@ public abstract class BinnedSceneSpatialIndex extends BaseSceneSpatialIndex {
 
 		protected abstract void provisionIntersections(ReusableObjectPack reusableObjects);
 
+		/**
+		 * Returns the line being traversed, in camera coordinates
+		 */
 		protected LineSegment3D getLine() {
 			return line;
 		}
 
+		/**
+		 * Returns the start of the line, in world coordinates
+		 */
+		protected Point3D getLineStartInWorld() {
+			return lineStartInWorld;
+		}
+
+		/**
+		 * Returns the end of the line, in world coordinates
+		 */
+		protected Point3D getLineEndInWorld() {
+			return lineEndInWorld;
+		}
+
 		protected List<ObjectSurfacePoint3D> getIntersections() {
 			return intersections;
 		}
@@ -1,9 +1,13 @@
 package org.maia.cgi.model.d3.scene.index;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
@@ -17,7 +21,7 @@ import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.render.d3.ReusableObjectPack;
 
 /**
- * 3D index of a <code>Scene</code>'s objects in camera coordinates as a rectilinear grid of cuboids called "bins"
+ * 3D index of a <code>Scene</code>'s objects in world coordinates as a rectilinear grid of cuboids called "bins"
  * 
  * <p>
  * The binning strategy is designed to carve out empty space in a scene and to split bins that have a higher object
@@ -37,9 +41,10 @@ import org.maia.cgi.render.d3.ReusableObjectPack;
  * metrics and cannot guarantee the best index for a use case.
  * </p>
  * <p>
- * The spatial index is constructed based on the current positions and orientations of the objects in the scene and the
- * camera. It is the responsability of the client code to create a new index to reflect an updated snapshot of that
- * scene.
+ * The spatial index is constructed based on the current positions and orientations of the objects in the scene. A
+ * changed object is updated by taking it out of the leaf bins it overlapped and putting it into the leaf bins it
+ * overlaps now, leaving the bins themselves as they are. Since the bins were tailored to the objects at the time of
+ * building, a rebuild is advised sooner than for a uniform tessellation.
  * </p>
  * 
  * @see UniformlyBinnedSceneSpatialIndex
@@ -89,6 +94,80 @@ public class NonUniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex
 		}
 	}
 
+	/**
+	 * Reads an index that was written by {@link #writeIndex(DataOutput)}
+	 * 
+	 * @param scene
+	 *            The scene, in the same state as when the index was built
+	 * @param in
+	 *            The input to read from
+	 * @return The index, ready for use
+	 * @throws IOException
+	 *             When the index does not match the scene
+	 */
+	static NonUniformlyBinnedSceneSpatialIndex readIndex(Scene scene, ByteBuffer in) throws IOException {
+		NonUniformlyBinnedSceneSpatialIndex index = new NonUniformlyBinnedSceneSpatialIndex(scene, in.getInt(),
+				in.getInt(), in.getInt(), in.getInt());
+		index.readBins(in);
+		return index;
+	}
+
+	/**
+	 * Writes the bins in breadth-first order, which is the order in which they were split when building the index.
+	 * Replaying the cuts in that order when reading restores the bin neighbors without any further computation.
+	 */
+	@Override
+	void writeIndex(DataOutput out) throws IOException {
+		out.writeInt(getMinimumBinObjectCount());
+		out.writeInt(getMinimumBinObjectReductionOnSplit());
+		out.writeInt(getMaximumBinTreeDepth());
+		out.writeInt(getMaximumLeafBins());
+		Map<Object3D, Integer> identifiers = writeIndexedObjects(out);
+		writeBox(out, getRootBin());
+		Deque<SpatialBin> queue = new LinkedList<SpatialBin>();
+		queue.add(getRootBin());
+		while (!queue.isEmpty()) {
+			SpatialBin bin = queue.pollFirst();
+			if (bin.isLeaf()) {
+				out.writeByte(0);
+				out.writeInt(bin.getContainedObjectCount());
+				for (Object3D object : bin.getContainedObjects()) {
+					out.writeInt(identifiers.get(object));
+				}
+			} else {
+				BinSplit split = bin.getSplit();
+				out.writeByte(1);
+				out.writeByte(split.getCut().getDimension().ordinal());
+				out.writeDouble(split.getCut().getCoordinate());
+				queue.addLast(split.getFirstChildBin());
+				queue.addLast(split.getSecondChildBin());
+			}
+		}
+	}
+
+	protected void readBins(ByteBuffer in) throws IOException {
+		List<Object3D> objects = readIndexedObjects(in);
+		setRootBin(new SpatialBin(new Vector<Object3D>(), readBox(in)));
+		ReusableObjectPack reusableObjects = new ReusableObjectPack();
+		Deque<SpatialBin> queue = new LinkedList<SpatialBin>();
+		queue.add(getRootBin());
+		while (!queue.isEmpty()) {
+			SpatialBin bin = queue.pollFirst();
+			if (in.get() == 0) {
+				int n = in.getInt();
+				List<Object3D> containedObjects = bin.getContainedObjects();
+				for (int i = 0; i < n; i++) {
+					containedObjects.add(objects.get(in.getInt()));
+				}
+			} else {
+				Dimension dim = Dimension.values()[in.get()];
+				bin.split(new BinCut(dim, in.getDouble()), reusableObjects);
+				queue.addLast(bin.getSplit().getFirstChildBin());
+				queue.addLast(bin.getSplit().getSecondChildBin());
+			}
+		}
+	}
+
 	@Override
 	public void dispose() {
 		setRootBin(null);
@@ -108,8 +187,28 @@ public class NonUniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex
 		}
 	}
 
+	@Override
+	protected void addObjectToIndex(Object3D object, Box3D box) {
+		getRootBin().addObject(object, box);
+	}
+
+	@Override
+	protected void removeObjectFromIndex(Object3D object, Box3D box) {
+		getRootBin().removeObject(object, box);
+	}
+
+	@Override
+	protected Box3D getIndexBounds() {
+		return getRootBin();
+	}
+
+	@Override
+	protected double getMaximumChangeRatioBeforeRebuild() {
+		return 0.5; // once about a quarter of the objects has been updated
+	}
+
 	private SpatialBin createRootBin() {
-		List<Object3D> containedObjects = new Vector<Object3D>(getIndexedObjects());
+		List<Object3D> containedObjects = new Vector<Object3D>(collectIndexedObjects());
 		return new SpatialBin(containedObjects, getSceneBox());
 	}
 
@@ -223,6 +322,43 @@ public class NonUniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex
 			return hasSplit;
 		}
 
+		public void addObject(Object3D object, Box3D box) {
+			if (isLeaf()) {
+				getContainedObjects().add(object);
+			} else {
+				SpatialBin c1 = getSplit().getFirstChildBin();
+				SpatialBin c2 = getSplit().getSecondChildBin();
+				if (box == null || box.overlaps(c1)) {
+					c1.addObject(object, box);
+				}
+				if (box == null || box.overlaps(c2)) {
+					c2.addObject(object, box);
+				}
+			}
+		}
+
+		public void removeObject(Object3D object, Box3D box) {
+			if (isLeaf()) {
+				getContainedObjects().remove(object);
+			} else {
+				SpatialBin c1 = getSplit().getFirstChildBin();
+				SpatialBin c2 = getSplit().getSecondChildBin();
+				if (box == null || box.overlaps(c1)) {
+					c1.removeObject(object, box);
+				}
+				if (box == null || box.overlaps(c2)) {
+					c2.removeObject(object, box);
+				}
+			}
+		}
+
+		private void split(BinCut cut, ReusableObjectPack reusableObjects) {
+			BinSplit split = cut(cut);
+			reallocateNeighbors(split, reusableObjects);
+			setSplit(split);
+			setContainedObjects(null); // spread over child bins
+		}
+
 		protected BinCut computeOptimalCut() {
 			BinCut cut = null;
 			Box3D bbox = getContainedObjectsClippedBoundingBox();
@@ -802,8 +938,8 @@ public class NonUniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex
 
 		public ObjectLineIntersectionsIteratorImpl(LineSegment3D line, ReusableObjectPack reusableObjects) {
 			super(line, reusableObjects);
-			Point3D p1 = line.getP1();
-			Point3D p2 = line.getP2();
+			Point3D p1 = getLineStartInWorld();
+			Point3D p2 = getLineEndInWorld();
 			dx = p2.getX() - p1.getX();
 			dy = p2.getY() - p1.getY();
 			dz = p2.getZ() - p1.getZ();
@@ -878,7 +1014,7 @@ public class NonUniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex
 				qz = pz + r * dz;
 			}
 			// End of the line check
-			Point3D p2 = getLine().getP2();
+			Point3D p2 = getLineEndInWorld();
 			if (qx * sx > p2.getX() * sx && qy * sy > p2.getY() * sy && qz * sz > p2.getZ() * sz) {
 				currentBin = null;
 			} else {
@@ -1,10 +1,15 @@
 package org.maia.cgi.model.d3.scene.index;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.maia.cgi.geometry.d2.Rectangle2D;
 import org.maia.cgi.geometry.d3.Box3D;
@@ -37,6 +42,33 @@ public class NonUniformlyBinnedSceneViewPlaneIndex extends NonUniformlyBinnedSce
 		super(scene, maximumLeafBins);
 	}
 
+	public NonUniformlyBinnedSceneViewPlaneIndex(Scene scene, int minimumBinObjectCount,
+			int minimumBinObjectReductionOnSplit, int maximumBinTreeDepth, int maximumLeafBins) {
+		super(scene, minimumBinObjectCount, minimumBinObjectReductionOnSplit, maximumBinTreeDepth, maximumLeafBins);
+	}
+
+	/**
+	 * Reads an index that was written by {@link #writeIndex(java.io.DataOutput)}
+	 * 
+	 * <p>
+	 * The objects in each bin are read back in the order they were written, so they need no sorting
+	 * </p>
+	 * 
+	 * @param scene
+	 *            The scene, in the same state and with the same camera as when the index was built
+	 * @param in
+	 *            The input to read from
+	 * @return The index, ready for use
+	 * @throws IOException
+	 *             When the index does not match the scene
+	 */
+	static NonUniformlyBinnedSceneViewPlaneIndex readIndex(Scene scene, ByteBuffer in) throws IOException {
+		NonUniformlyBinnedSceneViewPlaneIndex index = new NonUniformlyBinnedSceneViewPlaneIndex(scene, in.getInt(),
+				in.getInt(), in.getInt(), in.getInt());
+		index.readBins(in);
+		return index;
+	}
+
 	@Override
 	public void buildIndex() {
 		super.buildIndex();
@@ -61,6 +93,15 @@ public class NonUniformlyBinnedSceneViewPlaneIndex extends NonUniformlyBinnedSce
 		}
 	}
 
+	@Override
+	public Collection<Object3D> getViewPlaneObjects() {
+		Set<Object3D> objects = new LinkedHashSet<Object3D>(1000);
+		for (Iterator<SpatialBin> it = getDepthFirstLeafBinIterator(); it.hasNext();) {
+			objects.addAll(it.next().getContainedObjects());
+		}
+		return objects;
+	}
+
 	private Point3D projectToViewVolume(Point3D pointOnViewPlane, ReusableObjectPack reusableObjects) {
 		Point3D pointInViewVolume = reusableObjects.getPointInViewVolume();
 		Rectangle2D vpr = getCamera().getViewVolume().getViewPlaneRectangle();
@@ -92,6 +133,12 @@ public class NonUniformlyBinnedSceneViewPlaneIndex extends NonUniformlyBinnedSce
 		return false;
 	}
 
+	@Override
+	protected final boolean supportsIncrementalUpdates() {
+		// The objects in each bin are sorted by depth, which depends on the camera
+		return false;
+	}
+
 	@Override
 	protected Box3D getSceneBox() {
 		return Box3D.canonical(); // entire canonical view volume
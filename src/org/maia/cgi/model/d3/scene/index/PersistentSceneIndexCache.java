@@ -0,0 +1,305 @@
+package org.maia.cgi.model.d3.scene.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.maia.cgi.geometry.d2.Rectangle2D;
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.model.d3.scene.SceneUtils;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * Cache of built scene indices in binary files on disk
+ *
+ * <p>
+ * Building an index for a large scene takes time, whereas reading it back is a matter of restoring its bins. An index
+ * is stored under a key that is a content hash of everything the index depends on. These are the bounding boxes of the
+ * indexed objects, the build parameters and, for a view-plane index, the camera. The file is read back through a
+ * memory-mapped <code>FileChannel</code>.
+ * </p>
+ * <p>
+ * Objects are stored by their position among the indexed objects, so a stored index can only be read back for a scene
+ * that is composed in the same order. A matching key guarantees this for all practical purposes.
+ * </p>
+ *
+ * @see SceneSpatialIndexFactory#setPersistentCache(PersistentSceneIndexCache)
+ */
+public class PersistentSceneIndexCache {
+
+	private File directory;
+
+	private static final int MAGIC_NUMBER = 0x4D534958;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte UNIFORMLY_BINNED_SPATIAL_INDEX = 1;
+
+	private static final byte NON_UNIFORMLY_BINNED_SPATIAL_INDEX = 2;
+
+	private static final byte NON_UNIFORMLY_BINNED_VIEW_PLANE_INDEX = 3;
+
+	public PersistentSceneIndexCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Derives the key of a scene's spatial index
+	 *
+	 * @param scene
+	 *            The scene
+	 * @param buildParameters
+	 *            A description of the parameters with which the index is built
+	 * @return The key, covering the world bounding boxes of all indexable objects in the scene
+	 */
+	public String deriveSpatialIndexKey(Scene scene, String buildParameters) {
+		KeyDigest digest = new KeyDigest();
+		digest.putString("spatial");
+		digest.putString(buildParameters);
+		for (Object3D topLevelObject : scene.getTopLevelObjects()) {
+			digest.putInt(-1); // top-level separator
+			for (Object3D object : SceneUtils.getAllIndexableObjects(topLevelObject)) {
+				if (object.isBounded()) {
+					Box3D box = object.asBoundedObject().getBoundingBoxInWorldCoordinates();
+					if (box != null) {
+						digest.putBox(box);
+					}
+				} else {
+					digest.putInt(0);
+				}
+			}
+		}
+		return digest.toHexString();
+	}
+
+	/**
+	 * Derives the key of a scene's view-plane index
+	 *
+	 * @param scene
+	 *            The scene
+	 * @param buildParameters
+	 *            A description of the parameters with which the index is built
+	 * @return The key, covering the camera and the view volume bounding boxes of all indexable objects in the scene
+	 */
+	public String deriveViewPlaneIndexKey(Scene scene, String buildParameters) {
+		Camera camera = scene.getCamera();
+		KeyDigest digest = new KeyDigest();
+		digest.putString("viewplane");
+		digest.putString(buildParameters);
+		digest.putMatrix(camera.getViewingMatrix());
+		digest.putMatrix(camera.getViewVolume().getProjectionMatrix());
+		Rectangle2D vpr = camera.getViewVolume().getViewPlaneRectangle();
+		digest.putDouble(vpr.getX1());
+		digest.putDouble(vpr.getY1());
+		digest.putDouble(vpr.getWidth());
+		digest.putDouble(vpr.getHeight());
+		for (Object3D object : SceneUtils.getAllIndexableObjectsInScene(scene)) {
+			if (object.isBounded()) {
+				Box3D box = object.asBoundedObject().getBoundingBoxInViewVolumeCoordinates(camera);
+				if (box != null) {
+					digest.putBox(box);
+				}
+			} else {
+				digest.putInt(0);
+			}
+		}
+		return digest.toHexString();
+	}
+
+	/**
+	 * Loads an index from this cache
+	 *
+	 * @param key
+	 *            The key of the index
+	 * @param scene
+	 *            The scene for which the index was built
+	 * @return The index, or <code>null</code> when not in this cache or when it could not be read
+	 */
+	public SceneIndex load(String key, Scene scene) {
+		File file = getIndexFile(key);
+		if (!file.isFile())
+			return null;
+		SceneIndex index = null;
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				index = readIndex(scene, in);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to read scene index from path '" + file + "'");
+			e.printStackTrace();
+		} catch (RuntimeException e) {
+			System.err.println("Corrupt scene index at path '" + file + "'");
+			e.printStackTrace();
+		}
+		return index;
+	}
+
+	private SceneIndex readIndex(Scene scene, ByteBuffer in) throws IOException {
+		if (in.getInt() != MAGIC_NUMBER || in.getInt() != FORMAT_VERSION)
+			throw new IOException("Unsupported file format");
+		byte type = in.get();
+		if (type == UNIFORMLY_BINNED_SPATIAL_INDEX) {
+			return UniformlyBinnedSceneSpatialIndex.readIndex(scene, in);
+		} else if (type == NON_UNIFORMLY_BINNED_SPATIAL_INDEX) {
+			return NonUniformlyBinnedSceneSpatialIndex.readIndex(scene, in);
+		} else if (type == NON_UNIFORMLY_BINNED_VIEW_PLANE_INDEX) {
+			return NonUniformlyBinnedSceneViewPlaneIndex.readIndex(scene, in);
+		} else {
+			throw new IOException("Unsupported index type " + type);
+		}
+	}
+
+	/**
+	 * Stores an index in this cache
+	 *
+	 * <p>
+	 * The index is expected to be freshly built, with the scene in the same state as when building it. Indices of an
+	 * unsupported type are not stored.
+	 * </p>
+	 *
+	 * @param key
+	 *            The key of the index
+	 * @param index
+	 *            The index to store
+	 */
+	public void store(String key, SceneIndex index) {
+		byte type = getIndexType(index);
+		if (type == 0)
+			return;
+		File file = getIndexFile(key);
+		File tempFile = null;
+		try {
+			getDirectory().mkdirs();
+			tempFile = File.createTempFile(key, ".tmp", getDirectory());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+					1 << 16));
+			try {
+				out.writeInt(MAGIC_NUMBER);
+				out.writeInt(FORMAT_VERSION);
+				out.writeByte(type);
+				((BaseSceneSpatialIndex) index).writeIndex(out);
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.err.println("Failed to write scene index to path '" + file + "'");
+			e.printStackTrace();
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private byte getIndexType(SceneIndex index) {
+		if (index instanceof NonUniformlyBinnedSceneViewPlaneIndex) {
+			return NON_UNIFORMLY_BINNED_VIEW_PLANE_INDEX;
+		} else if (index instanceof NonUniformlyBinnedSceneSpatialIndex) {
+			return NON_UNIFORMLY_BINNED_SPATIAL_INDEX;
+		} else if (index instanceof UniformlyBinnedSceneSpatialIndex) {
+			return UNIFORMLY_BINNED_SPATIAL_INDEX;
+		} else {
+			return 0;
+		}
+	}
+
+	private File getIndexFile(String key) {
+		return new File(getDirectory(), key + ".idx");
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	private static class KeyDigest {
+
+		private MessageDigest digest;
+
+		private ByteBuffer buffer;
+
+		public KeyDigest() {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e); // every Java platform supports SHA-256
+			}
+			this.buffer = ByteBuffer.allocate(8192);
+			putInt(FORMAT_VERSION);
+		}
+
+		public void putString(String value) {
+			putInt(value.length());
+			for (int i = 0; i < value.length(); i++) {
+				ensureCapacity(2);
+				buffer.putChar(value.charAt(i));
+			}
+		}
+
+		public void putInt(int value) {
+			ensureCapacity(4);
+			buffer.putInt(value);
+		}
+
+		public void putDouble(double value) {
+			ensureCapacity(8);
+			buffer.putDouble(value);
+		}
+
+		public void putBox(Box3D box) {
+			putDouble(box.getX1());
+			putDouble(box.getX2());
+			putDouble(box.getY1());
+			putDouble(box.getY2());
+			putDouble(box.getZ1());
+			putDouble(box.getZ2());
+		}
+
+		public void putMatrix(TransformMatrix matrix) {
+			for (int i = 0; i < 4; i++) {
+				for (int j = 0; j < 4; j++) {
+					putDouble(matrix.getValue(i, j));
+				}
+			}
+		}
+
+		private void ensureCapacity(int bytes) {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+
+		public String toHexString() {
+			flush();
+			StringBuilder sb = new StringBuilder(64);
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0x0f, 16));
+				sb.append(Character.forDigit(b & 0x0f, 16));
+			}
+			return sb.toString();
+		}
+
+	}
+
+}
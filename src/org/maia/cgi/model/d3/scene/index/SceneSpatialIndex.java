@@ -3,16 +3,22 @@ package org.maia.cgi.model.d3.scene.index;
 import java.util.Iterator;
 
 import org.maia.cgi.geometry.d3.LineSegment3D;
+import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
 import org.maia.cgi.render.d3.ReusableObjectPack;
 
 /**
- * 3D index of a <code>Scene</code>'s objects in camera coordinates
+ * 3D index of a <code>Scene</code>'s objects
  * 
  * <p>
- * The spatial index is constructed based on the current positions and orientations of the objects in the scene and the
- * camera. It is the responsability of the client code to create a new index to reflect an updated snapshot of that
- * scene.
+ * The spatial index is constructed based on the current positions and orientations of the objects in the scene. Moving
+ * the camera does not invalidate the index. When only a few objects change, the index can be kept up to date by
+ * {@link #update(Object3D)}, {@link #insert(Object3D)} and {@link #remove(Object3D)}. Each of these tells whether the
+ * index still is fit for use, otherwise it is the responsability of the client code to create a new index to reflect
+ * an updated snapshot of the scene.
+ * </p>
+ * <p>
+ * An index must not be updated while it is being used to look up objects
  * </p>
  */
 public interface SceneSpatialIndex extends SceneIndex {
@@ -23,7 +29,7 @@ public interface SceneSpatialIndex extends SceneIndex {
 	 * @param line
 	 *            The line segment, in camera coordinates. The segment is assumed to be <em>closed</em> on both ends
 	 *            <em>and</em> the first point {@link LineSegment3D#getP1()} is assumed to lie within the scene's
-	 *            bounding box, in camera coordinates
+	 *            bounding box
 	 * @param reusableObjects
 	 *            Objects that can be reused in the context of the current thread
 	 * @return An iterator over the scene objects intersecting with <code>line</code>. The order of the objects is
@@ -31,4 +37,34 @@ public interface SceneSpatialIndex extends SceneIndex {
 	 */
 	Iterator<ObjectSurfacePoint3D> getObjectIntersections(LineSegment3D line, ReusableObjectPack reusableObjects);
 
+	/**
+	 * Updates this index for a top-level object in the scene that has changed since it was indexed
+	 * 
+	 * @param object
+	 *            The top-level object, that was transformed or had parts added
+	 * @return <code>true</code> if this index reflects the change, <code>false</code> if this index should be rebuilt
+	 *         instead, in which case it must no longer be used
+	 */
+	boolean update(Object3D object);
+
+	/**
+	 * Adds a new top-level object in the scene to this index
+	 * 
+	 * @param object
+	 *            The top-level object
+	 * @return <code>true</code> if this index includes the object, <code>false</code> if this index should be rebuilt
+	 *         instead, in which case it must no longer be used
+	 */
+	boolean insert(Object3D object);
+
+	/**
+	 * Removes a top-level object that is no longer in the scene from this index
+	 * 
+	 * @param object
+	 *            The top-level object
+	 * @return <code>true</code> if this index no longer includes the object, <code>false</code> if this index should
+	 *         be rebuilt instead, in which case it must no longer be used
+	 */
+	boolean remove(Object3D object);
+
 }
\ No newline at end of file
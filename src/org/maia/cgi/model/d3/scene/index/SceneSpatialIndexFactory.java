@@ -8,6 +8,25 @@ public class SceneSpatialIndexFactory {
 
 	private static SceneSpatialIndexFactory instance;
 
+	private PersistentSceneIndexCache persistentCache;
+
+	private static final int UNIFORM_SPATIAL_INDEX_X_BINS = 50;
+
+	private static final int UNIFORM_SPATIAL_INDEX_Y_BINS = 50;
+
+	private static final int UNIFORM_SPATIAL_INDEX_Z_BINS = 50;
+
+	private static final int NON_UNIFORM_SPATIAL_INDEX_MAXIMUM_LEAF_BINS = 125000;
+
+	private static final int VIEW_PLANE_INDEX_MAXIMUM_LEAF_BINS = 250000;
+
+	// Part of the keys in the persistent cache, so a change in build parameters invalidates cached indices
+	private static final String SPATIAL_INDEX_PARAMETERS = "uniform=" + UNIFORM_SPATIAL_INDEX_X_BINS + "x"
+			+ UNIFORM_SPATIAL_INDEX_Y_BINS + "x" + UNIFORM_SPATIAL_INDEX_Z_BINS + ";nonuniform="
+			+ NON_UNIFORM_SPATIAL_INDEX_MAXIMUM_LEAF_BINS;
+
+	private static final String VIEW_PLANE_INDEX_PARAMETERS = "nonuniform=" + VIEW_PLANE_INDEX_MAXIMUM_LEAF_BINS;
+
 	private SceneSpatialIndexFactory() {
 	}
 
@@ -25,6 +44,19 @@ public class SceneSpatialIndexFactory {
 	}
 
 	public SceneSpatialIndex createSpatialIndex(Scene scene) {
+		PersistentSceneIndexCache cache = getPersistentCache();
+		if (cache == null)
+			return buildSpatialIndex(scene);
+		String key = cache.deriveSpatialIndexKey(scene, SPATIAL_INDEX_PARAMETERS);
+		SceneSpatialIndex index = (SceneSpatialIndex) cache.load(key, scene);
+		if (index == null) {
+			index = buildSpatialIndex(scene);
+			cache.store(key, index);
+		}
+		return index;
+	}
+
+	private SceneSpatialIndex buildSpatialIndex(Scene scene) {
 		SceneSpatialIndex index = null;
 		BinnedSceneSpatialIndex uniformIndex = createUniformlyBinnedIndex(scene);
 		BinnedSceneSpatialIndex nonUniformIndex = createNonUniformlyBinnedIndex(scene);
@@ -43,21 +75,51 @@ public class SceneSpatialIndexFactory {
 	}
 
 	public SceneViewPlaneIndex createViewPlaneIndex(Scene scene) {
-		NonUniformlyBinnedSceneViewPlaneIndex index = new NonUniformlyBinnedSceneViewPlaneIndex(scene, 250000);
+		PersistentSceneIndexCache cache = getPersistentCache();
+		if (cache == null)
+			return buildViewPlaneIndex(scene);
+		String key = cache.deriveViewPlaneIndexKey(scene, VIEW_PLANE_INDEX_PARAMETERS);
+		SceneViewPlaneIndex index = (SceneViewPlaneIndex) cache.load(key, scene);
+		if (index == null) {
+			index = buildViewPlaneIndex(scene);
+			cache.store(key, index);
+		}
+		return index;
+	}
+
+	private SceneViewPlaneIndex buildViewPlaneIndex(Scene scene) {
+		NonUniformlyBinnedSceneViewPlaneIndex index = new NonUniformlyBinnedSceneViewPlaneIndex(scene,
+				VIEW_PLANE_INDEX_MAXIMUM_LEAF_BINS);
 		index.buildIndex();
 		return index;
 	}
 
 	private BinnedSceneSpatialIndex createUniformlyBinnedIndex(Scene scene) {
-		BinnedSceneSpatialIndex index = new UniformlyBinnedSceneSpatialIndex(scene, 50, 50, 50);
+		BinnedSceneSpatialIndex index = new UniformlyBinnedSceneSpatialIndex(scene, UNIFORM_SPATIAL_INDEX_X_BINS,
+				UNIFORM_SPATIAL_INDEX_Y_BINS, UNIFORM_SPATIAL_INDEX_Z_BINS);
 		index.buildIndex();
 		return index;
 	}
 
 	private BinnedSceneSpatialIndex createNonUniformlyBinnedIndex(Scene scene) {
-		BinnedSceneSpatialIndex index = new NonUniformlyBinnedSceneSpatialIndex(scene, 125000);
+		BinnedSceneSpatialIndex index = new NonUniformlyBinnedSceneSpatialIndex(scene,
+				NON_UNIFORM_SPATIAL_INDEX_MAXIMUM_LEAF_BINS);
 		index.buildIndex();
 		return index;
 	}
 
+	public PersistentSceneIndexCache getPersistentCache() {
+		return persistentCache;
+	}
+
+	/**
+	 * Sets a cache on disk for the indices created by this factory
+	 * 
+	 * @param persistentCache
+	 *            The cache, or <code>null</code> to always build indices
+	 */
+	public void setPersistentCache(PersistentSceneIndexCache persistentCache) {
+		this.persistentCache = persistentCache;
+	}
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package org.maia.cgi.model.d3.scene.index;
 
+import java.util.Collection;
 import java.util.Iterator;
 
 import org.maia.cgi.geometry.d3.Point3D;
@@ -33,4 +34,11 @@ public interface SceneViewPlaneIndex extends SceneIndex {
 	 */
 	Iterator<Object3D> getViewPlaneObjects(Point3D pointOnViewPlane, ReusableObjectPack reusableObjects);
 
+	/**
+	 * Returns all the scene objects that <em>potentially</em> project onto the view plane
+	 * 
+	 * @return The distinct objects in this index
+	 */
+	Collection<Object3D> getViewPlaneObjects();
+
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package org.maia.cgi.model.d3.scene.index;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,12 +20,12 @@ import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.render.d3.ReusableObjectPack;
 
 /**
- * 3D index of a Scene's objects in camera coordinates as a Cartesian grid of unit cubes called "bins"
+ * 3D index of a Scene's objects in world coordinates as a Cartesian grid of unit cubes called "bins"
  * 
  * <p>
- * The spatial index is constructed based on the current positions and orientations of the objects in the scene and the
- * camera. It is the responsability of the client code to create a new index to reflect an updated snapshot of that
- * scene.
+ * The spatial index is constructed based on the current positions and orientations of the objects in the scene. A
+ * changed object is updated by taking it out of its bins and putting it into the bins it overlaps now, which gives the
+ * same result as a rebuild as long as the object remains within the bounds of the grid.
  * </p>
  * 
  * @see NonUniformlyBinnedSceneSpatialIndex
@@ -40,6 +43,8 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 
 	private Box3D firstBinBoundingBox;
 
+	private Box3D indexBounds;
+
 	public UniformlyBinnedSceneSpatialIndex(Scene scene, int xBins, int yBins, int zBins) {
 		super(scene);
 		this.xBins = xBins;
@@ -50,9 +55,61 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 
 	@Override
 	public void buildIndex() {
+		setIndexBounds(getSceneBox().clone());
 		setFirstBinBoundingBox(deriveFirstBinBoundingBox());
-		for (Object3D object : getIndexedObjects()) {
-			addObject(object);
+		for (Object3D object : collectIndexedObjects()) {
+			addObjectToIndex(object, getObjectBox(object));
+		}
+	}
+
+	/**
+	 * Reads an index that was written by {@link #writeIndex(DataOutput)}
+	 * 
+	 * @param scene
+	 *            The scene, in the same state as when the index was built
+	 * @param in
+	 *            The input to read from
+	 * @return The index, ready for use
+	 * @throws IOException
+	 *             When the index does not match the scene
+	 */
+	static UniformlyBinnedSceneSpatialIndex readIndex(Scene scene, ByteBuffer in) throws IOException {
+		UniformlyBinnedSceneSpatialIndex index = new UniformlyBinnedSceneSpatialIndex(scene, in.getInt(), in.getInt(),
+				in.getInt());
+		index.setIndexBounds(readBox(in));
+		index.setFirstBinBoundingBox(readBox(in));
+		List<Object3D> objects = index.readIndexedObjects(in);
+		int bins = in.getInt();
+		for (int i = 0; i < bins; i++) {
+			int xi = in.getInt();
+			int yi = in.getInt();
+			int zi = in.getInt();
+			int n = in.getInt();
+			for (int j = 0; j < n; j++) {
+				index.indexObject(objects.get(in.getInt()), xi, yi, zi);
+			}
+		}
+		return index;
+	}
+
+	@Override
+	void writeIndex(DataOutput out) throws IOException {
+		out.writeInt(getXbins());
+		out.writeInt(getYbins());
+		out.writeInt(getZbins());
+		writeBox(out, getIndexBounds());
+		writeBox(out, getFirstBinBoundingBox());
+		Map<Object3D, Integer> identifiers = writeIndexedObjects(out);
+		out.writeInt(getIndex().size());
+		for (Map.Entry<SpatialBin, Collection<Object3D>> entry : getIndex().entrySet()) {
+			SpatialBin bin = entry.getKey();
+			out.writeInt(bin.getX());
+			out.writeInt(bin.getY());
+			out.writeInt(bin.getZ());
+			out.writeInt(entry.getValue().size());
+			for (Object3D object : entry.getValue()) {
+				out.writeInt(identifiers.get(object));
+			}
 		}
 	}
 
@@ -71,9 +128,9 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 		return new ObjectLineIntersectionsIteratorImpl(line, reusableObjects);
 	}
 
-	private void addObject(Object3D object) {
-		if (object.isBounded()) {
-			Box3D bbox = getObjectBox(object);
+	@Override
+	protected void addObjectToIndex(Object3D object, Box3D bbox) {
+		if (bbox != null) {
 			int x1 = mapToXbin(bbox.getX1());
 			int x2 = mapToXbin(bbox.getX2());
 			int y1 = mapToYbin(bbox.getY1());
@@ -99,6 +156,31 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 		}
 	}
 
+	@Override
+	protected void removeObjectFromIndex(Object3D object, Box3D bbox) {
+		int x1 = 0, x2 = getXbins() - 1, y1 = 0, y2 = getYbins() - 1, z1 = 0, z2 = getZbins() - 1;
+		if (bbox != null) {
+			x1 = mapToXbin(bbox.getX1());
+			x2 = mapToXbin(bbox.getX2());
+			y1 = mapToYbin(bbox.getY1());
+			y2 = mapToYbin(bbox.getY2());
+			z1 = mapToZbin(bbox.getZ1());
+			z2 = mapToZbin(bbox.getZ2());
+		}
+		for (int xi = x1; xi <= x2; xi++) {
+			for (int yi = y1; yi <= y2; yi++) {
+				for (int zi = z1; zi <= z2; zi++) {
+					unindexObject(object, xi, yi, zi);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Box3D getIndexBounds() {
+		return indexBounds;
+	}
+
 	private void indexObject(Object3D object, int xBin, int yBin, int zBin) {
 		SpatialBin bin = SpatialBin.create(xBin, yBin, zBin);
 		Collection<Object3D> collection = getIndex().get(bin);
@@ -109,6 +191,14 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 		collection.add(object);
 	}
 
+	private void unindexObject(Object3D object, int xBin, int yBin, int zBin) {
+		SpatialBin bin = SpatialBin.create(xBin, yBin, zBin);
+		Collection<Object3D> collection = getIndex().get(bin);
+		if (collection != null && collection.remove(object) && collection.isEmpty()) {
+			getIndex().remove(bin);
+		}
+	}
+
 	private int mapToXbin(double x) {
 		Box3D box = getFirstBinBoundingBox();
 		int xi = (int) Math.floor((x - box.getX1()) / box.getWidth());
@@ -181,6 +271,10 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 		this.firstBinBoundingBox = boundingBox;
 	}
 
+	private void setIndexBounds(Box3D bounds) {
+		this.indexBounds = bounds;
+	}
+
 	private static class SpatialBin {
 
 		private int x;
@@ -256,8 +350,8 @@ public class UniformlyBinnedSceneSpatialIndex extends BinnedSceneSpatialIndex {
 
 		public ObjectLineIntersectionsIteratorImpl(LineSegment3D line, ReusableObjectPack reusableObjects) {
 			super(line, reusableObjects);
-			Point3D p1 = line.getP1();
-			Point3D p2 = line.getP2();
+			Point3D p1 = getLineStartInWorld();
+			Point3D p2 = getLineEndInWorld();
 			// init X
 			x1 = p1.getX();
 			x2 = p2.getX();
@@ -2,24 +2,233 @@ package org.maia.cgi.render.d2;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Vector;
 
+import org.maia.cgi.geometry.d2.Rectangle2D;
+
+/**
+ * Mask defined by the pixels of an image that have a given color
+ *
+ * <p>
+ * The mask is compiled upon construction into one bit per pixel. On top of the bits sits a quadtree of tiles, where
+ * every tile is either entirely masked, entirely unmasked or mixed. Queries that fall in a uniform tile are answered
+ * without touching the bits, and whole regions can be checked at once by descending the quadtree only into mixed
+ * tiles.
+ * </p>
+ * <p>
+ * Positions outside of the image are masked.
+ * </p>
+ */
 public class ImageMask extends ImageTextureMap implements Mask {
 
 	private Color maskColor;
 
+	private int width;
+
+	private int height;
+
+	private int wordsPerRow;
+
+	private long[] maskedBits; // row by row, one bit per pixel, set when masked
+
+	private List<byte[]> tileStates; // by level, where level 0 has the smallest tiles
+
+	private List<Integer> tileColumns; // by level
+
+	private static final int TILE_SIZE_BITS = 4; // tiles of 16x16 pixels at level 0
+
+	private static final byte UNMASKED = 0;
+
+	private static final byte MASKED = 1;
+
+	private static final byte MIXED = 2;
+
 	public ImageMask(BufferedImage image, Color maskColor) {
 		super(image);
 		this.maskColor = maskColor;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		compileMaskedBits(image, maskColor.getRGB());
+		compileTileStates();
+	}
+
+	private void compileMaskedBits(BufferedImage image, int maskRgb) {
+		wordsPerRow = (width + 63) >>> 6;
+		maskedBits = new long[wordsPerRow * height];
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			int offset = y * wordsPerRow;
+			for (int x = 0; x < width; x++) {
+				if (row[x] == maskRgb) {
+					maskedBits[offset + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+	}
+
+	private void compileTileStates() {
+		tileStates = new Vector<byte[]>();
+		tileColumns = new Vector<Integer>();
+		int size = 1 << TILE_SIZE_BITS;
+		int columns = Math.max((width + size - 1) >> TILE_SIZE_BITS, 1);
+		int rows = Math.max((height + size - 1) >> TILE_SIZE_BITS, 1);
+		byte[] states = new byte[columns * rows];
+		for (int ty = 0; ty < rows; ty++) {
+			for (int tx = 0; tx < columns; tx++) {
+				states[ty * columns + tx] = scanPixels(tx << TILE_SIZE_BITS, ty << TILE_SIZE_BITS,
+						Math.min((tx + 1) << TILE_SIZE_BITS, width), Math.min((ty + 1) << TILE_SIZE_BITS, height));
+			}
+		}
+		tileStates.add(states);
+		tileColumns.add(columns);
+		while (columns > 1 || rows > 1) {
+			int parentColumns = (columns + 1) / 2;
+			int parentRows = (rows + 1) / 2;
+			byte[] parentStates = new byte[parentColumns * parentRows];
+			for (int ty = 0; ty < parentRows; ty++) {
+				for (int tx = 0; tx < parentColumns; tx++) {
+					byte state = -1;
+					for (int cy = 2 * ty; cy < Math.min(2 * ty + 2, rows); cy++) {
+						for (int cx = 2 * tx; cx < Math.min(2 * tx + 2, columns); cx++) {
+							state = combine(state, states[cy * columns + cx]);
+						}
+					}
+					parentStates[ty * parentColumns + tx] = state;
+				}
+			}
+			states = parentStates;
+			columns = parentColumns;
+			rows = parentRows;
+			tileStates.add(states);
+			tileColumns.add(columns);
+		}
 	}
 
 	@Override
 	public boolean isMasked(double x, double y) {
-		Color c = sampleColor(x, y);
-		if (c == null) {
+		int px = (int) Math.floor(x);
+		int py = (int) Math.floor(y);
+		if (px < 0 || py < 0 || px >= width || py >= height)
 			return true;
-		} else {
-			return c.equals(getMaskColor());
+		byte state = tileStates.get(0)[(py >> TILE_SIZE_BITS) * tileColumns.get(0) + (px >> TILE_SIZE_BITS)];
+		if (state != MIXED)
+			return state == MASKED;
+		return isMaskedPixel(px, py);
+	}
+
+	/**
+	 * Tells whether all positions in a region are masked
+	 *
+	 * @param region
+	 *            The region, in image coordinates
+	 * @return <code>true</code> if every position in the <code>region</code> is masked
+	 */
+	public boolean isFullyMasked(Rectangle2D region) {
+		return getRegionState(region) == MASKED;
+	}
+
+	/**
+	 * Tells whether no position in a region is masked
+	 *
+	 * @param region
+	 *            The region, in image coordinates
+	 * @return <code>true</code> if no position in the <code>region</code> is masked
+	 */
+	public boolean isFullyUnmasked(Rectangle2D region) {
+		return getRegionState(region) == UNMASKED;
+	}
+
+	private byte getRegionState(Rectangle2D region) {
+		int x1 = (int) Math.floor(region.getX1());
+		int y1 = (int) Math.floor(region.getY1());
+		int x2 = (int) Math.ceil(region.getX2()); // exclusive
+		int y2 = (int) Math.ceil(region.getY2()); // exclusive
+		if (x2 <= x1) {
+			x2 = x1 + 1;
+		}
+		if (y2 <= y1) {
+			y2 = y1 + 1;
+		}
+		byte state = -1;
+		if (x1 < 0 || y1 < 0 || x2 > width || y2 > height) {
+			state = MASKED; // partly outside of the image
+		}
+		x1 = Math.max(x1, 0);
+		y1 = Math.max(y1, 0);
+		x2 = Math.min(x2, width);
+		y2 = Math.min(y2, height);
+		if (x1 < x2 && y1 < y2) {
+			state = combine(state, getRegionState(tileStates.size() - 1, 0, 0, x1, y1, x2, y2));
+		}
+		return state;
+	}
+
+	private byte getRegionState(int level, int tx, int ty, int x1, int y1, int x2, int y2) {
+		byte state = tileStates.get(level)[ty * tileColumns.get(level) + tx];
+		if (state != MIXED)
+			return state;
+		int shift = TILE_SIZE_BITS + level;
+		int tx1 = tx << shift;
+		int ty1 = ty << shift;
+		int tx2 = Math.min((tx + 1) << shift, width);
+		int ty2 = Math.min((ty + 1) << shift, height);
+		if (x1 <= tx1 && y1 <= ty1 && x2 >= tx2 && y2 >= ty2)
+			return MIXED; // tile entirely within the region
+		if (level == 0)
+			return scanPixels(Math.max(x1, tx1), Math.max(y1, ty1), Math.min(x2, tx2), Math.min(y2, ty2));
+		state = -1;
+		int childShift = shift - 1;
+		for (int cy = 2 * ty; cy < 2 * ty + 2; cy++) {
+			for (int cx = 2 * tx; cx < 2 * tx + 2; cx++) {
+				int cx1 = cx << childShift;
+				int cy1 = cy << childShift;
+				if (cx1 < Math.min(x2, width) && cy1 < Math.min(y2, height) && (cx + 1) << childShift > x1
+						&& (cy + 1) << childShift > y1) {
+					state = combine(state, getRegionState(level - 1, cx, cy, x1, y1, x2, y2));
+					if (state == MIXED)
+						return state;
+				}
+			}
+		}
+		return state;
+	}
+
+	private byte scanPixels(int x1, int y1, int x2, int y2) {
+		boolean anyMasked = false;
+		boolean anyUnmasked = false;
+		for (int y = y1; y < y2; y++) {
+			for (int x = x1; x < x2; x++) {
+				if (isMaskedPixel(x, y)) {
+					anyMasked = true;
+				} else {
+					anyUnmasked = true;
+				}
+				if (anyMasked && anyUnmasked)
+					return MIXED;
+			}
+		}
+		return anyMasked ? MASKED : UNMASKED;
+	}
+
+	private boolean isMaskedPixel(int px, int py) {
+		return (maskedBits[py * wordsPerRow + (px >>> 6)] & (1L << px)) != 0;
+	}
+
+	private static byte combine(byte state, byte other) {
+		if (state < 0)
+			return other;
+		return state == other ? state : MIXED;
+	}
+
+	@Override
+	public long getMemorySize() {
+		long size = super.getMemorySize() + 8L * maskedBits.length;
+		for (byte[] states : tileStates) {
+			size += states.length;
 		}
+		return size;
 	}
 
 	public Color getMaskColor() {
@@ -2,6 +2,7 @@ package org.maia.cgi.render.d2;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 
 public class ImageTextureMap implements TextureMap {
 
@@ -44,6 +45,12 @@ public class ImageTextureMap implements TextureMap {
 		return color;
 	}
 
+	@Override
+	public long getMemorySize() {
+		DataBuffer data = getImage().getRaster().getDataBuffer();
+		return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8L;
+	}
+
 	protected boolean isInsideImage(double x, double y) {
 		int px = (int) Math.floor(x);
 		int py = (int) Math.floor(y);
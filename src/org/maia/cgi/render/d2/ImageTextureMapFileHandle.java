@@ -12,6 +12,8 @@ public class ImageTextureMapFileHandle extends TextureMapHandle {
 
 	private double scaleY;
 
+	private static PersistentTextureMapCache persistentCache;
+
 	public ImageTextureMapFileHandle(String filePath) {
 		this(filePath, 1.0);
 	}
@@ -54,8 +56,21 @@ public class ImageTextureMapFileHandle extends TextureMapHandle {
 
 	@Override
 	TextureMap resolve() {
+		PersistentTextureMapCache cache = getPersistentCache();
+		String key = cache != null ? cache.deriveKey(getFilePath(), getScaleX(), getScaleY()) : null;
+		if (key != null) {
+			TextureMap textureMap = cache.load(key);
+			if (textureMap != null) {
+				System.out.println("Loading texture map '" + getFilePath() + "' from cache");
+				return textureMap;
+			}
+		}
 		System.out.println("Loading texture map '" + getFilePath() + "'");
-		return new ImageTextureMap(readImageFromFile());
+		BufferedImage image = readImageFromFile();
+		if (key != null && image != null) {
+			cache.store(key, image);
+		}
+		return new ImageTextureMap(image);
 	}
 
 	@Override
@@ -83,4 +98,18 @@ public class ImageTextureMapFileHandle extends TextureMapHandle {
 		return scaleY;
 	}
 
+	public static PersistentTextureMapCache getPersistentCache() {
+		return persistentCache;
+	}
+
+	/**
+	 * Sets a cache on disk for the decoded and scaled images of texture maps
+	 * 
+	 * @param persistentCache
+	 *            The cache, or <code>null</code> to always decode image files
+	 */
+	public static void setPersistentCache(PersistentTextureMapCache persistentCache) {
+		ImageTextureMapFileHandle.persistentCache = persistentCache;
+	}
+
 }
@@ -0,0 +1,105 @@
+package org.maia.cgi.render.d2;
+
+import java.awt.Color;
+import java.nio.IntBuffer;
+
+/**
+ * Texture map over decoded ARGB pixels held outside of the Java heap, typically a memory-mapped file
+ *
+ * <p>
+ * Sampling gives the same results as an {@link ImageTextureMap} of the image from which the pixels were taken.
+ * </p>
+ *
+ * @see PersistentTextureMapCache
+ */
+public class MappedImageTextureMap implements TextureMap {
+
+	private int width;
+
+	private int height;
+
+	private IntBuffer pixels; // row by row, top row first
+
+	private static final long HEAP_SIZE_IN_BYTES = 128L; // this object and the buffer, not its pixels
+
+	public MappedImageTextureMap(int width, int height, IntBuffer pixels) {
+		if (pixels.capacity() < width * height)
+			throw new IllegalArgumentException("Too few pixels for a " + width + "x" + height + " image");
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	@Override
+	public double sampleDouble(double x, double y) {
+		double value = -1.0;
+		if (isInsideImage(x, y)) {
+			int argb = sampleInt(x, y);
+			int max = Math.max(Math.max((argb >> 16) & 0xff, (argb >> 8) & 0xff), argb & 0xff);
+			value = max / 255.0f; // brightness, as in Color.RGBtoHSB
+		}
+		return value;
+	}
+
+	@Override
+	public int sampleInt(double x, double y) {
+		int value = -1;
+		if (isInsideImage(x, y)) {
+			int px = (int) Math.floor(x);
+			int py = (int) Math.floor(y);
+			value = getPixels().get(py * getWidth() + px); // absolute get, safe for concurrent use
+		}
+		return value;
+	}
+
+	@Override
+	public Color sampleColor(double x, double y) {
+		Color color = null;
+		if (isInsideImage(x, y)) {
+			color = new Color(sampleInt(x, y), true);
+		}
+		return color;
+	}
+
+	/**
+	 * Returns the amount of memory on the Java heap taken by this texture map
+	 *
+	 * <p>
+	 * The pixels are not included, as they are held outside of the heap. Evicting this texture map from the
+	 * <code>TextureMapRegistry</code> would free no heap for them, and the operating system pages a mapped file in and
+	 * out by itself. Their size is given by {@link #getPixelsSize()}.
+	 * </p>
+	 */
+	@Override
+	public long getMemorySize() {
+		return HEAP_SIZE_IN_BYTES;
+	}
+
+	/**
+	 * Returns the size of the pixels held outside of the Java heap
+	 *
+	 * @return The size in bytes
+	 */
+	public long getPixelsSize() {
+		return 4L * getWidth() * getHeight();
+	}
+
+	protected boolean isInsideImage(double x, double y) {
+		int px = (int) Math.floor(x);
+		int py = (int) Math.floor(y);
+		return px >= 0 && py >= 0 && px < getWidth() && py < getHeight();
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	private IntBuffer getPixels() {
+		return pixels;
+	}
+
+}
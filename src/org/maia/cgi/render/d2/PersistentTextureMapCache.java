@@ -0,0 +1,180 @@
+package org.maia.cgi.render.d2;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cache of decoded and scaled texture images in binary files on disk
+ *
+ * <p>
+ * Decoding a compressed image file and scaling it takes time, whereas the decoded pixels can be mapped into memory
+ * straight from a file. An image is stored as raw ARGB pixels under a key that covers the path, size and modification
+ * time of the image file as well as the scale. A modified image file therefore never matches a stale entry.
+ * </p>
+ * <p>
+ * Loaded pixels stay in a memory-mapped file, outside of the Java heap. Resolving a texture map again after it has
+ * been evicted from the {@link TextureMapRegistry} then only maps the file anew.
+ * </p>
+ *
+ * @see ImageTextureMapFileHandle#setPersistentCache(PersistentTextureMapCache)
+ */
+public class PersistentTextureMapCache {
+
+	private File directory;
+
+	private static final int MAGIC_NUMBER = 0x4D535458;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	public PersistentTextureMapCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Derives the key of a texture image
+	 *
+	 * @param filePath
+	 *            The path of the image file
+	 * @param scaleX
+	 *            The horizontal scale applied to the image
+	 * @param scaleY
+	 *            The vertical scale applied to the image
+	 * @return The key, or <code>null</code> when the image file does not exist
+	 */
+	public String deriveKey(String filePath, double scaleX, double scaleY) {
+		File file = new File(filePath);
+		if (!file.isFile())
+			return null;
+		ByteBuffer buffer = ByteBuffer.allocate(40);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putLong(file.length());
+		buffer.putLong(file.lastModified());
+		buffer.putDouble(scaleX);
+		buffer.putDouble(scaleY);
+		buffer.flip();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(file.getAbsolutePath().getBytes("UTF-8"));
+			digest.update(buffer);
+			StringBuilder sb = new StringBuilder(64);
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0x0f, 16));
+				sb.append(Character.forDigit(b & 0x0f, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform supports SHA-256
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // every Java platform supports UTF-8
+		}
+	}
+
+	/**
+	 * Loads a texture map from this cache
+	 *
+	 * @param key
+	 *            The key of the texture image
+	 * @return The texture map, or <code>null</code> when not in this cache or when it could not be read
+	 */
+	public MappedImageTextureMap load(String key) {
+		File file = getImageFile(key);
+		if (!file.isFile())
+			return null;
+		MappedImageTextureMap textureMap = null;
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (in.getInt() != MAGIC_NUMBER || in.getInt() != FORMAT_VERSION)
+					throw new IOException("Unsupported file format");
+				int width = in.getInt();
+				int height = in.getInt();
+				if ((long) width * height * 4L != in.remaining())
+					throw new IOException("Truncated file");
+				textureMap = new MappedImageTextureMap(width, height, in.slice().asIntBuffer());
+			} finally {
+				channel.close(); // the mapping remains valid
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to read texture image from path '" + file + "'");
+			e.printStackTrace();
+		}
+		return textureMap;
+	}
+
+	/**
+	 * Stores a texture image in this cache
+	 *
+	 * @param key
+	 *            The key of the texture image
+	 * @param image
+	 *            The decoded and scaled image
+	 */
+	public void store(String key, BufferedImage image) {
+		File file = getImageFile(key);
+		File tempFile = null;
+		try {
+			getDirectory().mkdirs();
+			tempFile = File.createTempFile(key, ".tmp", getDirectory());
+			int width = image.getWidth();
+			int height = image.getHeight();
+			FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).putInt(width).putInt(height);
+				header.flip();
+				writeFully(channel, header);
+				int[] row = new int[width];
+				int rowsPerChunk = Math.max(1, (1 << 20) / Math.max(4 * width, 1));
+				ByteBuffer chunk = ByteBuffer.allocate(4 * width * rowsPerChunk);
+				IntBuffer chunkPixels = chunk.asIntBuffer();
+				for (int y = 0; y < height; y += rowsPerChunk) {
+					int rows = Math.min(rowsPerChunk, height - y);
+					chunkPixels.clear();
+					for (int i = 0; i < rows; i++) {
+						image.getRGB(0, y + i, width, 1, row, 0, width);
+						chunkPixels.put(row);
+					}
+					chunk.clear();
+					chunk.limit(4 * width * rows);
+					writeFully(channel, chunk);
+				}
+			} finally {
+				channel.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.err.println("Failed to write texture image to path '" + file + "'");
+			e.printStackTrace();
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private File getImageFile(String key) {
+		return new File(getDirectory(), key + ".tex");
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+}
@@ -10,4 +10,16 @@ public interface TextureMap {
 
 	Color sampleColor(double x, double y);
 
+	/**
+	 * Returns the amount of memory on the Java heap taken by this texture map
+	 *
+	 * <p>
+	 * This is the size that counts against the capacity of the <code>TextureMapRegistry</code>, which is derived from
+	 * the maximum heap size
+	 * </p>
+	 *
+	 * @return The approximate size in bytes
+	 */
+	long getMemorySize();
+
 }
@@ -1,31 +1,66 @@
 package org.maia.cgi.render.d2;
 
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Registry of resolved texture maps, shared by all rendering threads
+ *
+ * <p>
+ * Looking up a texture map that is already resolved takes no lock. A texture map that is not yet resolved is loaded
+ * by the first thread that asks for it. Any other thread asking for the same texture map in the meantime waits for
+ * that load to complete, while threads asking for other texture maps carry on unhindered.
+ * </p>
+ * <p>
+ * The capacity of the registry is expressed as the total memory size of its texture maps. When a load makes the
+ * registry exceed its capacity, the least recently used texture maps are evicted.
+ * </p>
+ */
 public class TextureMapRegistry {
 
-	private static int DEFAULT_CAPACITY = 200;
+	private static final long DEFAULT_CAPACITY_IN_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 4, 1L << 30);
 
 	private static TextureMapRegistry instance;
 
-	private int capacity;
+	private volatile long capacityInBytes;
 
-	private Map<TextureMapHandle, TextureMap> textureMaps;
+	private ConcurrentMap<TextureMapHandle, Entry> entries;
 
-	private Deque<TextureMapHandle> lruList; // least recently used at the beginning
+	private AtomicLong byteSize;
 
-	private TextureMapRegistry(int capacity) {
-		this.capacity = capacity;
-		this.textureMaps = new HashMap<TextureMapHandle, TextureMap>(capacity);
-		this.lruList = new LinkedList<TextureMapHandle>();
+	private volatile long epoch; // incremented on every removal
+
+	private LongAdder hits; // incremented by every lookup, so without contention between threads
+
+	private AtomicLong misses;
+
+	private AtomicLong evictions;
+
+	private AtomicLong loadTimeNanos;
+
+	private Object evictionLock = new Object();
+
+	private TextureMapRegistry(long capacityInBytes) {
+		this.capacityInBytes = capacityInBytes;
+		this.entries = new ConcurrentHashMap<TextureMapHandle, Entry>(256, 0.75f, 16);
+		this.byteSize = new AtomicLong();
+		this.hits = new LongAdder();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+		this.loadTimeNanos = new AtomicLong();
 	}
 
 	public static TextureMapRegistry getInstance() {
 		if (instance == null) {
-			setInstance(new TextureMapRegistry(DEFAULT_CAPACITY));
+			setInstance(new TextureMapRegistry(DEFAULT_CAPACITY_IN_BYTES));
 		}
 		return instance;
 	}
@@ -36,57 +71,398 @@ public class TextureMapRegistry {
 		}
 	}
 
-	public synchronized void clear() {
-		for (TextureMapHandle handle : getTextureMaps().keySet()) {
-			handle.dispose();
+	public void clear() {
+		synchronized (evictionLock) {
+			for (TextureMapHandle handle : getEntries().keySet()) {
+				remove(handle);
+			}
 		}
-		getTextureMaps().clear();
-		getLruList().clear();
 	}
 
-	public synchronized TextureMap getTextureMap(TextureMapHandle handle) {
-		TextureMap textureMap = getTextureMaps().get(handle);
-		if (textureMap == null) {
-			if (getSize() == getCapacity()) {
-				removeLru();
+	/**
+	 * Returns the texture map of a handle, resolving it when it is not yet in this registry
+	 *
+	 * @param handle
+	 *            The handle of the texture map
+	 * @return The texture map, or <code>null</code> if it failed to resolve
+	 */
+	public TextureMap getTextureMap(TextureMapHandle handle) {
+		Entry entry = getEntries().get(handle);
+		if (entry == null) {
+			Entry newEntry = new Entry(handle);
+			entry = getEntries().putIfAbsent(handle, newEntry);
+			if (entry == null) {
+				misses.incrementAndGet();
+				load(newEntry);
+				return newEntry.getTextureMap();
 			}
-			textureMap = handle.resolve();
-			getTextureMaps().put(handle, textureMap);
 		}
-		getLruList().remove(handle);
-		getLruList().addLast(handle);
-		return textureMap;
+		hits.increment();
+		entry.touch(System.nanoTime());
+		return entry.isResolved() ? entry.getTextureMap() : entry.awaitTextureMap();
 	}
 
-	public synchronized void setCapacity(int capacity) {
-		while (getSize() > capacity) {
-			removeLru();
+	/**
+	 * Resolves the texture map of a new entry in the calling thread
+	 *
+	 * <p>
+	 * Other threads requesting the same texture map wait for the entry to be resolved. When the texture map fails to
+	 * resolve, the entry remains in the registry without a texture map, so that the failure is not repeated for every
+	 * request.
+	 * </p>
+	 *
+	 * @param entry
+	 *            The entry, which is already in the registry
+	 */
+	private void load(Entry entry) {
+		long start = System.nanoTime();
+		TextureMap textureMap = null;
+		try {
+			TextureMap resolvedMap = entry.getHandle().resolve();
+			if (resolvedMap != null) {
+				entry.setByteSize(resolvedMap.getMemorySize());
+				byteSize.addAndGet(entry.getByteSize());
+			}
+			textureMap = resolvedMap;
+		} catch (RuntimeException e) {
+			System.err.println("Failed to resolve texture map");
+			e.printStackTrace();
+		} finally {
+			// Also on an Error, so that waiting threads are released
+			loadTimeNanos.addAndGet(System.nanoTime() - start);
+			entry.touch(System.nanoTime());
+			entry.resolved(textureMap);
+		}
+		if (byteSize.get() > getCapacityInBytes()) {
+			evictLeastRecentlyUsed(entry);
 		}
-		this.capacity = capacity;
 	}
 
-	private void removeLru() {
-		if (!getLruList().isEmpty()) {
-			TextureMapHandle handle = getLruList().removeFirst();
-			getTextureMaps().remove(handle);
-			handle.dispose();
+	/**
+	 * Resolves texture maps ahead of their use, by a bounded number of threads
+	 *
+	 * <p>
+	 * This method returns when all texture maps are resolved, or when the registry has reached its capacity, in which
+	 * case the remaining texture maps are left to be resolved on demand.
+	 * </p>
+	 *
+	 * @param handles
+	 *            The handles of the texture maps to resolve
+	 * @param numberOfThreads
+	 *            The maximum number of threads resolving texture maps concurrently
+	 * @param tracker
+	 *            An optional tracker of the progress, which may be updated from any of the threads
+	 */
+	public void prefetch(Collection<TextureMapHandle> handles, int numberOfThreads,
+			TextureMapPrefetchTracker tracker) {
+		PrefetchState state = new PrefetchState(handles, tracker);
+		if (tracker != null) {
+			tracker.prefetchStarted();
+		}
+		int n = Math.max(Math.min(numberOfThreads, handles.size()), 1);
+		Thread[] threads = new Thread[n];
+		for (int i = 0; i < n; i++) {
+			threads[i] = new Thread(new PrefetchWorker(state), "Texture prefetch worker #" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		for (int i = 0; i < n; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// do nothing
+			}
 		}
+		if (tracker != null) {
+			tracker.prefetchCompleted();
+		}
+	}
+
+	private void evictLeastRecentlyUsed(Entry retainedEntry) {
+		synchronized (evictionLock) {
+			if (byteSize.get() <= getCapacityInBytes())
+				return;
+			// Entries keep being accessed while sorting, so the sort works on a snapshot of their ages
+			long now = System.nanoTime();
+			List<EvictionCandidate> candidates = new Vector<EvictionCandidate>(getEntries().size());
+			for (Entry entry : getEntries().values()) {
+				if (entry != retainedEntry && entry.isResolved()) {
+					candidates.add(new EvictionCandidate(entry, now - entry.getLastAccess()));
+				}
+			}
+			Collections.sort(candidates);
+			for (int i = 0; i < candidates.size() && byteSize.get() > getCapacityInBytes(); i++) {
+				if (remove(candidates.get(i).getEntry().getHandle())) {
+					evictions.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private boolean remove(TextureMapHandle handle) {
+		Entry entry = getEntries().get(handle);
+		if (entry != null && entry.isResolved() && getEntries().remove(handle, entry)) {
+			epoch++; // always under the eviction lock
+			if (entry.getTextureMap() != null) {
+				byteSize.addAndGet(-entry.getByteSize());
+				handle.dispose();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the epoch of this registry, which changes whenever a texture map is removed from it
+	 *
+	 * <p>
+	 * Client code may hold on to a texture map obtained from this registry for as long as the epoch remains the same,
+	 * rather than looking it up for every use.
+	 * </p>
+	 *
+	 * @return The current epoch
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public void setCapacityInBytes(long capacityInBytes) {
+		this.capacityInBytes = capacityInBytes;
+		if (byteSize.get() > capacityInBytes) {
+			evictLeastRecentlyUsed(null);
+		}
+	}
+
+	public void resetStatistics() {
+		hits.reset();
+		misses.set(0L);
+		evictions.set(0L);
+		loadTimeNanos.set(0L);
 	}
 
-	public synchronized int getSize() {
-		return getLruList().size();
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("TextureMapRegistry {\n");
+		builder.append("\tTexture maps: ").append(getSize()).append("\n");
+		builder.append("\tMemory size: ").append(getByteSize() / 1024L).append(" KB of ")
+				.append(getCapacityInBytes() / 1024L).append(" KB\n");
+		builder.append("\tHits: ").append(getHits()).append("\n");
+		builder.append("\tMisses: ").append(getMisses()).append("\n");
+		builder.append("\tEvictions: ").append(getEvictions()).append("\n");
+		builder.append("\tLoad time: ").append(getLoadTimeMs()).append(" ms\n");
+		builder.append("}");
+		return builder.toString();
 	}
 
-	public synchronized int getCapacity() {
-		return capacity;
+	public int getSize() {
+		return getEntries().size();
 	}
 
-	private Map<TextureMapHandle, TextureMap> getTextureMaps() {
-		return textureMaps;
+	/**
+	 * Returns the total memory size of the resolved texture maps in this registry
+	 *
+	 * @return The size in bytes
+	 */
+	public long getByteSize() {
+		return byteSize.get();
+	}
+
+	public long getCapacityInBytes() {
+		return capacityInBytes;
+	}
+
+	/**
+	 * Returns the number of requests for a texture map that was already in this registry, or that was being loaded
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of requests for a texture map that had to be loaded
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the total time spent loading texture maps, summed over all threads
+	 */
+	public long getLoadTimeMs() {
+		return loadTimeNanos.get() / 1000000L;
+	}
+
+	private ConcurrentMap<TextureMapHandle, Entry> getEntries() {
+		return entries;
+	}
+
+	private class PrefetchState {
+
+		private Iterator<TextureMapHandle> handles;
+
+		private int totalHandles;
+
+		private int prefetchedHandles;
+
+		private TextureMapPrefetchTracker tracker;
+
+		public PrefetchState(Collection<TextureMapHandle> handles, TextureMapPrefetchTracker tracker) {
+			this.handles = handles.iterator();
+			this.totalHandles = handles.size();
+			this.tracker = tracker;
+		}
+
+		public synchronized TextureMapHandle nextHandle() {
+			if (handles.hasNext() && getByteSize() < getCapacityInBytes()) {
+				return handles.next();
+			} else {
+				return null;
+			}
+		}
+
+		public void handlePrefetched() {
+			double progress;
+			synchronized (this) {
+				progress = ++prefetchedHandles / (double) totalHandles;
+			}
+			if (tracker != null) {
+				tracker.prefetchUpdate(progress);
+			}
+		}
+
 	}
 
-	private Deque<TextureMapHandle> getLruList() {
-		return lruList;
+	private class PrefetchWorker implements Runnable {
+
+		private PrefetchState state;
+
+		public PrefetchWorker(PrefetchState state) {
+			this.state = state;
+		}
+
+		@Override
+		public void run() {
+			TextureMapHandle handle;
+			while ((handle = state.nextHandle()) != null) {
+				getTextureMap(handle);
+				state.handlePrefetched();
+			}
+		}
+
+	}
+
+	public static interface TextureMapPrefetchTracker {
+
+		void prefetchStarted();
+
+		void prefetchUpdate(double progress);
+
+		void prefetchCompleted();
+
+	}
+
+	private static class Entry {
+
+		private TextureMapHandle handle;
+
+		private TextureMap textureMap;
+
+		private long byteSize;
+
+		private volatile boolean resolved;
+
+		private volatile long lastAccess;
+
+		private CountDownLatch resolution;
+
+		public Entry(TextureMapHandle handle) {
+			this.handle = handle;
+			this.resolution = new CountDownLatch(1);
+		}
+
+		public void resolved(TextureMap textureMap) {
+			this.textureMap = textureMap;
+			this.resolved = true; // publishes the texture map and its size
+			resolution.countDown();
+		}
+
+		public TextureMap awaitTextureMap() {
+			boolean interrupted = false;
+			while (!isResolved()) {
+				try {
+					resolution.await();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return getTextureMap();
+		}
+
+		public void touch(long time) {
+			lastAccess = time;
+		}
+
+		public boolean isResolved() {
+			return resolved;
+		}
+
+		public TextureMapHandle getHandle() {
+			return handle;
+		}
+
+		public TextureMap getTextureMap() {
+			return textureMap;
+		}
+
+		public long getByteSize() {
+			return byteSize;
+		}
+
+		public void setByteSize(long byteSize) {
+			this.byteSize = byteSize;
+		}
+
+		public long getLastAccess() {
+			return lastAccess;
+		}
+
+	}
+
+	private static class EvictionCandidate implements Comparable<EvictionCandidate> {
+
+		private Entry entry;
+
+		private long age; // nanoseconds since the last access, as of the start of the eviction
+
+		public EvictionCandidate(Entry entry, long age) {
+			this.entry = entry;
+			this.age = age;
+		}
+
+		@Override
+		public int compareTo(EvictionCandidate other) {
+			// Oldest first
+			if (age > other.age) {
+				return -1;
+			} else if (age < other.age) {
+				return 1;
+			} else {
+				return 0;
+			}
+		}
+
+		public Entry getEntry() {
+			return entry;
+		}
+
 	}
 
-}
\ No newline at end of file
+}
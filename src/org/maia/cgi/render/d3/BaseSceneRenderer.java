@@ -22,23 +22,64 @@ public abstract class BaseSceneRenderer implements SceneRenderer {
 
 	@Override
 	public final void render(Scene scene, Collection<ViewPort> outputs, RenderOptions options) {
-		for (ViewPort output : outputs) {
-			output.startRendering();
-			output.clear();
-		}
-		for (SceneRendererProgressTracker tracker : getProgressTrackers()) {
-			tracker.renderingStarted(this, scene);
-		}
-		renderImpl(scene, outputs, options);
-		for (ViewPort output : outputs) {
-			output.stopRendering();
-		}
-		for (SceneRendererProgressTracker tracker : getProgressTrackers()) {
-			tracker.renderingCompleted(this, scene);
+		render(scene, outputs, options, new RenderHandle());
+	}
+
+	@Override
+	public final RenderHandle renderInBackground(Scene scene, ViewPort output, RenderOptions options) {
+		return renderInBackground(scene, Collections.singleton(output), options);
+	}
+
+	@Override
+	public final RenderHandle renderInBackground(final Scene scene, final Collection<ViewPort> outputs,
+			final RenderOptions options) {
+		final RenderHandle handle = new RenderHandle();
+		new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				render(scene, outputs, options, handle);
+			}
+		}, "Render worker").start();
+		return handle;
+	}
+
+	private void render(Scene scene, Collection<ViewPort> outputs, RenderOptions options, RenderHandle handle) {
+		try {
+			for (ViewPort output : outputs) {
+				output.startRendering();
+				output.clear();
+			}
+			for (SceneRendererProgressTracker tracker : getProgressTrackers()) {
+				tracker.renderingStarted(this, scene);
+			}
+			renderImpl(scene, outputs, options, handle);
+			for (ViewPort output : outputs) {
+				output.stopRendering();
+			}
+			boolean completed = handle.complete(); // from now on, cancelling has no effect
+			for (SceneRendererProgressTracker tracker : getProgressTrackers()) {
+				if (completed) {
+					tracker.renderingCompleted(this, scene);
+				} else {
+					tracker.renderingCancelled(this, scene);
+				}
+			}
+		} finally {
+			handle.workerStopped();
 		}
 	}
 
-	protected abstract void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options);
+	/**
+	 * Renders a scene
+	 * 
+	 * <p>
+	 * Implementations should check the <code>handle</code> for cancellation regularly, and return as soon as possible
+	 * once cancelled.
+	 * </p>
+	 */
+	protected abstract void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options,
+			RenderHandle handle);
 
 	protected void fireRenderingProgressUpdate(Scene scene, int totalSteps, int stepIndex, double stepProgress,
 			String stepLabel) {
@@ -0,0 +1,217 @@
+package org.maia.cgi.render.d3;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.ObjectSurfaceHitRecord;
+import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
+
+/**
+ * The surface points hit by the primary rays of a tile, kept apart from their shading
+ *
+ * <p>
+ * The buffer holds a sequence of entries for every sample, ordered front to back and up to the first fully opaque
+ * one. An entry holds the object that was hit, or <code>null</code> for the backdrop, along with the position, the
+ * primitive and the unshaded color at the hit. Once the surface normals are computed, the entries can be lit by the
+ * brightness factor of every light source in turn, to be shaded later on.
+ * </p>
+ * <p>
+ * Instances of this class are <em>not</em> thread-safe
+ * </p>
+ *
+ * @see RenderOptions#isWavefrontRenderingEnabled()
+ */
+public class GeometryBuffer {
+
+	private int lightSources;
+
+	private int entryCount;
+
+	private int sampleCount;
+
+	private Object3D[] objects;
+
+	private double[] positions; // x, y, z by entry
+
+	private int[] primitiveIndices;
+
+	private int[] samples; // by entry, index of its sample
+
+	private int[] colors; // ARGB by entry
+
+	private double[] normals; // x, y, z by entry
+
+	private boolean[] lit;
+
+	private double[] lightFactors; // by entry, then by light source
+
+	private int[] sampleEnds; // by sample, index of the entry following its last entry
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	public GeometryBuffer(int lightSources) {
+		this.lightSources = lightSources;
+		this.objects = new Object3D[INITIAL_CAPACITY];
+		this.positions = new double[3 * INITIAL_CAPACITY];
+		this.primitiveIndices = new int[INITIAL_CAPACITY];
+		this.samples = new int[INITIAL_CAPACITY];
+		this.colors = new int[INITIAL_CAPACITY];
+		this.normals = new double[3 * INITIAL_CAPACITY];
+		this.lit = new boolean[INITIAL_CAPACITY];
+		this.lightFactors = new double[lightSources * INITIAL_CAPACITY];
+		this.sampleEnds = new int[INITIAL_CAPACITY];
+	}
+
+	public void clear() {
+		Arrays.fill(objects, 0, entryCount, null);
+		Arrays.fill(lit, 0, entryCount, false);
+		entryCount = 0;
+		sampleCount = 0;
+	}
+
+	/**
+	 * Adds an entry to the current sample
+	 *
+	 * @param surfacePoint
+	 *            The surface point hit by the sample's ray, with its unshaded color
+	 */
+	public void addEntry(ObjectSurfacePoint3D surfacePoint) {
+		int i = entryCount;
+		if (i == objects.length) {
+			growEntries();
+		}
+		Point3D position = surfacePoint.getPositionInCamera();
+		objects[i] = surfacePoint.getObject();
+		positions[3 * i] = position.getX();
+		positions[3 * i + 1] = position.getY();
+		positions[3 * i + 2] = position.getZ();
+		primitiveIndices[i] = surfacePoint.getPrimitiveIndex();
+		samples[i] = sampleCount;
+		colors[i] = surfacePoint.getColor().getRGB();
+		entryCount++;
+	}
+
+	/**
+	 * Ends the current sample, so that the next entries add to the next sample
+	 */
+	public void endSample() {
+		if (sampleCount == sampleEnds.length) {
+			sampleEnds = Arrays.copyOf(sampleEnds, 2 * sampleEnds.length);
+		}
+		sampleEnds[sampleCount++] = entryCount;
+	}
+
+	private void growEntries() {
+		int capacity = 2 * objects.length;
+		objects = Arrays.copyOf(objects, capacity);
+		positions = Arrays.copyOf(positions, 3 * capacity);
+		primitiveIndices = Arrays.copyOf(primitiveIndices, capacity);
+		samples = Arrays.copyOf(samples, capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		normals = Arrays.copyOf(normals, 3 * capacity);
+		lit = Arrays.copyOf(lit, capacity);
+		lightFactors = Arrays.copyOf(lightFactors, lightSources * capacity);
+	}
+
+	/**
+	 * Copies an entry into a hit record, as it was hit by the sample's ray
+	 */
+	public void getEntry(int entryIndex, ObjectSurfaceHitRecord hit) {
+		int i = entryIndex;
+		hit.reset();
+		hit.update(objects[i], Double.NaN, positions[3 * i], positions[3 * i + 1], positions[3 * i + 2], new Color(
+				colors[i], true));
+		hit.setPrimitiveIndex(primitiveIndices[i]);
+	}
+
+	public void getPosition(int entryIndex, Point3D position) {
+		int i = entryIndex;
+		position.setX(positions[3 * i]);
+		position.setY(positions[3 * i + 1]);
+		position.setZ(positions[3 * i + 2]);
+	}
+
+	public void getNormal(int entryIndex, Vector3D normal) {
+		int i = entryIndex;
+		normal.setX(normals[3 * i]);
+		normal.setY(normals[3 * i + 1]);
+		normal.setZ(normals[3 * i + 2]);
+	}
+
+	/**
+	 * Marks an entry to be lit, by setting its surface normal
+	 *
+	 * @see #setLightFactor(int, int, double)
+	 */
+	public void setNormal(int entryIndex, Vector3D normal) {
+		int i = entryIndex;
+		normals[3 * i] = normal.getX();
+		normals[3 * i + 1] = normal.getY();
+		normals[3 * i + 2] = normal.getZ();
+		lit[i] = true;
+	}
+
+	public boolean isLit(int entryIndex) {
+		return lit[entryIndex];
+	}
+
+	public void setLightFactor(int entryIndex, int lightSourceIndex, double factor) {
+		lightFactors[entryIndex * lightSources + lightSourceIndex] = factor;
+	}
+
+	/**
+	 * Copies the brightness factors of a lit entry
+	 *
+	 * @param factors
+	 *            The array to copy into, by light source
+	 */
+	public void getLightFactors(int entryIndex, double[] factors) {
+		System.arraycopy(lightFactors, entryIndex * lightSources, factors, 0, lightSources);
+	}
+
+	/**
+	 * Returns the index of the sample an entry belongs to, in the order the samples were ended
+	 */
+	public int getSample(int entryIndex) {
+		return samples[entryIndex];
+	}
+
+	public Object3D getObject(int entryIndex) {
+		return objects[entryIndex];
+	}
+
+	public Color getColor(int entryIndex) {
+		return new Color(colors[entryIndex], true);
+	}
+
+	/**
+	 * Returns the depth of an entry, as a positive distance from the camera
+	 */
+	public double getDepth(int entryIndex) {
+		return -positions[3 * entryIndex + 2];
+	}
+
+	public int getSampleStart(int sampleIndex) {
+		return sampleIndex > 0 ? sampleEnds[sampleIndex - 1] : 0;
+	}
+
+	public int getSampleEnd(int sampleIndex) {
+		return sampleEnds[sampleIndex];
+	}
+
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	public int getLightSources() {
+		return lightSources;
+	}
+
+}
@@ -0,0 +1,709 @@
+package org.maia.cgi.render.d3;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.maia.cgi.geometry.d2.Rectangle2D;
+import org.maia.cgi.geometry.d3.Box3D;
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.object.ConvexPolygonalObject3D;
+import org.maia.cgi.model.d3.object.GeometryInstance3D;
+import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.PolygonalObject3D;
+import org.maia.cgi.model.d3.object.SharedGeometry3D;
+import org.maia.cgi.model.d3.object.TriangulationUtils;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * Renders a scene by raytracing, with the primary visibility of the samples resolved by rasterization upfront
+ *
+ * <p>
+ * Before raytracing, the polygons in view are rasterized into a <code>VisibilityBuffer</code> with a depth test, which
+ * records the object in front at every sample. The ray of a resolved sample is then intersected with its front object
+ * only, rather than with every object along the view plane index. Shading, shadows and transparency are resolved by
+ * the raytracer as before.
+ * </p>
+ * <p>
+ * Rasterization is conservative. A sample is left unresolved when it lies within a tolerance of the edge of a
+ * triangle, when the front objects of different owners lie within a tolerance of each other's depth, or when it is
+ * covered by an object that is not made of polygons, such as a quadric. The raytracer in turn checks that the front
+ * object is hit at the expected depth by an opaque surface, and traces the sample through the view plane index
+ * otherwise. Hence the output is identical to that of the <code>RaytraceRenderer</code>.
+ * </p>
+ * <p>
+ * Rasterization runs in two phases, each divided over a number of threads. First, the objects are converted into
+ * triangles projected onto the raster. Next, the raster is divided into square tiles, and every tile is rasterized
+ * with the triangles that overlap it.
+ * </p>
+ */
+public class HybridRaytraceRenderer extends RaytraceRenderer {
+
+	private static final int TILE_SIZE_BITS = 5;
+
+	private static final int TILE_SIZE = 1 << TILE_SIZE_BITS;
+
+	private static final double COVERAGE_TOLERANCE = 1.0e-4; // in samples
+
+	private static final double DEGENERATE_AREA = 1.0e-12; // in square samples
+
+	public HybridRaytraceRenderer() {
+	}
+
+	@Override
+	protected VisibilityBuffer createVisibilityBuffer(Scene scene, RenderOptions options, int width, int height,
+			RenderHandle handle) {
+		long startTime = System.currentTimeMillis();
+		RasterState state = new RasterState(scene, width, height, handle);
+		int n = options.getSafeNumberOfRenderThreads();
+		Runnable[] workers = new Runnable[n];
+		for (int i = 0; i < n; i++) {
+			workers[i] = new SetupWorker(state);
+		}
+		runWorkers(workers, "Hybrid setup worker #");
+		if (handle.isCancelled())
+			return null;
+		state.binTriangles();
+		for (int i = 0; i < n; i++) {
+			workers[i] = new TileWorker(state);
+		}
+		runWorkers(workers, "Hybrid raster worker #");
+		if (handle.isCancelled())
+			return null;
+		state.applyFallbackRegions();
+		VisibilityBuffer buffer = state.getBuffer();
+		System.out.println("Visibility buffer: " + buffer.getResolvedSampleCount() + " of " + width * height
+				+ " samples resolved from " + state.getTriangleCount() + " triangles in "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+		return buffer;
+	}
+
+	private void runWorkers(Runnable[] workers, String threadNamePrefix) {
+		if (workers.length == 1) {
+			workers[0].run();
+		} else {
+			Thread[] threads = new Thread[workers.length];
+			for (int i = 0; i < workers.length; i++) {
+				threads[i] = new Thread(workers[i], threadNamePrefix + i);
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			for (int i = 0; i < workers.length; i++) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					// do nothing
+				}
+			}
+		}
+	}
+
+	private static class RasterState {
+
+		private RenderHandle handle;
+
+		private Camera camera;
+
+		private int width;
+
+		private int height;
+
+		private double viewPlaneLeft;
+
+		private double viewPlaneTop;
+
+		private double viewPlaneWidth;
+
+		private double viewPlaneHeight;
+
+		private double viewPlaneZ;
+
+		private Object3D[] objects; // the owners of the triangles
+
+		private double[][] objectTriangles; // by object, x, y (in samples) and inverse depth of 3 vertices in turn
+
+		private int[][] objectFallbackRegions; // by object, a range of samples left to raytracing, if any
+
+		private int nextObjectIndex;
+
+		private double[] triangles; // x, y (in samples) and inverse depth of 3 vertices in turn
+
+		private int[] triangleOwners; // by triangle, index of the owning object
+
+		private int tilesX;
+
+		private int tilesY;
+
+		private int[] tileOffsets; // by tile, offset in tileTriangles
+
+		private int[] tileTriangles; // by tile, indices of the overlapping triangles
+
+		private int nextTileIndex;
+
+		private VisibilityBuffer buffer;
+
+		public RasterState(Scene scene, int width, int height, RenderHandle handle) {
+			this.handle = handle;
+			this.camera = scene.getCamera();
+			this.width = width;
+			this.height = height;
+			Rectangle2D viewPlane = camera.getViewVolume().getViewPlaneRectangle();
+			this.viewPlaneLeft = viewPlane.getLeft();
+			this.viewPlaneTop = viewPlane.getBottom() + viewPlane.getHeight();
+			this.viewPlaneWidth = viewPlane.getWidth();
+			this.viewPlaneHeight = viewPlane.getHeight();
+			this.viewPlaneZ = camera.getViewVolume().getViewPlaneZ();
+			this.objects = scene.getViewPlaneIndex().getViewPlaneObjects().toArray(new Object3D[0]);
+			this.objectTriangles = new double[objects.length][];
+			this.objectFallbackRegions = new int[objects.length][];
+			this.tilesX = (width + TILE_SIZE - 1) >> TILE_SIZE_BITS;
+			this.tilesY = (height + TILE_SIZE - 1) >> TILE_SIZE_BITS;
+			this.buffer = new VisibilityBuffer(width, height, objects);
+		}
+
+		public synchronized int nextObjectIndex() {
+			if (nextObjectIndex < objects.length && !isCancelled()) {
+				return nextObjectIndex++;
+			} else {
+				return -1;
+			}
+		}
+
+		public synchronized int nextTileIndex() {
+			if (nextTileIndex < tilesX * tilesY && !isCancelled()) {
+				return nextTileIndex++;
+			} else {
+				return -1;
+			}
+		}
+
+		public void setObjectTriangles(int objectIndex, double[] triangles) {
+			objectTriangles[objectIndex] = triangles;
+		}
+
+		public void setObjectFallbackRegion(int objectIndex, int[] region) {
+			objectFallbackRegions[objectIndex] = region;
+		}
+
+		/**
+		 * Gathers the triangles of all objects, in the order of the objects, and sorts them into the tiles they overlap
+		 */
+		public void binTriangles() {
+			int n = 0;
+			for (int i = 0; i < objects.length; i++) {
+				if (objectTriangles[i] != null) {
+					n += objectTriangles[i].length / 9;
+				}
+			}
+			triangles = new double[9 * n];
+			triangleOwners = new int[n];
+			int t = 0;
+			for (int i = 0; i < objects.length; i++) {
+				double[] tri = objectTriangles[i];
+				if (tri != null) {
+					System.arraycopy(tri, 0, triangles, 9 * t, tri.length);
+					Arrays.fill(triangleOwners, t, t + tri.length / 9, i);
+					t += tri.length / 9;
+					objectTriangles[i] = null;
+				}
+			}
+			int[] range = new int[4];
+			tileOffsets = new int[tilesX * tilesY + 1];
+			for (int i = 0; i < n; i++) {
+				if (getTileRange(i, range)) {
+					for (int ty = range[1]; ty <= range[3]; ty++) {
+						for (int tx = range[0]; tx <= range[2]; tx++) {
+							tileOffsets[ty * tilesX + tx + 1]++;
+						}
+					}
+				}
+			}
+			for (int i = 0; i < tilesX * tilesY; i++) {
+				tileOffsets[i + 1] += tileOffsets[i];
+			}
+			tileTriangles = new int[tileOffsets[tilesX * tilesY]];
+			int[] fill = Arrays.copyOf(tileOffsets, tilesX * tilesY);
+			for (int i = 0; i < n; i++) {
+				if (getTileRange(i, range)) {
+					for (int ty = range[1]; ty <= range[3]; ty++) {
+						for (int tx = range[0]; tx <= range[2]; tx++) {
+							tileTriangles[fill[ty * tilesX + tx]++] = i;
+						}
+					}
+				}
+			}
+		}
+
+		private boolean getTileRange(int triangleIndex, int[] range) {
+			if (!getSampleRange(triangles, 9 * triangleIndex, range))
+				return false;
+			for (int i = 0; i < 4; i++) {
+				range[i] >>= TILE_SIZE_BITS;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the range of samples that a triangle may cover
+		 *
+		 * @param tri
+		 *            The array holding the triangle
+		 * @param offset
+		 *            The offset of the triangle in <code>tri</code>
+		 * @param range
+		 *            The array that receives the first x, first y, last x and last y of the range, within the raster
+		 * @return <code>true</code> if the range is non-empty
+		 */
+		public boolean getSampleRange(double[] tri, int offset, int[] range) {
+			double minX = Math.min(tri[offset], Math.min(tri[offset + 3], tri[offset + 6]));
+			double maxX = Math.max(tri[offset], Math.max(tri[offset + 3], tri[offset + 6]));
+			double minY = Math.min(tri[offset + 1], Math.min(tri[offset + 4], tri[offset + 7]));
+			double maxY = Math.max(tri[offset + 1], Math.max(tri[offset + 4], tri[offset + 7]));
+			range[0] = Math.max((int) Math.ceil(minX - COVERAGE_TOLERANCE - 0.5), 0);
+			range[1] = Math.max((int) Math.ceil(minY - COVERAGE_TOLERANCE - 0.5), 0);
+			range[2] = Math.min((int) Math.floor(maxX + COVERAGE_TOLERANCE - 0.5), width - 1);
+			range[3] = Math.min((int) Math.floor(maxY + COVERAGE_TOLERANCE - 0.5), height - 1);
+			return range[0] <= range[2] && range[1] <= range[3];
+		}
+
+		public void applyFallbackRegions() {
+			for (int i = 0; i < objects.length; i++) {
+				int[] region = objectFallbackRegions[i];
+				if (region != null) {
+					for (int y = region[1]; y <= region[3]; y++) {
+						for (int x = region[0]; x <= region[2]; x++) {
+							buffer.setUnresolved(x, y);
+						}
+					}
+				}
+			}
+		}
+
+		public boolean isCancelled() {
+			return handle.isCancelled();
+		}
+
+		public Camera getCamera() {
+			return camera;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public double getViewPlaneLeft() {
+			return viewPlaneLeft;
+		}
+
+		public double getViewPlaneTop() {
+			return viewPlaneTop;
+		}
+
+		public double getViewPlaneWidth() {
+			return viewPlaneWidth;
+		}
+
+		public double getViewPlaneHeight() {
+			return viewPlaneHeight;
+		}
+
+		public double getViewPlaneZ() {
+			return viewPlaneZ;
+		}
+
+		public Object3D getObject(int objectIndex) {
+			return objects[objectIndex];
+		}
+
+		public int getTriangleCount() {
+			return triangleOwners.length;
+		}
+
+		public double[] getTriangles() {
+			return triangles;
+		}
+
+		public int[] getTriangleOwners() {
+			return triangleOwners;
+		}
+
+		public int getTilesX() {
+			return tilesX;
+		}
+
+		public int[] getTileOffsets() {
+			return tileOffsets;
+		}
+
+		public int[] getTileTriangles() {
+			return tileTriangles;
+		}
+
+		public VisibilityBuffer getBuffer() {
+			return buffer;
+		}
+
+	}
+
+	/**
+	 * Converts objects into triangles projected onto the raster, or into fallback regions when they are not made of
+	 * polygons
+	 */
+	private static class SetupWorker implements Runnable {
+
+		private RasterState state;
+
+		private double[] triangles; // x, y (in samples) and inverse depth of 3 vertices in turn
+
+		private int triangleCount;
+
+		private double[] matrix;
+
+		private double[] vertices; // x, y, z of 3 vertices in turn
+
+		private double[] clippedVertices; // x, y, z of up to 4 vertices in turn
+
+		private int[] range;
+
+		public SetupWorker(RasterState state) {
+			this.state = state;
+			this.triangles = new double[9 * 1024];
+			this.matrix = new double[16];
+			this.vertices = new double[9];
+			this.clippedVertices = new double[12];
+			this.range = new int[4];
+		}
+
+		@Override
+		public void run() {
+			int objectIndex = -1;
+			while ((objectIndex = state.nextObjectIndex()) >= 0) {
+				Object3D object = state.getObject(objectIndex);
+				if (!object.isRaytraceable()) {
+					// never hit by a ray
+				} else if (isRasterizable(object)) {
+					triangleCount = 0;
+					addTriangles(object);
+					state.setObjectTriangles(objectIndex, Arrays.copyOf(triangles, 9 * triangleCount));
+				} else {
+					state.setObjectFallbackRegion(objectIndex, getFallbackRegion(object));
+				}
+			}
+		}
+
+		private boolean isRasterizable(Object3D object) {
+			if (object.isComposite()) {
+				for (Object3D part : object.asCompositeObject().getParts()) {
+					if (!isRasterizable(part))
+						return false;
+				}
+				return true;
+			} else {
+				return object instanceof PolygonalObject3D || object instanceof GeometryInstance3D;
+			}
+		}
+
+		private void addTriangles(Object3D object) {
+			if (object.isComposite()) {
+				for (Object3D part : object.asCompositeObject().getParts()) {
+					addTriangles(part);
+				}
+			} else if (object instanceof PolygonalObject3D) {
+				addPolygonTriangles((PolygonalObject3D) object);
+			} else {
+				addInstanceTriangles((GeometryInstance3D) object);
+			}
+		}
+
+		private void addPolygonTriangles(PolygonalObject3D polygon) {
+			List<Point3D> points = polygon.getVerticesInCameraCoordinates(state.getCamera());
+			int n = points.size();
+			if (n == 3 || polygon instanceof ConvexPolygonalObject3D) {
+				for (int i = 1; i < n - 1; i++) {
+					addTriangle(points.get(0), points.get(i), points.get(i + 1));
+				}
+			} else {
+				for (int[] t : TriangulationUtils.triangulate(points, false)) {
+					addTriangle(points.get(t[0]), points.get(t[1]), points.get(t[2]));
+				}
+			}
+		}
+
+		private void addTriangle(Point3D p0, Point3D p1, Point3D p2) {
+			double[] v = vertices;
+			v[0] = p0.getX();
+			v[1] = p0.getY();
+			v[2] = p0.getZ();
+			v[3] = p1.getX();
+			v[4] = p1.getY();
+			v[5] = p1.getZ();
+			v[6] = p2.getX();
+			v[7] = p2.getY();
+			v[8] = p2.getZ();
+			addTriangle();
+		}
+
+		private void addInstanceTriangles(GeometryInstance3D instance) {
+			TransformMatrix objectToCamera = state.getCamera().getViewingMatrix()
+					.preMultiply(instance.getObjectToWorldMatrix());
+			double[] M = matrix;
+			for (int i = 0; i < 16; i++) {
+				M[i] = objectToCamera.getValue(i / 4, i % 4);
+			}
+			SharedGeometry3D geometry = instance.getGeometry();
+			double[] v = vertices;
+			int n = geometry.getTriangleCount();
+			for (int t = 0; t < n; t++) {
+				geometry.getTriangleVertices(t, v);
+				for (int j = 0; j < 9; j += 3) {
+					double px = v[j];
+					double py = v[j + 1];
+					double pz = v[j + 2];
+					v[j] = M[0] * px + M[1] * py + M[2] * pz + M[3];
+					v[j + 1] = M[4] * px + M[5] * py + M[6] * pz + M[7];
+					v[j + 2] = M[8] * px + M[9] * py + M[10] * pz + M[11];
+				}
+				addTriangle();
+			}
+		}
+
+		/**
+		 * Adds the triangle in <code>vertices</code>, in camera coordinates, after clipping it by the view plane
+		 */
+		private void addTriangle() {
+			double[] v = vertices;
+			double zc = state.getViewPlaneZ();
+			int inside = 0;
+			for (int j = 2; j < 9; j += 3) {
+				if (v[j] <= zc)
+					inside++;
+			}
+			if (inside == 3) {
+				addProjectedTriangle(v, 0, 3, 6);
+			} else if (inside > 0) {
+				// Sutherland-Hodgman, keeping the part beyond the view plane
+				double[] c = clippedVertices;
+				int m = 0;
+				for (int j = 0; j < 9; j += 3) {
+					int k = (j + 3) % 9;
+					boolean jInside = v[j + 2] <= zc;
+					boolean kInside = v[k + 2] <= zc;
+					if (jInside) {
+						c[m++] = v[j];
+						c[m++] = v[j + 1];
+						c[m++] = v[j + 2];
+					}
+					if (jInside != kInside) {
+						double r = (zc - v[j + 2]) / (v[k + 2] - v[j + 2]);
+						c[m++] = v[j] + r * (v[k] - v[j]);
+						c[m++] = v[j + 1] + r * (v[k + 1] - v[j + 1]);
+						c[m++] = zc;
+					}
+				}
+				for (int j = 3; j < m - 3; j += 3) {
+					addProjectedTriangle(c, 0, j, j + 3);
+				}
+			}
+		}
+
+		private void addProjectedTriangle(double[] v, int i0, int i1, int i2) {
+			if (triangles.length < 9 * (triangleCount + 1)) {
+				triangles = Arrays.copyOf(triangles, 2 * triangles.length);
+			}
+			int offset = 9 * triangleCount;
+			project(v, i0, offset);
+			project(v, i1, offset + 3);
+			project(v, i2, offset + 6);
+			if (state.getSampleRange(triangles, offset, range)) {
+				triangleCount++;
+			}
+		}
+
+		private void project(double[] v, int i, int offset) {
+			double z = v[i + 2];
+			double f = state.getViewPlaneZ() / z;
+			triangles[offset] = (v[i] * f - state.getViewPlaneLeft()) / state.getViewPlaneWidth() * state.getWidth();
+			triangles[offset + 1] = (state.getViewPlaneTop() - v[i + 1] * f) / state.getViewPlaneHeight()
+					* state.getHeight();
+			triangles[offset + 2] = -1.0 / z;
+		}
+
+		/**
+		 * Returns the range of samples that an object which is not rasterized may cover
+		 *
+		 * @return The first x, first y, last x and last y of the range, or <code>null</code> if the object lies in
+		 *         front of the view plane entirely
+		 */
+		private int[] getFallbackRegion(Object3D object) {
+			int width = state.getWidth();
+			int height = state.getHeight();
+			int[] region = new int[] { 0, 0, width - 1, height - 1 };
+			if (object.isBounded()) {
+				Box3D box = object.asBoundedObject().getBoundingBoxInCameraCoordinates(state.getCamera());
+				double zc = state.getViewPlaneZ();
+				if (box.getZ1() > zc)
+					return null;
+				if (box.getZ2() <= zc) {
+					double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+					double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+					double[] v = vertices;
+					for (Point3D corner : box.getVertices()) {
+						v[0] = corner.getX();
+						v[1] = corner.getY();
+						v[2] = corner.getZ();
+						project(v, 0, 0);
+						minX = Math.min(minX, triangles[0]);
+						maxX = Math.max(maxX, triangles[0]);
+						minY = Math.min(minY, triangles[1]);
+						maxY = Math.max(maxY, triangles[1]);
+					}
+					region[0] = Math.max((int) Math.floor(minX) - 1, 0);
+					region[1] = Math.max((int) Math.floor(minY) - 1, 0);
+					region[2] = Math.min((int) Math.ceil(maxX) + 1, width - 1);
+					region[3] = Math.min((int) Math.ceil(maxY) + 1, height - 1);
+				}
+			}
+			return region;
+		}
+
+	}
+
+	/**
+	 * Rasterizes the triangles tile by tile into the visibility buffer
+	 */
+	private static class TileWorker implements Runnable {
+
+		private RasterState state;
+
+		private double[] frontInverseDepths; // by sample in the tile, 0 when none
+
+		private int[] frontOwners; // by sample in the tile, 1 + index of the owner, 0 when none
+
+		private double[] ambiguousInverseDepths; // by sample in the tile, nearest fragment that may be in front
+
+		private int[] range;
+
+		public TileWorker(RasterState state) {
+			this.state = state;
+			this.frontInverseDepths = new double[TILE_SIZE * TILE_SIZE];
+			this.frontOwners = new int[TILE_SIZE * TILE_SIZE];
+			this.ambiguousInverseDepths = new double[TILE_SIZE * TILE_SIZE];
+			this.range = new int[4];
+		}
+
+		@Override
+		public void run() {
+			int tileIndex = -1;
+			while ((tileIndex = state.nextTileIndex()) >= 0) {
+				rasterizeTile(tileIndex);
+			}
+		}
+
+		private void rasterizeTile(int tileIndex) {
+			int x0 = (tileIndex % state.getTilesX()) << TILE_SIZE_BITS;
+			int y0 = (tileIndex / state.getTilesX()) << TILE_SIZE_BITS;
+			int x1 = Math.min(x0 + TILE_SIZE, state.getWidth()) - 1;
+			int y1 = Math.min(y0 + TILE_SIZE, state.getHeight()) - 1;
+			Arrays.fill(frontInverseDepths, 0);
+			Arrays.fill(frontOwners, 0);
+			Arrays.fill(ambiguousInverseDepths, 0);
+			int[] offsets = state.getTileOffsets();
+			int[] tileTriangles = state.getTileTriangles();
+			for (int i = offsets[tileIndex]; i < offsets[tileIndex + 1]; i++) {
+				rasterizeTriangle(tileTriangles[i], x0, y0, x1, y1);
+			}
+			VisibilityBuffer buffer = state.getBuffer();
+			double tolerance = 1.0 - VisibilityBuffer.DEPTH_TOLERANCE;
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0; x <= x1; x++) {
+					int i = ((y - y0) << TILE_SIZE_BITS) + x - x0;
+					double ambiguous = ambiguousInverseDepths[i];
+					double front = frontInverseDepths[i];
+					if (ambiguous > 0 && ambiguous >= front * tolerance) {
+						// left unresolved
+					} else if (frontOwners[i] > 0) {
+						buffer.setFrontObject(x, y, frontOwners[i] - 1, 1.0 / front);
+					} else {
+						buffer.setFrontObject(x, y, -1, 0);
+					}
+				}
+			}
+		}
+
+		private void rasterizeTriangle(int triangleIndex, int tileX0, int tileY0, int tileX1, int tileY1) {
+			double[] tri = state.getTriangles();
+			int offset = 9 * triangleIndex;
+			state.getSampleRange(tri, offset, range);
+			int xmin = Math.max(range[0], tileX0);
+			int ymin = Math.max(range[1], tileY0);
+			int xmax = Math.min(range[2], tileX1);
+			int ymax = Math.min(range[3], tileY1);
+			int owner = state.getTriangleOwners()[triangleIndex] + 1;
+			double ax = tri[offset], ay = tri[offset + 1], aw = tri[offset + 2];
+			double bx = tri[offset + 3], by = tri[offset + 4], bw = tri[offset + 5];
+			double cx = tri[offset + 6], cy = tri[offset + 7], cw = tri[offset + 8];
+			double area2 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+			double lab = Math.sqrt((bx - ax) * (bx - ax) + (by - ay) * (by - ay));
+			double lbc = Math.sqrt((cx - bx) * (cx - bx) + (cy - by) * (cy - by));
+			double lca = Math.sqrt((ax - cx) * (ax - cx) + (ay - cy) * (ay - cy));
+			if (Math.abs(area2) < DEGENERATE_AREA || lab == 0 || lbc == 0 || lca == 0) {
+				// Seen edge-on, the ray may or may not hit
+				double w = Math.max(aw, Math.max(bw, cw));
+				for (int y = ymin; y <= ymax; y++) {
+					for (int x = xmin; x <= xmax; x++) {
+						int i = ((y - tileY0) << TILE_SIZE_BITS) + x - tileX0;
+						ambiguousInverseDepths[i] = Math.max(ambiguousInverseDepths[i], w);
+					}
+				}
+				return;
+			}
+			// Edge functions, as signed distances in samples that are positive inside the triangle
+			double s = Math.signum(area2);
+			double eabX = -(by - ay) * s / lab, eabY = (bx - ax) * s / lab, eab0 = -(eabX * ax + eabY * ay);
+			double ebcX = -(cy - by) * s / lbc, ebcY = (cx - bx) * s / lbc, ebc0 = -(ebcX * bx + ebcY * by);
+			double ecaX = -(ay - cy) * s / lca, ecaY = (ax - cx) * s / lca, eca0 = -(ecaX * cx + ecaY * cy);
+			// Inverse depth, which is linear in the raster
+			double wX = ((bw - aw) * (cy - ay) - (cw - aw) * (by - ay)) / area2;
+			double wY = ((cw - aw) * (bx - ax) - (bw - aw) * (cx - ax)) / area2;
+			double w0 = aw - wX * ax - wY * ay;
+			for (int y = ymin; y <= ymax; y++) {
+				double py = y + 0.5;
+				for (int x = xmin; x <= xmax; x++) {
+					double px = x + 0.5;
+					double d = Math.min(eabX * px + eabY * py + eab0,
+							Math.min(ebcX * px + ebcY * py + ebc0, ecaX * px + ecaY * py + eca0));
+					if (d >= -COVERAGE_TOLERANCE) {
+						int i = ((y - tileY0) << TILE_SIZE_BITS) + x - tileX0;
+						double w = wX * px + wY * py + w0;
+						if (d <= COVERAGE_TOLERANCE) {
+							ambiguousInverseDepths[i] = Math.max(ambiguousInverseDepths[i], w);
+						} else {
+							addFragment(i, owner, w);
+						}
+					}
+				}
+			}
+		}
+
+		private void addFragment(int i, int owner, double w) {
+			double front = frontInverseDepths[i];
+			double tolerance = 1.0 - VisibilityBuffer.DEPTH_TOLERANCE;
+			if (w > front) {
+				if (frontOwners[i] != owner && front >= w * tolerance) {
+					ambiguousInverseDepths[i] = Math.max(ambiguousInverseDepths[i], front);
+				}
+				frontInverseDepths[i] = w;
+				frontOwners[i] = owner;
+			} else if (frontOwners[i] != owner && w >= front * tolerance) {
+				ambiguousInverseDepths[i] = Math.max(ambiguousInverseDepths[i], w);
+			}
+		}
+
+	}
+
+}
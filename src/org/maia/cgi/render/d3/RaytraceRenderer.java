@@ -1,12 +1,17 @@
 package org.maia.cgi.render.d3;
 
 import java.awt.Color;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Vector;
 
 import org.maia.cgi.Metrics;
@@ -19,13 +24,25 @@ import org.maia.cgi.compose.d3.DepthFunction;
 import org.maia.cgi.geometry.d2.Rectangle2D;
 import org.maia.cgi.geometry.d3.LineSegment3D;
 import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
 import org.maia.cgi.model.d3.camera.ViewVolume;
+import org.maia.cgi.model.d3.light.LightSource;
 import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.ObjectSurfaceHitRecord;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
-import org.maia.cgi.model.d3.object.ObjectSurfacePoint3DImpl;
+import org.maia.cgi.model.d3.object.OrientedSurfaceObject3D;
+import org.maia.cgi.model.d3.object.ShadedObject3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.model.d3.scene.SceneUtils;
 import org.maia.cgi.model.d3.scene.index.SceneViewPlaneIndex;
+import org.maia.cgi.render.d2.TextureMapHandle;
+import org.maia.cgi.render.d2.TextureMapRegistry;
+import org.maia.cgi.render.d2.TextureMapRegistry.TextureMapPrefetchTracker;
+import org.maia.cgi.render.d3.sampling.PoissonDiskSamplePattern;
+import org.maia.cgi.render.d3.sampling.SamplePattern;
+import org.maia.cgi.render.d3.shading.FlatShadingModel;
+import org.maia.cgi.render.d3.shading.PixelShadingCache;
 import org.maia.cgi.render.d3.view.ColorDepthBuffer;
 import org.maia.cgi.render.d3.view.ViewPort;
 
@@ -33,21 +50,36 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 
 	private static final String STEP_LABEL_INITIALIZE = "Initializing";
 
+	private static final String STEP_LABEL_PREFETCH_TEXTURES = "Loading textures";
+
 	private static final String STEP_LABEL_RAYTRACE = "Raytracing";
 
+	private static final String STEP_LABEL_ACCUMULATE = "Accumulating samples";
+
 	private static final String STEP_LABEL_DEPTHBLUR_COMPUTE = "Computing depth blur";
 
 	private static final String STEP_LABEL_DEPTHBLUR_RENDER = "Rendering depth blur";
 
+	private static final int ADAPTIVE_COLOR_THRESHOLD = 16; // per color component, out of 255
+
+	private static final double ADAPTIVE_DEPTH_THRESHOLD = 0.02; // second difference relative to depth
+
+	private static final int PROGRESSIVE_INITIAL_STRIDE = 8; // pixels between samples of the coarsest pass
+
+	private static final Color TRANSPARENT_COLOR = new Color(0, 0, 0, 0);
+
 	public RaytraceRenderer() {
 	}
 
 	@Override
-	protected void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options) {
-		RenderState state = new RenderState(scene, options);
+	protected void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options,
+			RenderHandle handle) {
+		RenderState state = new RenderState(scene, options, handle);
 		renderInit(state);
-		renderRaster(state, outputs);
-		if (state.shouldApplyDepthBlur()) {
+		if (!state.isCancelled()) {
+			renderRaster(state, outputs);
+		}
+		if (state.shouldApplyDepthBlur() && !state.isCancelled()) {
 			applyDepthBlur(state, outputs);
 		}
 		System.out.println(Metrics.getInstance());
@@ -58,15 +90,120 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 		int steps = state.getTotalSteps();
 		int step = state.getCurrentStep();
 		fireRenderingProgressUpdate(scene, steps, step, 0.0, STEP_LABEL_INITIALIZE);
+		scene.checkForChanges(); // update indices for changed objects upfront (in single thread!)
 		scene.getSpatialIndex(); // create spatial index upfront (in single thread!)
-		fireRenderingProgressUpdate(scene, steps, step, 0.5, STEP_LABEL_INITIALIZE);
+		fireRenderingProgressUpdate(scene, steps, step, 0.4, STEP_LABEL_INITIALIZE);
 		scene.getViewPlaneIndex(); // create view plane index upfront (in single thread!)
+		fireRenderingProgressUpdate(scene, steps, step, 0.8, STEP_LABEL_INITIALIZE);
+		prefetchTextureMaps(state);
+		fireRenderingProgressUpdate(scene, steps, step, 0.9, STEP_LABEL_INITIALIZE);
+		if (state.isSampledOnGrid()) {
+			ColorDepthBuffer raster = state.getRaster();
+			state.setVisibilityBuffer(createVisibilityBuffer(scene, state.getOptions(), raster.getWidth(),
+					raster.getHeight(), state.getHandle()));
+		}
 		fireRenderingProgressUpdate(scene, steps, step, 1.0, STEP_LABEL_INITIALIZE);
 		System.out.println(state);
 	}
 
+	/**
+	 * Resolves the primary visibility of the samples upfront
+	 * 
+	 * <p>
+	 * This is called before raytracing, only when the samples lie on a regular grid. Samples that are resolved by the
+	 * returned buffer are intersected with their front object only. All other samples are raytraced through the view
+	 * plane index. This implementation returns <code>null</code>, so every sample is raytraced.
+	 * </p>
+	 * 
+	 * @param scene
+	 *            The scene, with its view plane index in place
+	 * @param options
+	 *            The render options
+	 * @param width
+	 *            The number of samples in a row
+	 * @param height
+	 *            The number of samples in a column
+	 * @param handle
+	 *            The handle of the render, which may get cancelled
+	 * @return The visibility buffer of <code>width</code> by <code>height</code> samples, or <code>null</code>
+	 */
+	protected VisibilityBuffer createVisibilityBuffer(Scene scene, RenderOptions options, int width, int height,
+			RenderHandle handle) {
+		return null;
+	}
+
+	/**
+	 * Resolves the texture maps of all potentially visible objects, so that raytracing does not have to wait for them
+	 */
+	private void prefetchTextureMaps(RenderState state) {
+		Set<TextureMapHandle> handles = new LinkedHashSet<TextureMapHandle>();
+		for (Object3D object : state.getViewPlaneIndex().getViewPlaneObjects()) {
+			collectTextureMapHandles(object, handles);
+		}
+		if (!handles.isEmpty()) {
+			long start = System.currentTimeMillis();
+			TextureMapRegistry registry = TextureMapRegistry.getInstance();
+			registry.prefetch(handles, state.getOptions().getSafeNumberOfRenderThreads(),
+					new TextureMapPrefetchTrackerImpl(state));
+			System.out.println("Prefetched " + handles.size() + " texture maps in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	private void collectTextureMapHandles(Object3D object, Set<TextureMapHandle> handles) {
+		if (object.isComposite()) {
+			for (Object3D part : object.asCompositeObject().getParts()) {
+				collectTextureMapHandles(part, handles);
+			}
+		} else if (object instanceof SimpleTexturedFace3D) {
+			SimpleTexturedFace3D face = (SimpleTexturedFace3D) object;
+			addTextureMapHandle(face.getPictureMapHandle(), handles);
+			addTextureMapHandle(face.getLuminanceMapHandle(), handles);
+			addTextureMapHandle(face.getTransparencyMapHandle(), handles);
+		}
+	}
+
+	private void addTextureMapHandle(TextureMapHandle handle, Set<TextureMapHandle> handles) {
+		if (handle != null) {
+			handles.add(handle);
+		}
+	}
+
 	private void renderRaster(RenderState state, Collection<ViewPort> outputs) {
 		state.incrementStep();
+		if (state.isAdaptiveSampling()) {
+			// First pass samples every pixel once, second pass refines where needed
+			renderRasterPass(state, outputs);
+			if (state.isCancelled())
+				return;
+			state.startRefinementPass();
+			renderRasterPass(state, outputs);
+			System.out.println("Adaptive sampling refined " + state.getRefinedPixelCount() + " of "
+					+ state.getPixelWidth() * state.getPixelHeight() + " pixels");
+		} else if (state.isProgressiveRendering()) {
+			renderRasterProgressively(state, outputs);
+		} else {
+			renderRasterPass(state, outputs);
+		}
+	}
+
+	private void renderRasterProgressively(RenderState state, Collection<ViewPort> outputs) {
+		// Coarse to fine, until every pixel has one sample
+		for (int stride = PROGRESSIVE_INITIAL_STRIDE; stride >= 1 && !state.isCancelled(); stride /= 2) {
+			state.startProgressivePass(stride, -1);
+			renderRasterPass(state, outputs);
+		}
+		// Accumulate additional samples per pixel, within budget
+		int passes = state.getProgressiveAccumulationPasses();
+		for (int i = 0; i < passes && !state.isProgressiveBudgetExhausted() && !state.isCancelled(); i++) {
+			state.startProgressivePass(0, i);
+			renderRasterPass(state, outputs);
+		}
+		System.out.println("Progressive rendering accumulated " + state.getProgressiveSamplesPerPixel()
+				+ " samples per pixel in " + state.getProgressiveElapsedTimeMs() + " ms");
+	}
+
+	private void renderRasterPass(RenderState state, Collection<ViewPort> outputs) {
 		int n = state.getOptions().getSafeNumberOfRenderThreads();
 		if (n == 1) {
 			renderRasterInCurrentThread(state, outputs);
@@ -122,7 +259,7 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 		ConvolutionMatrix avgMatrix = state.getPixelAveragingConvolutionMatrix();
 		int pw = state.getPixelWidth();
 		int ph = state.getPixelHeight();
-		for (int iy = 0; iy < ph; iy++) {
+		for (int iy = 0; iy < ph && !state.isCancelled(); iy++) {
 			for (int ix = 0; ix < pw; ix++) {
 				if (state.getSamplesPerPixel() == 1) {
 					renderPixelAtViewPorts(ix, iy, raster.getColor(ix, iy), outputs);
@@ -147,6 +284,8 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 
 		private RenderOptions options;
 
+		private RenderHandle handle;
+
 		private Rectangle2D viewPlaneBounds;
 
 		private double viewPlaneZ;
@@ -161,12 +300,47 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 
 		private int nextRenderLineIndex;
 
+		private int nextRenderTileIndex;
+
 		private int activeRenderRasterWorkers;
 
-		public RenderState(Scene scene, RenderOptions options) {
+		private boolean refinementPass;
+
+		private int[] primaryColors; // adaptive sampling only, by pixel
+
+		private double[] primaryDepths; // adaptive sampling only, by pixel
+
+		private Object3D[] primaryObjects; // adaptive sampling only, by pixel
+
+		private VisibilityBuffer visibilityBuffer; // optional
+
+		private int refinedPixelCount;
+
+		private SamplePattern progressiveSamplePattern; // positions of the samples accumulated after the center
+
+		private float[] progressiveAccumulation; // sum of RGBA components of the samples, by pixel
+
+		private int progressiveSamplesPerPixel; // once the current pass completes
+
+		private int progressiveStride; // 0 when accumulating
+
+		private int progressiveSampleIndex; // -1 when not accumulating
+
+		private int progressivePassIndex;
+
+		private int progressivePasses;
+
+		private long progressiveStartTime;
+
+		private long progressivePassStartTime;
+
+		private long progressivePassDuration;
+
+		public RenderState(Scene scene, RenderOptions options, RenderHandle handle) {
 			ViewVolume vv = scene.getCamera().getViewVolume();
 			this.scene = scene;
 			this.options = options;
+			this.handle = handle;
 			this.viewPlaneBounds = vv.getViewPlaneRectangle();
 			this.viewPlaneZ = vv.getViewPlaneZ();
 			this.raster = new ColorDepthBuffer(getPixelWidth() * getSamplesPerPixelX(), getPixelHeight()
@@ -176,7 +350,30 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			this.currentStep = 0;
 			this.totalSteps = shouldApplyDepthBlur() ? 4 : 2;
 			this.nextRenderLineIndex = 0;
+			this.nextRenderTileIndex = 0;
 			this.activeRenderRasterWorkers = 0;
+			if (isAdaptiveSampling()) {
+				int pixels = getPixelWidth() * getPixelHeight();
+				this.primaryColors = new int[pixels];
+				this.primaryDepths = new double[pixels];
+				this.primaryObjects = new Object3D[pixels];
+			}
+			if (isProgressiveRendering()) {
+				this.progressiveSamplePattern = createProgressiveSamplePattern();
+				this.progressiveAccumulation = new float[4 * getPixelWidth() * getPixelHeight()];
+				this.progressivePassIndex = -1;
+				this.progressivePasses = Integer.numberOfTrailingZeros(PROGRESSIVE_INITIAL_STRIDE) + 1
+						+ getProgressiveAccumulationPasses();
+			}
+		}
+
+		private SamplePattern createProgressiveSamplePattern() {
+			SamplePattern pattern = getOptions().getSamplePattern();
+			if (pattern == null) {
+				// Best-candidate samples spread well over the pixel for any number of passes completed
+				pattern = new PoissonDiskSamplePattern(Math.max(getOptions().getProgressiveMaxSamplesPerPixel(), 1));
+			}
+			return pattern;
 		}
 
 		@Override
@@ -205,6 +402,149 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			currentStep++;
 		}
 
+		public synchronized void startRefinementPass() {
+			refinementPass = true;
+			setNextRenderLineIndex(0);
+		}
+
+		/**
+		 * Starts the next pass of a progressive render
+		 * 
+		 * @param stride
+		 *            The distance in pixels between the pixels sampled in this pass, or 0 when accumulating
+		 * @param sampleIndex
+		 *            The index of the sample in the progressive sample pattern, or -1 when not accumulating
+		 */
+		public synchronized void startProgressivePass(int stride, int sampleIndex) {
+			long now = System.currentTimeMillis();
+			if (progressivePassIndex < 0) {
+				progressiveStartTime = now;
+			} else {
+				progressivePassDuration = now - progressivePassStartTime;
+			}
+			progressivePassStartTime = now;
+			progressivePassIndex++;
+			progressiveStride = stride;
+			progressiveSampleIndex = sampleIndex;
+			progressiveSamplesPerPixel = sampleIndex + 2;
+			setNextRenderLineIndex(0);
+		}
+
+		/**
+		 * Tells whether a progressive render should stop accumulating samples
+		 * 
+		 * <p>
+		 * The time budget is considered exhausted when another pass taking as long as the previous one would exceed
+		 * it.
+		 * </p>
+		 */
+		public boolean isProgressiveBudgetExhausted() {
+			long budget = getOptions().getProgressiveTimeBudgetMs();
+			if (budget <= 0)
+				return false;
+			long passDuration = System.currentTimeMillis() - progressivePassStartTime;
+			return getProgressiveElapsedTimeMs() + Math.max(passDuration, progressivePassDuration) > budget;
+		}
+
+		/**
+		 * Tells whether a pixel is sampled in the current pass of a progressive render
+		 * 
+		 * <p>
+		 * While refining, a pass samples the pixels at multiples of its stride, skipping those already sampled by the
+		 * previous pass at twice the stride.
+		 * </p>
+		 */
+		public boolean isSampledInProgressivePass(int ix, int iy) {
+			int stride = getProgressiveStride();
+			if (stride == 0)
+				return true;
+			if (ix % stride != 0 || iy % stride != 0)
+				return false;
+			return stride == PROGRESSIVE_INITIAL_STRIDE || ix % (2 * stride) != 0 || iy % (2 * stride) != 0;
+		}
+
+		/**
+		 * Adds a sample to a pixel's accumulation
+		 * 
+		 * @param ix
+		 *            The horizontal pixel index
+		 * @param iy
+		 *            The vertical pixel index
+		 * @param color
+		 *            The color of the sample
+		 * @param rgbaComps
+		 *            Reusable array of 4 components
+		 * @return The average color of the samples accumulated so far for the pixel
+		 */
+		public Color accumulateProgressiveSample(int ix, int iy, Color color, float[] rgbaComps) {
+			float[] accumulation = progressiveAccumulation;
+			int i = 4 * (iy * getPixelWidth() + ix);
+			color.getRGBComponents(rgbaComps);
+			for (int k = 0; k < 4; k++) {
+				accumulation[i + k] += rgbaComps[k];
+			}
+			float n = getProgressiveSamplesPerPixel();
+			return new Color(Math.min(accumulation[i] / n, 1f), Math.min(accumulation[i + 1] / n, 1f), Math.min(
+					accumulation[i + 2] / n, 1f), Math.min(accumulation[i + 3] / n, 1f));
+		}
+
+		public synchronized void incrementRefinedPixelCount(int count) {
+			refinedPixelCount += count;
+		}
+
+		public void setPrimarySample(int ix, int iy, int rgb, double depth, Object3D object) {
+			int i = iy * getPixelWidth() + ix;
+			primaryColors[i] = rgb;
+			primaryDepths[i] = depth;
+			primaryObjects[i] = object;
+		}
+
+		/**
+		 * Tells whether a pixel needs more samples than its primary sample
+		 * 
+		 * <p>
+		 * A pixel is refined when its primary sample differs from that of any of its 8 neighbors in color beyond a
+		 * threshold or in the object hit, or when the depth is discontinuous around the pixel. The latter is detected
+		 * from the second difference of depth, so that surfaces at a grazing angle are not refined.
+		 * </p>
+		 */
+		public boolean needsRefinement(int ix, int iy) {
+			int pw = getPixelWidth();
+			int ph = getPixelHeight();
+			int i = iy * pw + ix;
+			int rgb = primaryColors[i];
+			Object3D object = primaryObjects[i];
+			for (int ny = Math.max(iy - 1, 0); ny <= Math.min(iy + 1, ph - 1); ny++) {
+				for (int nx = Math.max(ix - 1, 0); nx <= Math.min(ix + 1, pw - 1); nx++) {
+					int j = ny * pw + nx;
+					if (j != i && (primaryObjects[j] != object || differInColor(rgb, primaryColors[j])))
+						return true;
+				}
+			}
+			double depth = primaryDepths[i];
+			if (ix > 0 && ix < pw - 1 && isDepthDiscontinuous(primaryDepths[i - 1], depth, primaryDepths[i + 1]))
+				return true;
+			if (iy > 0 && iy < ph - 1 && isDepthDiscontinuous(primaryDepths[i - pw], depth, primaryDepths[i + pw]))
+				return true;
+			return false;
+		}
+
+		private boolean differInColor(int rgb1, int rgb2) {
+			for (int shift = 0; shift < 32; shift += 8) {
+				int c1 = (rgb1 >>> shift) & 0xff;
+				int c2 = (rgb2 >>> shift) & 0xff;
+				if (Math.abs(c1 - c2) > ADAPTIVE_COLOR_THRESHOLD)
+					return true;
+			}
+			return false;
+		}
+
+		private boolean isDepthDiscontinuous(double before, double depth, double after) {
+			if (Double.isInfinite(before) || Double.isInfinite(depth) || Double.isInfinite(after))
+				return false; // no hit, covered by the object comparison
+			return Math.abs(before + after - 2.0 * depth) > ADAPTIVE_DEPTH_THRESHOLD * depth;
+		}
+
 		public synchronized boolean hasNextRenderLine() {
 			return getNextRenderLineIndex() < getPixelHeight();
 		}
@@ -217,6 +557,34 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return index;
 		}
 
+		public synchronized boolean hasNextRenderTile() {
+			return getNextRenderTileIndex() < getRenderTiles();
+		}
+
+		public synchronized int nextRenderTile() {
+			if (!hasNextRenderTile())
+				throw new NoSuchElementException("All tiles were rendered");
+			int index = getNextRenderTileIndex();
+			setNextRenderTileIndex(index + 1);
+			return index;
+		}
+
+		public int getRenderTileSize() {
+			return Math.max(getOptions().getWavefrontTileSize(), 1);
+		}
+
+		public int getRenderTilesX() {
+			return (getPixelWidth() + getRenderTileSize() - 1) / getRenderTileSize();
+		}
+
+		public int getRenderTilesY() {
+			return (getPixelHeight() + getRenderTileSize() - 1) / getRenderTileSize();
+		}
+
+		public int getRenderTiles() {
+			return getRenderTilesX() * getRenderTilesY();
+		}
+
 		public int getPixelWidth() {
 			return getOptions().getRenderWidth();
 		}
@@ -225,11 +593,23 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return getOptions().getRenderHeight();
 		}
 
+		/**
+		 * Returns the number of horizontal samples per pixel in the raster
+		 * 
+		 * <p>
+		 * When sampling by a sample pattern or rendering progressively, the samples are accumulated per pixel and the
+		 * raster has a single sample per pixel.
+		 * </p>
+		 */
 		public int getSamplesPerPixelX() {
+			if (getSamplePattern() != null || isProgressiveRendering())
+				return 1;
 			return getOptions().getSamplingMode().getSamplesPerPixelX();
 		}
 
 		public int getSamplesPerPixelY() {
+			if (getSamplePattern() != null || isProgressiveRendering())
+				return 1;
 			return getOptions().getSamplingMode().getSamplesPerPixelY();
 		}
 
@@ -237,6 +617,85 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return getSamplesPerPixelX() * getSamplesPerPixelY();
 		}
 
+		public boolean isAdaptiveSampling() {
+			return getSamplePattern() == null && !isProgressiveRendering()
+					&& getOptions().getSamplingMode().isAdaptive();
+		}
+
+		public SamplePattern getSamplePattern() {
+			if (isProgressiveRendering())
+				return null; // positions the accumulated samples instead
+			return getOptions().getSamplePattern();
+		}
+
+		public boolean isSampledOnGrid() {
+			return getSamplePattern() == null && !isProgressiveRendering();
+		}
+
+		public boolean isProgressiveRendering() {
+			return getOptions().isProgressiveRenderingEnabled();
+		}
+
+		public boolean isShadingReuse() {
+			return getOptions().isShadingReuseEnabled() && getOptions().isShadowsEnabled() && isSampledOnGrid()
+					&& getSamplesPerPixel() > 1;
+		}
+
+		/**
+		 * Tells whether a sample traces its own light rays when the samples of a pixel share their shadows
+		 * 
+		 * @param subsampleIndex
+		 *            The index of the sample within the grid of its pixel, in row-major order
+		 */
+		public boolean isShadingProbe(int subsampleIndex) {
+			return subsampleIndex == 0 || subsampleIndex == getSamplesPerPixel() - 1; // opposite corners
+		}
+
+		public boolean isWavefrontRendering() {
+			return getOptions().isWavefrontRenderingEnabled() && isSampledOnGrid() && !isAdaptiveSampling();
+		}
+
+		public SamplePattern getProgressiveSamplePattern() {
+			return progressiveSamplePattern;
+		}
+
+		/**
+		 * Returns the number of passes that accumulate an additional sample per pixel, unless the time budget is
+		 * exhausted first
+		 */
+		public int getProgressiveAccumulationPasses() {
+			int samples = Math.max(getOptions().getProgressiveMaxSamplesPerPixel(), 1) - 1; // beyond the center
+			return Math.min(getProgressiveSamplePattern().getNumberOfSamples(), samples);
+		}
+
+		public int getProgressiveStride() {
+			return progressiveStride;
+		}
+
+		public int getProgressiveSampleIndex() {
+			return progressiveSampleIndex;
+		}
+
+		public int getProgressiveSamplesPerPixel() {
+			return progressiveSamplesPerPixel;
+		}
+
+		public long getProgressiveElapsedTimeMs() {
+			return System.currentTimeMillis() - progressiveStartTime;
+		}
+
+		public boolean isRefinementPass() {
+			return refinementPass;
+		}
+
+		public int getRefinedPixelCount() {
+			return refinedPixelCount;
+		}
+
+		public boolean isCancelled() {
+			return getHandle().isCancelled();
+		}
+
 		public boolean shouldApplyDepthBlur() {
 			return getOptions().isDepthBlurEnabled() && getScene().getDepthBlurParameters() != null;
 		}
@@ -249,6 +708,10 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return options;
 		}
 
+		public RenderHandle getHandle() {
+			return handle;
+		}
+
 		public Rectangle2D getViewPlaneBounds() {
 			return viewPlaneBounds;
 		}
@@ -265,6 +728,14 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return pixelAveragingConvolutionMatrix;
 		}
 
+		public VisibilityBuffer getVisibilityBuffer() {
+			return visibilityBuffer;
+		}
+
+		public void setVisibilityBuffer(VisibilityBuffer visibilityBuffer) {
+			this.visibilityBuffer = visibilityBuffer;
+		}
+
 		private SceneViewPlaneIndex getViewPlaneIndex() {
 			return getScene().getViewPlaneIndex();
 		}
@@ -278,7 +749,19 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 		}
 
 		public double getRasterRenderProgress() {
-			return getNextRenderLineIndex() / (double) getPixelHeight();
+			double progress = getNextRenderLineIndex() / (double) getPixelHeight();
+			if (isWavefrontRendering()) {
+				progress = getNextRenderTileIndex() / (double) getRenderTiles();
+			} else if (isAdaptiveSampling()) {
+				progress = ((isRefinementPass() ? 1.0 : 0.0) + progress) / 2.0;
+			} else if (isProgressiveRendering()) {
+				progress = (progressivePassIndex + progress) / progressivePasses;
+				long budget = getOptions().getProgressiveTimeBudgetMs();
+				if (budget > 0) {
+					progress = Math.min(Math.max(progress, getProgressiveElapsedTimeMs() / (double) budget), 1.0);
+				}
+			}
+			return progress;
 		}
 
 		private int getNextRenderLineIndex() {
@@ -289,6 +772,14 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			this.nextRenderLineIndex = nextRenderLineIndex;
 		}
 
+		private int getNextRenderTileIndex() {
+			return nextRenderTileIndex;
+		}
+
+		private void setNextRenderTileIndex(int nextRenderTileIndex) {
+			this.nextRenderTileIndex = nextRenderTileIndex;
+		}
+
 		public int getActiveRenderRasterWorkers() {
 			return activeRenderRasterWorkers;
 		}
@@ -311,54 +802,365 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 
 		private List<Color> colorList; // reusable
 
+		private float[] rgbaComps; // reusable
+
 		private Point3D pointOnViewPlane; // reusable
 
 		private LineSegment3D ray; // reusable
 
+		private ObjectSurfaceHitRecord backdropHit; // reusable
+
+		private GeometryBuffer geometryBuffer; // wavefront rendering only, reusable
+
+		private ObjectSurfaceHitRecord geometryBufferHit; // wavefront rendering only, reusable
+
+		private Vector3D surfaceNormal; // wavefront rendering only, reusable
+
+		private Point3D surfacePosition; // wavefront rendering only, reusable
+
+		private Map<Object3D, Integer> tileObjectIds; // wavefront rendering only, reusable
+
+		private int[] entryObjectIds; // wavefront rendering only, reusable
+
+		private int[] entriesByObject; // wavefront rendering only, reusable
+
+		private int[] objectEntryCounts; // wavefront rendering only, reusable
+
+		private double[] lightFactors; // wavefront rendering only, reusable
+
 		public RenderRasterWorker(RenderState state, Collection<ViewPort> outputs) {
 			this.state = state;
 			this.reusableObjects = new ReusableObjectPack();
 			this.outputs = outputs;
 			this.intersections = new Vector<ObjectSurfacePoint3D>();
 			this.colorList = new Vector<Color>();
+			this.rgbaComps = new float[4];
 			this.pointOnViewPlane = new Point3D();
 			this.ray = new LineSegment3D(this.pointOnViewPlane, new Point3D(), true, false);
+			this.backdropHit = new ObjectSurfaceHitRecord();
 		}
 
 		@Override
 		public void run() {
+			if (getState().isWavefrontRendering()) {
+				renderTiles();
+			} else {
+				renderLines();
+			}
+			notifyRenderRasterWorkerCompletion(this);
+		}
+
+		private void renderLines() {
 			RenderState state = getState();
 			Point3D pointOnViewPlane = getPointOnViewPlane();
 			pointOnViewPlane.setZ(state.getViewPlaneZ());
 			int pw = state.getPixelWidth();
 			int ph = state.getPixelHeight();
 			int spp = state.getSamplesPerPixel();
+			SamplePattern pattern = state.getSamplePattern();
+			boolean progressive = state.isProgressiveRendering();
+			boolean adaptive = state.isAdaptiveSampling();
+			boolean refinement = state.isRefinementPass();
 			double vw = state.getViewPlaneBounds().getWidth();
 			double vh = state.getViewPlaneBounds().getHeight();
 			double vx0 = state.getViewPlaneBounds().getLeft();
 			double vy0 = state.getViewPlaneBounds().getBottom();
-			while (state.hasNextRenderLine()) {
+			while (!state.isCancelled() && state.hasNextRenderLine()) {
 				int iy = state.nextRenderLine();
+				int refined = 0;
 				pointOnViewPlane.setY(vy0 + (ph - iy - 0.5) / ph * vh);
 				for (int ix = 0; ix < pw; ix++) {
 					pointOnViewPlane.setX(vx0 + (ix + 0.5) / pw * vw);
-					if (spp == 1) {
+					if (progressive) {
+						if (state.isSampledInProgressivePass(ix, iy)) {
+							renderPixelProgressively(ix, iy);
+						}
+					} else if (pattern != null) {
+						renderPixelBySamplePattern(ix, iy, pattern);
+					} else if (adaptive && !refinement) {
+						renderPixelPrimarySample(ix, iy);
+					} else if (adaptive) {
+						if (state.needsRefinement(ix, iy)) {
+							renderPixelBySupersampling(ix, iy);
+							refined++;
+						} else {
+							replicatePixelPrimarySample(ix, iy);
+						}
+					} else if (spp == 1) {
 						renderPixelWithoutSupersampling(ix, iy);
 					} else {
 						renderPixelBySupersampling(ix, iy);
 					}
 				}
+				if (refined > 0) {
+					state.incrementRefinedPixelCount(refined);
+				}
+				fireRenderingProgressUpdate(state.getScene(), state.getTotalSteps(), state.getCurrentStep(),
+						state.getRasterRenderProgress(), progressive && state.getProgressiveStride() == 0
+								? STEP_LABEL_ACCUMULATE : STEP_LABEL_RAYTRACE);
+			}
+		}
+
+		/**
+		 * Renders one tile at a time, in separate stages
+		 * 
+		 * <p>
+		 * The primary rays of all samples in the tile are traced first, collecting the unshaded surface points they hit
+		 * in the geometry buffer. Next, the shadow rays are traced one light source at a time, from the surface points
+		 * grouped by object so that consecutive rays are likely obscured by the same object. Finally, the surface
+		 * points are shaded from the light factors in the buffer and composited per sample. The time spent in every
+		 * stage adds to the <code>Metrics</code>.
+		 * </p>
+		 */
+		private void renderTiles() {
+			RenderState state = getState();
+			getPointOnViewPlane().setZ(state.getViewPlaneZ());
+			int ts = state.getRenderTileSize();
+			int tilesX = state.getRenderTilesX();
+			while (!state.isCancelled() && state.hasNextRenderTile()) {
+				int tile = state.nextRenderTile();
+				int ix0 = (tile % tilesX) * ts;
+				int iy0 = (tile / tilesX) * ts;
+				int ix1 = Math.min(ix0 + ts, state.getPixelWidth());
+				int iy1 = Math.min(iy0 + ts, state.getPixelHeight());
+				long t0 = System.nanoTime();
+				traceTilePrimaryRays(ix0, iy0, ix1, iy1);
+				long t1 = System.nanoTime();
+				traceTileShadowRays();
+				long t2 = System.nanoTime();
+				shadeTile(ix0, iy0, ix1, iy1);
+				long t3 = System.nanoTime();
+				Metrics.getInstance().addWavefrontPrimaryRaysTime(t1 - t0);
+				Metrics.getInstance().addWavefrontShadowRaysTime(t2 - t1);
+				Metrics.getInstance().addWavefrontShadingTime(t3 - t2);
 				fireRenderingProgressUpdate(state.getScene(), state.getTotalSteps(), state.getCurrentStep(),
 						state.getRasterRenderProgress(), STEP_LABEL_RAYTRACE);
 			}
-			notifyRenderRasterWorkerCompletion(this);
+		}
+
+		private void traceTilePrimaryRays(int ix0, int iy0, int ix1, int iy1) {
+			RenderState state = getState();
+			GeometryBuffer buffer = getGeometryBuffer();
+			buffer.clear();
+			Point3D pointOnViewPlane = getPointOnViewPlane();
+			int pw = state.getPixelWidth();
+			int ph = state.getPixelHeight();
+			int sppx = state.getSamplesPerPixelX();
+			int sppy = state.getSamplesPerPixelY();
+			double vw = state.getViewPlaneBounds().getWidth();
+			double vh = state.getViewPlaneBounds().getHeight();
+			double vx0 = state.getViewPlaneBounds().getLeft();
+			double vy0 = state.getViewPlaneBounds().getBottom();
+			double pvw = vw / pw; // pixel view width
+			double pvh = vh / ph; // pixel view height
+			getReusableObjects().setShadingDeferred(true);
+			try {
+				for (int iy = iy0; iy < iy1; iy++) {
+					double vy = vy0 + (ph - iy - 0.5) / ph * vh;
+					for (int ix = ix0; ix < ix1; ix++) {
+						double vx = vx0 + (ix + 0.5) / pw * vw;
+						if (sppx * sppy == 1) {
+							pointOnViewPlane.setX(vx);
+							pointOnViewPlane.setY(vy);
+							addSampleToGeometryBuffer(ix, iy, ix, iy);
+						} else {
+							for (int si = 0; si < sppy; si++) {
+								pointOnViewPlane.setY(vy + pvh / 2 - (si + 0.5) / sppy * pvh);
+								for (int sj = 0; sj < sppx; sj++) {
+									pointOnViewPlane.setX(vx - pvw / 2 + (sj + 0.5) / sppx * pvw);
+									addSampleToGeometryBuffer(ix, iy, ix * sppx + sj, iy * sppy + si);
+								}
+							}
+						}
+					}
+				}
+			} finally {
+				getReusableObjects().setShadingDeferred(false);
+			}
+		}
+
+		private void addSampleToGeometryBuffer(int ix, int iy, int irx, int iry) {
+			GeometryBuffer buffer = getGeometryBuffer();
+			LineSegment3D ray = getDirectedRay();
+			Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithSampleRay(ray, ix, iy, irx, iry);
+			if (!intersections.isEmpty()) {
+				sortIntersectionsByDepth();
+				for (ObjectSurfacePoint3D intersection : getIntersections()) {
+					buffer.addEntry(intersection);
+					if (Compositing.isFullyOpaque(intersection.getColor()))
+						break; // hides whatever lies behind
+				}
+			}
+			buffer.endSample();
+		}
+
+		private void traceTileShadowRays() {
+			RenderState state = getState();
+			Scene scene = state.getScene();
+			ReusableObjectPack reusableObjects = getReusableObjects();
+			GeometryBuffer buffer = getGeometryBuffer();
+			int spp = state.getSamplesPerPixel();
+			PixelShadingCache shadingCache = state.isShadingReuse() ? reusableObjects.getPixelShadingCache() : null;
+			int n = groupLitEntriesByObject();
+			int[] entries = getEntriesByObject();
+			int lightIndex = 0;
+			for (LightSource lightSource : scene.getLightSources()) {
+				int k = 0;
+				while (k < n) {
+					int end = k + 1;
+					if (shadingCache != null) {
+						// Entries on the same object and in the same pixel, which are adjacent when grouped by object
+						Object3D object = buffer.getObject(entries[k]);
+						int pixel = buffer.getSample(entries[k]) / spp;
+						while (end < n && buffer.getObject(entries[end]) == object
+								&& buffer.getSample(entries[end]) / spp == pixel) {
+							end++;
+						}
+						shadingCache.startPixel();
+						shadingCache.setProbing(true);
+						for (int j = k; j < end; j++) {
+							if (state.isShadingProbe(buffer.getSample(entries[j]) % spp)) {
+								computeLightFactor(entries[j], lightSource, lightIndex);
+							}
+						}
+						shadingCache.setProbing(false);
+						for (int j = k; j < end; j++) {
+							if (!state.isShadingProbe(buffer.getSample(entries[j]) % spp)) {
+								computeLightFactor(entries[j], lightSource, lightIndex);
+							}
+						}
+						shadingCache.endPixel();
+					} else {
+						computeLightFactor(entries[k], lightSource, lightIndex);
+					}
+					k = end;
+				}
+				lightIndex++;
+			}
+		}
+
+		private void computeLightFactor(int entry, LightSource lightSource, int lightIndex) {
+			Scene scene = getState().getScene();
+			GeometryBuffer buffer = getGeometryBuffer();
+			Vector3D normal = getSurfaceNormal();
+			Point3D position = getSurfacePosition();
+			Object3D object = buffer.getObject(entry);
+			FlatShadingModel shadingModel = ((ShadedObject3D) object).getShadingModel();
+			buffer.getNormal(entry, normal);
+			buffer.getPosition(entry, position);
+			buffer.setLightFactor(entry, lightIndex, shadingModel.computeLightSourceBrightnessFactor(lightSource,
+					position, normal, object, scene, getState().getOptions(), getReusableObjects()));
+		}
+
+		/**
+		 * Computes the surface normals of the entries in the geometry buffer that can be lit ahead of shading, and
+		 * sorts those entries by object
+		 * 
+		 * @return The number of lit entries, now in the order of {@link #getEntriesByObject()}
+		 */
+		private int groupLitEntriesByObject() {
+			Scene scene = getState().getScene();
+			GeometryBuffer buffer = getGeometryBuffer();
+			ObjectSurfaceHitRecord hit = getGeometryBufferHit();
+			Map<Object3D, Integer> objectIds = getTileObjectIds();
+			objectIds.clear();
+			int n = buffer.getEntryCount();
+			int lit = 0;
+			int[] ids = getEntryObjectIds(n);
+			for (int i = 0; i < n; i++) {
+				ids[i] = -1;
+				Object3D object = buffer.getObject(i);
+				if (object instanceof ShadedObject3D && object instanceof OrientedSurfaceObject3D) {
+					buffer.getEntry(i, hit);
+					buffer.setNormal(i, ((OrientedSurfaceObject3D) object).getSurfaceNormalInCameraCoordinates(hit,
+							scene.getCamera()));
+					Integer id = objectIds.get(object);
+					if (id == null) {
+						id = objectIds.size();
+						objectIds.put(object, id);
+					}
+					ids[i] = id;
+					lit++;
+				}
+			}
+			// Counting sort by object, in order of first appearance
+			int[] counts = getObjectEntryCounts(objectIds.size() + 1);
+			for (int i = 0; i < n; i++) {
+				if (ids[i] >= 0) {
+					counts[ids[i] + 1]++;
+				}
+			}
+			for (int id = 1; id <= objectIds.size(); id++) {
+				counts[id] += counts[id - 1];
+			}
+			int[] entries = getEntriesByObject();
+			for (int i = 0; i < n; i++) {
+				if (ids[i] >= 0) {
+					entries[counts[ids[i]]++] = i;
+				}
+			}
+			return lit;
+		}
+
+		private void shadeTile(int ix0, int iy0, int ix1, int iy1) {
+			RenderState state = getState();
+			Scene scene = state.getScene();
+			RenderOptions options = state.getOptions();
+			ReusableObjectPack reusableObjects = getReusableObjects();
+			ColorDepthBuffer raster = state.getRaster();
+			GeometryBuffer buffer = getGeometryBuffer();
+			ObjectSurfaceHitRecord hit = getGeometryBufferHit();
+			List<Color> colors = getColorList();
+			double[] factors = getLightFactors();
+			int sppx = state.getSamplesPerPixelX();
+			int sppy = state.getSamplesPerPixelY();
+			int sample = 0;
+			for (int iy = iy0; iy < iy1; iy++) {
+				for (int ix = ix0; ix < ix1; ix++) {
+					for (int si = 0; si < sppy; si++) {
+						for (int sj = 0; sj < sppx; sj++) {
+							int start = buffer.getSampleStart(sample);
+							int end = buffer.getSampleEnd(sample++);
+							if (end == start)
+								continue; // no hit
+							colors.clear();
+							for (int entry = start; entry < end; entry++) {
+								buffer.getEntry(entry, hit);
+								Object3D object = hit.getObject();
+								if (object instanceof ShadedObject3D) {
+									if (buffer.isLit(entry)) {
+										buffer.getLightFactors(entry, factors);
+										reusableObjects.setDeferredLightSourceFactors(factors);
+									}
+									((ShadedObject3D) object).applyDeferredShading(hit, scene, options,
+											reusableObjects);
+									reusableObjects.setDeferredLightSourceFactors(null);
+								}
+								colors.add(hit.getColor());
+							}
+							double depth = buffer.getDepth(start);
+							Color color = colors.size() == 1 ? colors.get(0) : Compositing
+									.combineColorsByTransparency(colors);
+							raster.setColorAndDepth(ix * sppx + sj, iy * sppy + si, applyDarknessByDepth(color, depth),
+									depth);
+						}
+					}
+					if (sppx * sppy == 1) {
+						renderPixelAtViewPorts(ix, iy, raster.getColor(ix, iy), getOutputs());
+					} else {
+						renderPixelAtViewPorts(ix, iy,
+								raster.convoluteColor(ix * sppx, iy * sppy, state.getPixelAveragingConvolutionMatrix()),
+								getOutputs());
+					}
+				}
+			}
 		}
 
 		private void renderPixelWithoutSupersampling(int ix, int iy) {
 			RenderState state = getState();
 			ColorDepthBuffer raster = state.getRaster();
 			LineSegment3D ray = getDirectedRay();
-			Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithRay(ray, ix, iy);
+			Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithSampleRay(ray, ix, iy, ix, iy);
 			if (!intersections.isEmpty()) {
 				sortIntersectionsByDepth();
 				raster.setColorAndDepth(ix, iy, getCombinedColor(), getNearestDepth());
@@ -366,6 +1168,48 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			renderPixelAtViewPorts(ix, iy, raster.getColor(ix, iy), getOutputs());
 		}
 
+		/**
+		 * Samples the center of a pixel, which in adaptive sampling mode is the central sample of the pixel's grid
+		 */
+		private void renderPixelPrimarySample(int ix, int iy) {
+			RenderState state = getState();
+			ColorDepthBuffer raster = state.getRaster();
+			int irx = ix * state.getSamplesPerPixelX() + state.getSamplesPerPixelX() / 2;
+			int iry = iy * state.getSamplesPerPixelY() + state.getSamplesPerPixelY() / 2;
+			LineSegment3D ray = getDirectedRay();
+			Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithSampleRay(ray, ix, iy, irx,
+					iry);
+			double depth = Double.POSITIVE_INFINITY;
+			Object3D object = null;
+			if (!intersections.isEmpty()) {
+				sortIntersectionsByDepth();
+				depth = getNearestDepth();
+				object = getIntersections().get(0).getObject();
+				raster.setColorAndDepth(irx, iry, getCombinedColor(), depth);
+			}
+			state.setPrimarySample(ix, iy, raster.getRGB(irx, iry), depth, object);
+			renderPixelAtViewPorts(ix, iy, raster.getColor(irx, iry), getOutputs());
+		}
+
+		/**
+		 * Fills the grid of a pixel that needs no refinement with its primary sample
+		 */
+		private void replicatePixelPrimarySample(int ix, int iy) {
+			RenderState state = getState();
+			ColorDepthBuffer raster = state.getRaster();
+			int sppx = state.getSamplesPerPixelX();
+			int sppy = state.getSamplesPerPixelY();
+			int irx = ix * sppx + sppx / 2;
+			int iry = iy * sppy + sppy / 2;
+			Color color = raster.getColor(irx, iry);
+			double depth = raster.getDepth(irx, iry);
+			for (int si = 0; si < sppy; si++) {
+				for (int sj = 0; sj < sppx; sj++) {
+					raster.setColorAndDepth(ix * sppx + sj, iy * sppy + si, color, depth);
+				}
+			}
+		}
+
 		private void renderPixelBySupersampling(int ix, int iy) {
 			RenderState state = getState();
 			ColorDepthBuffer raster = state.getRaster();
@@ -378,20 +1222,39 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			double vy = pointOnViewPlane.getY();
 			double vx0 = vx - pvw / 2;
 			double vy0 = vy + pvh / 2;
-			for (int si = 0; si < sppy; si++) {
+			boolean reuseCenterSample = state.isAdaptiveSampling(); // sampled in the first pass
+			int spp = sppx * sppy;
+			PixelShadingCache shadingCache = null;
+			if (state.isShadingReuse()) {
+				shadingCache = getReusableObjects().getPixelShadingCache();
+				shadingCache.startPixel();
+			}
+			for (int k = 0; k < spp; k++) {
+				int s = k;
+				if (shadingCache != null) {
+					// Probes first, being the opposite corners
+					s = k == 0 ? 0 : (k == 1 ? spp - 1 : k - 1);
+					shadingCache.setProbing(state.isShadingProbe(s));
+				}
+				int si = s / sppx;
+				int sj = s % sppx;
+				int irx = ix * sppx + sj;
 				int iry = iy * sppy + si;
+				if (reuseCenterSample && 2 * si + 1 == sppy && 2 * sj + 1 == sppx)
+					continue;
+				pointOnViewPlane.setX(vx0 + (sj + 0.5) / sppx * pvw);
 				pointOnViewPlane.setY(vy0 - (si + 0.5) / sppy * pvh);
-				for (int sj = 0; sj < sppx; sj++) {
-					int irx = ix * sppx + sj;
-					pointOnViewPlane.setX(vx0 + (sj + 0.5) / sppx * pvw);
-					LineSegment3D ray = getDirectedRay();
-					Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithRay(ray, ix, iy);
-					if (!intersections.isEmpty()) {
-						sortIntersectionsByDepth();
-						raster.setColorAndDepth(irx, iry, getCombinedColor(), getNearestDepth());
-					}
+				LineSegment3D ray = getDirectedRay();
+				Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithSampleRay(ray, ix, iy, irx,
+						iry);
+				if (!intersections.isEmpty()) {
+					sortIntersectionsByDepth();
+					raster.setColorAndDepth(irx, iry, getCombinedColor(), getNearestDepth());
 				}
 			}
+			if (shadingCache != null) {
+				shadingCache.endPixel();
+			}
 			pointOnViewPlane.setX(vx);
 			pointOnViewPlane.setY(vy);
 			renderPixelAtViewPorts(ix, iy,
@@ -399,6 +1262,112 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 					getOutputs());
 		}
 
+		/**
+		 * Samples a pixel at the positions of a sample pattern, accumulating the samples straight into the pixel
+		 */
+		private void renderPixelBySamplePattern(int ix, int iy, SamplePattern pattern) {
+			RenderState state = getState();
+			ColorDepthBuffer raster = state.getRaster();
+			double pvw = state.getViewPlaneBounds().getWidth() / state.getPixelWidth(); // pixel view width
+			double pvh = state.getViewPlaneBounds().getHeight() / state.getPixelHeight(); // pixel view height
+			Point3D pointOnViewPlane = getPointOnViewPlane();
+			double vx = pointOnViewPlane.getX();
+			double vy = pointOnViewPlane.getY();
+			double vx0 = vx - pvw / 2;
+			double vy0 = vy + pvh / 2;
+			int n = pattern.getNumberOfSamples();
+			int backgroundRgb = raster.getRGB(ix, iy);
+			int alphaSum = 0, redSum = 0, greenSum = 0, blueSum = 0;
+			double depthSum = 0;
+			int hits = 0;
+			for (int i = 0; i < n; i++) {
+				pointOnViewPlane.setX(vx0 + pattern.getSampleX(i) * pvw);
+				pointOnViewPlane.setY(vy0 - pattern.getSampleY(i) * pvh);
+				LineSegment3D ray = getDirectedRay();
+				Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithRay(ray, ix, iy);
+				int rgb = backgroundRgb;
+				if (!intersections.isEmpty()) {
+					sortIntersectionsByDepth();
+					rgb = getCombinedColor().getRGB();
+					depthSum += getNearestDepth();
+					hits++;
+				}
+				alphaSum += rgb >>> 24;
+				redSum += (rgb >> 16) & 0xff;
+				greenSum += (rgb >> 8) & 0xff;
+				blueSum += rgb & 0xff;
+			}
+			pointOnViewPlane.setX(vx);
+			pointOnViewPlane.setY(vy);
+			if (hits > 0) {
+				int h = n / 2; // rounding
+				int rgb = ((alphaSum + h) / n) << 24 | ((redSum + h) / n) << 16 | ((greenSum + h) / n) << 8
+						| ((blueSum + h) / n);
+				raster.setRGB(ix, iy, rgb);
+				raster.setDepth(ix, iy, depthSum / hits);
+			}
+			renderPixelAtViewPorts(ix, iy, raster.getColor(ix, iy), getOutputs());
+		}
+
+		/**
+		 * Samples a pixel in the current pass of a progressive render
+		 * 
+		 * <p>
+		 * While refining, the pixel is sampled at its center and painted as a block the size of the stride, to be
+		 * partly overpainted by the next passes. While accumulating, the pixel is sampled at the position of the
+		 * current sample in the progressive sample pattern and painted with the average of its samples so far.
+		 * </p>
+		 */
+		private void renderPixelProgressively(int ix, int iy) {
+			RenderState state = getState();
+			ColorDepthBuffer raster = state.getRaster();
+			int stride = state.getProgressiveStride();
+			if (stride > 0) {
+				LineSegment3D ray = getDirectedRay();
+				Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithRay(ray, ix, iy);
+				if (!intersections.isEmpty()) {
+					sortIntersectionsByDepth();
+					raster.setColorAndDepth(ix, iy, getCombinedColor(), getNearestDepth());
+				}
+				Color color = raster.getColor(ix, iy);
+				state.accumulateProgressiveSample(ix, iy, color, getRgbaComps());
+				int x2 = Math.min(ix + stride, state.getPixelWidth());
+				int y2 = Math.min(iy + stride, state.getPixelHeight());
+				for (int y = iy; y < y2; y++) {
+					for (int x = ix; x < x2; x++) {
+						renderPixelAtViewPorts(x, y, color, getOutputs());
+					}
+				}
+			} else {
+				SamplePattern pattern = state.getProgressiveSamplePattern();
+				int sampleIndex = state.getProgressiveSampleIndex();
+				double pvw = state.getViewPlaneBounds().getWidth() / state.getPixelWidth(); // pixel view width
+				double pvh = state.getViewPlaneBounds().getHeight() / state.getPixelHeight(); // pixel view height
+				Point3D pointOnViewPlane = getPointOnViewPlane();
+				double vx = pointOnViewPlane.getX();
+				double vy = pointOnViewPlane.getY();
+				pointOnViewPlane.setX(vx - pvw / 2 + pattern.getSampleX(sampleIndex) * pvw);
+				pointOnViewPlane.setY(vy + pvh / 2 - pattern.getSampleY(sampleIndex) * pvh);
+				LineSegment3D ray = getDirectedRay();
+				Collection<ObjectSurfacePoint3D> intersections = getSceneIntersectionsWithRay(ray, ix, iy);
+				Color color = getBackgroundColor();
+				if (!intersections.isEmpty()) {
+					sortIntersectionsByDepth();
+					color = getCombinedColor();
+				}
+				pointOnViewPlane.setX(vx);
+				pointOnViewPlane.setY(vy);
+				color = state.accumulateProgressiveSample(ix, iy, color, getRgbaComps());
+				raster.setColor(ix, iy, color);
+				renderPixelAtViewPorts(ix, iy, color, getOutputs());
+			}
+		}
+
+		private Color getBackgroundColor() {
+			Color color = getState().getOptions().getSceneBackgroundColor();
+			return color != null ? color : TRANSPARENT_COLOR;
+		}
+
 		private LineSegment3D getDirectedRay() {
 			LineSegment3D ray = getRay();
 			Point3D p1 = ray.getP1();
@@ -410,8 +1379,58 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return ray;
 		}
 
+		/**
+		 * Intersects the ray of a sample on the raster grid with the scene
+		 * 
+		 * <p>
+		 * When the visibility buffer resolves the sample, the ray is intersected with the front object only. This
+		 * yields the same intersections that matter as raytracing through the view plane index, provided the nearest
+		 * intersection is fully opaque and lies at the depth the buffer expects. Otherwise the ray is traced through
+		 * the view plane index after all.
+		 * </p>
+		 */
+		private Collection<ObjectSurfacePoint3D> getSceneIntersectionsWithSampleRay(LineSegment3D ray, int ix,
+				int iy, int irx, int iry) {
+			VisibilityBuffer visibility = getState().getVisibilityBuffer();
+			if (visibility != null && visibility.isResolved(irx, iry)) {
+				Object3D object = visibility.getFrontObject(irx, iry);
+				getIntersections().clear();
+				if (object == null || intersectWithFrontObject(ray, object, visibility.getFrontDepth(irx, iry))) {
+					addBackdropIntersection(ix, iy);
+					return getIntersections();
+				}
+			}
+			return getSceneIntersectionsWithRay(ray, ix, iy);
+		}
+
+		private boolean intersectWithFrontObject(LineSegment3D ray, Object3D object, double expectedDepth) {
+			List<ObjectSurfacePoint3D> intersections = getIntersections();
+			RenderOptions options = getState().getOptions();
+			Scene scene = getState().getScene();
+			ReusableObjectPack reusableObjects = getReusableObjects();
+			if (object.isComposite()) {
+				object.asRaytraceableObject().intersectWithEyeRay(ray, scene, intersections, options, reusableObjects);
+			} else {
+				ObjectSurfaceHitRecord hit = reusableObjects.getEyeRayHitRecord();
+				hit.reset();
+				hit.setDepthLimit(Double.POSITIVE_INFINITY);
+				if (object.asRaytraceableObject().intersectWithEyeRay(ray, scene, hit, options, reusableObjects)) {
+					intersections.add(hit.toSurfacePoint());
+				}
+			}
+			ObjectSurfacePoint3D nearest = null;
+			for (ObjectSurfacePoint3D intersection : intersections) {
+				if (nearest == null || intersection.getPositionInCamera().getZ() > nearest.getPositionInCamera()
+						.getZ()) {
+					nearest = intersection;
+				}
+			}
+			return nearest != null && Compositing.isFullyOpaque(nearest.getColor())
+					&& VisibilityBuffer.isSameDepth(-nearest.getPositionInCamera().getZ(), expectedDepth);
+		}
+
 		private Collection<ObjectSurfacePoint3D> getSceneIntersectionsWithRay(LineSegment3D ray, int ix, int iy) {
-			Collection<ObjectSurfacePoint3D> intersections = getIntersections();
+			List<ObjectSurfacePoint3D> intersections = getIntersections();
 			intersections.clear();
 			// From scene objects
 			RenderState state = getState();
@@ -419,16 +1438,44 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			Scene scene = state.getScene();
 			Point3D pointOnViewPlane = getPointOnViewPlane();
 			ReusableObjectPack reusableObjects = getReusableObjects();
+			ObjectSurfaceHitRecord hit = reusableObjects.getEyeRayHitRecord();
+			double nearestOpaqueDepth = Double.POSITIVE_INFINITY;
 			Iterator<Object3D> objectsIterator = state.getViewPlaneIndex().getViewPlaneObjects(pointOnViewPlane,
 					reusableObjects);
 			while (objectsIterator.hasNext()) {
 				Object3D object = objectsIterator.next();
-				if (object.isRaytraceable()) {
+				if (object.isComposite() && object.isRaytraceable()) {
+					// Locally indexed composite, all of its parts' hits may contribute to the color
+					int n = intersections.size();
 					object.asRaytraceableObject().intersectWithEyeRay(ray, scene, intersections, options,
 							reusableObjects);
+					for (int i = n; i < intersections.size(); i++) {
+						ObjectSurfacePoint3D intersection = intersections.get(i);
+						if (Compositing.isFullyOpaque(intersection.getColor())) {
+							nearestOpaqueDepth = Math.min(nearestOpaqueDepth,
+									-intersection.getPositionInCamera().getZ());
+						}
+					}
+				} else if (object.isRaytraceable()) {
+					hit.reset();
+					hit.setDepthLimit(nearestOpaqueDepth);
+					if (object.asRaytraceableObject().intersectWithEyeRay(ray, scene, hit, options, reusableObjects)) {
+						intersections.add(hit.toSurfacePoint()); // only surviving hits are materialized
+						if (Compositing.isFullyOpaque(hit.getColor())) {
+							nearestOpaqueDepth = Math.min(nearestOpaqueDepth, hit.getDepth());
+						}
+					}
 				}
 			}
 			// From backdrop, if any
+			addBackdropIntersection(ix, iy);
+			return intersections;
+		}
+
+		private void addBackdropIntersection(int ix, int iy) {
+			RenderOptions options = getState().getOptions();
+			Scene scene = getState().getScene();
+			Point3D pointOnViewPlane = getPointOnViewPlane();
 			ColorDepthBuffer backDrop = scene.getBackdrop();
 			if (backDrop != null && options.isBackdropEnabled()) {
 				Color color = backDrop.getColor(ix, iy);
@@ -438,10 +1485,11 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 				if (zf >= 1.0) {
 					double x = pointOnViewPlane.getX() * zf;
 					double y = pointOnViewPlane.getY() * zf;
-					intersections.add(new ObjectSurfacePoint3DImpl(null, new Point3D(x, y, z), color));
+					ObjectSurfaceHitRecord backdropHit = getBackdropHit(); // valid until the next ray
+					backdropHit.update(null, zf, x, y, z, color);
+					getIntersections().add(backdropHit);
 				}
 			}
-			return intersections;
 		}
 
 		private void sortIntersectionsByDepth() {
@@ -508,6 +1556,10 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return colorList;
 		}
 
+		private float[] getRgbaComps() {
+			return rgbaComps;
+		}
+
 		private Point3D getPointOnViewPlane() {
 			return pointOnViewPlane;
 		}
@@ -516,6 +1568,67 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 			return ray;
 		}
 
+		private ObjectSurfaceHitRecord getBackdropHit() {
+			return backdropHit;
+		}
+
+		private GeometryBuffer getGeometryBuffer() {
+			if (geometryBuffer == null) {
+				int lightSources = getState().getScene().getLightSources().size();
+				geometryBuffer = new GeometryBuffer(lightSources);
+				geometryBufferHit = new ObjectSurfaceHitRecord();
+				surfaceNormal = new Vector3D(0, 0, 0);
+				surfacePosition = new Point3D();
+				tileObjectIds = new HashMap<Object3D, Integer>();
+				entryObjectIds = new int[0];
+				entriesByObject = new int[0];
+				objectEntryCounts = new int[0];
+				lightFactors = new double[lightSources];
+			}
+			return geometryBuffer;
+		}
+
+		private ObjectSurfaceHitRecord getGeometryBufferHit() {
+			return geometryBufferHit;
+		}
+
+		private Vector3D getSurfaceNormal() {
+			return surfaceNormal;
+		}
+
+		private Point3D getSurfacePosition() {
+			return surfacePosition;
+		}
+
+		private Map<Object3D, Integer> getTileObjectIds() {
+			return tileObjectIds;
+		}
+
+		private int[] getEntryObjectIds(int minimumLength) {
+			if (entryObjectIds.length < minimumLength) {
+				entryObjectIds = new int[minimumLength];
+				entriesByObject = new int[minimumLength];
+			}
+			return entryObjectIds;
+		}
+
+		private int[] getEntriesByObject() {
+			return entriesByObject;
+		}
+
+		private int[] getObjectEntryCounts(int minimumLength) {
+			if (objectEntryCounts.length < minimumLength) {
+				objectEntryCounts = new int[minimumLength];
+			} else {
+				Arrays.fill(objectEntryCounts, 0, minimumLength, 0);
+			}
+			return objectEntryCounts;
+		}
+
+		private double[] getLightFactors() {
+			return lightFactors;
+		}
+
 	}
 
 	private static class SurfacePointSorterByDepth implements Comparator<ObjectSurfacePoint3D> {
@@ -537,6 +1650,35 @@ public class RaytraceRenderer extends BaseSceneRenderer {
 
 	}
 
+	private class TextureMapPrefetchTrackerImpl implements TextureMapPrefetchTracker {
+
+		private RenderState state;
+
+		public TextureMapPrefetchTrackerImpl(RenderState state) {
+			this.state = state;
+		}
+
+		@Override
+		public void prefetchStarted() {
+		}
+
+		@Override
+		public void prefetchUpdate(double progress) {
+			RenderState state = getState();
+			fireRenderingProgressUpdate(state.getScene(), state.getTotalSteps(), state.getCurrentStep(),
+					0.8 + 0.2 * progress, STEP_LABEL_PREFETCH_TEXTURES);
+		}
+
+		@Override
+		public void prefetchCompleted() {
+		}
+
+		private RenderState getState() {
+			return state;
+		}
+
+	}
+
 	private class DepthBlurTracker implements DepthBlurOperationProgressTracker {
 
 		private RenderState state;
@@ -0,0 +1,120 @@
+package org.maia.cgi.render.d3;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle to a render in progress, by which it can be awaited or cancelled
+ * 
+ * <p>
+ * Cancellation is cooperative. The renderer checks for it between units of work, such as the lines of an image, and
+ * then returns early, leaving the outputs partly rendered. The progress trackers of the renderer are notified by
+ * <code>renderingCancelled</code> instead of <code>renderingCompleted</code>.
+ * </p>
+ * <p>
+ * As for any <code>Future</code>, the render is done as soon as it is either cancelled or completed, which is decided
+ * atomically: a render that completes is no longer cancelled, and a cancelled render never reports completion. The
+ * rendering thread may still be winding down after a cancellation, which can be awaited by {@link #awaitDone()}.
+ * </p>
+ * 
+ * @see SceneRenderer#renderInBackground(org.maia.cgi.model.d3.scene.Scene, java.util.Collection, RenderOptions)
+ */
+public class RenderHandle implements Future<Void> {
+
+	private AtomicInteger state;
+
+	private CountDownLatch workerStop;
+
+	private static final int RUNNING = 0;
+
+	private static final int CANCELLED = 1;
+
+	private static final int COMPLETED = 2;
+
+	public RenderHandle() {
+		this.state = new AtomicInteger(RUNNING);
+		this.workerStop = new CountDownLatch(1);
+	}
+
+	/**
+	 * Requests the render to stop
+	 * 
+	 * @param mayInterruptIfRunning
+	 *            Ignored, as the rendering threads are never interrupted
+	 * @return <code>false</code> if the render was already done, <code>true</code> otherwise
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return state.compareAndSet(RUNNING, CANCELLED);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		return state.get() != RUNNING;
+	}
+
+	@Override
+	public Void get() throws InterruptedException {
+		if (!isCancelled()) {
+			workerStop.await();
+		}
+		if (isCancelled())
+			throw new CancellationException();
+		return null;
+	}
+
+	@Override
+	public Void get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		if (!isCancelled() && !workerStop.await(timeout, unit))
+			throw new TimeoutException();
+		if (isCancelled())
+			throw new CancellationException();
+		return null;
+	}
+
+	/**
+	 * Waits for the rendering thread to stop, whether the render completed or was cancelled, without being
+	 * interruptible
+	 * 
+	 * <p>
+	 * Once this method returns, the progress trackers of the renderer have been notified
+	 * </p>
+	 */
+	public void awaitDone() {
+		boolean interrupted = false;
+		while (workerStop.getCount() > 0) {
+			try {
+				workerStop.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Marks the render as completed, unless it was cancelled before
+	 * 
+	 * @return <code>true</code> if the render is now completed, <code>false</code> if it was cancelled
+	 */
+	boolean complete() {
+		return state.compareAndSet(RUNNING, COMPLETED) || state.get() == COMPLETED;
+	}
+
+	void workerStopped() {
+		complete(); // a render that failed is done as well
+		workerStop.countDown();
+	}
+
+}
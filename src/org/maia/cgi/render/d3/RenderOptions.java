@@ -2,12 +2,16 @@ package org.maia.cgi.render.d3;
 
 import java.awt.Color;
 
+import org.maia.cgi.render.d3.sampling.SamplePattern;
+
 public class RenderOptions {
 
 	private RenderMode renderMode;
 
 	private SamplingMode samplingMode;
 
+	private SamplePattern samplePattern;
+
 	private int renderWidth;
 
 	private int renderHeight;
@@ -28,6 +32,18 @@ public class RenderOptions {
 
 	private int numberOfRenderThreads;
 
+	private boolean progressiveRenderingEnabled;
+
+	private long progressiveTimeBudgetMs;
+
+	private int progressiveMaxSamplesPerPixel;
+
+	private boolean wavefrontRenderingEnabled;
+
+	private int wavefrontTileSize;
+
+	private boolean shadingReuseEnabled;
+
 	private static final String PROPERTY_RENDER_THREADS = "renderThreads";
 
 	private RenderOptions() {
@@ -47,6 +63,12 @@ public class RenderOptions {
 		options.setWireframeColorNear(Color.BLACK);
 		options.setWireframeColorFar(Color.LIGHT_GRAY);
 		options.setNumberOfRenderThreads(Integer.parseInt(System.getProperty(PROPERTY_RENDER_THREADS, "1")));
+		options.setProgressiveRenderingEnabled(false);
+		options.setProgressiveTimeBudgetMs(0L);
+		options.setProgressiveMaxSamplesPerPixel(16);
+		options.setWavefrontRenderingEnabled(false);
+		options.setWavefrontTileSize(32);
+		options.setShadingReuseEnabled(false);
 		return options;
 	}
 
@@ -70,6 +92,21 @@ public class RenderOptions {
 		this.samplingMode = samplingMode;
 	}
 
+	/**
+	 * Returns the pattern by which pixels are sampled, if any
+	 * 
+	 * @return The sample pattern, or <code>null</code> when pixels are sampled by the grid of the sampling mode. When
+	 *         not <code>null</code>, the sampling mode is ignored.
+	 * @see #getSamplingMode()
+	 */
+	public SamplePattern getSamplePattern() {
+		return samplePattern;
+	}
+
+	public void setSamplePattern(SamplePattern samplePattern) {
+		this.samplePattern = samplePattern;
+	}
+
 	public int getRenderWidth() {
 		return renderWidth;
 	}
@@ -155,11 +192,110 @@ public class RenderOptions {
 		this.numberOfRenderThreads = numberOfRenderThreads;
 	}
 
+	/**
+	 * Tells whether a raytraced image is rendered progressively
+	 * 
+	 * <p>
+	 * A progressive render first traces a coarse image and refines it until every pixel has been sampled once. It then
+	 * accumulates additional samples per pixel, one pass at a time, until either the time budget or the maximum
+	 * number of samples per pixel is reached. The outputs are updated after every pass. The sampling mode is ignored,
+	 * and the additional samples are positioned by the sample pattern when one is set.
+	 * </p>
+	 * 
+	 * @see #getProgressiveTimeBudgetMs()
+	 * @see #getProgressiveMaxSamplesPerPixel()
+	 */
+	public boolean isProgressiveRenderingEnabled() {
+		return progressiveRenderingEnabled;
+	}
+
+	public void setProgressiveRenderingEnabled(boolean progressiveRenderingEnabled) {
+		this.progressiveRenderingEnabled = progressiveRenderingEnabled;
+	}
+
+	/**
+	 * Returns the time after which a progressive render stops accumulating samples
+	 * 
+	 * @return The time budget in milliseconds, or 0 when there is no time limit
+	 */
+	public long getProgressiveTimeBudgetMs() {
+		return progressiveTimeBudgetMs;
+	}
+
+	public void setProgressiveTimeBudgetMs(long progressiveTimeBudgetMs) {
+		this.progressiveTimeBudgetMs = progressiveTimeBudgetMs;
+	}
+
+	public int getProgressiveMaxSamplesPerPixel() {
+		return progressiveMaxSamplesPerPixel;
+	}
+
+	public void setProgressiveMaxSamplesPerPixel(int progressiveMaxSamplesPerPixel) {
+		this.progressiveMaxSamplesPerPixel = progressiveMaxSamplesPerPixel;
+	}
+
+	/**
+	 * Tells whether a raytraced image is rendered one tile at a time, in separate stages
+	 * 
+	 * <p>
+	 * A wavefront render first traces all primary rays of a tile into a geometry buffer, then traces the shadow rays of
+	 * the tile one light source at a time, and finally shades and composites the tile. It applies only to sampling on
+	 * a regular grid, so it is ignored for adaptive sampling and progressive rendering. The time spent in every stage
+	 * is recorded in the <code>Metrics</code>.
+	 * </p>
+	 * 
+	 * @see #getWavefrontTileSize()
+	 */
+	public boolean isWavefrontRenderingEnabled() {
+		return wavefrontRenderingEnabled;
+	}
+
+	public void setWavefrontRenderingEnabled(boolean wavefrontRenderingEnabled) {
+		this.wavefrontRenderingEnabled = wavefrontRenderingEnabled;
+	}
+
+	/**
+	 * Returns the width and height of a tile in a wavefront render
+	 * 
+	 * @return The tile size in pixels
+	 */
+	public int getWavefrontTileSize() {
+		return wavefrontTileSize;
+	}
+
+	public void setWavefrontTileSize(int wavefrontTileSize) {
+		this.wavefrontTileSize = wavefrontTileSize;
+	}
+
+	/**
+	 * Tells whether the samples of a pixel share their shadows
+	 * 
+	 * <p>
+	 * When supersampling on a regular grid, the samples of a pixel that hit the same object reuse the translucency of
+	 * the light ray to every light source, rather than each tracing their own light rays. The two samples in opposite
+	 * corners of the pixel always trace their light rays, and when these disagree a shadow boundary is assumed and
+	 * nothing is reused for that object and light source. As such, this trades shadow accuracy within a pixel for
+	 * fewer light rays. It has no effect without shadows or supersampling.
+	 * </p>
+	 */
+	public boolean isShadingReuseEnabled() {
+		return shadingReuseEnabled;
+	}
+
+	public void setShadingReuseEnabled(boolean shadingReuseEnabled) {
+		this.shadingReuseEnabled = shadingReuseEnabled;
+	}
+
 	public static enum RenderMode {
 
 		PROTOTYPE,
 
-		REALISTIC;
+		REALISTIC,
+
+		/**
+		 * Realistic rendering, with the primary visibility of the samples resolved by rasterization
+		 */
+		HYBRID;
 
 	}
 
@@ -169,15 +305,28 @@ public class RenderOptions {
 
 		SUPER(2, 2),
 
-		ULTRA(3, 3);
+		ULTRA(3, 3),
+
+		/**
+		 * Samples every pixel once, then samples as in <code>ULTRA</code> mode only those pixels that differ from
+		 * their neighbors in color, object or depth
+		 */
+		ADAPTIVE(3, 3, true);
 
 		private int samplesPerPixelX;
 
 		private int samplesPerPixelY;
 
+		private boolean adaptive;
+
 		private SamplingMode(int samplesPerPixelX, int samplesPerPixelY) {
+			this(samplesPerPixelX, samplesPerPixelY, false);
+		}
+
+		private SamplingMode(int samplesPerPixelX, int samplesPerPixelY, boolean adaptive) {
 			this.samplesPerPixelX = samplesPerPixelX;
 			this.samplesPerPixelY = samplesPerPixelY;
+			this.adaptive = adaptive;
 		}
 
 		public int getSamplesPerPixelX() {
@@ -188,6 +337,15 @@ public class RenderOptions {
 			return samplesPerPixelY;
 		}
 
+		/**
+		 * Tells whether pixels are supersampled only where needed
+		 * 
+		 * @return <code>true</code> if the samples per pixel are the maximum, taken only for pixels on edges
+		 */
+		public boolean isAdaptive() {
+			return adaptive;
+		}
+
 	}
 
 }
\ No newline at end of file
@@ -5,14 +5,19 @@ import java.util.List;
 import java.util.Set;
 import java.util.Vector;
 
+import org.maia.cgi.geometry.d2.Point2D;
 import org.maia.cgi.geometry.d3.Point3D;
 import org.maia.cgi.model.d3.light.LightRaySegment;
+import org.maia.cgi.model.d3.object.BoundingVolumeHierarchy.Traversal;
 import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.ObjectSurfaceHitRecord;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
+import org.maia.cgi.model.d3.object.SimpleTexturedFace3D.ReusablePicturePosition;
 import org.maia.cgi.model.d3.scene.index.NonUniformlyBinnedSceneSpatialIndex.ReusableBinNeighborsIterator;
 import org.maia.cgi.model.d3.scene.index.NonUniformlyBinnedSceneSpatialIndex.ReusableBinSideList;
 import org.maia.cgi.model.d3.scene.index.NonUniformlyBinnedSceneViewPlaneIndex.ReusableLastVisitedLeafBin;
 import org.maia.cgi.render.d3.shading.ObscuredObjectsCache;
+import org.maia.cgi.render.d3.shading.PixelShadingCache;
 
 /**
  * Collection of objects that can be reused exclusively in the context of the same thread
@@ -43,8 +48,32 @@ public class ReusableObjectPack {
 
 	private ObscuredObjectsCache obscuredObjectsCache;
 
+	private PixelShadingCache pixelShadingCache;
+
 	private Point3D pointInViewVolume;
 
+	private Point3D lineStartInWorld;
+
+	private Point3D lineEndInWorld;
+
+	private ObjectSurfaceHitRecord eyeRayHitRecord;
+
+	private ObjectSurfaceHitRecord lightRayHitRecord;
+
+	private Point3D surfacePosition;
+
+	private Point2D projectedSurfacePosition;
+
+	private List<Traversal> eyeRayTraversals; // by nesting level
+
+	private List<Traversal> lightRayTraversals; // by nesting level
+
+	private ReusablePicturePosition picturePosition;
+
+	private boolean shadingDeferred;
+
+	private double[] deferredLightSourceFactors; // by light source, when shading a deferred surface point
+
 	public ReusableObjectPack() {
 		this.intersectionsList = new Vector<ObjectSurfacePoint3D>();
 		this.objectsSet = new HashSet<Object3D>(300);
@@ -53,7 +82,17 @@ public class ReusableObjectPack {
 		this.lastVisitedLeafBin = new ReusableLastVisitedLeafBin();
 		this.lightRay = new LightRaySegment();
 		this.obscuredObjectsCache = new ObscuredObjectsCache();
+		this.pixelShadingCache = new PixelShadingCache();
 		this.pointInViewVolume = new Point3D();
+		this.lineStartInWorld = new Point3D();
+		this.lineEndInWorld = new Point3D();
+		this.eyeRayHitRecord = new ObjectSurfaceHitRecord();
+		this.lightRayHitRecord = new ObjectSurfaceHitRecord();
+		this.surfacePosition = new Point3D();
+		this.projectedSurfacePosition = new Point2D();
+		this.eyeRayTraversals = new Vector<Traversal>();
+		this.lightRayTraversals = new Vector<Traversal>();
+		this.picturePosition = new ReusablePicturePosition();
 	}
 
 	public List<ObjectSurfacePoint3D> getEmptiedIntersectionsList() {
@@ -96,8 +135,89 @@ public class ReusableObjectPack {
 		return obscuredObjectsCache;
 	}
 
+	public PixelShadingCache getPixelShadingCache() {
+		return pixelShadingCache;
+	}
+
 	public Point3D getPointInViewVolume() {
 		return pointInViewVolume;
 	}
 
-}
\ No newline at end of file
+	public Point3D getLineStartInWorld() {
+		return lineStartInWorld;
+	}
+
+	public Point3D getLineEndInWorld() {
+		return lineEndInWorld;
+	}
+
+	public ObjectSurfaceHitRecord getEyeRayHitRecord() {
+		return eyeRayHitRecord;
+	}
+
+	public ObjectSurfaceHitRecord getLightRayHitRecord() {
+		return lightRayHitRecord;
+	}
+
+	public Point3D getSurfacePosition() {
+		return surfacePosition;
+	}
+
+	public Point2D getProjectedSurfacePosition() {
+		return projectedSurfacePosition;
+	}
+
+	public ReusablePicturePosition getPicturePosition() {
+		return picturePosition;
+	}
+
+	/**
+	 * Tells whether surface points hit by eye rays are left unshaded, for the renderer to shade them later on
+	 * 
+	 * @see org.maia.cgi.model.d3.object.ShadedObject3D
+	 */
+	public boolean isShadingDeferred() {
+		return shadingDeferred;
+	}
+
+	public void setShadingDeferred(boolean shadingDeferred) {
+		this.shadingDeferred = shadingDeferred;
+	}
+
+	/**
+	 * Returns the precomputed brightness factors of the light sources, for the surface point being shaded
+	 * 
+	 * @return The factors in the order of the scene's light sources, or <code>null</code> when they are to be computed
+	 *         as part of the shading
+	 */
+	public double[] getDeferredLightSourceFactors() {
+		return deferredLightSourceFactors;
+	}
+
+	public void setDeferredLightSourceFactors(double[] deferredLightSourceFactors) {
+		this.deferredLightSourceFactors = deferredLightSourceFactors;
+	}
+
+	/**
+	 * Returns a traversal through the local index of a composite object
+	 * 
+	 * <p>
+	 * Composite objects may be nested, and shading a surface hit by an eye ray may in turn trace light rays. Therefore
+	 * a separate traversal is kept for every nesting level and for either type of ray.
+	 * </p>
+	 * 
+	 * @param nestingLevel
+	 *            The number of ancestors of the composite object
+	 * @param rayFromEye
+	 *            <code>true</code> for an eye ray, <code>false</code> for a light ray
+	 * @return The traversal, to be started anew
+	 */
+	public Traversal getLocalIndexTraversal(int nestingLevel, boolean rayFromEye) {
+		List<Traversal> traversals = rayFromEye ? eyeRayTraversals : lightRayTraversals;
+		while (traversals.size() <= nestingLevel) {
+			traversals.add(new Traversal());
+		}
+		return traversals.get(nestingLevel);
+	}
+
+}
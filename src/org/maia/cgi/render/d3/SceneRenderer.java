@@ -11,6 +11,20 @@ public interface SceneRenderer {
 
 	void render(Scene scene, Collection<ViewPort> outputs, RenderOptions options);
 
+	/**
+	 * Renders a scene in a new thread
+	 * 
+	 * @return A handle to the render, by which it can be awaited or cancelled
+	 */
+	RenderHandle renderInBackground(Scene scene, ViewPort output, RenderOptions options);
+
+	/**
+	 * Renders a scene in a new thread
+	 * 
+	 * @return A handle to the render, by which it can be awaited or cancelled
+	 */
+	RenderHandle renderInBackground(Scene scene, Collection<ViewPort> outputs, RenderOptions options);
+
 	void addProgressTracker(SceneRendererProgressTracker tracker);
 	
 	void removeProgressTracker(SceneRendererProgressTracker tracker);
@@ -11,4 +11,6 @@ public interface SceneRendererProgressTracker {
 
 	void renderingCompleted(SceneRenderer renderer, Scene scene);
 
+	void renderingCancelled(SceneRenderer renderer, Scene scene);
+
 }
@@ -0,0 +1,115 @@
+package org.maia.cgi.render.d3;
+
+import java.util.Arrays;
+
+import org.maia.cgi.model.d3.object.Object3D;
+
+/**
+ * Primary visibility of the samples of a raster, resolved ahead of raytracing
+ *
+ * <p>
+ * For every sample, this buffer tells whether its visibility is resolved. A resolved sample has the object that lies
+ * in front at the sample along with its depth, or no object at all when the sample's ray hits no object. Unresolved
+ * samples are left to be raytraced through the view plane index. Initially, all samples are unresolved.
+ * </p>
+ *
+ * @see RaytraceRenderer#createVisibilityBuffer(org.maia.cgi.model.d3.scene.Scene, RenderOptions, int, int,
+ *      RenderHandle)
+ */
+public class VisibilityBuffer {
+
+	private int width;
+
+	private int height;
+
+	private Object3D[] objects;
+
+	private int[] sampleObjects; // by sample, 1 + index of the front object, 0 when none
+
+	private float[] sampleDepths; // by sample, depth of the front object
+
+	private static final int UNRESOLVED = -1;
+
+	static final double DEPTH_TOLERANCE = 1.0e-5; // relative
+
+	/**
+	 * Creates a buffer of unresolved samples
+	 *
+	 * @param width
+	 *            The number of samples in a row
+	 * @param height
+	 *            The number of samples in a column
+	 * @param objects
+	 *            The objects that can be in front, which the samples refer to by their index
+	 */
+	public VisibilityBuffer(int width, int height, Object3D[] objects) {
+		this.width = width;
+		this.height = height;
+		this.objects = objects;
+		this.sampleObjects = new int[width * height];
+		this.sampleDepths = new float[width * height];
+		Arrays.fill(sampleObjects, UNRESOLVED);
+	}
+
+	/**
+	 * Tells whether two depths are the same, within the precision by which visibility is resolved
+	 */
+	public static boolean isSameDepth(double depth1, double depth2) {
+		return Math.abs(depth1 - depth2) <= DEPTH_TOLERANCE * Math.max(depth1, depth2);
+	}
+
+	public boolean isResolved(int x, int y) {
+		return sampleObjects[y * width + x] != UNRESOLVED;
+	}
+
+	/**
+	 * Returns the object in front at a resolved sample
+	 *
+	 * @return The front object, or <code>null</code> when the sample hits no object
+	 */
+	public Object3D getFrontObject(int x, int y) {
+		int index = sampleObjects[y * width + x];
+		return index > 0 ? objects[index - 1] : null;
+	}
+
+	public double getFrontDepth(int x, int y) {
+		return sampleDepths[y * width + x];
+	}
+
+	/**
+	 * Resolves a sample
+	 *
+	 * @param objectIndex
+	 *            The index of the object in front, or -1 when the sample hits no object
+	 * @param depth
+	 *            The depth of the object in front at the sample
+	 */
+	public void setFrontObject(int x, int y, int objectIndex, double depth) {
+		int i = y * width + x;
+		sampleObjects[i] = objectIndex + 1;
+		sampleDepths[i] = (float) depth;
+	}
+
+	public void setUnresolved(int x, int y) {
+		sampleObjects[y * width + x] = UNRESOLVED;
+	}
+
+	public int getResolvedSampleCount() {
+		int count = 0;
+		for (int i = 0; i < sampleObjects.length; i++) {
+			if (sampleObjects[i] != UNRESOLVED) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+}
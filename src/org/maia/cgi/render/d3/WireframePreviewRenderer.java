@@ -0,0 +1,443 @@
+package org.maia.cgi.render.d3;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.maia.cgi.compose.Compositing;
+import org.maia.cgi.model.d3.camera.Camera;
+import org.maia.cgi.model.d3.object.Mesh3D;
+import org.maia.cgi.model.d3.object.MeshObject3D;
+import org.maia.cgi.model.d3.scene.Scene;
+import org.maia.cgi.model.d3.scene.SceneUtils;
+import org.maia.cgi.render.d3.view.ViewPort;
+import org.maia.cgi.transform.d3.TransformMatrix;
+
+/**
+ * Renders the wireframe of a scene into a raster, for an interactive preview
+ *
+ * <p>
+ * Unlike the <code>WireframeRenderer</code>, which draws every edge as a line on the outputs, this renderer
+ * rasterizes the edges itself into a back buffer of integer pixels with a depth test, and paints the buffer onto the
+ * outputs once it is complete. The vertices of every object are transformed straight from object coordinates into
+ * clip coordinates by a single composite matrix, working on the primitive arrays of the mesh, so no intermediate
+ * meshes are derived. Edges are clipped against the canonical view volume, and an edge that maps to the same pixels as
+ * one drawn shortly before is skipped, unless it lies nearer at either end.
+ * </p>
+ * <p>
+ * The objects are divided over a number of threads, each with a back buffer of its own. The back buffers are merged
+ * by depth at the end.
+ * </p>
+ */
+public class WireframePreviewRenderer extends BaseSceneRenderer {
+
+	private static final String STEP_LABEL_RENDER = "Rendering wireframe preview";
+
+	private static final int DEPTH_COLOR_LEVELS = 256;
+
+	private static final int SEGMENT_CACHE_SIZE_BITS = 16;
+
+	private static final long EMPTY_SEGMENT = -1L;
+
+	public WireframePreviewRenderer() {
+	}
+
+	@Override
+	protected void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options,
+			RenderHandle handle) {
+		RenderState state = new RenderState(scene, options, handle);
+		int n = Math.max(Math.min(options.getSafeNumberOfRenderThreads(), state.getObjects().length), 1);
+		BufferedImage image = new BufferedImage(state.getWidth(), state.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		RenderWorker[] workers = new RenderWorker[n];
+		workers[0] = new RenderWorker(state, pixels);
+		for (int i = 1; i < n; i++) {
+			workers[i] = new RenderWorker(state, new int[pixels.length]);
+		}
+		if (n == 1) {
+			workers[0].run();
+		} else {
+			renderInSeparateThreads(workers);
+			for (int i = 1; i < n; i++) {
+				workers[0].merge(workers[i]);
+			}
+		}
+		if (!handle.isCancelled()) {
+			for (ViewPort output : outputs) {
+				output.paintImageInWindowCoordinates(0, 0, image);
+			}
+		}
+	}
+
+	private void renderInSeparateThreads(RenderWorker[] workers) {
+		Thread[] threads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			threads[i] = new Thread(workers[i], "Wireframe preview worker #" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		for (int i = 0; i < workers.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// do nothing
+			}
+		}
+	}
+
+	private class RenderState {
+
+		private Scene scene;
+
+		private RenderOptions options;
+
+		private RenderHandle handle;
+
+		private TransformMatrix worldToClipMatrix;
+
+		private MeshObject3D[] objects;
+
+		private int nextObjectIndex;
+
+		private int renderedObjects;
+
+		private int reportedPercentage;
+
+		private int[] depthColors; // ARGB by depth level, from near to far
+
+		public RenderState(Scene scene, RenderOptions options, RenderHandle handle) {
+			this.scene = scene;
+			this.options = options;
+			this.handle = handle;
+			Camera camera = scene.getCamera();
+			this.worldToClipMatrix = camera.getViewVolume().getProjectionMatrix()
+					.preMultiply(camera.getViewingMatrix());
+			this.objects = SceneUtils.getAllMeshObjectsInScene(scene).toArray(new MeshObject3D[0]);
+			this.depthColors = new int[DEPTH_COLOR_LEVELS];
+			for (int i = 0; i < DEPTH_COLOR_LEVELS; i++) {
+				double r = i / (double) (DEPTH_COLOR_LEVELS - 1);
+				depthColors[i] = Compositing.interpolateColors(options.getWireframeColorNear(),
+						options.getWireframeColorFar(), r).getRGB();
+			}
+		}
+
+		public synchronized MeshObject3D nextObject() {
+			if (nextObjectIndex < objects.length && !isCancelled()) {
+				return objects[nextObjectIndex++];
+			} else {
+				return null;
+			}
+		}
+
+		public void objectRendered() {
+			int percentage;
+			synchronized (this) {
+				percentage = (int) Math.floor(100.0 * ++renderedObjects / objects.length);
+				if (percentage == reportedPercentage)
+					return;
+				reportedPercentage = percentage;
+			}
+			fireRenderingProgressUpdate(getScene(), 1, 0, percentage / 100.0, STEP_LABEL_RENDER);
+		}
+
+		public boolean isCancelled() {
+			return handle.isCancelled();
+		}
+
+		public Scene getScene() {
+			return scene;
+		}
+
+		public int getWidth() {
+			return options.getRenderWidth();
+		}
+
+		public int getHeight() {
+			return options.getRenderHeight();
+		}
+
+		public TransformMatrix getWorldToClipMatrix() {
+			return worldToClipMatrix;
+		}
+
+		public MeshObject3D[] getObjects() {
+			return objects;
+		}
+
+		public int[] getDepthColors() {
+			return depthColors;
+		}
+
+	}
+
+	private static class RenderWorker implements Runnable {
+
+		private RenderState state;
+
+		private int width;
+
+		private int height;
+
+		private int[] pixels;
+
+		private float[] depths; // relative depth between 0 (near plane) and 1 (far plane)
+
+		private long[] segmentCache; // direct-mapped, by hash of the segment
+
+		private float[] segmentDepths; // by slot of the segment cache, the depths at both ends of the cached segment
+
+		private double[] matrix;
+
+		private double[] clipCoordinates; // x, y, z, w by vertex
+
+		private int[] outcodes; // by vertex, one bit per clip plane the vertex lies outside of
+
+		private int[] screenX; // by vertex, when inside the view volume
+
+		private int[] screenY; // by vertex, when inside the view volume
+
+		private float[] screenDepths; // by vertex, when inside the view volume
+
+		public RenderWorker(RenderState state, int[] pixels) {
+			this.state = state;
+			this.width = state.getWidth();
+			this.height = state.getHeight();
+			this.pixels = pixels;
+			this.depths = new float[pixels.length];
+			this.segmentCache = new long[1 << SEGMENT_CACHE_SIZE_BITS];
+			this.segmentDepths = new float[2 << SEGMENT_CACHE_SIZE_BITS];
+			this.matrix = new double[16];
+			Arrays.fill(depths, Float.POSITIVE_INFINITY);
+			Arrays.fill(segmentCache, EMPTY_SEGMENT);
+			ensureVertexCapacity(1024);
+		}
+
+		@Override
+		public void run() {
+			MeshObject3D object = null;
+			while ((object = state.nextObject()) != null) {
+				renderObject(object);
+				state.objectRendered();
+			}
+		}
+
+		private void renderObject(MeshObject3D object) {
+			TransformMatrix objectToClip = state.getWorldToClipMatrix().preMultiply(object.getObjectToWorldMatrix());
+			for (int i = 0; i < 16; i++) {
+				matrix[i] = objectToClip.getValue(i / 4, i % 4);
+			}
+			Mesh3D mesh = object.getMeshInObjectCoordinates();
+			double[] vertices = mesh.getVertexCoordinates();
+			int n = vertices.length / 4;
+			ensureVertexCapacity(n);
+			for (int i = 0; i < n; i++) {
+				transformVertex(i, vertices);
+			}
+			int[] edges = mesh.getEdgeVertexIndices();
+			for (int i = 0; i < edges.length; i += 2) {
+				renderEdge(edges[i], edges[i + 1]);
+			}
+		}
+
+		private void ensureVertexCapacity(int n) {
+			if (outcodes == null || outcodes.length < n) {
+				clipCoordinates = new double[4 * n];
+				outcodes = new int[n];
+				screenX = new int[n];
+				screenY = new int[n];
+				screenDepths = new float[n];
+			}
+		}
+
+		private void transformVertex(int index, double[] vertices) {
+			double[] M = matrix;
+			int j = 4 * index;
+			double px = vertices[j];
+			double py = vertices[j + 1];
+			double pz = vertices[j + 2];
+			double pw = vertices[j + 3];
+			double x = M[0] * px + M[1] * py + M[2] * pz + M[3] * pw;
+			double y = M[4] * px + M[5] * py + M[6] * pz + M[7] * pw;
+			double z = M[8] * px + M[9] * py + M[10] * pz + M[11] * pw;
+			double w = M[12] * px + M[13] * py + M[14] * pz + M[15] * pw;
+			clipCoordinates[j] = x;
+			clipCoordinates[j + 1] = y;
+			clipCoordinates[j + 2] = z;
+			clipCoordinates[j + 3] = w;
+			int outcode = 0;
+			if (x < -w)
+				outcode |= 1;
+			if (x > w)
+				outcode |= 2;
+			if (y < -w)
+				outcode |= 4;
+			if (y > w)
+				outcode |= 8;
+			if (z < -w)
+				outcode |= 16;
+			if (z > w)
+				outcode |= 32;
+			outcodes[index] = outcode;
+			if (outcode == 0) {
+				screenX[index] = toScreenX(x / w);
+				screenY[index] = toScreenY(y / w);
+				screenDepths[index] = toRelativeDepth(z / w);
+			}
+		}
+
+		private void renderEdge(int i1, int i2) {
+			int outcode1 = outcodes[i1];
+			int outcode2 = outcodes[i2];
+			if ((outcode1 & outcode2) != 0)
+				return; // both vertices outside of the same clip plane
+			if ((outcode1 | outcode2) == 0) {
+				renderSegment(screenX[i1], screenY[i1], screenDepths[i1], screenX[i2], screenY[i2], screenDepths[i2]);
+			} else {
+				renderClippedEdge(i1, i2);
+			}
+		}
+
+		/**
+		 * Clips an edge against the canonical view volume in homogeneous coordinates, by the Liang-Barsky method
+		 */
+		private void renderClippedEdge(int i1, int i2) {
+			int j1 = 4 * i1;
+			int j2 = 4 * i2;
+			double x1 = clipCoordinates[j1];
+			double y1 = clipCoordinates[j1 + 1];
+			double z1 = clipCoordinates[j1 + 2];
+			double w1 = clipCoordinates[j1 + 3];
+			double x2 = clipCoordinates[j2];
+			double y2 = clipCoordinates[j2 + 1];
+			double z2 = clipCoordinates[j2 + 2];
+			double w2 = clipCoordinates[j2 + 3];
+			double t1 = 0;
+			double t2 = 1.0;
+			for (int plane = 0; plane < 6 && t1 <= t2; plane++) {
+				double d1, d2; // signed distances to the clip plane, positive inside
+				if (plane == 0) {
+					d1 = w1 + x1;
+					d2 = w2 + x2;
+				} else if (plane == 1) {
+					d1 = w1 - x1;
+					d2 = w2 - x2;
+				} else if (plane == 2) {
+					d1 = w1 + y1;
+					d2 = w2 + y2;
+				} else if (plane == 3) {
+					d1 = w1 - y1;
+					d2 = w2 - y2;
+				} else if (plane == 4) {
+					d1 = w1 + z1;
+					d2 = w2 + z2;
+				} else {
+					d1 = w1 - z1;
+					d2 = w2 - z2;
+				}
+				if (d1 < 0 && d2 < 0) {
+					t1 = 1.0;
+					t2 = 0;
+				} else if (d1 < 0) {
+					t1 = Math.max(t1, d1 / (d1 - d2));
+				} else if (d2 < 0) {
+					t2 = Math.min(t2, d1 / (d1 - d2));
+				}
+			}
+			if (t1 > t2)
+				return;
+			double ax = x1 + t1 * (x2 - x1);
+			double ay = y1 + t1 * (y2 - y1);
+			double az = z1 + t1 * (z2 - z1);
+			double aw = w1 + t1 * (w2 - w1);
+			double bx = x1 + t2 * (x2 - x1);
+			double by = y1 + t2 * (y2 - y1);
+			double bz = z1 + t2 * (z2 - z1);
+			double bw = w1 + t2 * (w2 - w1);
+			if (aw <= 0 || bw <= 0)
+				return;
+			renderSegment(toScreenX(ax / aw), toScreenY(ay / aw), toRelativeDepth(az / aw), toScreenX(bx / bw),
+					toScreenY(by / bw), toRelativeDepth(bz / bw));
+		}
+
+		private void renderSegment(int x1, int y1, float depth1, int x2, int y2, float depth2) {
+			long a = ((long) y1 << 16) | x1;
+			long b = ((long) y2 << 16) | x2;
+			if (b < a) {
+				// draw from the lowest end, so that the same segment always covers the same pixels
+				renderSegment(x2, y2, depth2, x1, y1, depth1);
+				return;
+			}
+			long key = (a << 32) | b;
+			int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - SEGMENT_CACHE_SIZE_BITS));
+			if (segmentCache[slot] == key && depth1 >= segmentDepths[2 * slot] && depth2 >= segmentDepths[2 * slot + 1])
+				return; // the same pixels were drawn shortly before, at the same or a nearer depth
+			segmentCache[slot] = key;
+			segmentDepths[2 * slot] = depth1;
+			segmentDepths[2 * slot + 1] = depth2;
+			drawLine(x1, y1, depth1, x2, y2, depth2);
+		}
+
+		/**
+		 * Draws a line by Bresenham's algorithm, interpolating the depth along the way
+		 */
+		private void drawLine(int x1, int y1, float depth1, int x2, int y2, float depth2) {
+			int[] colors = state.getDepthColors();
+			int dx = Math.abs(x2 - x1);
+			int dy = -Math.abs(y2 - y1);
+			int sx = x1 < x2 ? 1 : -1;
+			int sy = y1 < y2 ? 1 : -1;
+			int steps = Math.max(dx, -dy);
+			float depthStep = steps > 0 ? (depth2 - depth1) / steps : 0f;
+			float depth = depth1;
+			int err = dx + dy;
+			int x = x1;
+			int y = y1;
+			while (true) {
+				int i = y * width + x;
+				if (depth < depths[i]) {
+					depths[i] = depth;
+					pixels[i] = colors[Math.min(Math.max((int) (depth * (DEPTH_COLOR_LEVELS - 1) + 0.5f), 0),
+							DEPTH_COLOR_LEVELS - 1)];
+				}
+				if (x == x2 && y == y2)
+					break;
+				int e2 = 2 * err;
+				if (e2 >= dy) {
+					err += dy;
+					x += sx;
+				}
+				if (e2 <= dx) {
+					err += dx;
+					y += sy;
+				}
+				depth += depthStep;
+			}
+		}
+
+		public void merge(RenderWorker other) {
+			float[] otherDepths = other.depths;
+			int[] otherPixels = other.pixels;
+			for (int i = 0; i < depths.length; i++) {
+				if (otherDepths[i] < depths[i]) {
+					depths[i] = otherDepths[i];
+					pixels[i] = otherPixels[i];
+				}
+			}
+		}
+
+		private int toScreenX(double x) {
+			return Math.min(Math.max((int) ((x + 1.0) * 0.5 * width), 0), width - 1);
+		}
+
+		private int toScreenY(double y) {
+			return Math.min(Math.max((int) ((1.0 - y) * 0.5 * height), 0), height - 1);
+		}
+
+		private float toRelativeDepth(double z) {
+			return (float) ((z + 1.0) * 0.5); // between 0 (near plane) and 1 (far plane)
+		}
+
+	}
+
+}
@@ -23,13 +23,16 @@ public class WireframeRenderer extends BaseSceneRenderer {
 	}
 
 	@Override
-	protected void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options) {
+	protected void renderImpl(Scene scene, Collection<ViewPort> outputs, RenderOptions options,
+			RenderHandle handle) {
 		Camera camera = scene.getCamera();
 		Rectangle2D viewPlaneBounds = camera.getViewVolume().getViewPlaneRectangle();
 		Collection<MeshObject3D> objects = SceneUtils.getAllMeshObjectsInScene(scene);
 		int n = objects.size();
 		int i = 0;
 		for (MeshObject3D object : objects) {
+			if (handle.isCancelled())
+				break;
 			Mesh3D mesh = object.getMeshInViewVolumeCoordinates(camera);
 			Mesh3D clippedMesh = clipMeshAgainstViewPlaneBounds(mesh, viewPlaneBounds);
 			renderMesh(clippedMesh, outputs, options);
@@ -0,0 +1,49 @@
+package org.maia.cgi.render.d3.sampling;
+
+public abstract class BaseSamplePattern implements SamplePattern {
+
+	private double[] sampleXs;
+
+	private double[] sampleYs;
+
+	protected BaseSamplePattern(int numberOfSamples) {
+		if (numberOfSamples < 1)
+			throw new IllegalArgumentException("At least one sample is required: " + numberOfSamples);
+		this.sampleXs = new double[numberOfSamples];
+		this.sampleYs = new double[numberOfSamples];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(getClass().getSimpleName()).append(" [");
+		for (int i = 0; i < getNumberOfSamples(); i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append('(').append(getSampleX(i)).append(", ").append(getSampleY(i)).append(')');
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	@Override
+	public int getNumberOfSamples() {
+		return sampleXs.length;
+	}
+
+	@Override
+	public double getSampleX(int index) {
+		return sampleXs[index];
+	}
+
+	@Override
+	public double getSampleY(int index) {
+		return sampleYs[index];
+	}
+
+	protected void setSample(int index, double x, double y) {
+		sampleXs[index] = x;
+		sampleYs[index] = y;
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.maia.cgi.render.d3.sampling;
+
+import java.util.Random;
+
+/**
+ * Samples spread randomly over the pixel while keeping a minimum distance between one another
+ *
+ * <p>
+ * The samples are placed by best-candidate selection: every next sample is the one, out of a number of random
+ * candidates, that lies farthest from the samples placed so far. Distances wrap around the pixel's edges, so that
+ * samples of adjacent pixels do not cluster either. The candidates derive from a seed, so that a pattern is
+ * reproducible.
+ * </p>
+ */
+public class PoissonDiskSamplePattern extends BaseSamplePattern {
+
+	public static final long DEFAULT_SEED = 0x5EED;
+
+	private static final int CANDIDATES_PER_SAMPLE = 16;
+
+	public PoissonDiskSamplePattern(int numberOfSamples) {
+		this(numberOfSamples, DEFAULT_SEED);
+	}
+
+	public PoissonDiskSamplePattern(int numberOfSamples, long seed) {
+		super(numberOfSamples);
+		Random random = new Random(seed);
+		setSample(0, random.nextDouble(), random.nextDouble());
+		for (int i = 1; i < numberOfSamples; i++) {
+			double bestX = 0;
+			double bestY = 0;
+			double bestDistance = -1.0;
+			for (int c = 0; c < CANDIDATES_PER_SAMPLE * i; c++) {
+				double x = random.nextDouble();
+				double y = random.nextDouble();
+				double distance = getSquaredDistanceToNearestSample(x, y, i);
+				if (distance > bestDistance) {
+					bestX = x;
+					bestY = y;
+					bestDistance = distance;
+				}
+			}
+			setSample(i, bestX, bestY);
+		}
+	}
+
+	private double getSquaredDistanceToNearestSample(double x, double y, int numberOfSamples) {
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < numberOfSamples; i++) {
+			double dx = Math.abs(x - getSampleX(i));
+			double dy = Math.abs(y - getSampleY(i));
+			dx = Math.min(dx, 1.0 - dx);
+			dy = Math.min(dy, 1.0 - dy);
+			min = Math.min(min, dx * dx + dy * dy);
+		}
+		return min;
+	}
+
+}
@@ -0,0 +1,30 @@
+package org.maia.cgi.render.d3.sampling;
+
+/**
+ * Square grid of samples rotated such that no two samples share a row or a column
+ *
+ * <p>
+ * A grid of <em>k</em> by <em>k</em> samples rotated this way resolves near-horizontal and near-vertical edges in
+ * <em>k</em><sup>2</sup> steps, as many as an axis-aligned grid of <em>k</em><sup>2</sup> by <em>k</em><sup>2</sup>
+ * samples would. The default of 4 samples is the classic rotated grid supersampling pattern.
+ * </p>
+ */
+public class RotatedGridSamplePattern extends BaseSamplePattern {
+
+	public RotatedGridSamplePattern() {
+		this(2);
+	}
+
+	public RotatedGridSamplePattern(int gridSize) {
+		super(gridSize * gridSize);
+		int n = gridSize * gridSize;
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				double x = (i * gridSize + j + 0.5) / n;
+				double y = (j * gridSize + gridSize - 1 - i + 0.5) / n;
+				setSample(i * gridSize + j, x, y);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.maia.cgi.render.d3.sampling;
+
+/**
+ * Positions within a pixel at which the pixel is sampled
+ *
+ * <p>
+ * Positions are relative to the pixel, ranging from 0 (inclusive) to 1 (exclusive) from the left to the right and
+ * from the top to the bottom of the pixel. All samples of a pattern weigh equally in the color of the pixel.
+ * </p>
+ */
+public interface SamplePattern {
+
+	int getNumberOfSamples();
+
+	double getSampleX(int index);
+
+	double getSampleY(int index);
+
+}
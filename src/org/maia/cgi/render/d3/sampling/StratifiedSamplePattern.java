@@ -0,0 +1,37 @@
+package org.maia.cgi.render.d3.sampling;
+
+import java.util.Random;
+
+/**
+ * Samples jittered randomly within the cells of a grid over the pixel, one sample per cell
+ *
+ * <p>
+ * Any number of samples is supported. The grid has as many rows as the square root of the number of samples, rounded,
+ * and the samples are spread as evenly as possible over the rows. The jitter derives from a seed, so that a pattern
+ * is reproducible.
+ * </p>
+ */
+public class StratifiedSamplePattern extends BaseSamplePattern {
+
+	public static final long DEFAULT_SEED = 0x5EED;
+
+	public StratifiedSamplePattern(int numberOfSamples) {
+		this(numberOfSamples, DEFAULT_SEED);
+	}
+
+	public StratifiedSamplePattern(int numberOfSamples, long seed) {
+		super(numberOfSamples);
+		Random random = new Random(seed);
+		int rows = Math.max((int) Math.round(Math.sqrt(numberOfSamples)), 1);
+		int index = 0;
+		for (int row = 0; row < rows; row++) {
+			int columns = numberOfSamples * (row + 1) / rows - numberOfSamples * row / rows;
+			for (int column = 0; column < columns; column++) {
+				double x = (column + random.nextDouble()) / columns;
+				double y = (row + random.nextDouble()) / rows;
+				setSample(index++, x, y);
+			}
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package org.maia.cgi.render.d3.shading;
 
+import org.maia.cgi.geometry.d3.Point3D;
+import org.maia.cgi.geometry.d3.Vector3D;
+import org.maia.cgi.model.d3.light.LightSource;
+import org.maia.cgi.model.d3.object.Object3D;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.render.d3.RenderOptions;
@@ -10,4 +14,18 @@ public interface FlatShadingModel extends ShadingModel {
 	void applyShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
 			ReusableObjectPack reusableObjects);
 
+	/**
+	 * Computes the brightness factor of a single light source at a surface position
+	 * 
+	 * <p>
+	 * A renderer that defers shading can compute the factors of all surface positions one light source at a time, and
+	 * hand them to the shading by means of {@link ReusableObjectPack#setDeferredLightSourceFactors(double[])}.
+	 * </p>
+	 * 
+	 * @return The brightness factor, ranging from -1 (dark) to 1 (bright)
+	 */
+	double computeLightSourceBrightnessFactor(LightSource lightSource, Point3D surfacePositionInCamera,
+			Vector3D surfaceNormal, Object3D object, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects);
+
 }
\ No newline at end of file
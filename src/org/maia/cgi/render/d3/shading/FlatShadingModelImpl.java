@@ -2,7 +2,6 @@ package org.maia.cgi.render.d3.shading;
 
 import java.awt.Color;
 import java.util.Iterator;
-import java.util.List;
 
 import org.maia.cgi.Metrics;
 import org.maia.cgi.compose.Compositing;
@@ -13,8 +12,9 @@ import org.maia.cgi.model.d3.light.LightRaySegment;
 import org.maia.cgi.model.d3.light.LightSource;
 import org.maia.cgi.model.d3.light.PositionalLightSource;
 import org.maia.cgi.model.d3.object.Object3D;
+import org.maia.cgi.model.d3.object.ObjectSurfaceHitRecord;
 import org.maia.cgi.model.d3.object.ObjectSurfacePoint3D;
-import org.maia.cgi.model.d3.object.PolygonalObject3D;
+import org.maia.cgi.model.d3.object.OrientedSurfaceObject3D;
 import org.maia.cgi.model.d3.scene.Scene;
 import org.maia.cgi.render.d3.RenderOptions;
 import org.maia.cgi.render.d3.ReusableObjectPack;
@@ -48,39 +48,51 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 	public void applyShading(ObjectSurfacePoint3D surfacePoint, Scene scene, RenderOptions options,
 			ReusableObjectPack reusableObjects) {
 		Object3D object = surfacePoint.getObject();
-		if (object instanceof PolygonalObject3D) {
+		if (object instanceof OrientedSurfaceObject3D) {
+			Vector3D surfaceNormal = ((OrientedSurfaceObject3D) object).getSurfaceNormalInCameraCoordinates(
+					surfacePoint, scene.getCamera());
 			Color surfaceColor = surfacePoint.getColor();
-			Color shadedColor = applyShading(surfaceColor, surfacePoint.getPositionInCamera(),
-					(PolygonalObject3D) object, scene, options, reusableObjects);
+			Color shadedColor = applyShading(surfaceColor, surfacePoint.getPositionInCamera(), surfaceNormal, object,
+					scene, options, reusableObjects);
 			surfacePoint.setColor(shadedColor);
 		}
 	}
 
-	protected Color applyShading(Color surfaceColor, Point3D surfacePositionInCamera, PolygonalObject3D object,
-			Scene scene, RenderOptions options, ReusableObjectPack reusableObjects) {
-		double brightness = computeBrightnessFactor(surfacePositionInCamera, object, scene, options, reusableObjects);
+	protected Color applyShading(Color surfaceColor, Point3D surfacePositionInCamera, Vector3D surfaceNormal,
+			Object3D object, Scene scene, RenderOptions options, ReusableObjectPack reusableObjects) {
+		double brightness = computeBrightnessFactor(surfacePositionInCamera, surfaceNormal, object, scene, options,
+				reusableObjects);
 		return Compositing.adjustBrightness(surfaceColor, brightness);
 	}
 
-	protected double computeBrightnessFactor(Point3D surfacePositionInCamera, PolygonalObject3D object, Scene scene,
-			RenderOptions options, ReusableObjectPack reusableObjects) {
+	protected double computeBrightnessFactor(Point3D surfacePositionInCamera, Vector3D surfaceNormal, Object3D object,
+			Scene scene, RenderOptions options, ReusableObjectPack reusableObjects) {
 		double product = 1.0;
+		double[] deferredLightFactors = reusableObjects.getDeferredLightSourceFactors();
+		int i = 0;
 		Iterator<LightSource> it = scene.getLightSources().iterator();
 		while (it.hasNext()) {
 			LightSource lightSource = it.next();
-			double lightFactor = computeLightSourceBrightnessFactor(lightSource, surfacePositionInCamera, object,
-					scene, options, reusableObjects);
+			double lightFactor = 0;
+			if (deferredLightFactors != null) {
+				lightFactor = deferredLightFactors[i++];
+			} else {
+				lightFactor = computeLightSourceBrightnessFactor(lightSource, surfacePositionInCamera, surfaceNormal,
+						object, scene, options, reusableObjects);
+			}
 			product *= 1.0 - (lightFactor + 1.0) / 2.0;
 		}
 		return (1.0 - product) * 2.0 - 1.0;
 	}
 
-	protected double computeLightSourceBrightnessFactor(LightSource lightSource, Point3D surfacePositionInCamera,
-			PolygonalObject3D object, Scene scene, RenderOptions options, ReusableObjectPack reusableObjects) {
+	@Override
+	public double computeLightSourceBrightnessFactor(LightSource lightSource, Point3D surfacePositionInCamera,
+			Vector3D surfaceNormal, Object3D object, Scene scene, RenderOptions options,
+			ReusableObjectPack reusableObjects) {
 		LightRaySegment ray = getRayFromSurfacePositionToLightSource(surfacePositionInCamera, lightSource, scene,
 				reusableObjects);
 		if (ray != null) {
-			return computeLightRayBrightnessFactor(ray, object, scene, options, reusableObjects);
+			return computeLightRayBrightnessFactor(ray, surfaceNormal, object, scene, options, reusableObjects);
 		} else {
 			return computeAmbientLightBrightnessFactor(lightSource);
 		}
@@ -90,8 +102,8 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 		return light.getBrightness() * getLightReflectionFactor() - 1.0;
 	}
 
-	protected double computeLightRayBrightnessFactor(LightRaySegment ray, PolygonalObject3D object, Scene scene,
-			RenderOptions options, ReusableObjectPack reusableObjects) {
+	protected double computeLightRayBrightnessFactor(LightRaySegment ray, Vector3D surfaceNormal, Object3D object,
+			Scene scene, RenderOptions options, ReusableObjectPack reusableObjects) {
 		double lightFactor = -1.0;
 		double brightness = ray.getLightSource().getBrightness() * getLightReflectionFactor();
 		if (options.isShadowsEnabled()) {
@@ -100,27 +112,34 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 			brightness *= 0.7; // compensate unrealistic over-lighting of a scene in the absence of shadows
 		}
 		if (brightness > 0) {
-			brightness *= computeLightRayGloss(ray, object, scene, options);
+			brightness *= computeLightRayGloss(ray, surfaceNormal, scene, options);
 			lightFactor = brightness * 2.0 - 1.0;
 		}
 		return lightFactor;
 	}
 
-	protected double computeLightRayGloss(LightRaySegment ray, PolygonalObject3D object, Scene scene,
+	protected double computeLightRayGloss(LightRaySegment ray, Vector3D surfaceNormal, Scene scene,
 			RenderOptions options) {
 		Vector3D rayUnit = ray.getUnitDirection();
-		Vector3D normal = object.getPlaneInCameraCoordinates(scene.getCamera()).getNormalUnitVector();
-		double alfa = Math.abs(rayUnit.getAngleBetweenUnitVectors(normal) / Math.PI * 2.0 - 1.0);
+		double alfa = Math.abs(rayUnit.getAngleBetweenUnitVectors(surfaceNormal) / Math.PI * 2.0 - 1.0);
 		return Math.pow(alfa, getLightGlossFactor());
 	}
 
 	protected double getLightRayTranslucency(LightRaySegment ray, Object3D object, Scene scene,
 			ReusableObjectPack reusableObjects) {
+		PixelShadingCache pixelCache = reusableObjects.getPixelShadingCache();
+		double translucency = pixelCache.getTranslucency(object, ray.getLightSource());
+		if (!Double.isNaN(translucency)) {
+			Metrics.getInstance().incrementReusedLightRayTranslucencies();
+			return translucency; // shared by the samples of a pixel
+		}
 		if (isObscuredFromMemory(ray, object, scene, reusableObjects)) {
-			return 0; // can exploit local invariance
+			translucency = 0; // can exploit local invariance
 		} else {
-			return computeLightRayTranslucency(ray, object, scene, reusableObjects);
+			translucency = computeLightRayTranslucency(ray, object, scene, reusableObjects);
 		}
+		pixelCache.addTranslucency(object, ray.getLightSource(), translucency);
+		return translucency;
 	}
 
 	protected boolean isObscuredFromMemory(LightRaySegment ray, Object3D object, Scene scene,
@@ -129,11 +148,11 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 		Object3D candidateObscuringObject = reusableObjects.getObscuredObjectsCache().getObscuringObject(object,
 				ray.getLightSource());
 		if (candidateObscuringObject != null && candidateObscuringObject.isRaytraceable()) {
-			List<ObjectSurfacePoint3D> intersections = reusableObjects.getEmptiedIntersectionsList();
-			candidateObscuringObject.asRaytraceableObject().intersectWithLightRay(ray, scene, intersections,
-					reusableObjects);
-			if (!intersections.isEmpty()) {
-				obscured = Compositing.isFullyOpaque(intersections.get(0).getColor());
+			ObjectSurfaceHitRecord hit = reusableObjects.getLightRayHitRecord();
+			hit.reset();
+			if (candidateObscuringObject.asRaytraceableObject().intersectWithLightRay(ray, scene, hit,
+					reusableObjects)) {
+				obscured = Compositing.isFullyOpaque(hit.getColor());
 			}
 		}
 		return obscured;
@@ -148,7 +167,7 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 				reusableObjects);
 		while (translucency > 0 && intersectionsWithRay.hasNext()) {
 			ObjectSurfacePoint3D intersection = intersectionsWithRay.next();
-			if (intersection.getObject() != object) {
+			if (intersection.getObject() != object || isSelfShadowing(object)) {
 				double squareDistance = intersection.getPositionInCamera().squareDistanceTo(surfacePosition);
 				if (squareDistance >= APPROXIMATE_ZERO) {
 					double transparency = Compositing.getTransparency(intersection.getColor());
@@ -163,6 +182,10 @@ public class FlatShadingModelImpl implements FlatShadingModel {
 		return translucency;
 	}
 
+	private boolean isSelfShadowing(Object3D object) {
+		return object instanceof OrientedSurfaceObject3D && ((OrientedSurfaceObject3D) object).isSelfShadowing();
+	}
+
 	private LightRaySegment getRayFromSurfacePositionToLightSource(Point3D surfacePositionInCamera,
 			LightSource lightSource, Scene scene, ReusableObjectPack reusableObjects) {
 		LightRaySegment ray = null;
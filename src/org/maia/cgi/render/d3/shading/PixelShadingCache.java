@@ -0,0 +1,137 @@
+package org.maia.cgi.render.d3.shading;
+
+import java.util.Arrays;
+
+import org.maia.cgi.model.d3.light.LightSource;
+import org.maia.cgi.model.d3.object.Object3D;
+
+/**
+ * Cache of light ray translucencies that are shared by the samples of a pixel
+ *
+ * <p>
+ * While a pixel is being sampled, the translucency of a light ray from a surface position to a light source is kept
+ * for the object and the light source. Other samples of the pixel that hit the same object reuse it instead of
+ * tracing their own light ray. Some samples of the pixel are designated as <em>probes</em>. These always trace their
+ * light rays, and when two of them disagree on the translucency for the same object and light source, a shadow
+ * boundary runs through the pixel and the translucency is no longer reused.
+ * </p>
+ * <p>
+ * Outside of a pixel, the cache is disabled and nothing is reused
+ * </p>
+ */
+public class PixelShadingCache {
+
+	private boolean enabled;
+
+	private boolean probing;
+
+	private int size;
+
+	private Object3D[] objects;
+
+	private LightSource[] lightSources;
+
+	private double[] translucencies;
+
+	private boolean[] boundaries;
+
+	public PixelShadingCache() {
+		this(16);
+	}
+
+	public PixelShadingCache(int initialCapacity) {
+		this.objects = new Object3D[initialCapacity];
+		this.lightSources = new LightSource[initialCapacity];
+		this.translucencies = new double[initialCapacity];
+		this.boundaries = new boolean[initialCapacity];
+	}
+
+	public void startPixel() {
+		clear();
+		setEnabled(true);
+		setProbing(false);
+	}
+
+	public void endPixel() {
+		clear();
+		setEnabled(false);
+	}
+
+	private void clear() {
+		Arrays.fill(objects, 0, size, null);
+		Arrays.fill(lightSources, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Returns a translucency to reuse
+	 *
+	 * @return The translucency from the light source at the surface of the object, or <code>Double.NaN</code> when
+	 *         it is to be computed by tracing a light ray
+	 */
+	public double getTranslucency(Object3D object, LightSource lightSource) {
+		if (!isEnabled() || isProbing())
+			return Double.NaN;
+		int i = indexOf(object, lightSource);
+		if (i < 0 || boundaries[i])
+			return Double.NaN;
+		return translucencies[i];
+	}
+
+	/**
+	 * Adds a translucency that was computed by tracing a light ray
+	 */
+	public void addTranslucency(Object3D object, LightSource lightSource, double translucency) {
+		if (!isEnabled())
+			return;
+		int i = indexOf(object, lightSource);
+		if (i < 0) {
+			if (size == objects.length) {
+				grow();
+			}
+			i = size++;
+			objects[i] = object;
+			lightSources[i] = lightSource;
+			translucencies[i] = translucency;
+			boundaries[i] = false;
+		} else if (translucencies[i] != translucency) {
+			boundaries[i] = true;
+		}
+	}
+
+	private int indexOf(Object3D object, LightSource lightSource) {
+		for (int i = 0; i < size; i++) {
+			if (objects[i] == object && lightSources[i] == lightSource)
+				return i;
+		}
+		return -1;
+	}
+
+	private void grow() {
+		int capacity = 2 * objects.length;
+		objects = Arrays.copyOf(objects, capacity);
+		lightSources = Arrays.copyOf(lightSources, capacity);
+		translucencies = Arrays.copyOf(translucencies, capacity);
+		boundaries = Arrays.copyOf(boundaries, capacity);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	private void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Tells whether the current sample is a probe, which always traces its light rays
+	 */
+	public boolean isProbing() {
+		return probing;
+	}
+
+	public void setProbing(boolean probing) {
+		this.probing = probing;
+	}
+
+}
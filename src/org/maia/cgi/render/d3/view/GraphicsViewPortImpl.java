@@ -2,6 +2,7 @@ package org.maia.cgi.render.d3.view;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 import org.maia.cgi.geometry.d2.Rectangle2D;
 
@@ -31,4 +32,9 @@ public class GraphicsViewPortImpl extends GraphicsViewPort {
 		g.drawLine(xPixel, yPixel, xPixel, yPixel);
 	}
 
+	@Override
+	public synchronized void paintImageInWindowCoordinates(int xPixel, int yPixel, BufferedImage image) {
+		getWindowGraphics2D().drawImage(image, xPixel, yPixel, null);
+	}
+
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package org.maia.cgi.render.d3.view;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 
 public interface ViewPort {
 
@@ -14,4 +15,6 @@ public interface ViewPort {
 	
 	void paintPixelInWindowCoordinates(int xPixel, int yPixel, Color color);
 
+	void paintImageInWindowCoordinates(int xPixel, int yPixel, BufferedImage image);
+
 }
\ No newline at end of file
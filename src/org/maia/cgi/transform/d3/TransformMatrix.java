@@ -139,7 +139,7 @@ public class TransformMatrix {
 		return sb.toString();
 	}
 
-	protected double getValue(int row, int col) {
+	public double getValue(int row, int col) {
 		return getValues()[row * 4 + col];
 	}
 
@@ -1,5 +1,6 @@
 package org.maia.cgi.transform.d3;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.maia.cgi.geometry.d3.Point3D;
@@ -83,6 +84,15 @@ public class TwoWayCompositeTransform {
 		return getReverseCompositeMatrix().transform(points);
 	}
 
+	/**
+	 * Returns the individual transformation matrices in the sequence
+	 * 
+	 * @return The matrices in the order of application, starting with the Identity transform of the initial state
+	 */
+	public List<TransformMatrix> getForwardMatrices() {
+		return Collections.unmodifiableList(getForwardCompositeTransform().getMatrices());
+	}
+
 	public TransformMatrix getForwardCompositeMatrix() {
 		return getForwardCompositeTransform().getCompositeMatrix();
 	}